@@ -87,6 +87,8 @@ public class Constants {
 
 	public static final String BRANCH_GRAPH_PATH = "/graph/";
 
+	public static final String METRICS_PATH = "/prometheus";
+
 	public static final String BORDER = "*****************************************************************";
 
 	public static final String BORDER2 = "#################################################################";
@@ -409,7 +411,7 @@ public class Constants {
 	public static enum RpcRequest {
 		// Order is important here.  anything after LIST_SETTINGS requires
 		// administrator privileges and web.allowRpcManagement.
-		CLEAR_REPOSITORY_CACHE, REINDEX_TICKETS, GET_PROTOCOL, LIST_REPOSITORIES, LIST_BRANCHES, GET_USER,
+		CLEAR_REPOSITORY_CACHE, REINDEX_TICKETS, GET_PROTOCOL, LIST_REPOSITORIES, LIST_BRANCHES, LIST_TREE, GET_USER,
 		FORK_REPOSITORY, LIST_SETTINGS,
 		CREATE_REPOSITORY, EDIT_REPOSITORY, DELETE_REPOSITORY,
 		LIST_USERS, CREATE_USER, EDIT_USER, DELETE_USER,
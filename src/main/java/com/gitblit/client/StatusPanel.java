@@ -24,6 +24,7 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
+import java.text.MessageFormat;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
@@ -33,6 +34,7 @@ import javax.swing.JTable;
 
 import com.gitblit.Constants;
 import com.gitblit.Constants.RpcRequest;
+import com.gitblit.models.JGitCacheStatus;
 import com.gitblit.models.ServerStatus;
 import com.gitblit.utils.ByteFormat;
 
@@ -51,6 +53,7 @@ public class StatusPanel extends JPanel {
 	private JLabel heapMaximum;
 	private JLabel heapAllocated;
 	private JLabel heapUsed;
+	private JLabel jgitCache;
 	private PropertiesTableModel tableModel;
 	private HeaderPanel header;
 	private JLabel version;
@@ -80,6 +83,7 @@ public class StatusPanel extends JPanel {
 		heapMaximum = new JLabel();
 		heapAllocated = new JLabel();
 		heapUsed = new JLabel();
+		jgitCache = new JLabel();
 
 		JPanel fieldsPanel = new JPanel(new GridLayout(0, 1, 0, Utils.MARGIN)) {
 
@@ -98,6 +102,7 @@ public class StatusPanel extends JPanel {
 		fieldsPanel.add(createFieldPanel("gb.heapUsed", heapUsed));
 		fieldsPanel.add(createFieldPanel("gb.heapAllocated", heapAllocated));
 		fieldsPanel.add(createFieldPanel("gb.heapMaximum", heapMaximum));
+		fieldsPanel.add(createFieldPanel("gb.jgitCache", jgitCache));
 
 		tableModel = new PropertiesTableModel();
 		JTable propertiesTable = Utils.newTable(tableModel, Utils.DATE_FORMAT);
@@ -164,6 +169,14 @@ public class StatusPanel extends JPanel {
 		heapAllocated.setText(byteFormat.format(status.heapAllocated));
 		heapUsed.setText(byteFormat.format(status.heapAllocated - status.heapFree) + " ("
 				+ byteFormat.format(status.heapFree) + " " + Translation.get("gb.free") + ")");
+		JGitCacheStatus cache = status.jgitCache;
+		if (cache == null) {
+			jgitCache.setText("");
+		} else {
+			jgitCache.setText(MessageFormat.format(Translation.get("gb.jgitCacheUsage"),
+					byteFormat.format(cache.openBytes), byteFormat.format(cache.packedGitLimit),
+					cache.openFiles, cache.packedGitOpenFiles, cache.getSaturation(), cache.resizes));
+		}
 		tableModel.setProperties(status.systemProperties);
 		tableModel.fireTableDataChanged();
 	}
@@ -23,7 +23,10 @@ import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -32,6 +35,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.BatchRefUpdate;
@@ -43,21 +47,26 @@ import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.PostReceiveHook;
 import org.eclipse.jgit.transport.PreReceiveHook;
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.eclipse.jgit.transport.ReceiveCommand.Result;
 import org.eclipse.jgit.transport.ReceivePack;
+import org.eclipse.jgit.transport.ReceivedPackStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.gitblit.Constants;
 import com.gitblit.Constants.AccessRestrictionType;
+import com.gitblit.Constants.Transport;
 import com.gitblit.IStoredSettings;
 import com.gitblit.Keys;
 import com.gitblit.client.Translation;
 import com.gitblit.extensions.ReceiveHook;
+import com.gitblit.git.PostReceiveQueue.Step;
 import com.gitblit.manager.IGitblit;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.TicketModel;
@@ -65,16 +74,23 @@ import com.gitblit.models.UserModel;
 import com.gitblit.models.TicketModel.Change;
 import com.gitblit.models.TicketModel.Field;
 import com.gitblit.models.TicketModel.Patchset;
+import com.gitblit.models.TicketModel.Reference;
+import com.gitblit.models.TicketModel.ReferenceType;
 import com.gitblit.models.TicketModel.Status;
 import com.gitblit.models.TicketModel.TicketAction;
 import com.gitblit.models.TicketModel.TicketLink;
 import com.gitblit.tickets.BranchTicketService;
 import com.gitblit.tickets.ITicketService;
 import com.gitblit.tickets.TicketNotifier;
+import com.gitblit.tickets.TicketReferenceScanner;
 import com.gitblit.utils.ArrayUtils;
 import com.gitblit.utils.ClientLogger;
 import com.gitblit.utils.CommitCache;
 import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Histogram;
 import com.gitblit.utils.RefLogUtils;
 import com.gitblit.utils.StringUtils;
 import com.google.common.collect.Lists;
@@ -99,6 +115,18 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(GitblitReceivePack.class);
 
+	private static final Family<Counter> RECEIVES = MetricRegistry.instance().counters(
+			"gitblit_git_receives_total", "Pushes received", "transport");
+
+	private static final Family<Counter> RECEIVE_COMMANDS = MetricRegistry.instance().counters(
+			"gitblit_git_receive_commands_total", "Refs created, updated or deleted by pushes", "transport");
+
+	private static final Family<Counter> RECEIVE_BYTES = MetricRegistry.instance().counters(
+			"gitblit_git_receive_bytes_total", "Pack bytes received from pushing clients", "transport");
+
+	private static final Family<Histogram> RECEIVE_TIME = MetricRegistry.instance().histograms(
+			"gitblit_git_receive_seconds", "Time to receive a push until its refs are updated", "transport");
+
 	protected final RepositoryModel repository;
 
 	protected final UserModel user;
@@ -109,6 +137,8 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 
 	protected GroovyScriptEngine gse;
 
+	protected final GroovyHookEngine hooks;
+
 	protected final IStoredSettings settings;
 
 	protected final IGitblit gitblit;
@@ -116,6 +146,10 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 	protected final ITicketService ticketService;
 
 	protected final TicketNotifier ticketNotifier;
+
+	private final long startNanos = System.nanoTime();
+
+	private Transport transport;
 	
 
 	public GitblitReceivePack(
@@ -130,14 +164,15 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 		this.repository = repository;
 		this.user = user;
 		this.groovyDir = gitblit.getHooksFolder();
-		try {
-			// set Grape root
-			File grapeRoot = gitblit.getGrapesFolder();
-			grapeRoot.mkdirs();
-			System.setProperty("grape.root", grapeRoot.getAbsolutePath());
-			this.gse = new GroovyScriptEngine(groovyDir.getAbsolutePath());
-		} catch (IOException e) {
+		GroovyHookEngine engine = gitblit.getGroovyHookEngine();
+		if (engine == null) {
+			try {
+				engine = new GroovyHookEngine(groovyDir, gitblit.getGrapesFolder(), 0);
+			} catch (IOException e) {
+			}
 		}
+		this.hooks = engine;
+		this.gse = engine == null ? null : engine.getScriptEngine();
 
 		if (gitblit.getTicketService().isAcceptingTicketUpdates(repository)) {
 			this.ticketService = gitblit.getTicketService();
@@ -356,43 +391,97 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 	 * Instrumentation point where the incoming push has been applied to the
 	 * repository. This is the point where we would trigger a Jenkins build
 	 * or send an email.
+	 *
+	 * Steps which are not required for the consistency of the push are handed
+	 * to the {@link PostReceiveQueue} and executed after the push completes.
 	 */
 	@Override
 	public void onPostReceive(ReceivePack rp, Collection<ReceiveCommand> commands) {
+		recordMetrics(commands);
+
 		if (commands.size() == 0) {
 			LOGGER.debug("skipping post-receive processing, no refs created, updated, or removed");
 			return;
 		}
 
+		// resetting the repository cache must complete before the client is
+		// released so that created and deleted refs are immediately visible
 		logRefChange(commands);
-		updateIncrementalPushTags(commands);
-		updateGitblitRefLog(commands);
 
-		// check for updates pushed to the BranchTicketService branch
-		// if the BranchTicketService is active it will reindex, as appropriate
-		for (ReceiveCommand cmd : commands) {
-			if (Result.OK.equals(cmd.getResult())
-					&& BranchTicketService.BRANCH.equals(cmd.getRefName())) {
-				rp.getRepository().fireEvent(new ReceiveCommandEvent(repository, cmd));
-			}
+		// repack once enough objects have been pushed past the cached pack
+		gitblit.scheduleCachedPackRefresh(repository.name);
+
+		// index the pushed commits of the indexed branches
+		gitblit.scheduleIndexUpdate(repository.name);
+
+		List<Step> steps = new ArrayList<Step>(Arrays.asList(Step.values()));
+		PostReceiveQueue queue = gitblit.getPostReceiveQueue();
+		if (queue != null && queue.submit(this, commands)) {
+			steps.removeAll(queue.getDeferredSteps());
 		}
 
-		// call post-receive plugins
-		for (ReceiveHook hook : gitblit.getExtensions(ReceiveHook.class)) {
+		for (Step step : steps) {
 			try {
-				hook.onPostReceive(this, commands);
+				executePostReceiveStep(step, commands);
 			} catch (Exception e) {
-				LOGGER.error("Failed to execute extension", e);
+				LOGGER.error(MessageFormat.format("Failed to execute post-receive step {0} for {1}",
+						step, repository.name), e);
 			}
 		}
+	}
 
-		// run Groovy hook scripts
-		Set<String> scripts = new LinkedHashSet<String>();
-		scripts.addAll(gitblit.getPostReceiveScriptsInherited(repository));
-		if (!ArrayUtils.isEmpty(repository.postReceiveScripts)) {
-			scripts.addAll(repository.postReceiveScripts);
+	/**
+	 * Executes a post-receive step.  Steps are executed either during the push
+	 * or later by the {@link PostReceiveQueue}.  An exception thrown by a step
+	 * causes the queue to retry the step.
+	 *
+	 * @param step
+	 * @param commands
+	 * @throws Exception
+	 */
+	protected void executePostReceiveStep(Step step, Collection<ReceiveCommand> commands) throws Exception {
+		switch (step) {
+		case TAGS:
+			updateIncrementalPushTags(commands);
+			break;
+		case REFLOG:
+			if (!RefLogUtils.updateRefLog(user, getRepository(), commands)) {
+				throw new IOException(MessageFormat.format("Failed to update {0} reflog", repository.name));
+			}
+			LOGGER.debug(MessageFormat.format("{0} reflog updated", repository.name));
+			break;
+		case TICKETS:
+			// check for updates pushed to the BranchTicketService branch
+			// if the BranchTicketService is active it will reindex, as appropriate
+			for (ReceiveCommand cmd : commands) {
+				if (Result.OK.equals(cmd.getResult())
+						&& BranchTicketService.BRANCH.equals(cmd.getRefName())) {
+					getRepository().fireEvent(new ReceiveCommandEvent(repository, cmd));
+				}
+			}
+			break;
+		case HOOKS:
+			// call post-receive plugins
+			for (ReceiveHook hook : gitblit.getExtensions(ReceiveHook.class)) {
+				try {
+					hook.onPostReceive(this, commands);
+				} catch (Exception e) {
+					LOGGER.error("Failed to execute extension", e);
+				}
+			}
+			break;
+		case SCRIPTS:
+			// run Groovy hook scripts
+			Set<String> scripts = new LinkedHashSet<String>();
+			scripts.addAll(gitblit.getPostReceiveScriptsInherited(repository));
+			if (!ArrayUtils.isEmpty(repository.postReceiveScripts)) {
+				scripts.addAll(repository.postReceiveScripts);
+			}
+			runGroovy(commands, scripts);
+			break;
+		default:
+			break;
 		}
-		runGroovy(commands, scripts);
 	}
 
 	/**
@@ -543,16 +632,13 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 			List<ReceiveCommand> allUpdates = ReceiveCommand.filter(batch.getCommands(), Result.OK);
 			if (!allUpdates.isEmpty()) {
 				int ticketsProcessed = 0;
+				List<ReceiveCommand> branchUpdates = new ArrayList<ReceiveCommand>();
 				for (ReceiveCommand cmd : allUpdates) {
 					switch (cmd.getType()) {
 					case CREATE:
 					case UPDATE:
 						if (cmd.getRefName().startsWith(Constants.R_HEADS)) {
-							Collection<TicketModel> tickets = processReferencedTickets(cmd);
-							ticketsProcessed += tickets.size();
-							for (TicketModel ticket : tickets) {
-								ticketNotifier.queueMailing(ticket);
-							}
+							branchUpdates.add(cmd);
 						}
 						break;
 						
@@ -567,11 +653,7 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 							deletion.pendingLinks = deletedRefs;
 							ticketService.updateTicket(repository, 0, deletion);
 							
-							Collection<TicketModel> tickets = processReferencedTickets(cmd);
-							ticketsProcessed += tickets.size();
-							for (TicketModel ticket : tickets) {
-								ticketNotifier.queueMailing(ticket);
-							}
+							branchUpdates.add(cmd);
 						}
 						break;
 					case DELETE:
@@ -620,6 +702,12 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 						break;
 					}
 				}
+
+				Collection<TicketModel> tickets = processReferencedTickets(branchUpdates);
+				ticketsProcessed += tickets.size();
+				for (TicketModel ticket : tickets) {
+					ticketNotifier.queueMailing(ticket);
+				}
 	
 				if (ticketsProcessed == 1) {
 					sendInfo("1 ticket updated");
@@ -637,6 +725,21 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 		this.gitblitUrl = url;
 	}
 
+	protected void setTransport(Transport transport) {
+		this.transport = transport;
+	}
+
+	private void recordMetrics(Collection<ReceiveCommand> commands) {
+		String label = transport == null ? "unknown" : transport.name().toLowerCase();
+		RECEIVE_TIME.labels(label).observeSince(startNanos);
+		RECEIVES.labels(label).inc();
+		RECEIVE_COMMANDS.labels(label).add(commands.size());
+		ReceivedPackStatistics stats = getReceivedPackStatistics();
+		if (stats != null) {
+			RECEIVE_BYTES.labels(label).add(stats.getNumBytesRead());
+		}
+	}
+
 	public void sendRejection(final ReceiveCommand cmd, final String why, Object... objects) {
 		String text;
 		if (ArrayUtils.isEmpty(objects)) {
@@ -697,6 +800,10 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 			// no Groovy scripts to execute
 			return;
 		}
+		if (hooks == null) {
+			LOGGER.error(MessageFormat.format("Groovy hooks folder {0} is not accessible", groovyDir));
+			return;
+		}
 
 		Binding binding = new Binding();
 		binding.setVariable("gitblit", gitblit);
@@ -713,22 +820,22 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 			}
 			// allow script to be specified without .groovy extension
 			// this is easier to read in the settings
-			File file = new File(groovyDir, script);
-			if (!file.exists() && !script.toLowerCase().endsWith(".groovy")) {
-				file = new File(groovyDir, script + ".groovy");
-				if (file.exists()) {
-					script = file.getName();
-				}
-			}
+			script = hooks.resolve(script);
 			try {
-				Object result = gse.run(script, binding);
-				if (result instanceof Boolean) {
-					if (!((Boolean) result)) {
-						LOGGER.error(MessageFormat.format(
-								"Groovy script {0} has failed!  Hook scripts aborted.", script));
-						break;
+				if (!hooks.run(script, binding)) {
+					LOGGER.error(MessageFormat.format(
+							"Groovy script {0} has failed!  Hook scripts aborted.", script));
+					break;
+				}
+			} catch (TimeoutException e) {
+				// fail fast, reject the commands of a pre-receive chain
+				LOGGER.error(e.getMessage() + "  Hook scripts aborted.");
+				for (ReceiveCommand cmd : commands) {
+					if (Result.NOT_ATTEMPTED.equals(cmd.getResult())) {
+						sendRejection(cmd, "Groovy script {0} timed out", script);
 					}
 				}
+				break;
 			} catch (Exception e) {
 				LOGGER.error(
 						MessageFormat.format("Failed to execute Groovy script {0}", script), e);
@@ -749,114 +856,210 @@ public class GitblitReceivePack extends ReceivePack implements PreReceiveHook, P
 	}
 	
 	/**
-	 * Automatically closes open tickets and adds references to tickets if made in the commit message.
+	 * Identifies the tickets referenced by the commits which the specified
+	 * branch updates introduce.  A commit introduced by several of the
+	 * updates is only scanned and reported once.
 	 *
-	 * @param cmd
+	 * @param commands
+	 * @param skipKnownCommits
+	 *            if true, commits which are reachable from a branch that was
+	 *            not updated by this push are skipped because they have been
+	 *            scanned when they were first pushed
+	 * @return the ticket links identified for each command
 	 */
-	private Collection<TicketModel> processReferencedTickets(ReceiveCommand cmd) {
-		Map<Long, TicketModel> changedTickets = new LinkedHashMap<Long, TicketModel>();
+	protected Map<ReceiveCommand, List<TicketLink>> identifyReferencedTickets(Collection<ReceiveCommand> commands,
+			boolean skipKnownCommits) {
+		Map<ReceiveCommand, List<TicketLink>> links = new LinkedHashMap<ReceiveCommand, List<TicketLink>>();
+		if (commands.isEmpty()) {
+			return links;
+		}
 
+		Set<String> updatedRefs = new HashSet<String>();
+		for (ReceiveCommand cmd : commands) {
+			updatedRefs.add(cmd.getRefName());
+		}
+
+		TicketReferenceScanner scanner = new TicketReferenceScanner(settings);
 		final RevWalk rw = getRevWalk();
+		RevFlag scanned = null;
 		try {
 			rw.reset();
-			rw.markStart(rw.parseCommit(cmd.getNewId()));
-			if (!ObjectId.zeroId().equals(cmd.getOldId())) {
-				rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
+			scanned = rw.newFlag("scanned");
+			rw.retainOnReset(scanned);
+
+			// the tips of the other branches bound the walks
+			List<RevCommit> known = new ArrayList<RevCommit>();
+			if (skipKnownCommits) {
+				for (Ref ref : getRepository().getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+					if (updatedRefs.contains(ref.getName()) || ref.getObjectId() == null) {
+						continue;
+					}
+					RevObject obj = rw.parseAny(ref.getObjectId());
+					if (obj instanceof RevCommit) {
+						known.add((RevCommit) obj);
+					}
+				}
 			}
 
-			RevCommit c;
-			while ((c = rw.next()) != null) {
-				rw.parseBody(c);
-				List<TicketLink> ticketLinks = JGitUtils.identifyTicketsFromCommitMessage(getRepository(), settings, c);
-				if (ticketLinks == null) {
-					continue;
+			for (ReceiveCommand cmd : commands) {
+				List<TicketLink> cmdLinks = new ArrayList<TicketLink>();
+				links.put(cmd, cmdLinks);
+
+				rw.reset();
+				rw.markStart(rw.parseCommit(cmd.getNewId()));
+				if (!ObjectId.zeroId().equals(cmd.getOldId())) {
+					rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
+				}
+				for (RevCommit tip : known) {
+					rw.markUninteresting(tip);
 				}
 
-				for (TicketLink link : ticketLinks) {
-					
-					TicketModel ticket = ticketService.getTicket(repository, link.targetTicketId);
-					if (ticket == null) {
+				RevCommit c;
+				while ((c = rw.next()) != null) {
+					if (c.has(scanned)) {
 						continue;
 					}
-					
-					Change change = null;
-					String commitSha = c.getName();
-					String branchName = Repository.shortenRefName(cmd.getRefName());
-					
-					switch (link.action) {
-						case Commit: {
-							//A commit can reference a ticket in any branch even if the ticket is closed.
-							//This allows developers to identify and communicate related issues
-							change = new Change(user.username);
-							change.referenceCommit(commitSha);
-						} break;
-						
-						case Close: {
-							// As this isn't a patchset theres no merging taking place when closing a ticket
-							if (ticket.isClosed()) {
-								continue;
-							}
-							
-							change = new Change(user.username);
-							change.setField(Field.status, Status.Fixed);
-							
-							if (StringUtils.isEmpty(ticket.responsible)) {
-								// unassigned tickets are assigned to the closer
-								change.setField(Field.responsible, user.username);
-							}
-						}
-						
-						default: {
-							//No action
-						} break;
-					}
-					
-					if (change != null) {
-						ticket = ticketService.updateTicket(repository, ticket.number, change);
-					}
-	
-					if (ticket != null) {
-						sendInfo("");
-						sendHeader("#{0,number,0}: {1}", ticket.number, StringUtils.trimString(ticket.title, Constants.LEN_SHORTLOG));
-
-						switch (link.action) {
-							case Commit: {
-								sendInfo("referenced by push of {0} to {1}", commitSha, branchName);
-								changedTickets.put(ticket.number, ticket);
-							} break;
-
-							case Close: {
-								sendInfo("closed by push of {0} to {1}", commitSha, branchName);
-								changedTickets.put(ticket.number, ticket);
-							} break;
-
-							default: { }
-						}
-
-						sendInfo(ticketService.getTicketUrl(ticket));
-						sendInfo("");
-					} else {
-						switch (link.action) {
-							case Commit: {
-								sendError("FAILED to reference ticket {0} by push of {1}", link.targetTicketId, commitSha);
-							} break;
-							
-							case Close: {
-								sendError("FAILED to close ticket {0} by push of {1}", link.targetTicketId, commitSha);	
-							} break;
-							
-							default: { }
-						}
-					}
+					c.add(scanned);
+					rw.parseBody(c);
+					cmdLinks.addAll(scanner.scan(c));
+					c.disposeBody();
 				}
 			}
-				
 		} catch (IOException e) {
 			LOGGER.error("Can't scan for changes to reference or close", e);
 		} finally {
 			rw.reset();
+			if (scanned != null) {
+				rw.disposeFlag(scanned);
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * Automatically closes open tickets and adds references to tickets if made
+	 * in the commit messages.  The references of a push are grouped per
+	 * ticket so that each ticket is updated once.
+	 *
+	 * @param commands
+	 */
+	private Collection<TicketModel> processReferencedTickets(Collection<ReceiveCommand> commands) {
+		Map<Long, TicketModel> changedTickets = new LinkedHashMap<Long, TicketModel>();
+
+		// group the references by ticket
+		Map<Long, List<TicketLink>> ticketLinks = new LinkedHashMap<Long, List<TicketLink>>();
+		Map<String, String> branches = new HashMap<String, String>();
+		for (Map.Entry<ReceiveCommand, List<TicketLink>> entry : identifyReferencedTickets(commands, true).entrySet()) {
+			String branchName = Repository.shortenRefName(entry.getKey().getRefName());
+			for (TicketLink link : entry.getValue()) {
+				branches.put(link.hash, branchName);
+				List<TicketLink> list = ticketLinks.get(link.targetTicketId);
+				if (list == null) {
+					list = new ArrayList<TicketLink>();
+					ticketLinks.put(link.targetTicketId, list);
+				}
+				list.add(link);
+			}
+		}
+
+		for (Map.Entry<Long, List<TicketLink>> entry : ticketLinks.entrySet()) {
+			TicketModel ticket = ticketService.getTicket(repository, entry.getKey());
+			if (ticket == null) {
+				continue;
+			}
+
+			Set<String> referenced = getReferencedCommits(ticket);
+			List<Change> changes = new ArrayList<Change>();
+			List<TicketLink> referencing = new ArrayList<TicketLink>();
+			TicketLink closing = null;
+			for (TicketLink link : entry.getValue()) {
+				switch (link.action) {
+					case Commit: {
+						//A commit can reference a ticket in any branch even if the ticket is closed.
+						//This allows developers to identify and communicate related issues
+						if (referenced.add(link.hash)) {
+							Change change = new Change(user.username);
+							change.referenceCommit(link.hash);
+							changes.add(change);
+							referencing.add(link);
+						}
+					} break;
+
+					case Close: {
+						// As this isn't a patchset theres no merging taking place when closing a ticket
+						if (ticket.isClosed() || closing != null) {
+							continue;
+						}
+						closing = link;
+					} break;
+
+					default: {
+						//No action
+					} break;
+				}
+			}
+
+			if (closing != null) {
+				Change change = new Change(user.username);
+				change.setField(Field.status, Status.Fixed);
+
+				if (StringUtils.isEmpty(ticket.responsible)) {
+					// unassigned tickets are assigned to the closer
+					change.setField(Field.responsible, user.username);
+				}
+				changes.add(change);
+			}
+
+			if (changes.isEmpty()) {
+				// the ticket already references the pushed commits
+				continue;
+			}
+
+			ticket = ticketService.updateTicket(repository, ticket.number, changes);
+
+			if (ticket != null) {
+				sendInfo("");
+				sendHeader("#{0,number,0}: {1}", ticket.number, StringUtils.trimString(ticket.title, Constants.LEN_SHORTLOG));
+				for (TicketLink link : referencing) {
+					sendInfo("referenced by push of {0} to {1}", link.hash, branches.get(link.hash));
+				}
+				if (closing != null) {
+					sendInfo("closed by push of {0} to {1}", closing.hash, branches.get(closing.hash));
+				}
+				sendInfo(ticketService.getTicketUrl(ticket));
+				sendInfo("");
+				changedTickets.put(ticket.number, ticket);
+			} else {
+				for (TicketLink link : referencing) {
+					sendError("FAILED to reference ticket {0} by push of {1}", link.targetTicketId, link.hash);
+				}
+				if (closing != null) {
+					sendError("FAILED to close ticket {0} by push of {1}", closing.targetTicketId, closing.hash);
+				}
+			}
 		}
 
 		return changedTickets.values();
 	}
+
+	/**
+	 * Returns the commits currently referenced by the ticket.
+	 *
+	 * @param ticket
+	 * @return the referenced commit ids
+	 */
+	protected static Set<String> getReferencedCommits(TicketModel ticket) {
+		Set<String> commits = new HashSet<String>();
+		for (Reference reference : ticket.getReferences()) {
+			if (ReferenceType.Commit != reference.getSourceType()) {
+				continue;
+			}
+			if (reference.deleted != null && reference.deleted) {
+				commits.remove(reference.hash);
+			} else {
+				commits.add(reference.hash);
+			}
+		}
+		return commits;
+	}
 }
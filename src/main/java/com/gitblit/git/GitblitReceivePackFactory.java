@@ -142,6 +142,7 @@ public class GitblitReceivePackFactory<X> implements ReceivePackFactory<X> {
 		rp.setGitblitUrl(url);
 		rp.setRefLogIdent(new PersonIdent(user.username, user.username + "@" + origin));
 		rp.setTimeout(timeout);
+		rp.setTransport(transport);
 
 		return rp;
 	}
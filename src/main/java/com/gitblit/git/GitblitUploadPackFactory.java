@@ -15,29 +15,76 @@
  */
 package com.gitblit.git;
 
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jgit.internal.storage.pack.CachedPack;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackStatistics;
+import org.eclipse.jgit.transport.PostUploadHook;
 import org.eclipse.jgit.transport.UploadPack;
 import org.eclipse.jgit.transport.resolver.ServiceNotAuthorizedException;
 import org.eclipse.jgit.transport.resolver.ServiceNotEnabledException;
 import org.eclipse.jgit.transport.resolver.UploadPackFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.gitblit.Constants.Transport;
 import com.gitblit.manager.IAuthenticationManager;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.manager.IRepositoryManager;
 import com.gitblit.transport.git.GitDaemonClient;
+import com.gitblit.transport.ssh.SshDaemonClient;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Histogram;
 
 /**
  * The upload pack factory creates an upload pack which controls what refs are
  * advertised to cloning/pulling clients.
  *
+ * Clones whose wants are covered by the bitmap-indexed pack written by the GC
+ * receive that cached pack verbatim; only the objects pushed since are counted
+ * and compressed.  The GC refreshes the cached pack after significant pushes.
+ *
  * @author James Moger
  *
  * @param <X> the connection type
  */
 public class GitblitUploadPackFactory<X> implements UploadPackFactory<X> {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(GitblitUploadPackFactory.class);
+
+	private static final Family<Counter> UPLOADS = MetricRegistry.instance().counters(
+			"gitblit_git_uploads_total", "Packs sent to cloning or fetching clients", "transport", "type");
+
+	private static final Family<Counter> UPLOAD_OBJECTS = MetricRegistry.instance().counters(
+			"gitblit_git_upload_objects_total", "Objects sent to cloning or fetching clients", "transport");
+
+	private static final Family<Counter> UPLOAD_BYTES = MetricRegistry.instance().counters(
+			"gitblit_git_upload_bytes_total", "Pack bytes sent to cloning or fetching clients", "transport");
+
+	private static final Family<Histogram> UPLOAD_TIME = MetricRegistry.instance().histograms(
+			"gitblit_git_upload_seconds", "Time to negotiate, count, compress and write a pack", "transport");
+
 	private final IAuthenticationManager authenticationManager;
 
+	private final IRepositoryManager repositoryManager;
+
 	public GitblitUploadPackFactory(IAuthenticationManager authenticationManager) {
+		this(authenticationManager, null);
+	}
+
+	public GitblitUploadPackFactory(IGitblit gitblit) {
+		this(gitblit, gitblit);
+	}
+
+	private GitblitUploadPackFactory(IAuthenticationManager authenticationManager,
+			IRepositoryManager repositoryManager) {
 		this.authenticationManager = authenticationManager;
+		this.repositoryManager = repositoryManager;
 	}
 
 	@Override
@@ -45,17 +92,65 @@ public class GitblitUploadPackFactory<X> implements UploadPackFactory<X> {
 			throws ServiceNotEnabledException, ServiceNotAuthorizedException {
 
 		int timeout = 0;
+		Transport transport = null;
 
-		if (req instanceof GitDaemonClient) {
+		if (req instanceof HttpServletRequest) {
+			transport = Transport.fromString(((HttpServletRequest) req).getScheme());
+		} else if (req instanceof GitDaemonClient) {
 			// git daemon request is always anonymous
 			GitDaemonClient client = (GitDaemonClient) req;
 			// set timeout from Git daemon
 			timeout = client.getDaemon().getTimeout();
+			transport = Transport.GIT;
+		} else if (req instanceof SshDaemonClient) {
+			transport = Transport.SSH;
 		}
 
 		UploadPack up = new UploadPack(db);
 		up.setTimeout(timeout);
+		up.setPostUploadHook(new UploadStatisticsHook(db, transport));
 
 		return up;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Records the statistics of the sent packs for the metrics and the bitmap
+	 * maintenance.
+	 */
+	private class UploadStatisticsHook implements PostUploadHook {
+
+		private final Repository db;
+
+		private final String transport;
+
+		UploadStatisticsHook(Repository db, Transport transport) {
+			this.db = db;
+			this.transport = transport == null ? "unknown" : transport.name().toLowerCase();
+		}
+
+		@Override
+		public void onPostUpload(PackStatistics stats) {
+			UPLOADS.labels(transport, stats.getHaves() == 0 ? "clone" : "fetch").inc();
+			UPLOAD_OBJECTS.labels(transport).add(stats.getTotalObjects());
+			UPLOAD_BYTES.labels(transport).add(stats.getTotalBytes());
+			UPLOAD_TIME.labels(transport).observeMillis(stats.getTimeTotal());
+
+			if (repositoryManager != null) {
+				repositoryManager.recordUpload(db, stats);
+			}
+			if (!LOGGER.isDebugEnabled() || stats.getReusedPacks().isEmpty()) {
+				return;
+			}
+			long cachedObjects = 0;
+			for (CachedPack pack : stats.getReusedPacks()) {
+				try {
+					cachedObjects += pack.getObjectCount();
+				} catch (IOException e) {
+					// only used for logging
+				}
+			}
+			LOGGER.debug("sent {} objects, {} of them verbatim from {} cached pack(s)",
+					stats.getTotalObjects(), cachedObjects, stats.getReusedPacks().size());
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.git;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import groovy.util.GroovyScriptEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.models.HookScriptMetrics;
+import com.gitblit.utils.DeepCopier;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * GroovyHookEngine compiles and executes the Groovy push hook scripts.
+ *
+ * A single engine is shared by all pushes.  Each script is compiled once and
+ * its class is cached until the modification time of the script file changes,
+ * so a push does not load new classes unless a script was edited.  Scripts
+ * may optionally be executed with a timeout so that a misbehaving hook fails
+ * instead of stalling the push.
+ */
+public class GroovyHookEngine {
+
+	private final Logger logger = LoggerFactory.getLogger(GroovyHookEngine.class);
+
+	private final File folder;
+
+	private final GroovyScriptEngine gse;
+
+	private final long timeout;
+
+	private final Map<String, CompiledScript> scripts;
+
+	private final Map<String, HookScriptMetrics> metrics;
+
+	private ExecutorService executor;
+
+	/**
+	 * @param folder
+	 *            the hook scripts folder
+	 * @param grapeRoot
+	 *            the Grape cache folder
+	 * @param timeout
+	 *            the maximum execution time of a script in milliseconds, 0
+	 *            for no limit
+	 * @throws IOException
+	 */
+	public GroovyHookEngine(File folder, File grapeRoot, long timeout) throws IOException {
+		this.folder = folder;
+		this.timeout = timeout;
+		this.scripts = new HashMap<String, CompiledScript>();
+		this.metrics = new TreeMap<String, HookScriptMetrics>();
+
+		// set Grape root
+		grapeRoot.mkdirs();
+		System.setProperty("grape.root", grapeRoot.getAbsolutePath());
+		this.gse = new GroovyScriptEngine(folder.getAbsolutePath());
+		// recompilation is driven by the script cache
+		this.gse.getConfig().setMinimumRecompilationInterval(0);
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	public GroovyScriptEngine getScriptEngine() {
+		return gse;
+	}
+
+	public synchronized void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Resolves the name of a script file.  Scripts may be specified without
+	 * the .groovy extension.
+	 *
+	 * @param script
+	 * @return the script file name
+	 */
+	public String resolve(String script) {
+		File file = new File(folder, script);
+		if (!file.exists() && !script.toLowerCase().endsWith(".groovy")) {
+			file = new File(folder, script + ".groovy");
+			if (file.exists()) {
+				return file.getName();
+			}
+		}
+		return script;
+	}
+
+	/**
+	 * Executes a hook script.
+	 *
+	 * @param script
+	 *            the resolved script file name
+	 * @param binding
+	 * @return false if the script returned false and the hook chain must be
+	 *         aborted
+	 * @throws TimeoutException
+	 *             if the script exceeded the timeout
+	 * @throws Exception
+	 *             if the script failed to compile or threw an exception
+	 */
+	public boolean run(String script, Binding binding) throws Exception {
+		long start = System.currentTimeMillis();
+		boolean failed = true;
+		boolean timedOut = false;
+		try {
+			final Script instance = InvokerHelper.createScript(load(script), binding);
+			Object result;
+			if (timeout > 0) {
+				Future<Object> future = getExecutor().submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return instance.run();
+					}
+				});
+				try {
+					result = future.get(timeout, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					future.cancel(true);
+					timedOut = true;
+					throw new TimeoutException(MessageFormat.format(
+							"Groovy script {0} did not complete within {1} msecs", script, timeout));
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+			} else {
+				result = instance.run();
+			}
+			failed = Boolean.FALSE.equals(result);
+			return !failed;
+		} finally {
+			long duration = System.currentTimeMillis() - start;
+			synchronized (metrics) {
+				HookScriptMetrics m = getMetrics(script);
+				m.count++;
+				if (failed) {
+					m.failures++;
+				}
+				if (timedOut) {
+					m.timeouts++;
+				}
+				m.totalTime += duration;
+				m.lastTime = duration;
+				m.maxTime = Math.max(m.maxTime, duration);
+				m.lastRun = new Date(start);
+			}
+			if (timeout > 0 && duration > timeout / 2) {
+				logger.warn("Groovy script {} took {} msecs", script, duration);
+			}
+		}
+	}
+
+	/**
+	 * Returns the execution metrics of all scripts which have been run.
+	 */
+	public List<HookScriptMetrics> getMetrics() {
+		List<HookScriptMetrics> list = new ArrayList<HookScriptMetrics>();
+		synchronized (metrics) {
+			for (HookScriptMetrics m : metrics.values()) {
+				list.add(DeepCopier.copy(m));
+			}
+		}
+		return list;
+	}
+
+	private HookScriptMetrics getMetrics(String script) {
+		HookScriptMetrics m = metrics.get(script);
+		if (m == null) {
+			m = new HookScriptMetrics(script);
+			metrics.put(script, m);
+		}
+		return m;
+	}
+
+	/**
+	 * Returns the compiled class of the script, compiling it if the script
+	 * has not been compiled yet or if the script file has been modified.
+	 */
+	private Class<?> load(String script) throws Exception {
+		long lastModified = new File(folder, script).lastModified();
+		synchronized (scripts) {
+			CompiledScript compiled = scripts.get(script);
+			if (compiled != null && compiled.lastModified == lastModified) {
+				return compiled.type;
+			}
+			Class<?> type = gse.loadScriptByName(script);
+			if (compiled == null || compiled.type != type) {
+				synchronized (metrics) {
+					getMetrics(script).compilations++;
+				}
+				logger.debug("Compiled Groovy script {}", script);
+			}
+			scripts.put(script, new CompiledScript(type, lastModified));
+			return type;
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+					.setNameFormat("GroovyHook-%s")
+					.setDaemon(true)
+					.build());
+		}
+		return executor;
+	}
+
+	private static class CompiledScript {
+
+		final Class<?> type;
+
+		final long lastModified;
+
+		CompiledScript(Class<?> type, long lastModified) {
+			this.type = type;
+			this.lastModified = lastModified;
+		}
+	}
+}
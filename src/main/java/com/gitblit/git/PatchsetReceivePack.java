@@ -22,6 +22,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -482,16 +483,13 @@ public class PatchsetReceivePack extends GitblitReceivePack {
 		List<ReceiveCommand> stdUpdates = excludeTicketCommands(refUpdates);
 		if (!stdUpdates.isEmpty()) {
 			int ticketsProcessed = 0;
+			List<ReceiveCommand> branchUpdates = new ArrayList<ReceiveCommand>();
 			for (ReceiveCommand cmd : stdUpdates) {
 				switch (cmd.getType()) {
 				case CREATE:
 				case UPDATE:
 					if (cmd.getRefName().startsWith(Constants.R_HEADS)) {
-						Collection<TicketModel> tickets = processReferencedTickets(cmd);
-						ticketsProcessed += tickets.size();
-						for (TicketModel ticket : tickets) {
-							ticketNotifier.queueMailing(ticket);
-						}
+						branchUpdates.add(cmd);
 					}
 					break;
 					
@@ -506,11 +504,7 @@ public class PatchsetReceivePack extends GitblitReceivePack {
 						deletion.pendingLinks = deletedRefs;
 						ticketService.updateTicket(repository, 0, deletion);
 
-						Collection<TicketModel> tickets = processReferencedTickets(cmd);
-						ticketsProcessed += tickets.size();
-						for (TicketModel ticket : tickets) {
-							ticketNotifier.queueMailing(ticket);
-						}
+						branchUpdates.add(cmd);
 					}
 					break;
 				default:
@@ -518,6 +512,12 @@ public class PatchsetReceivePack extends GitblitReceivePack {
 				}
 			}
 
+			Collection<TicketModel> tickets = processReferencedTickets(branchUpdates);
+			ticketsProcessed += tickets.size();
+			for (TicketModel ticket : tickets) {
+				ticketNotifier.queueMailing(ticket);
+			}
+
 			if (ticketsProcessed == 1) {
 				sendInfo("1 ticket updated");
 			} else if (ticketsProcessed > 1) {
@@ -917,32 +917,38 @@ public class PatchsetReceivePack extends GitblitReceivePack {
 	/**
 	 * Automatically closes open tickets that have been merged to their integration
 	 * branch by a client and adds references to tickets if made in the commit message.
+	 * The commit references of a push are written to each ticket in one update.
 	 *
-	 * @param cmd
+	 * @param commands
 	 */
-	private Collection<TicketModel> processReferencedTickets(ReceiveCommand cmd) {
+	private Collection<TicketModel> processReferencedTickets(Collection<ReceiveCommand> commands) {
 		Map<Long, TicketModel> mergedTickets = new LinkedHashMap<Long, TicketModel>();
+		Map<Long, List<String>> referencedCommits = new LinkedHashMap<Long, List<String>>();
+		Map<String, String> branches = new HashMap<String, String>();
 		final RevWalk rw = getRevWalk();
 		try {
-			rw.reset();
-			rw.markStart(rw.parseCommit(cmd.getNewId()));
-			if (!ObjectId.zeroId().equals(cmd.getOldId())) {
-				rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
-			}
-
-			RevCommit c;
-			while ((c = rw.next()) != null) {
-				rw.parseBody(c);
-				List<TicketLink> ticketLinks = JGitUtils.identifyTicketsFromCommitMessage(getRepository(), settings, c);
-				if (ticketLinks == null) {
-					continue;
-				}
+			for (Map.Entry<ReceiveCommand, List<TicketLink>> entry : identifyReferencedTickets(commands, false).entrySet()) {
+				ReceiveCommand cmd = entry.getKey();
+				String mergeTo = Repository.shortenRefName(cmd.getRefName());
 
-				for (TicketLink link : ticketLinks) {
+				for (TicketLink link : entry.getValue()) {
 					
 					if (mergedTickets.containsKey(link.targetTicketId)) {
 						continue;
 					}
+
+					if (link.action == TicketAction.Commit) {
+						//A commit can reference a ticket in any branch even if the ticket is closed.
+						//This allows developers to identify and communicate related issues
+						List<String> commits = referencedCommits.get(link.targetTicketId);
+						if (commits == null) {
+							commits = new ArrayList<String>();
+							referencedCommits.put(link.targetTicketId, commits);
+						}
+						commits.add(link.hash);
+						branches.put(link.hash, mergeTo);
+						continue;
+					}
 	
 					TicketModel ticket = ticketService.getTicket(repository, link.targetTicketId);
 					if (ticket == null) {
@@ -957,77 +963,71 @@ public class PatchsetReceivePack extends GitblitReceivePack {
 						integrationBranch = Constants.R_HEADS + ticket.mergeTo;
 					}
 	
+					// ticket must be open and, if specified, the ref must match the integration branch
+					if (ticket.isClosed() || (integrationBranch != null && !integrationBranch.equals(cmd.getRefName()))) {
+						continue;
+					}
+
+					RevCommit c = rw.parseCommit(ObjectId.fromString(link.hash));
+					rw.parseBody(c);
 					Change change;
 					Patchset patchset = null;
 					String mergeSha = c.getName();
-					String mergeTo = Repository.shortenRefName(cmd.getRefName());
-
-					if (link.action == TicketAction.Commit) {
-						//A commit can reference a ticket in any branch even if the ticket is closed.
-						//This allows developers to identify and communicate related issues
-						change = new Change(user.username);
-						change.referenceCommit(mergeSha);
-					} else {
-						// ticket must be open and, if specified, the ref must match the integration branch
-						if (ticket.isClosed() || (integrationBranch != null && !integrationBranch.equals(cmd.getRefName()))) {
-							continue;
-						}
 	
-						String baseRef = PatchsetCommand.getBasePatchsetBranch(ticket.number);
-						boolean knownPatchset = false;
-						Set<Ref> refs = getRepository().getAllRefsByPeeledObjectId().get(c.getId());
-						if (refs != null) {
-							for (Ref ref : refs) {
-								if (ref.getName().startsWith(baseRef)) {
-									knownPatchset = true;
-									break;
-								}
+					String baseRef = PatchsetCommand.getBasePatchsetBranch(ticket.number);
+					boolean knownPatchset = false;
+					Set<Ref> refs = getRepository().getAllRefsByPeeledObjectId().get(c.getId());
+					if (refs != null) {
+						for (Ref ref : refs) {
+							if (ref.getName().startsWith(baseRef)) {
+								knownPatchset = true;
+								break;
 							}
 						}
+					}
 	
-						if (knownPatchset) {
-							// identify merged patchset by the patchset tip
-							for (Patchset ps : ticket.getPatchsets()) {
-								if (ps.tip.equals(mergeSha)) {
-									patchset = ps;
-									break;
-								}
+					if (knownPatchset) {
+						// identify merged patchset by the patchset tip
+						for (Patchset ps : ticket.getPatchsets()) {
+							if (ps.tip.equals(mergeSha)) {
+								patchset = ps;
+								break;
 							}
+						}
 	
-							if (patchset == null) {
-								// should not happen - unless ticket has been hacked
-								sendError("Failed to find the patchset for {0} in ticket {1,number,0}?!",
-										mergeSha, ticket.number);
-								continue;
-							}
+						if (patchset == null) {
+							// should not happen - unless ticket has been hacked
+							sendError("Failed to find the patchset for {0} in ticket {1,number,0}?!",
+									mergeSha, ticket.number);
+							continue;
+						}
 	
-							// create a new change
-							change = new Change(user.username);
-						} else {
-							// new patchset pushed by user
-							String base = cmd.getOldId().getName();
-							patchset = newPatchset(ticket, base, mergeSha);
-							PatchsetCommand psCmd = new PatchsetCommand(user.username, patchset);
-							psCmd.updateTicket(c, mergeTo, ticket, null);
+						// create a new change
+						change = new Change(user.username);
+					} else {
+						// new patchset pushed by user
+						String base = cmd.getOldId().getName();
+						patchset = newPatchset(ticket, base, mergeSha);
+						PatchsetCommand psCmd = new PatchsetCommand(user.username, patchset);
+						psCmd.updateTicket(c, mergeTo, ticket, null);
 	
-							// create a ticket patchset ref
-							updateRef(psCmd.getPatchsetBranch(), c.getId(), patchset.type);
-							RefUpdate ru = updateRef(psCmd.getTicketBranch(), c.getId(), patchset.type);
-							updateReflog(ru);
+						// create a ticket patchset ref
+						updateRef(psCmd.getPatchsetBranch(), c.getId(), patchset.type);
+						RefUpdate ru = updateRef(psCmd.getTicketBranch(), c.getId(), patchset.type);
+						updateReflog(ru);
 	
-							// create a change from the patchset command
-							change = psCmd.getChange();
-						}
+						// create a change from the patchset command
+						change = psCmd.getChange();
+					}
 	
-						// set the common change data about the merge
-						change.setField(Field.status, Status.Merged);
-						change.setField(Field.mergeSha, mergeSha);
-						change.setField(Field.mergeTo, mergeTo);
+					// set the common change data about the merge
+					change.setField(Field.status, Status.Merged);
+					change.setField(Field.mergeSha, mergeSha);
+					change.setField(Field.mergeTo, mergeTo);
 	
-						if (StringUtils.isEmpty(ticket.responsible)) {
-							// unassigned tickets are assigned to the closer
-							change.setField(Field.responsible, user.username);
-						}
+					if (StringUtils.isEmpty(ticket.responsible)) {
+						// unassigned tickets are assigned to the closer
+						change.setField(Field.responsible, user.username);
 					}
 	
 					ticket = ticketService.updateTicket(repository, ticket.number, change);
@@ -1035,43 +1035,54 @@ public class PatchsetReceivePack extends GitblitReceivePack {
 					if (ticket != null) {
 						sendInfo("");
 						sendHeader("#{0,number,0}: {1}", ticket.number, StringUtils.trimString(ticket.title, Constants.LEN_SHORTLOG));
-
-						switch (link.action) {
-							case Commit: {
-								sendInfo("referenced by push of {0} to {1}", c.getName(), mergeTo);
-							}
-							break;
-
-							case Close: {
-								sendInfo("closed by push of {0} to {1}", patchset, mergeTo);
-								mergedTickets.put(ticket.number, ticket);	
-							}
-							break;
-
-							default: {
-								
-							}
-						}
-
+						sendInfo("closed by push of {0} to {1}", patchset, mergeTo);
 						sendInfo(ticketService.getTicketUrl(ticket));
 						sendInfo("");
-
+						mergedTickets.put(ticket.number, ticket);
 					} else {
 						String shortid = mergeSha.substring(0, settings.getInteger(Keys.web.shortCommitIdLength, 6));
-						
-						switch (link.action) {
-							case Commit: {
-								sendError("FAILED to reference ticket {0,number,0} by push of {1}", link.targetTicketId, shortid);
-							}
-							break;
-							case Close: {
-								sendError("FAILED to close ticket {0,number,0} by push of {1}", link.targetTicketId, shortid);	
-							} break;
-							
-							default: {
-								
-							}
-						}
+						sendError("FAILED to close ticket {0,number,0} by push of {1}", link.targetTicketId, shortid);
+					}
+				}
+			}
+
+			for (Map.Entry<Long, List<String>> entry : referencedCommits.entrySet()) {
+				TicketModel ticket = ticketService.getTicket(repository, entry.getKey());
+				if (ticket == null) {
+					continue;
+				}
+
+				// skip commits which the ticket already references
+				Set<String> referenced = getReferencedCommits(ticket);
+				List<Change> changes = new ArrayList<Change>();
+				List<String> commits = new ArrayList<String>();
+				for (String commit : entry.getValue()) {
+					if (referenced.add(commit)) {
+						Change change = new Change(user.username);
+						change.referenceCommit(commit);
+						changes.add(change);
+						commits.add(commit);
+					}
+				}
+				if (changes.isEmpty()) {
+					continue;
+				}
+
+				ticket = ticketService.updateTicket(repository, ticket.number, changes);
+
+				if (ticket != null) {
+					sendInfo("");
+					sendHeader("#{0,number,0}: {1}", ticket.number, StringUtils.trimString(ticket.title, Constants.LEN_SHORTLOG));
+					for (String commit : commits) {
+						sendInfo("referenced by push of {0} to {1}", commit, branches.get(commit));
+					}
+					sendInfo(ticketService.getTicketUrl(ticket));
+					sendInfo("");
+				} else {
+					int shortIdLength = settings.getInteger(Keys.web.shortCommitIdLength, 6);
+					for (String commit : commits) {
+						sendError("FAILED to reference ticket {0,number,0} by push of {1}", entry.getKey(),
+								commit.substring(0, shortIdLength));
 					}
 				}
 			}
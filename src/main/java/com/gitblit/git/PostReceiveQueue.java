@@ -0,0 +1,557 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.git;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.ReceiveCommand.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.PostReceiveStatus;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.UserModel;
+import com.gitblit.utils.DeepCopier;
+import com.gitblit.utils.FileUtils;
+import com.gitblit.utils.JsonUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * PostReceiveQueue executes the deferrable post-receive steps of a push after
+ * the push has been acknowledged to the client.
+ *
+ * Each accepted push is journaled as a job in the queue folder before the
+ * client is released.  Jobs of a repository are executed strictly in push
+ * order, one at a time, while jobs of different repositories execute
+ * concurrently.  A step which throws is retried with an exponential backoff;
+ * a job which exhausts its retries is moved to the failed folder.  Completed
+ * steps are journaled so a job interrupted by a restart resumes with the step
+ * that did not complete.
+ */
+public class PostReceiveQueue {
+
+	/**
+	 * The deferrable post-receive steps, in execution order.
+	 */
+	public static enum Step {
+		TAGS, REFLOG, TICKETS, HOOKS, SCRIPTS;
+	}
+
+	private static final String JOB_EXTENSION = ".json";
+
+	private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+	private final Logger logger = LoggerFactory.getLogger(PostReceiveQueue.class);
+
+	private final IGitblit gitblit;
+
+	private final File folder;
+
+	private final boolean enabled;
+
+	private final List<Step> deferred;
+
+	private final int retries;
+
+	private final int workers;
+
+	private final Map<String, Deque<PostReceiveJob>> pending;
+
+	private final Set<String> active;
+
+	private final Map<String, PostReceiveStatus> status;
+
+	private ScheduledThreadPoolExecutor executor;
+
+	private long sequence;
+
+	long retryDelay = RETRY_DELAY;
+
+	public PostReceiveQueue(IGitblit gitblit, File folder) {
+		this.gitblit = gitblit;
+		this.folder = folder;
+
+		IStoredSettings settings = gitblit.getSettings();
+		this.enabled = settings.getBoolean(Keys.git.asyncPostReceive, true);
+		this.retries = Math.max(0, settings.getInteger(Keys.git.postReceiveRetries, 3));
+		this.workers = Math.max(1, settings.getInteger(Keys.git.postReceiveWorkers, 2));
+		this.deferred = new ArrayList<Step>(Arrays.asList(Step.TAGS, Step.REFLOG, Step.TICKETS));
+		if (settings.getBoolean(Keys.git.asyncPostReceiveHooks, true)) {
+			deferred.add(Step.HOOKS);
+			deferred.add(Step.SCRIPTS);
+		}
+
+		this.pending = new HashMap<String, Deque<PostReceiveJob>>();
+		this.active = new HashSet<String>();
+		this.status = new TreeMap<String, PostReceiveStatus>();
+	}
+
+	/**
+	 * Starts the workers and resumes the jobs which were journaled but not
+	 * completed before the last shutdown.
+	 */
+	public synchronized PostReceiveQueue start() {
+		if (!enabled) {
+			logger.info("Post-receive processing is synchronous");
+			return this;
+		}
+		executor = new ScheduledThreadPoolExecutor(workers,
+				new ThreadFactoryBuilder()
+					.setNameFormat("PostReceive-%s")
+					.setDaemon(true)
+					.build());
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+		folder.mkdirs();
+		File [] files = folder.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(JOB_EXTENSION);
+			}
+		});
+		if (files != null && files.length > 0) {
+			// job ids are zero-padded sequence numbers
+			Arrays.sort(files);
+			int resumed = 0;
+			for (File file : files) {
+				try {
+					PostReceiveJob job = JsonUtils.fromJsonString(FileUtils.readContent(file, "\n"), PostReceiveJob.class);
+					if (job == null || job.id == null) {
+						logger.warn("Ignoring unreadable post-receive job {}", file);
+						continue;
+					}
+					sequence = Math.max(sequence, Long.parseLong(job.id));
+					enqueue(job);
+					resumed++;
+				} catch (Exception e) {
+					logger.error(MessageFormat.format("Failed to read post-receive job {0}", file), e);
+				}
+			}
+			logger.info("Resumed {} post-receive jobs", resumed);
+		}
+		logger.info("Post-receive queue started with {} workers", workers);
+		return this;
+	}
+
+	public void stop() {
+		ScheduledThreadPoolExecutor e;
+		synchronized (this) {
+			e = executor;
+			executor = null;
+		}
+		if (e == null) {
+			return;
+		}
+		// let running steps finish, unfinished jobs remain journaled and
+		// resume on the next start
+		e.shutdown();
+		try {
+			if (!e.awaitTermination(10, TimeUnit.SECONDS)) {
+				e.shutdownNow();
+			}
+		} catch (InterruptedException x) {
+			e.shutdownNow();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the steps which are executed asynchronously by this queue.
+	 */
+	public List<Step> getDeferredSteps() {
+		if (!enabled) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(deferred);
+	}
+
+	/**
+	 * Journals and queues the deferred post-receive steps of a push.
+	 *
+	 * @param rp
+	 *            the receive pack which applied the commands
+	 * @param commands
+	 *            the successfully applied commands
+	 * @return true if the steps were queued
+	 */
+	public boolean submit(GitblitReceivePack rp, Collection<ReceiveCommand> commands) {
+		if (!enabled || deferred.isEmpty()) {
+			return false;
+		}
+
+		PostReceiveJob job = new PostReceiveJob();
+		job.repository = rp.getRepositoryModel().name;
+		job.username = rp.getUserModel().username;
+		job.url = rp.gitblitUrl;
+		PersonIdent ident = rp.getRefLogIdent();
+		if (ident != null) {
+			job.identName = ident.getName();
+			job.identEmail = ident.getEmailAddress();
+		}
+		job.queued = new Date();
+		job.steps = new ArrayList<Step>(deferred);
+		job.commands = new ArrayList<PostReceiveCommand>();
+		for (ReceiveCommand cmd : commands) {
+			job.commands.add(new PostReceiveCommand(cmd));
+		}
+		return submit(job);
+	}
+
+	synchronized boolean submit(PostReceiveJob job) {
+		if (executor == null) {
+			return false;
+		}
+		sequence = Math.max(sequence + 1, System.currentTimeMillis());
+		job.id = String.format("%019d", sequence);
+		try {
+			write(job);
+		} catch (IOException e) {
+			logger.error(MessageFormat.format("Failed to journal post-receive job for {0}", job.repository), e);
+			return false;
+		}
+		enqueue(job);
+		return true;
+	}
+
+	/**
+	 * Returns the post-receive status of the repositories which have been
+	 * pushed to since the server started or which have pending jobs.
+	 */
+	public List<PostReceiveStatus> getStatus() {
+		List<PostReceiveStatus> list = new ArrayList<PostReceiveStatus>();
+		synchronized (this) {
+			for (PostReceiveStatus s : status.values()) {
+				list.add(DeepCopier.copy(s));
+			}
+		}
+		return list;
+	}
+
+	private synchronized void enqueue(PostReceiveJob job) {
+		Deque<PostReceiveJob> queue = pending.get(job.repository);
+		if (queue == null) {
+			queue = new ArrayDeque<PostReceiveJob>();
+			pending.put(job.repository, queue);
+		}
+		queue.add(job);
+
+		PostReceiveStatus s = getStatus(job.repository);
+		s.pending = queue.size();
+		s.lastQueued = job.queued;
+
+		if (active.add(job.repository)) {
+			schedule(job.repository, 0);
+		}
+	}
+
+	private PostReceiveStatus getStatus(String repository) {
+		PostReceiveStatus s = status.get(repository);
+		if (s == null) {
+			s = new PostReceiveStatus(repository);
+			status.put(repository, s);
+		}
+		return s;
+	}
+
+	private synchronized void schedule(final String repository, long delay) {
+		if (executor == null) {
+			active.remove(repository);
+			return;
+		}
+		try {
+			executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					process(repository);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			active.remove(repository);
+		}
+	}
+
+	/**
+	 * Processes the head job of the repository and then yields the worker to
+	 * the next job.
+	 */
+	private void process(String repository) {
+		PostReceiveJob job;
+		synchronized (this) {
+			Deque<PostReceiveJob> queue = pending.get(repository);
+			job = queue == null ? null : queue.peek();
+			if (job == null) {
+				active.remove(repository);
+				return;
+			}
+		}
+
+		Throwable error = null;
+		try {
+			while (!job.steps.isEmpty()) {
+				Step step = job.steps.get(0);
+				long start = System.currentTimeMillis();
+				boolean failed = true;
+				try {
+					execute(job, step);
+					failed = false;
+				} finally {
+					long duration = System.currentTimeMillis() - start;
+					synchronized (this) {
+						getStatus(repository).getStep(step.name()).record(duration, failed);
+					}
+				}
+				job.steps.remove(0);
+				if (!job.steps.isEmpty()) {
+					write(job);
+				}
+			}
+		} catch (Throwable t) {
+			error = t;
+		} finally {
+			release(job);
+		}
+
+		long delay = 0;
+		synchronized (this) {
+			if (error != null && executor == null) {
+				// shutting down, the journal resumes this job
+				active.remove(repository);
+				return;
+			}
+			PostReceiveStatus s = getStatus(repository);
+			if (error == null) {
+				delete(job);
+				s.completed++;
+				s.lastCompleted = new Date();
+				s.lastLatency = s.lastCompleted.getTime() - job.queued.getTime();
+			} else {
+				job.attempts++;
+				job.lastError = error.getMessage();
+				s.lastError = MessageFormat.format("{0}: {1}", job.steps.get(0), error.getMessage());
+				if (job.attempts <= retries) {
+					s.retries++;
+					delay = retryDelay << (job.attempts - 1);
+					logger.warn(MessageFormat.format("Post-receive step {0} of {1} failed, retrying in {2} msecs",
+							job.steps.get(0), repository, delay), error);
+					try {
+						write(job);
+					} catch (IOException e) {
+						logger.error(MessageFormat.format("Failed to journal post-receive job {0}", job.id), e);
+					}
+				} else {
+					logger.error(MessageFormat.format("Post-receive step {0} of {1} failed {2} times, dropping {3} steps",
+							job.steps.get(0), repository, job.attempts, job.steps), error);
+					fail(job);
+					s.failed++;
+				}
+			}
+
+			if (delay == 0) {
+				Deque<PostReceiveJob> queue = pending.get(repository);
+				queue.poll();
+				s.pending = queue.size();
+				if (queue.isEmpty()) {
+					pending.remove(repository);
+					active.remove(repository);
+					return;
+				}
+			}
+			schedule(repository, delay);
+		}
+	}
+
+	/**
+	 * Executes a post-receive step of a job.  The receive pack is recreated
+	 * from the journaled job so that jobs resumed after a restart execute
+	 * exactly like jobs queued by a live push.  Messages sent to the client
+	 * by deferred steps are discarded because the push has already completed.
+	 *
+	 * @param job
+	 * @param step
+	 * @throws Exception
+	 */
+	protected void execute(PostReceiveJob job, Step step) throws Exception {
+		if (job.receivePack == null) {
+			RepositoryModel model = gitblit.getRepositoryModel(job.repository);
+			if (model == null) {
+				throw new IOException(MessageFormat.format("Repository {0} does not exist", job.repository));
+			}
+			UserModel user;
+			if (UserModel.ANONYMOUS.username.equals(job.username)) {
+				user = UserModel.ANONYMOUS;
+			} else {
+				user = gitblit.getUserModel(job.username);
+				if (user == null) {
+					// account deleted after the push
+					user = new UserModel(job.username);
+				}
+			}
+			job.db = gitblit.getRepository(job.repository);
+			if (job.db == null) {
+				throw new IOException(MessageFormat.format("Failed to open repository {0}", job.repository));
+			}
+			job.receivePack = new GitblitReceivePack(gitblit, job.db, model, user);
+			job.receivePack.setGitblitUrl(job.url);
+			if (job.identName != null) {
+				job.receivePack.setRefLogIdent(new PersonIdent(job.identName, job.identEmail));
+			}
+		}
+		job.receivePack.executePostReceiveStep(step, job.getCommands());
+	}
+
+	private void release(PostReceiveJob job) {
+		if (job.receivePack != null) {
+			job.receivePack.getRevWalk().close();
+			job.receivePack = null;
+		}
+		if (job.db != null) {
+			job.db.close();
+			job.db = null;
+		}
+	}
+
+	private File getFile(PostReceiveJob job) {
+		return new File(folder, job.id + JOB_EXTENSION);
+	}
+
+	private void write(PostReceiveJob job) throws IOException {
+		File file = getFile(job);
+		File temp = new File(folder, job.id + ".tmp");
+		FileUtils.writeContent(temp, JsonUtils.toJsonString(job));
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Failed to replace " + file);
+		}
+		if (!temp.renameTo(file)) {
+			throw new IOException("Failed to write " + file);
+		}
+	}
+
+	private void delete(PostReceiveJob job) {
+		File file = getFile(job);
+		if (file.exists() && !file.delete()) {
+			logger.warn("Failed to delete completed post-receive job {}", file);
+		}
+	}
+
+	private void fail(PostReceiveJob job) {
+		File failed = new File(folder, "failed");
+		failed.mkdirs();
+		File file = getFile(job);
+		if (!file.renameTo(new File(failed, file.getName()))) {
+			delete(job);
+		}
+	}
+
+	/**
+	 * A journaled push awaiting post-receive processing.
+	 */
+	static class PostReceiveJob {
+
+		String id;
+
+		String repository;
+
+		String username;
+
+		String url;
+
+		String identName;
+
+		String identEmail;
+
+		Date queued;
+
+		int attempts;
+
+		String lastError;
+
+		List<Step> steps;
+
+		List<PostReceiveCommand> commands;
+
+		transient Repository db;
+
+		transient GitblitReceivePack receivePack;
+
+		List<ReceiveCommand> getCommands() {
+			List<ReceiveCommand> list = new ArrayList<ReceiveCommand>();
+			for (PostReceiveCommand cmd : commands) {
+				list.add(cmd.toReceiveCommand());
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * A journaled receive command.  Only successfully applied commands are
+	 * journaled.
+	 */
+	static class PostReceiveCommand {
+
+		String ref;
+
+		String oldId;
+
+		String newId;
+
+		ReceiveCommand.Type type;
+
+		PostReceiveCommand() {
+		}
+
+		PostReceiveCommand(ReceiveCommand cmd) {
+			this.ref = cmd.getRefName();
+			this.oldId = cmd.getOldId().name();
+			this.newId = cmd.getNewId().name();
+			this.type = cmd.getType();
+		}
+
+		ReceiveCommand toReceiveCommand() {
+			ReceiveCommand cmd = new ReceiveCommand(ObjectId.fromString(oldId), ObjectId.fromString(newId), ref, type);
+			cmd.setResult(Result.OK);
+			return cmd;
+		}
+	}
+}
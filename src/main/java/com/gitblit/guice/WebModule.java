@@ -30,6 +30,7 @@ import com.gitblit.servlet.FilestoreServlet;
 import com.gitblit.servlet.GitFilter;
 import com.gitblit.servlet.GitServlet;
 import com.gitblit.servlet.LogoServlet;
+import com.gitblit.servlet.MetricsServlet;
 import com.gitblit.servlet.PagesFilter;
 import com.gitblit.servlet.PagesServlet;
 import com.gitblit.servlet.ProxyFilter;
@@ -78,6 +79,7 @@ public class WebModule extends ServletModule {
 		serve(Constants.PT_PATH).with(PtServlet.class);
 		serve("/robots.txt").with(RobotsTxtServlet.class);
 		serve("/logo.png").with(LogoServlet.class);
+		serve(Constants.METRICS_PATH).with(MetricsServlet.class);
 
 		/* Prevent accidental access to 'resources' such as GitBlit java classes
 		 *
@@ -107,7 +109,7 @@ public class WebModule extends ServletModule {
 		String toIgnore = Joiner.on(",").join(Constants.R_PATH, Constants.GIT_PATH, Constants.RAW_PATH,
 				Constants.PAGES, Constants.RPC_PATH, Constants.ZIP_PATH, Constants.SYNDICATION_PATH,
 				Constants.FEDERATION_PATH, Constants.SPARKLESHARE_INVITE_PATH, Constants.BRANCH_GRAPH_PATH,
-				Constants.PT_PATH, "/robots.txt", "/logo.png");
+				Constants.PT_PATH, Constants.METRICS_PATH, "/robots.txt", "/logo.png");
 
 		Map<String, String> params = new HashMap<String, String>();
 		params.put(GitblitWicketFilter.FILTER_MAPPING_PARAM, ALL);
@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -40,6 +41,8 @@ import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.pack.PackStatistics;
 import org.eclipse.jgit.transport.RefSpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,23 +56,32 @@ import com.gitblit.Constants.AccessPermission;
 import com.gitblit.Constants.FederationRequest;
 import com.gitblit.Constants.FederationToken;
 import com.gitblit.Constants.Role;
+import com.gitblit.Constants.SearchType;
 import com.gitblit.GitBlitException;
 import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
 import com.gitblit.extensions.RepositoryLifeCycleListener;
+import com.gitblit.git.GroovyHookEngine;
+import com.gitblit.git.PostReceiveQueue;
+import com.gitblit.models.BitmapStatus;
 import com.gitblit.models.FederationModel;
 import com.gitblit.models.FederationProposal;
 import com.gitblit.models.FederationSet;
 import com.gitblit.models.FilestoreModel;
 import com.gitblit.models.ForkModel;
 import com.gitblit.models.GitClientApplication;
+import com.gitblit.models.JGitCacheStatus;
 import com.gitblit.models.Mailing;
 import com.gitblit.models.Metric;
+import com.gitblit.models.MirrorStatus;
+import com.gitblit.models.PathModel;
 import com.gitblit.models.PluginRegistry.InstallState;
 import com.gitblit.models.PluginRegistry.PluginRegistration;
 import com.gitblit.models.PluginRegistry.PluginRelease;
 import com.gitblit.models.ProjectModel;
 import com.gitblit.models.RegistrantAccessPermission;
 import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.models.SearchResult;
 import com.gitblit.models.ServerSettings;
 import com.gitblit.models.ServerStatus;
@@ -82,6 +94,7 @@ import com.gitblit.transport.ssh.SshKey;
 import com.gitblit.utils.ArrayUtils;
 import com.gitblit.utils.JsonUtils;
 import com.gitblit.utils.ObjectCache;
+import com.gitblit.utils.RepositoryChanges;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.utils.XssFilter;
 import com.google.gson.Gson;
@@ -136,6 +149,10 @@ public class GitblitManager implements IGitblit {
 
 	protected final IFilestoreManager filestoreManager;
 
+	protected PostReceiveQueue postReceiveQueue;
+
+	protected GroovyHookEngine groovyHookEngine;
+
 	@Inject
 	public GitblitManager(
 			Provider<IPublicKeyManager> publicKeyManagerProvider,
@@ -168,11 +185,25 @@ public class GitblitManager implements IGitblit {
 	@Override
 	public GitblitManager start() {
 		loadSettingModels(runtimeManager.getSettingsModel());
+		try {
+			long timeout = TimeUnit.SECONDS.toMillis(settings.getInteger(Keys.groovy.scriptTimeout, 0));
+			groovyHookEngine = new GroovyHookEngine(getHooksFolder(), getGrapesFolder(), timeout);
+		} catch (IOException e) {
+			logger.error("Failed to create the Groovy hook engine", e);
+		}
+		File folder = runtimeManager.getFileOrFolder(Keys.git.postReceiveFolder, "${baseFolder}/postreceive");
+		postReceiveQueue = new PostReceiveQueue(this, folder).start();
 		return this;
 	}
 
 	@Override
 	public GitblitManager stop() {
+		if (postReceiveQueue != null) {
+			postReceiveQueue.stop();
+		}
+		if (groovyHookEngine != null) {
+			groovyHookEngine.close();
+		}
 		return this;
 	}
 
@@ -518,6 +549,16 @@ public class GitblitManager implements IGitblit {
 		return publicKeyManagerProvider.get();
 	}
 
+	@Override
+	public PostReceiveQueue getPostReceiveQueue() {
+		return postReceiveQueue;
+	}
+
+	@Override
+	public GroovyHookEngine getGroovyHookEngine() {
+		return groovyHookEngine;
+	}
+
 	/*
 	 * ISTOREDSETTINGS
 	 *
@@ -602,7 +643,7 @@ public class GitblitManager implements IGitblit {
 
 	@Override
 	public ServerStatus getStatus() {
-		return runtimeManager.getStatus();
+		return runtimeManager.getStatus().withJGitCache(repositoryManager.getJGitCacheStatus());
 	}
 
 	@Override
@@ -973,6 +1014,16 @@ public class GitblitManager implements IGitblit {
 		return repositoryManager.getRepositoryModels(user);
 	}
 
+	@Override
+	public List<String> queryRepositories(UserModel user, RepositoryQuery query) {
+		return repositoryManager.queryRepositories(user, query);
+	}
+
+	@Override
+	public RepositoryChanges getRepositoryChanges() {
+		return repositoryManager.getRepositoryChanges();
+	}
+
 	@Override
 	public RepositoryModel getRepositoryModel(UserModel user, String repositoryName) {
 		return repositoryManager.getRepositoryModel(repositoryName);
@@ -1101,6 +1152,11 @@ public class GitblitManager implements IGitblit {
 		return repositoryManager.search(query, page, pageSize, repositories);
 	}
 
+	@Override
+	public List<SearchResult> searchCode(String text, boolean regex, int page, int pageSize, List<String> repositories) {
+		return repositoryManager.searchCode(text, regex, page, pageSize, repositories);
+	}
+
 	@Override
 	public boolean isCollectingGarbage() {
 		return repositoryManager.isCollectingGarbage();
@@ -1111,6 +1167,54 @@ public class GitblitManager implements IGitblit {
 		return repositoryManager.isCollectingGarbage(repositoryName);
 	}
 
+	@Override
+	public void scheduleCachedPackRefresh(String repositoryName) {
+		repositoryManager.scheduleCachedPackRefresh(repositoryName);
+	}
+
+	@Override
+	public void scheduleIndexUpdate(String repositoryName) {
+		repositoryManager.scheduleIndexUpdate(repositoryName);
+	}
+
+	@Override
+	public List<RevCommit> getPathHistory(String repositoryName, Repository repository, String objectId,
+			String path, int offset, int maxCount) {
+		return repositoryManager.getPathHistory(repositoryName, repository, objectId, path, offset, maxCount);
+	}
+
+	@Override
+	public List<RevCommit> searchRevlogs(String repositoryName, Repository repository, String objectId,
+			String value, SearchType type, int offset, int maxCount) {
+		return repositoryManager.searchRevlogs(repositoryName, repository, objectId, value, type, offset, maxCount);
+	}
+
+	@Override
+	public boolean setLastCommits(String repositoryName, Repository repository, RevCommit commit, String path,
+			List<PathModel> paths) {
+		return repositoryManager.setLastCommits(repositoryName, repository, commit, path, paths);
+	}
+
+	@Override
+	public void recordUpload(Repository repository, PackStatistics stats) {
+		repositoryManager.recordUpload(repository, stats);
+	}
+
+	@Override
+	public List<BitmapStatus> getBitmapStatus() {
+		return repositoryManager.getBitmapStatus();
+	}
+
+	@Override
+	public JGitCacheStatus getJGitCacheStatus() {
+		return repositoryManager.getJGitCacheStatus();
+	}
+
+	@Override
+	public List<MirrorStatus> getMirrorStatus() {
+		return repositoryManager.getMirrorStatus();
+	}
+
 	/*
 	 * PROJECT MANAGER
 	 */
@@ -18,6 +18,8 @@ package com.gitblit.manager;
 import java.util.Collection;
 
 import com.gitblit.GitBlitException;
+import com.gitblit.git.GroovyHookEngine;
+import com.gitblit.git.PostReceiveQueue;
 import com.gitblit.models.GitClientApplication;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.TeamModel;
@@ -113,4 +115,20 @@ public interface IGitblit extends IManager,
 	 */
 	IPublicKeyManager getPublicKeyManager();
 
+	/**
+	 * Returns the queue which executes deferred post-receive processing.
+	 *
+	 * @return the post-receive queue
+	 * @since 1.10.1
+	 */
+	PostReceiveQueue getPostReceiveQueue();
+
+	/**
+	 * Returns the engine which compiles and executes the Groovy hook scripts.
+	 *
+	 * @return the Groovy hook engine
+	 * @since 1.10.1
+	 */
+	GroovyHookEngine getGroovyHookEngine();
+
 }
\ No newline at end of file
@@ -21,14 +21,23 @@ import java.util.Date;
 import java.util.List;
 
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.pack.PackStatistics;
 
+import com.gitblit.Constants.SearchType;
 import com.gitblit.GitBlitException;
+import com.gitblit.models.BitmapStatus;
 import com.gitblit.models.ForkModel;
+import com.gitblit.models.JGitCacheStatus;
 import com.gitblit.models.Metric;
+import com.gitblit.models.MirrorStatus;
+import com.gitblit.models.PathModel;
 import com.gitblit.models.RegistrantAccessPermission;
 import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.models.SearchResult;
 import com.gitblit.models.UserModel;
+import com.gitblit.utils.RepositoryChanges;
 
 public interface IRepositoryManager extends IManager {
 
@@ -211,6 +220,27 @@ public interface IRepositoryManager extends IManager {
 	 */
 	List<RepositoryModel> getRepositoryModels(UserModel user);
 
+	/**
+	 * Returns the names of the repositories which match the query and which
+	 * the user may view, in the order of the query.
+	 *
+	 * @param user
+	 * @param query
+	 * @return the list of repository names
+	 * @since 1.10.1
+	 */
+	List<String> queryRepositories(UserModel user, RepositoryQuery query);
+
+	/**
+	 * Returns the registry of the versions at which the repositories were
+	 * last changed, which allows clients to ask for what changed since a
+	 * version they have seen.
+	 *
+	 * @return the repository changes
+ 	 * @since 1.10.1
+	 */
+	RepositoryChanges getRepositoryChanges();
+
 	/**
 	 * Returns a repository model if the repository exists and the user may
 	 * access the repository.
@@ -442,6 +472,25 @@ public interface IRepositoryManager extends IManager {
 	 */
 	List<SearchResult> search(String query, int page, int pageSize, List<String> repositories);
 
+	/**
+	 * Search the blobs of the specified repositories for a text or a regular
+	 * expression.
+	 *
+	 * @param text
+	 * @param regex
+	 *            true if the text is a regular expression
+	 * @param page
+	 * @param pageSize
+	 * @param repositories
+	 * @return a list of search results with the matching lines, which are
+	 *         marked as truncated if the search was stopped early
+	 * @throws IllegalArgumentException
+	 *             if the regular expression is invalid or if it has no literal
+	 *             of at least three characters
+ 	 * @since 1.10.1
+	 */
+	List<SearchResult> searchCode(String text, boolean regex, int page, int pageSize, List<String> repositories);
+
 	/**
 	 *
 	 * @return true if we are running the gc executor
@@ -458,6 +507,117 @@ public interface IRepositoryManager extends IManager {
 	 */
 	boolean isCollectingGarbage(String repositoryName);
 
+	/**
+	 * Schedules a refresh of the cached pack which is streamed to cloning
+	 * clients.  The repository is repacked if too many objects have been
+	 * pushed since its last GC.
+	 *
+	 * @param repositoryName
+ 	 * @since 1.10.1
+	 */
+	void scheduleCachedPackRefresh(String repositoryName);
+
+	/**
+	 * Schedules an update of the Lucene index, of the changed path index and
+	 * of the commit graph of a repository which has been pushed to.
+	 *
+	 * @param repositoryName
+ 	 * @since 1.10.1
+	 */
+	void scheduleIndexUpdate(String repositoryName);
+
+	/**
+	 * Returns a page of the commits which changed a path.  Commits which did
+	 * not change the path are skipped using the changed path index of the
+	 * repository, if available.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param path
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all commits are returned
+	 * @return a paged list of commits
+ 	 * @since 1.10.1
+	 */
+	List<RevCommit> getPathHistory(String repositoryName, Repository repository, String objectId, String path,
+			int offset, int maxCount);
+
+	/**
+	 * Returns a page of the commits of a branch which match a search value,
+	 * like JGitUtils.searchRevlogs.  The commits are searched in the commit
+	 * metadata index of the repository, if available.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param value
+	 * @param type
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all matches are returned
+	 * @return matching list of commits
+ 	 * @since 1.10.1
+	 */
+	List<RevCommit> searchRevlogs(String repositoryName, Repository repository, String objectId, String value,
+			SearchType type, int offset, int maxCount);
+
+	/**
+	 * Sets the last commit which changed each entry of a folder from the last
+	 * commit index of the repository.  If the folder has not been indexed yet,
+	 * it is indexed in the background and the entries are left unchanged.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param commit
+	 * @param path
+	 *            the folder, the root folder if unspecified
+	 * @param paths
+	 *            the entries of the folder
+	 * @return true if the last commits have been set
+ 	 * @since 1.10.1
+	 */
+	boolean setLastCommits(String repositoryName, Repository repository, RevCommit commit, String path,
+			List<PathModel> paths);
+
+	/**
+	 * Records a pack sent to a cloning or fetching client.
+	 *
+	 * @param repository
+	 * @param stats
+	 *            the statistics of the sent pack
+ 	 * @since 1.10.1
+	 */
+	void recordUpload(Repository repository, PackStatistics stats);
+
+	/**
+	 * Returns the clone traffic and the reachability bitmap coverage of the
+	 * repositories which have served uploads, hottest first.
+	 *
+	 * @return the list of bitmap statuses
+ 	 * @since 1.10.1
+	 */
+	List<BitmapStatus> getBitmapStatus();
+
+	/**
+	 * Returns the limits and the usage of the JGit window cache.
+	 *
+	 * @return the cache status or null if the cache has not been configured
+	 * @since 1.10.1
+	 */
+	JGitCacheStatus getJGitCacheStatus();
+
+	/**
+	 * Returns the fetch schedule and fetch metrics of the mirrored repositories.
+	 *
+	 * @return the list of mirror statuses
+ 	 * @since 1.10.1
+	 */
+	List<MirrorStatus> getMirrorStatus();
+
 	/**
 	 * Ensures that all cached repositories are completely closed and their resources
 	 * are properly released.
@@ -42,14 +42,21 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+import org.eclipse.jgit.storage.pack.PackStatistics;
 import org.eclipse.jgit.util.FS;
 import org.eclipse.jgit.util.FileUtils;
 import org.slf4j.Logger;
@@ -64,32 +71,51 @@ import com.gitblit.Constants.FederationStrategy;
 import com.gitblit.Constants.MergeType;
 import com.gitblit.Constants.PermissionType;
 import com.gitblit.Constants.RegistrantType;
+import com.gitblit.Constants.SearchType;
 import com.gitblit.GitBlitException;
 import com.gitblit.IStoredSettings;
 import com.gitblit.Keys;
 import com.gitblit.extensions.RepositoryLifeCycleListener;
+import com.gitblit.models.BitmapStatus;
 import com.gitblit.models.ForkModel;
+import com.gitblit.models.JGitCacheStatus;
 import com.gitblit.models.Metric;
+import com.gitblit.models.MirrorStatus;
+import com.gitblit.models.PathModel;
 import com.gitblit.models.RefModel;
 import com.gitblit.models.RegistrantAccessPermission;
 import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.models.SearchResult;
 import com.gitblit.models.TeamModel;
 import com.gitblit.models.UserModel;
+import com.gitblit.service.BitmapMaintenanceService;
+import com.gitblit.service.ChangedPathService;
+import com.gitblit.service.CommitMetadataService;
+import com.gitblit.service.LastCommitService;
 import com.gitblit.service.GarbageCollectorService;
+import com.gitblit.service.JGitCacheService;
 import com.gitblit.service.LuceneService;
 import com.gitblit.service.MirrorService;
 import com.gitblit.utils.ArrayUtils;
 import com.gitblit.utils.ByteFormat;
 import com.gitblit.utils.CommitCache;
+import com.gitblit.utils.CommitGraphCache;
 import com.gitblit.utils.DeepCopier;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.JGitUtils.LastChange;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Gauge;
+import com.gitblit.utils.MetricRegistry.Histogram;
 import com.gitblit.utils.MetricUtils;
 import com.gitblit.utils.ModelUtils;
 import com.gitblit.utils.ObjectCache;
+import com.gitblit.utils.RepositoryChanges;
+import com.gitblit.utils.RepositoryIndex;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.utils.TimeUtils;
+import com.gitblit.utils.TreeListingCache;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -103,6 +129,9 @@ import com.google.inject.Singleton;
 @Singleton
 public class RepositoryManager implements IRepositoryManager {
 
+	private static final Histogram MODELS_TIME = MetricRegistry.instance().histogram(
+			"gitblit_repository_models_seconds", "Time to load the list of repository models");
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private final ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(5);
@@ -115,6 +144,16 @@ public class RepositoryManager implements IRepositoryManager {
 
 	private final AtomicReference<String> repositoryListSettingsChecksum = new AtomicReference<String>("");
 
+	private final AtomicLong repositoryListVersion = new AtomicLong();
+
+	private RepositoryIndex repositoryIndex;
+
+	private long repositoryIndexVersion;
+
+	private final RepositoryChanges repositoryChanges = new RepositoryChanges();
+
+	private ListenerHandle refsChangedHandle;
+
 	private final IStoredSettings settings;
 
 	private final IRuntimeManager runtimeManager;
@@ -129,6 +168,16 @@ public class RepositoryManager implements IRepositoryManager {
 
 	private GarbageCollectorService gcExecutor;
 
+	private BitmapMaintenanceService bitmapExecutor;
+
+	private ChangedPathService changedPathExecutor;
+
+	private LastCommitService lastCommitExecutor;
+
+	private CommitMetadataService commitMetadataExecutor;
+
+	private JGitCacheService jgitCacheExecutor;
+
 	private MirrorService mirrorExecutor;
 
 	@Inject
@@ -163,9 +212,17 @@ public class RepositoryManager implements IRepositoryManager {
 
 		configureLuceneIndexing();
 		configureGarbageCollector();
+		configureBitmapMaintenance();
+		configureChangedPathIndex();
+		configureLastCommitIndex();
+		configureCommitMetadataIndex();
+		configureCommitGraph();
+		configureTreeListingCache();
 		configureMirrorExecutor();
 		configureJGit();
 		configureCommitCache();
+		configureMetrics();
+		configureRepositoryChanges();
 
 		confirmWriteAccess();
 
@@ -175,8 +232,17 @@ public class RepositoryManager implements IRepositoryManager {
 	@Override
 	public RepositoryManager stop() {
 		scheduledExecutor.shutdownNow();
+		if (refsChangedHandle != null) {
+			refsChangedHandle.remove();
+		}
 		luceneExecutor.close();
 		gcExecutor.close();
+		bitmapExecutor.close();
+		changedPathExecutor.close();
+		lastCommitExecutor.close();
+		commitMetadataExecutor.close();
+		CommitGraphCache.instance().close();
+		TreeListingCache.instance().close();
 		mirrorExecutor.close();
 
 		closeAll();
@@ -255,6 +321,184 @@ public class RepositoryManager implements IRepositoryManager {
 		return gcExecutor != null && gcExecutor.isCollectingGarbage(repositoryName);
 	}
 
+	/**
+	 * Schedules a refresh of the cached pack which is streamed to cloning
+	 * clients.  Refreshes requested by consecutive pushes are coalesced.
+	 *
+	 * @param repositoryName
+	 */
+	@Override
+	public void scheduleCachedPackRefresh(final String repositoryName) {
+		if (gcExecutor == null || !gcExecutor.isRefreshingCachedPacks()) {
+			return;
+		}
+		if (gcExecutor.requestCachedPackRefresh(repositoryName)) {
+			// give the pushing client time to release the repository
+			scheduledExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					gcExecutor.refreshCachedPack(repositoryName);
+				}
+			}, 1, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Schedules an update of the Lucene index, of the changed path index, of
+	 * the last commit index, of the commit metadata index and of the commit
+	 * graph of a repository which has been pushed to.  Updates
+	 * requested by consecutive pushes are coalesced.
+	 *
+	 * @param repositoryName
+	 */
+	@Override
+	public void scheduleIndexUpdate(final String repositoryName) {
+		repositoryChanges.changed(repositoryName);
+		if (changedPathExecutor != null) {
+			changedPathExecutor.scheduleUpdate(repositoryName);
+		}
+		if (lastCommitExecutor != null) {
+			lastCommitExecutor.scheduleUpdate(repositoryName);
+		}
+		if (commitMetadataExecutor != null) {
+			commitMetadataExecutor.scheduleUpdate(repositoryName);
+		}
+		if (CommitGraphCache.instance().isEnabled()) {
+			Repository repository = getRepository(repositoryName);
+			if (repository != null) {
+				CommitGraphCache.instance().scheduleUpdate(repository);
+				repository.close();
+			}
+		}
+		if (luceneExecutor == null || !luceneExecutor.requestUpdate(repositoryName)) {
+			return;
+		}
+		// give the pushing client time to release the repository
+		scheduledExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				luceneExecutor.update(repositoryName);
+			}
+		}, 5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Returns a page of the commits which changed a path.  Commits which did
+	 * not change the path are skipped using the changed path index of the
+	 * repository, if available.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param path
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all commits are returned
+	 * @return a paged list of commits
+	 */
+	@Override
+	public List<RevCommit> getPathHistory(String repositoryName, Repository repository, String objectId,
+			String path, int offset, int maxCount) {
+		if (changedPathExecutor == null) {
+			return JGitUtils.getRevLog(repository, objectId, path, offset, maxCount);
+		}
+		return changedPathExecutor.getRevLog(repositoryName, repository, objectId, path, offset, maxCount);
+	}
+
+	/**
+	 * Returns a page of the commits of a branch which match a search value.
+	 * The commits are searched in the commit metadata index of the
+	 * repository, if available.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param value
+	 * @param type
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all matches are returned
+	 * @return matching list of commits
+	 */
+	@Override
+	public List<RevCommit> searchRevlogs(String repositoryName, Repository repository, String objectId,
+			String value, SearchType type, int offset, int maxCount) {
+		if (commitMetadataExecutor == null) {
+			return JGitUtils.searchRevlogs(repository, objectId, value, type, offset, maxCount);
+		}
+		return commitMetadataExecutor.searchRevlogs(repositoryName, repository, objectId, value, type, offset,
+				maxCount);
+	}
+
+	@Override
+	public boolean setLastCommits(String repositoryName, Repository repository, RevCommit commit, String path,
+			List<PathModel> paths) {
+		if (lastCommitExecutor == null) {
+			return false;
+		}
+		return lastCommitExecutor.setLastCommits(repositoryName, repository, commit, path, paths);
+	}
+
+	/**
+	 * Records a pack sent to a cloning or fetching client.
+	 *
+	 * @param repository
+	 * @param stats
+	 *            the statistics of the sent pack
+	 */
+	@Override
+	public void recordUpload(Repository repository, PackStatistics stats) {
+		if (bitmapExecutor == null || !bitmapExecutor.isReady()) {
+			return;
+		}
+		String repositoryName = getRepositoryName(repository);
+		if (!StringUtils.isEmpty(repositoryName)) {
+			bitmapExecutor.recordUpload(repositoryName, repository, stats);
+		}
+	}
+
+	/**
+	 * Returns the clone traffic and the reachability bitmap coverage of the
+	 * repositories which have served uploads.
+	 *
+	 * @return the list of bitmap statuses
+	 */
+	@Override
+	public List<BitmapStatus> getBitmapStatus() {
+		if (bitmapExecutor == null) {
+			return new ArrayList<BitmapStatus>();
+		}
+		return bitmapExecutor.getStatus();
+	}
+
+	/**
+	 * Returns the limits and the usage of the JGit window cache.
+	 *
+	 * @return the cache status or null if the cache has not been configured
+	 */
+	@Override
+	public JGitCacheStatus getJGitCacheStatus() {
+		if (jgitCacheExecutor == null) {
+			return null;
+		}
+		return jgitCacheExecutor.getStatus();
+	}
+
+	/**
+	 * Returns the fetch schedule and fetch metrics of the mirrored repositories.
+	 *
+	 * @return the list of mirror statuses
+	 */
+	@Override
+	public List<MirrorStatus> getMirrorStatus() {
+		if (mirrorExecutor == null) {
+			return new ArrayList<MirrorStatus>();
+		}
+		return mirrorExecutor.getStatus();
+	}
+
 	/**
 	 * Returns the effective list of permissions for this user, taking into account
 	 * team memberships, ownerships.
@@ -429,6 +673,8 @@ public class RepositoryManager implements IRepositoryManager {
 		if (settings.getBoolean(Keys.git.cacheRepositoryList, true)) {
 			String key = getRepositoryKey(model.name);
 			repositoryListCache.put(key, model);
+			repositoryListVersion.incrementAndGet();
+			repositoryChanges.changed(model.name);
 
 			// update the fork origin repository with this repository clone
 			if (!StringUtils.isEmpty(model.originRepository)) {
@@ -452,7 +698,9 @@ public class RepositoryManager implements IRepositoryManager {
 			return null;
 		}
 		String key = getRepositoryKey(name);
-		return repositoryListCache.remove(key);
+		RepositoryModel model = repositoryListCache.remove(key);
+		repositoryListVersion.incrementAndGet();
+		return model;
 	}
 
 	/**
@@ -488,6 +736,8 @@ public class RepositoryManager implements IRepositoryManager {
 	public void resetRepositoryListCache() {
 		logger.info("Repository cache manually reset");
 		repositoryListCache.clear();
+		repositoryListVersion.incrementAndGet();
+		repositoryChanges.reset();
 		repositorySizeCache.clear();
 		repositoryMetricsCache.clear();
 		CommitCache.instance().clear();
@@ -521,6 +771,7 @@ public class RepositoryManager implements IRepositoryManager {
 		if (!valid && settings.getBoolean(Keys.git.cacheRepositoryList,  true)) {
 			logger.info("Repository list settings have changed. Clearing repository list cache.");
 			repositoryListCache.clear();
+			repositoryListVersion.incrementAndGet();
 		}
 		return valid;
 	}
@@ -644,6 +895,7 @@ public class RepositoryManager implements IRepositoryManager {
 			}
 		}
 		long duration = System.currentTimeMillis() - methodStart;
+		MODELS_TIME.observeMillis(duration);
 		logger.info(MessageFormat.format("{0} repository models loaded in {1} msecs", duration));
 		return repositories;
 	}
@@ -674,11 +926,60 @@ public class RepositoryManager implements IRepositoryManager {
 			}
 		}
 		long duration = System.currentTimeMillis() - methodStart;
+		MODELS_TIME.observeMillis(duration);
 		logger.info(MessageFormat.format("{0} repository models loaded for {1} in {2} msecs",
 				repositories.size(), user == null ? "anonymous" : user.username, duration));
 		return repositories;
 	}
 
+	/**
+	 * Returns the names of the repositories which match the query and which
+	 * the user may view, in the order of the query.  The query is answered by
+	 * an index of the cached repository list, the repository models are
+	 * neither loaded nor copied.
+	 *
+	 * @param user
+	 * @param query
+	 * @return the list of repository names
+	 */
+	@Override
+	public List<String> queryRepositories(UserModel user, RepositoryQuery query) {
+		List<TeamModel> teams = new ArrayList<TeamModel>();
+		for (String team : query.teams) {
+			TeamModel model = userManager.getTeamModel(team);
+			if (model != null) {
+				teams.add(model);
+			}
+		}
+		String rootProject = settings.getString(Keys.web.repositoryRootGroupName, "main");
+		return getRepositoryIndex().query(query, user, rootProject, teams);
+	}
+
+	/**
+	 * Returns the index of the repository list.  The index is rebuilt after
+	 * the repository list or the last change of a repository has changed.
+	 *
+	 * @return the repository index
+	 */
+	private synchronized RepositoryIndex getRepositoryIndex() {
+		if (!settings.getBoolean(Keys.git.cacheRepositoryList, true)) {
+			// we are not caching, build a transient index
+			return new RepositoryIndex(getRepositoryModels());
+		}
+		if (repositoryListCache.isEmpty() || !isValidRepositoryList()) {
+			getRepositoryList();
+		}
+		long version = repositoryListVersion.get();
+		if (repositoryIndex == null || repositoryIndexVersion != version) {
+			long start = System.nanoTime();
+			repositoryIndex = new RepositoryIndex(repositoryListCache.values());
+			repositoryIndexVersion = version;
+			logger.debug(MessageFormat.format("Repository index of {0} repositories built in {1} msecs",
+					repositoryIndex.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		}
+		return repositoryIndex;
+	}
+
 	/**
 	 * Returns a repository model if the repository exists and the user may
 	 * access the repository.
@@ -756,7 +1057,12 @@ public class RepositoryManager implements IRepositoryManager {
 				model.hasCommits = JGitUtils.hasCommits(r);
 			}
 
+			Date lastChange = model.lastChange;
 			updateLastChangeFields(r, model);
+			if (!model.lastChange.equals(lastChange)) {
+				// the repository index sorts by the last change
+				repositoryListVersion.incrementAndGet();
+			}
 		}
 		r.close();
 
@@ -816,6 +1122,34 @@ public class RepositoryManager implements IRepositoryManager {
 		return sb.toString();
 	}
 
+	/**
+	 * Returns the name of a repository relative to the repositories folder.
+	 *
+	 * @param repository
+	 * @return the repository name or null if it is not in the repositories folder
+	 */
+	private String getRepositoryName(Repository repository) {
+		File basePath = getRepositoriesFolder();
+		if (basePath == null || repository.getDirectory() == null) {
+			return null;
+		}
+		if (repository.isBare()) {
+			return com.gitblit.utils.FileUtils.getRelativePath(basePath, repository.getDirectory());
+		}
+		return com.gitblit.utils.FileUtils.getRelativePath(basePath, repository.getDirectory().getParentFile());
+	}
+
+	/**
+	 * Returns the registry of the versions at which the repositories were
+	 * last changed.
+	 *
+	 * @return the repository changes
+	 */
+	@Override
+	public RepositoryChanges getRepositoryChanges() {
+		return repositoryChanges;
+	}
+
 	/**
 	 * Returns the cache key for the repository name.
 	 *
@@ -1251,6 +1585,7 @@ public class RepositoryManager implements IRepositoryManager {
 			return;
 		}
 		RepositoryCache.close(repository);
+		CommitGraphCache.instance().clear(repository);
 
 		// assume 2 uses in case reflection fails
 		int uses = 2;
@@ -1280,6 +1615,15 @@ public class RepositoryManager implements IRepositoryManager {
 
 		// close any open index writer/searcher in the Lucene executor
 		luceneExecutor.close(repositoryName);
+		if (changedPathExecutor != null) {
+			changedPathExecutor.close(repositoryName);
+		}
+		if (lastCommitExecutor != null) {
+			lastCommitExecutor.close(repositoryName);
+		}
+		if (commitMetadataExecutor != null) {
+			commitMetadataExecutor.close(repositoryName);
+		}
 	}
 
 	/**
@@ -1411,6 +1755,10 @@ public class RepositoryManager implements IRepositoryManager {
 							repositoryName, repository.name));
 				}
 				close(repositoryName);
+				if (luceneExecutor.isUnifiedIndex()) {
+					// the repository is indexed again with its new name
+					luceneExecutor.deleteIndex(repositoryName);
+				}
 				File folder = new File(repositoriesFolder, repositoryName);
 				File destFolder = new File(repositoriesFolder, repository.name);
 				if (destFolder.exists()) {
@@ -1509,6 +1857,12 @@ public class RepositoryManager implements IRepositoryManager {
 
 		// update repository cache
 		removeFromCachedRepositoryList(repositoryName);
+		if (!isCreate) {
+			// a renamed repository or one which a user may no longer view can
+			// not be expressed as a delta
+			repositoryChanges.removed(repositoryName);
+		}
+		repositoryChanges.changed(repository.name);
 		// model will actually be replaced on next load because config is stale
 		addToCachedRepositoryList(repository);
 
@@ -1691,10 +2045,15 @@ public class RepositoryManager implements IRepositoryManager {
 
 		try {
 			close(repositoryName);
+			if (luceneExecutor.isUnifiedIndex()) {
+				// the unified index is not deleted with the repository folder
+				luceneExecutor.deleteIndex(repositoryName);
+			}
 			// clear the repository cache
 			clearRepositoryMetadataCache(repositoryName);
 
 			RepositoryModel model = removeFromCachedRepositoryList(repositoryName);
+			repositoryChanges.removed(repositoryName);
 			if (model != null && !ArrayUtils.isEmpty(model.forks)) {
 				resetRepositoryListCache();
 			}
@@ -1872,8 +2231,26 @@ public class RepositoryManager implements IRepositoryManager {
 		return srs;
 	}
 
+	/**
+	 * Search the blobs of the specified repositories for a text or a regular
+	 * expression.
+	 *
+	 * @param text
+	 * @param regex
+	 * @param page
+	 * @param pageSize
+	 * @param repositories
+	 * @return
+	 */
+	@Override
+	public List<SearchResult> searchCode(String text, boolean regex, int page, int pageSize, List<String> repositories) {
+		List<SearchResult> srs = luceneExecutor.searchCode(text, regex, page, pageSize, repositories);
+		return srs;
+	}
+
 	protected void configureLuceneIndexing() {
-		luceneExecutor = new LuceneService(settings, this);
+		File luceneFolder = runtimeManager.getFileOrFolder(Keys.web.luceneIndexFolder, "${baseFolder}/lucene");
+		luceneExecutor = new LuceneService(settings, this, luceneFolder);
 		String frequency = settings.getString(Keys.web.luceneFrequency, "2 mins");
 		int mins = TimeUtils.convertFrequencyToMinutes(frequency, 2);
 		scheduledExecutor.scheduleAtFixedRate(luceneExecutor, 1, mins,  TimeUnit.MINUTES);
@@ -1914,14 +2291,86 @@ public class RepositoryManager implements IRepositoryManager {
 		if (mirrorExecutor.isReady()) {
 			int mins = TimeUtils.convertFrequencyToMinutes(settings.getString(Keys.git.mirrorPeriod, "30 mins"), 5);
 			int delay = 1;
-			scheduledExecutor.scheduleAtFixedRate(mirrorExecutor, delay, mins,  TimeUnit.MINUTES);
-			logger.info("Mirror service will fetch updates every {} minutes.", mins);
+			// the mirror service tracks the schedule of each mirror, tick every minute
+			scheduledExecutor.scheduleWithFixedDelay(mirrorExecutor, delay, 1,  TimeUnit.MINUTES);
+			if (settings.getBoolean(Keys.git.mirrorAdaptivePeriod, true)) {
+				logger.info("Mirror service will adapt the fetch period of each mirror, starting at {} minutes.", mins);
+			} else {
+				logger.info("Mirror service will fetch updates every {} minutes.", mins);
+			}
 			logger.info("Next scheduled mirror fetch is in {} minutes", delay);
 		} else {
 			logger.info("Mirror service is disabled.");
 		}
 	}
 
+	protected void configureBitmapMaintenance() {
+		bitmapExecutor = new BitmapMaintenanceService(settings, this, gcExecutor);
+		if (bitmapExecutor.isReady()) {
+			String frequency = settings.getString(Keys.git.bitmapMaintenancePeriod, "30 mins");
+			int mins = TimeUtils.convertFrequencyToMinutes(frequency, 30);
+			scheduledExecutor.scheduleWithFixedDelay(bitmapExecutor, mins, mins, TimeUnit.MINUTES);
+			logger.info("Bitmap maintenance will scan the most cloned repositories every {} minutes.", mins);
+		} else {
+			logger.info("Bitmap maintenance is disabled.");
+		}
+	}
+
+	protected void configureChangedPathIndex() {
+		changedPathExecutor = new ChangedPathService(settings, this);
+		if (changedPathExecutor.isReady()) {
+			logger.info("Path histories will use the changed path index of the repositories.");
+		} else {
+			logger.info("The changed path index is disabled.");
+		}
+	}
+
+	protected void configureLastCommitIndex() {
+		lastCommitExecutor = new LastCommitService(settings, this);
+		if (lastCommitExecutor.isReady()) {
+			logger.info("Tree listings will show the last commits from the last commit index of the repositories.");
+		} else {
+			logger.info("The last commit index is disabled.");
+		}
+	}
+
+	protected void configureCommitMetadataIndex() {
+		commitMetadataExecutor = new CommitMetadataService(settings, this);
+		if (commitMetadataExecutor.isReady()) {
+			logger.info("Commit searches will use the commit metadata index of the repositories.");
+		} else {
+			logger.info("The commit metadata index is disabled.");
+		}
+	}
+
+	protected void configureCommitGraph() {
+		if (settings.getBoolean(Keys.git.enableCommitGraph, true)) {
+			CommitGraphCache.instance().configure(settings.getFilesize(Keys.git.commitGraphCacheSize, 64 * 1024 * 1024L));
+		}
+		if (CommitGraphCache.instance().isEnabled()) {
+			logger.info("Merge bases and merged checks will use the commit graph of the repositories.");
+		} else {
+			logger.info("The commit graph is disabled.");
+		}
+	}
+
+	protected void configureTreeListingCache() {
+		TreeListingCache.instance().configure(settings.getFilesize(Keys.git.treeListingCacheSize, 16 * 1024 * 1024L));
+	}
+
+	protected void configureRepositoryChanges() {
+		// refs changed by mirrors, tickets and other JGit writers
+		refsChangedHandle = Repository.getGlobalListenerList().addRefsChangedListener(new RefsChangedListener() {
+			@Override
+			public void onRefsChanged(RefsChangedEvent event) {
+				String repositoryName = getRepositoryName(event.getRepository());
+				if (!StringUtils.isEmpty(repositoryName)) {
+					repositoryChanges.changed(repositoryName);
+				}
+			}
+		});
+	}
+
 	protected void configureJGit() {
 		// Configure JGit
 		WindowCacheConfig cfg = new WindowCacheConfig();
@@ -1941,9 +2390,60 @@ public class RepositoryManager implements IRepositoryManager {
 			logger.debug(MessageFormat.format("{0} = {1}", Keys.git.packedGitMmap, cfg.isPackedGitMMAP()));
 		} catch (IllegalArgumentException e) {
 			logger.error("Failed to configure JGit parameters!", e);
+			cfg = new WindowCacheConfig();
+		}
+
+		// sample the window cache for the server status and the adaptive sizing
+		jgitCacheExecutor = new JGitCacheService(settings, cfg);
+		scheduledExecutor.scheduleAtFixedRate(jgitCacheExecutor, 1, 1, TimeUnit.MINUTES);
+		if (jgitCacheExecutor.isAdaptive()) {
+			logger.info("JGit window cache will adapt to the load within a heap budget of {} MB.",
+					jgitCacheExecutor.getHeapBudget() / (1024 * 1024));
 		}
 	}
 
+	protected void configureMetrics() {
+		MetricRegistry registry = MetricRegistry.instance();
+		Family<Gauge> cacheSize = registry.gauges("gitblit_cache_size", "Entries held by a cache", "cache");
+		cacheSize.register(new Gauge() {
+			@Override
+			public double getValue() {
+				return repositoryListCache.size();
+			}
+		}, "repositories");
+		cacheSize.register(new Gauge() {
+			@Override
+			public double getValue() {
+				return repositorySizeCache.size();
+			}
+		}, "repository_sizes");
+		cacheSize.register(new Gauge() {
+			@Override
+			public double getValue() {
+				return repositoryMetricsCache.size();
+			}
+		}, "repository_metrics");
+
+		registry.gauge("gitblit_jgit_cache_open_bytes", "Bytes of pack windows held by the JGit window cache", new Gauge() {
+			@Override
+			public double getValue() {
+				return WindowCacheStats.getOpenBytes();
+			}
+		});
+		registry.gauge("gitblit_jgit_cache_open_files", "Pack files opened by the JGit window cache", new Gauge() {
+			@Override
+			public double getValue() {
+				return WindowCacheStats.getOpenFiles();
+			}
+		});
+		registry.gauge("gitblit_jgit_cache_limit_bytes", "Packed git limit of the JGit window cache", new Gauge() {
+			@Override
+			public double getValue() {
+				return jgitCacheExecutor == null ? 0 : jgitCacheExecutor.getPackedGitLimit();
+			}
+		});
+	}
+
 	protected void configureCommitCache() {
 		final int daysToCache = settings.getInteger(Keys.web.activityCacheDays, 14);
 		if (daysToCache <= 0) {
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.models;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * BitmapStatus is a serializable model class that reports the clone traffic,
+ * the reachability bitmap coverage and the bitmap maintenance of a repository.
+ */
+public class BitmapStatus implements Serializable, Comparable<BitmapStatus> {
+
+	private static final long serialVersionUID = 1L;
+
+	public final String repository;
+
+	/**
+	 * The decaying clone traffic of the repository.  A clone adds 1, a fetch
+	 * adds 0.1 and the heat halves every day.
+	 */
+	public double heat;
+
+	public int clones;
+
+	public int fetches;
+
+	public Date lastUpload;
+
+	/**
+	 * The uploads which were counted with reachability bitmaps.
+	 */
+	public int bitmapUploads;
+
+	public long bitmapCountingTime;
+
+	public long bitmapCountingObjects;
+
+	/**
+	 * The uploads which were counted by walking the object graph.
+	 */
+	public int walkUploads;
+
+	public long walkCountingTime;
+
+	public long walkCountingObjects;
+
+	/**
+	 * The number of objects in the packs with a bitmap index.
+	 */
+	public long bitmapObjects;
+
+	/**
+	 * The number of objects outside of the packs with a bitmap index.
+	 */
+	public long uncachedObjects;
+
+	public Date lastScan;
+
+	public Date lastRepack;
+
+	/**
+	 * The duration of the last repack in milliseconds.
+	 */
+	public long lastRepackDuration;
+
+	public int repacks;
+
+	public String lastError;
+
+	public BitmapStatus(String repository) {
+		this.repository = repository;
+	}
+
+	public boolean hasBitmap() {
+		return bitmapObjects > 0;
+	}
+
+	/**
+	 * Returns the percentage of objects which are covered by a bitmap index.
+	 *
+	 * @return the bitmap coverage, 0-100
+	 */
+	public int getCoverage() {
+		long total = bitmapObjects + uncachedObjects;
+		if (total == 0) {
+			return 100;
+		}
+		return (int) (100 * bitmapObjects / total);
+	}
+
+	/**
+	 * Estimates the counting time saved by the bitmaps.  The counting rate of
+	 * the uploads which had to walk the object graph is applied to the objects
+	 * counted with bitmaps.  The estimate is 0 until an upload has been
+	 * counted without bitmaps.
+	 *
+	 * @return the estimated counting time saved in milliseconds
+	 */
+	public long getCountingTimeSaved() {
+		if (walkCountingObjects == 0) {
+			return 0;
+		}
+		double rate = ((double) walkCountingTime) / walkCountingObjects;
+		return Math.max(0, (long) (rate * bitmapCountingObjects) - bitmapCountingTime);
+	}
+
+	@Override
+	public int compareTo(BitmapStatus o) {
+		// hottest repositories first
+		int cmp = Double.compare(o.heat, heat);
+		if (cmp == 0) {
+			cmp = repository.compareTo(o.repository);
+		}
+		return cmp;
+	}
+
+	@Override
+	public String toString() {
+		return repository;
+	}
+}
@@ -64,6 +64,32 @@ public class FederationModel implements Serializable, Comparable<FederationModel
 
 	public Date nextPull;
 
+	/**
+	 * Duration of the last pull in milliseconds.
+	 */
+	public long lastPullDuration;
+
+	/**
+	 * Number of repositories processed by the last pull.
+	 */
+	public int lastPullRepositories;
+
+	/**
+	 * Number of repositories cloned or fetched by the last pull.
+	 */
+	public int lastPullFetched;
+
+	/**
+	 * Number of repositories skipped by the last pull because their
+	 * advertised tips were unchanged.
+	 */
+	public int lastPullUnchanged;
+
+	/**
+	 * Number of repositories which failed to pull.
+	 */
+	public int lastPullFailed;
+
 	private Map<String, FederationPullStatus> results = new ConcurrentHashMap<String, FederationPullStatus>();
 
 	/**
@@ -149,6 +175,32 @@ public class FederationModel implements Serializable, Comparable<FederationModel
 		return status;
 	}
 
+	/**
+	 * Returns the number of milliseconds since the last completed pull or -1
+	 * if this registration has never been pulled.
+	 *
+	 * @return the pull lag in milliseconds
+	 */
+	public long getLag() {
+		if (lastPull == null || lastPull.getTime() == 0) {
+			return -1;
+		}
+		return Math.max(0, System.currentTimeMillis() - lastPull.getTime());
+	}
+
+	/**
+	 * Returns the number of repositories processed per minute by the last
+	 * pull.
+	 *
+	 * @return the repository throughput of the last pull
+	 */
+	public double getThroughput() {
+		if (lastPullDuration <= 0) {
+			return 0;
+		}
+		return lastPullRepositories * 60000d / lastPullDuration;
+	}
+
 	/**
 	 * Returns true if this registration represents the result data sent by a
 	 * pulling Gitblit instance.
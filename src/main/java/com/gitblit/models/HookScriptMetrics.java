@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.models;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * HookScriptMetrics is a serializable model class that reports the execution
+ * metrics of a Groovy hook script.
+ */
+public class HookScriptMetrics implements Serializable, Comparable<HookScriptMetrics> {
+
+	private static final long serialVersionUID = 1L;
+
+	public final String script;
+
+	public int count;
+
+	/**
+	 * The number of executions which threw an exception or returned false.
+	 */
+	public int failures;
+
+	public int timeouts;
+
+	/**
+	 * The number of times the script was (re)compiled.
+	 */
+	public int compilations;
+
+	/**
+	 * Total execution time in milliseconds.
+	 */
+	public long totalTime;
+
+	public long maxTime;
+
+	public long lastTime;
+
+	public Date lastRun;
+
+	public HookScriptMetrics(String script) {
+		this.script = script;
+	}
+
+	public long getAverageTime() {
+		if (count == 0) {
+			return 0;
+		}
+		return totalTime / count;
+	}
+
+	@Override
+	public int compareTo(HookScriptMetrics o) {
+		return script.compareTo(o.script);
+	}
+
+	@Override
+	public String toString() {
+		return script;
+	}
+}
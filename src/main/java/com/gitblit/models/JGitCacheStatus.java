@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.models;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * JGitCacheStatus is a serializable model class that reports the limits and
+ * the usage of the JGit pack window cache.
+ *
+ * The window cache is sampled periodically.  A sample is saturated if the
+ * cached windows or the open pack files have reached 90% of their limit, at
+ * which point JGit evicts windows or closes packs to load new ones.
+ */
+public class JGitCacheStatus implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public long packedGitLimit;
+
+	public int packedGitWindowSize;
+
+	public int packedGitOpenFiles;
+
+	public int deltaBaseCacheLimit;
+
+	public boolean packedGitMmap;
+
+	public long openBytes;
+
+	public int openFiles;
+
+	public long peakOpenBytes;
+
+	public int peakOpenFiles;
+
+	public long samples;
+
+	/**
+	 * The samples where the cached windows reached 90% of the packed git limit.
+	 */
+	public long bytesSaturatedSamples;
+
+	/**
+	 * The samples where the open packs reached 90% of the open files limit.
+	 */
+	public long filesSaturatedSamples;
+
+	public Date lastSample;
+
+	public boolean adaptive;
+
+	/**
+	 * The maximum number of heap bytes the adaptive sizing may assign to the
+	 * window cache.
+	 */
+	public long heapBudget;
+
+	public int resizes;
+
+	public Date lastResize;
+
+	/**
+	 * Returns the percentage of the packed git limit used by cached windows.
+	 *
+	 * @return the byte utilization, 0-100
+	 */
+	public int getBytesUtilization() {
+		return percent(openBytes, packedGitLimit);
+	}
+
+	/**
+	 * Returns the percentage of the open files limit used by open packs.
+	 *
+	 * @return the file utilization, 0-100
+	 */
+	public int getFilesUtilization() {
+		return percent(openFiles, packedGitOpenFiles);
+	}
+
+	/**
+	 * Returns the percentage of samples where the cache had to evict windows
+	 * or close packs.
+	 *
+	 * @return the saturation, 0-100
+	 */
+	public int getSaturation() {
+		return percent(Math.max(bytesSaturatedSamples, filesSaturatedSamples), samples);
+	}
+
+	private static int percent(long value, long limit) {
+		if (limit <= 0) {
+			return 0;
+		}
+		return (int) Math.min(100, 100 * value / limit);
+	}
+}
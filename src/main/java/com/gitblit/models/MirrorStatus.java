@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.models;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * MirrorStatus is a serializable model class that reports the fetch schedule
+ * and fetch metrics of a mirrored repository.
+ */
+public class MirrorStatus implements Serializable, Comparable<MirrorStatus> {
+
+	private static final long serialVersionUID = 1L;
+
+	public final String repository;
+
+	public String remote;
+
+	/**
+	 * The time of the last check that confirmed the mirror matches the upstream.
+	 */
+	public Date lastSync;
+
+	/**
+	 * The time of the last check, successful or not.
+	 */
+	public Date lastCheck;
+
+	/**
+	 * The time of the last fetch that updated at least one ref.
+	 */
+	public Date lastChange;
+
+	public Date nextCheck;
+
+	/**
+	 * The current polling interval in milliseconds.
+	 */
+	public long interval;
+
+	/**
+	 * The duration of the last check (advertisement + fetch) in milliseconds.
+	 */
+	public long lastDuration;
+
+	public long totalDuration;
+
+	public int checks;
+
+	public int fetches;
+
+	public int skipped;
+
+	public int failures;
+
+	public String lastError;
+
+	public MirrorStatus(String repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Returns the number of milliseconds since this mirror was last known to
+	 * match its upstream.  A mirror which has never been synchronized reports
+	 * -1.
+	 *
+	 * @return the mirror lag in milliseconds
+	 */
+	public long getLag() {
+		if (lastSync == null) {
+			return -1;
+		}
+		return Math.max(0, System.currentTimeMillis() - lastSync.getTime());
+	}
+
+	/**
+	 * Returns the average check duration in milliseconds.
+	 *
+	 * @return the average duration
+	 */
+	public long getAverageDuration() {
+		if (checks == 0) {
+			return 0;
+		}
+		return totalDuration / checks;
+	}
+
+	public boolean isDue(long now) {
+		return nextCheck == null || nextCheck.getTime() <= now;
+	}
+
+	@Override
+	public int compareTo(MirrorStatus o) {
+		return repository.compareTo(o.repository);
+	}
+
+	@Override
+	public String toString() {
+		return repository;
+	}
+}
@@ -17,6 +17,7 @@ package com.gitblit.models;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Date;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
@@ -49,6 +50,10 @@ public class PathModel implements Serializable, Comparable<PathModel> {
 	public final String objectId;
 	public final String commitId;
 	public boolean isParentPath;
+	public String lastCommitId;
+	public String lastCommitMessage;
+	public String lastCommitAuthor;
+	public Date lastCommitDate;
 	
 	public PathModel(String name, String path, FilestoreModel filestoreItem, long size, int mode, String objectId, String commitId) {
 		this.name = name;
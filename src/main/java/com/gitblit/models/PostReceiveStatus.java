@@ -0,0 +1,123 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.models;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * PostReceiveStatus is a serializable model class that reports the deferred
+ * post-receive processing of a repository.
+ */
+public class PostReceiveStatus implements Serializable, Comparable<PostReceiveStatus> {
+
+	private static final long serialVersionUID = 1L;
+
+	public final String repository;
+
+	/**
+	 * The number of pushes waiting to be processed, including the one being
+	 * processed.
+	 */
+	public int pending;
+
+	public int completed;
+
+	/**
+	 * The number of pushes which were dropped after exhausting their retries.
+	 */
+	public int failed;
+
+	public int retries;
+
+	public Date lastQueued;
+
+	public Date lastCompleted;
+
+	/**
+	 * The time between accepting the last completed push and finishing its
+	 * post-receive processing, in milliseconds.
+	 */
+	public long lastLatency;
+
+	public String lastError;
+
+	public final Map<String, StepMetrics> steps;
+
+	public PostReceiveStatus(String repository) {
+		this.repository = repository;
+		this.steps = new TreeMap<String, StepMetrics>();
+	}
+
+	public StepMetrics getStep(String name) {
+		StepMetrics metrics = steps.get(name);
+		if (metrics == null) {
+			metrics = new StepMetrics();
+			steps.put(name, metrics);
+		}
+		return metrics;
+	}
+
+	@Override
+	public int compareTo(PostReceiveStatus o) {
+		return repository.compareTo(o.repository);
+	}
+
+	@Override
+	public String toString() {
+		return repository;
+	}
+
+	/**
+	 * Execution metrics of a post-receive step.
+	 */
+	public static class StepMetrics implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public int count;
+
+		public int failures;
+
+		/**
+		 * Total execution time in milliseconds.
+		 */
+		public long totalTime;
+
+		public long maxTime;
+
+		public long lastTime;
+
+		public void record(long duration, boolean failed) {
+			count++;
+			if (failed) {
+				failures++;
+			}
+			totalTime += duration;
+			lastTime = duration;
+			maxTime = Math.max(maxTime, duration);
+		}
+
+		public long getAverageTime() {
+			if (count == 0) {
+				return 0;
+			}
+			return totalTime / count;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * RepositoryQuery is a serializable model class that selects and orders
+ * repositories of the repository list.
+ *
+ * A repository matches the query if it matches any of the repository, project,
+ * regex, set or team criteria, or if none of these criteria is specified.
+ * The since and includePersonal criteria further restrict the matching
+ * repositories.
+ */
+public class RepositoryQuery implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static enum Sort {
+		name, description, owner, lastChange;
+	}
+
+	/**
+	 * The name of a repository, case-insensitive.
+	 */
+	public String repository;
+
+	/**
+	 * The name of a project.  The root project matches the repositories which
+	 * are not in a folder.
+	 */
+	public String project;
+
+	/**
+	 * A regular expression which is found in the repository name.
+	 */
+	public String regex;
+
+	/**
+	 * The federation sets of the repositories.
+	 */
+	public List<String> sets = new ArrayList<String>();
+
+	/**
+	 * The teams which have permissions for the repositories.
+	 */
+	public List<String> teams = new ArrayList<String>();
+
+	/**
+	 * The repositories must have changed after this date.
+	 */
+	public Date since;
+
+	public boolean includePersonal = true;
+
+	public Sort sort = Sort.name;
+
+	public boolean ascending = true;
+
+	public boolean hasCriteria() {
+		return repository != null || project != null || regex != null || !sets.isEmpty() || !teams.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "RepositoryQuery [repository=" + repository + ", project=" + project + ", regex=" + regex
+				+ ", sets=" + sets + ", teams=" + teams + ", since=" + since + ", includePersonal="
+				+ includePersonal + ", sort=" + sort + ", ascending=" + ascending + "]";
+	}
+}
@@ -20,6 +20,8 @@ public class SearchResult implements Serializable {
 
 	public int totalHits;
 
+	public boolean truncated;
+
 	public float score;
 
 	public Date date;
@@ -51,6 +51,11 @@ public class ServerStatus implements Serializable {
 
 	public String servletContainer;
 
+	/**
+	 * The usage of the JGit window cache, null if not available.
+	 */
+	public JGitCacheStatus jgitCache;
+
 	public ServerStatus(String version) {
 		this.bootDate = new Date();
 		this.version = version;
@@ -80,6 +85,32 @@ public class ServerStatus implements Serializable {
 		this(Constants.getVersion());
 	}
 
+	private ServerStatus(ServerStatus status) {
+		this.bootDate = status.bootDate;
+		this.version = status.version;
+		this.releaseDate = status.releaseDate;
+		this.systemProperties = status.systemProperties;
+		this.heapMaximum = status.heapMaximum;
+		this.heapAllocated = status.heapAllocated;
+		this.heapFree = status.heapFree;
+		this.isGO = status.isGO;
+		this.servletContainer = status.servletContainer;
+		this.jgitCache = status.jgitCache;
+	}
+
+	/**
+	 * Returns a copy of this status with the usage of the JGit window cache.
+	 * This status, which is shared by the server, is not changed.
+	 *
+	 * @param jgitCache
+	 * @return the copy
+	 */
+	public ServerStatus withJGitCache(JGitCacheStatus jgitCache) {
+		ServerStatus status = new ServerStatus(this);
+		status.jgitCache = jgitCache;
+		return status;
+	}
+
 	private void put(String key) {
 		systemProperties.put(key, System.getProperty(key));
 	}
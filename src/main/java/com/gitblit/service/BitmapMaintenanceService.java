@@ -0,0 +1,348 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.BitmapStatus;
+import com.gitblit.utils.DeepCopier;
+import com.gitblit.utils.TimeUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The Bitmap Maintenance service keeps the reachability bitmaps of the most
+ * cloned repositories current.
+ *
+ * Without bitmaps the objects of a clone are counted by walking the complete
+ * object graph, which takes tens of seconds for large repositories.  The
+ * service records the uploads of every repository and periodically repacks
+ * the hottest repositories whose bitmap coverage has dropped below the
+ * configured minimum.  Repacks run on a single low-priority thread and do not
+ * block access to the repository; the packs they replace remain readable
+ * until JGit expires them.
+ */
+public class BitmapMaintenanceService implements Runnable {
+
+	private static final double CLONE_HEAT = 1d;
+
+	private static final double FETCH_HEAT = 0.1d;
+
+	private static final long HEAT_HALF_LIFE = TimeUtils.ONEDAY;
+
+	/**
+	 * The minimum heat of a repository which is maintained, about one clone
+	 * during the last day.
+	 */
+	private static final double MIN_HEAT = 0.5d;
+
+	private final Logger logger = LoggerFactory.getLogger(BitmapMaintenanceService.class);
+
+	private final ConcurrentMap<String, BitmapStatus> repositories = new ConcurrentHashMap<String, BitmapStatus>();
+
+	private final IStoredSettings settings;
+
+	private final IRepositoryManager repositoryManager;
+
+	private final GarbageCollectorService gcExecutor;
+
+	private AtomicBoolean running = new AtomicBoolean(false);
+
+	private AtomicBoolean forceClose = new AtomicBoolean(false);
+
+	private ExecutorService maintenanceExecutor;
+
+	private long lastDecay = System.currentTimeMillis();
+
+	public BitmapMaintenanceService(
+			IStoredSettings settings,
+			IRepositoryManager repositoryManager,
+			GarbageCollectorService gcExecutor) {
+
+		this.settings = settings;
+		this.repositoryManager = repositoryManager;
+		this.gcExecutor = gcExecutor;
+	}
+
+	public boolean isReady() {
+		return settings.getBoolean(Keys.git.enableBitmapMaintenance, false);
+	}
+
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	public void close() {
+		forceClose.set(true);
+		synchronized (this) {
+			if (maintenanceExecutor != null) {
+				maintenanceExecutor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Records a pack sent to a cloning or fetching client.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param stats
+	 *            the statistics of the sent pack
+	 */
+	public void recordUpload(String repositoryName, Repository repository, PackStatistics stats) {
+		if (!isReady()) {
+			return;
+		}
+		// JGit does not use bitmaps for shallow clones
+		boolean bitmapped = !stats.isShallow() && GarbageCollectorService.hasBitmapIndex(repository);
+		BitmapStatus status = track(repositoryName);
+		synchronized (status) {
+			if (stats.getHaves() == 0) {
+				status.clones++;
+				status.heat += CLONE_HEAT;
+			} else {
+				status.fetches++;
+				status.heat += FETCH_HEAT;
+			}
+			status.lastUpload = new Date();
+			if (bitmapped) {
+				status.bitmapUploads++;
+				status.bitmapCountingTime += stats.getTimeCounting();
+				status.bitmapCountingObjects += stats.getTotalObjects();
+			} else {
+				status.walkUploads++;
+				status.walkCountingTime += stats.getTimeCounting();
+				status.walkCountingObjects += stats.getTotalObjects();
+			}
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the bitmap status of the repositories which have
+	 * served uploads, hottest first.
+	 *
+	 * @return the list of bitmap statuses
+	 */
+	public List<BitmapStatus> getStatus() {
+		List<BitmapStatus> list = new ArrayList<BitmapStatus>();
+		for (BitmapStatus status : repositories.values()) {
+			synchronized (status) {
+				list.add(DeepCopier.copy(status));
+			}
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * Hands the maintenance to the low-priority thread unless a previous
+	 * maintenance is still running.
+	 */
+	@Override
+	public void run() {
+		if (!isReady() || forceClose.get() || !running.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			getMaintenanceExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						maintain();
+					} catch (Exception e) {
+						logger.error("Error maintaining reachability bitmaps", e);
+					} finally {
+						running.set(false);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// service is closing
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Scans the hottest repositories and repacks those whose bitmap coverage
+	 * is insufficient.  This method blocks until the maintenance is complete.
+	 */
+	protected void maintain() {
+		decay(System.currentTimeMillis());
+
+		int limit = Math.max(1, settings.getInteger(Keys.git.bitmapMaintenanceRepositories, 5));
+		int minCoverage = settings.getInteger(Keys.git.bitmapMinimumCoverage, 90);
+
+		// the snapshot is sorted by heat
+		List<String> candidates = new ArrayList<String>();
+		for (BitmapStatus status : getStatus()) {
+			if (status.heat >= MIN_HEAT) {
+				candidates.add(status.repository);
+			}
+		}
+
+		int repacked = 0;
+		for (String repositoryName : candidates.subList(0, Math.min(limit, candidates.size()))) {
+			if (forceClose.get()) {
+				break;
+			}
+			if (maintain(track(repositoryName), minCoverage)) {
+				repacked++;
+			}
+		}
+
+		long saved = 0;
+		for (BitmapStatus status : repositories.values()) {
+			synchronized (status) {
+				saved += status.getCountingTimeSaved();
+			}
+		}
+		logger.info("Bitmap maintenance repacked {} of {} hot repositories, bitmaps saved an estimated {} secs of object counting",
+				repacked, candidates.size(), saved / 1000L);
+	}
+
+	/**
+	 * Scans the bitmap coverage of the repository and repacks it if needed.
+	 *
+	 * @param status
+	 * @param minCoverage
+	 * @return true if the repository was repacked
+	 */
+	private boolean maintain(BitmapStatus status, int minCoverage) {
+		String repositoryName = status.repository;
+		if (repositoryManager.isCollectingGarbage(repositoryName)) {
+			logger.debug("bitmap maintenance is skipping {} garbagecollection", repositoryName);
+			return false;
+		}
+		Repository repository = repositoryManager.getRepository(repositoryName);
+		if (repository == null) {
+			repositories.remove(repositoryName.toLowerCase());
+			return false;
+		}
+		boolean locked = false;
+		try {
+			if (!(repository instanceof FileRepository)) {
+				return false;
+			}
+			scan(status, repository);
+			if (status.hasBitmap() && status.getCoverage() >= minCoverage) {
+				return false;
+			}
+			if (gcExecutor != null) {
+				if (!gcExecutor.lockRepack(repositoryName)) {
+					logger.debug("bitmap maintenance is skipping {}, can not acquire GC lock", repositoryName);
+					return false;
+				}
+				locked = true;
+			}
+
+			logger.info("Writing reachability bitmaps for {}, {}% of {} objects are covered",
+					repositoryName, status.getCoverage(), status.bitmapObjects + status.uncachedObjects);
+			long start = System.currentTimeMillis();
+			new GC((FileRepository) repository).repack();
+			long duration = System.currentTimeMillis() - start;
+			scan(status, repository);
+			synchronized (status) {
+				status.lastRepack = new Date();
+				status.lastRepackDuration = duration;
+				status.repacks++;
+				status.lastError = null;
+			}
+			return true;
+		} catch (Exception e) {
+			logger.error("Error writing reachability bitmaps for {}", repositoryName, e);
+			synchronized (status) {
+				status.lastError = e.getMessage();
+			}
+			return false;
+		} finally {
+			if (locked) {
+				gcExecutor.releaseLock(repositoryName);
+			}
+			repository.close();
+		}
+	}
+
+	private void scan(BitmapStatus status, Repository repository) throws IOException {
+		long looseObjects = new GC((FileRepository) repository).getStatistics().numberOfLooseObjects;
+		long bitmapObjects = GarbageCollectorService.getBitmapObjectCount(repository);
+		long uncachedObjects = GarbageCollectorService.getUncachedObjectCount(repository, looseObjects);
+		synchronized (status) {
+			status.bitmapObjects = bitmapObjects;
+			status.uncachedObjects = uncachedObjects;
+			status.lastScan = new Date();
+		}
+	}
+
+	/**
+	 * Decays the heat of all repositories by the time elapsed since the last
+	 * decay.
+	 *
+	 * @param now
+	 */
+	void decay(long now) {
+		double factor = Math.pow(0.5d, ((double) Math.max(0, now - lastDecay)) / HEAT_HALF_LIFE);
+		lastDecay = now;
+		for (BitmapStatus status : repositories.values()) {
+			synchronized (status) {
+				status.heat *= factor;
+			}
+		}
+	}
+
+	private BitmapStatus track(String repositoryName) {
+		String key = repositoryName.toLowerCase();
+		BitmapStatus status = repositories.get(key);
+		if (status == null) {
+			status = new BitmapStatus(repositoryName);
+			BitmapStatus existing = repositories.putIfAbsent(key, status);
+			if (existing != null) {
+				status = existing;
+			}
+		}
+		return status;
+	}
+
+	private synchronized ExecutorService getMaintenanceExecutor() {
+		if (maintenanceExecutor == null) {
+			maintenanceExecutor = Executors.newSingleThreadExecutor(
+					new ThreadFactoryBuilder()
+						.setNameFormat("BitmapMaintenance-%s")
+						.setPriority(Thread.MIN_PRIORITY)
+						.setDaemon(true)
+						.build());
+		}
+		return maintenanceExecutor;
+	}
+}
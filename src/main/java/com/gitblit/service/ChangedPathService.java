@@ -0,0 +1,437 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.utils.ChangedPathIndex;
+import com.gitblit.utils.ChangedPathRevFilter;
+import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The Changed Path service maintains the {@link ChangedPathIndex} of the
+ * repositories and serves the history of paths.
+ *
+ * An index is built on a low-priority thread when the history of a path of
+ * its repository is first requested, and it is updated incrementally after
+ * every push.  Until the index is available the history is walked by diffing
+ * the trees of all commits.
+ *
+ * The commits of a path history are remembered per tip together with the
+ * commits where the walk stopped, so the next page of a history resumes the
+ * walk instead of walking the history again from its start.
+ */
+public class ChangedPathService {
+
+	private static final int MAX_HISTORIES = 256;
+
+	private final Logger logger = LoggerFactory.getLogger(ChangedPathService.class);
+
+	private final IStoredSettings settings;
+
+	private final IRepositoryManager repositoryManager;
+
+	private final long maximumWeight;
+
+	private final Cache<String, ChangedPathIndex> indexes;
+
+	private final Cache<String, History> histories;
+
+	private final Set<String> pendingUpdates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private ExecutorService updateExecutor;
+
+	/**
+	 * The commits of the history of a path which have been found so far and
+	 * the commits which the walk has still to visit.
+	 */
+	private static class History {
+
+		final List<ObjectId> ids;
+
+		final List<ObjectId> pending;
+
+		History(List<ObjectId> ids, List<ObjectId> pending) {
+			this.ids = ids;
+			this.pending = pending;
+		}
+
+		boolean isComplete() {
+			return pending.isEmpty();
+		}
+	}
+
+	/**
+	 * Tracks the commits which a walk has queued but not yet visited, i.e.
+	 * the parents of the visited commits which are left after the filter of
+	 * the path simplified the parents of merges.
+	 */
+	private static class PendingRevFilter extends RevFilter {
+
+		private final RevFilter filter;
+
+		private final Set<RevCommit> pending;
+
+		private final RevFlag visited;
+
+		PendingRevFilter(RevFilter filter, Set<RevCommit> pending, RevFlag visited) {
+			this.filter = filter;
+			this.pending = pending;
+			this.visited = visited;
+		}
+
+		@Override
+		public boolean include(RevWalk walker, RevCommit c) throws StopWalkException, MissingObjectException,
+				IncorrectObjectTypeException, IOException {
+			boolean include = filter.include(walker, c);
+			c.add(visited);
+			pending.remove(c);
+			for (RevCommit parent : c.getParents()) {
+				if (!parent.has(visited)) {
+					pending.add(parent);
+				}
+			}
+			return include;
+		}
+
+		@Override
+		public RevFilter clone() {
+			return new PendingRevFilter(filter.clone(), pending, visited);
+		}
+
+		@Override
+		public boolean requiresCommitBody() {
+			return filter.requiresCommitBody();
+		}
+	}
+
+	public ChangedPathService(
+			IStoredSettings settings,
+			IRepositoryManager repositoryManager) {
+
+		this.settings = settings;
+		this.repositoryManager = repositoryManager;
+		this.maximumWeight = Math.max(1, Math.min(Integer.MAX_VALUE,
+				settings.getFilesize(Keys.git.changedPathIndexCacheSize, 64 * 1024 * 1024L)));
+		// the cache evicts an entry which is heavier than its segment at once,
+		// so it has a single segment, and an index which is heavier than the
+		// whole cache is not cached at all
+		this.indexes = CacheBuilder.newBuilder()
+				.concurrencyLevel(1)
+				.maximumWeight(maximumWeight)
+				.weigher(new Weigher<String, ChangedPathIndex>() {
+					@Override
+					public int weigh(String key, ChangedPathIndex index) {
+						return (int) Math.min(Integer.MAX_VALUE, index.getMemoryUsage());
+					}
+				})
+				.build();
+		this.histories = CacheBuilder.newBuilder()
+				.maximumSize(MAX_HISTORIES)
+				.expireAfterAccess(10, TimeUnit.MINUTES)
+				.build();
+	}
+
+	public boolean isReady() {
+		return settings.getBoolean(Keys.git.enableChangedPathIndex, true);
+	}
+
+	public void close() {
+		synchronized (this) {
+			if (updateExecutor != null) {
+				updateExecutor.shutdownNow();
+			}
+		}
+		indexes.invalidateAll();
+		histories.invalidateAll();
+	}
+
+	/**
+	 * Forgets the cached index of a repository which has been renamed or
+	 * deleted.
+	 *
+	 * @param repositoryName
+	 */
+	public void close(String repositoryName) {
+		indexes.invalidate(repositoryName);
+	}
+
+	/**
+	 * Schedules an update of the index of a repository.  Updates requested
+	 * while an update is pending are coalesced.
+	 *
+	 * @param repositoryName
+	 */
+	public void scheduleUpdate(final String repositoryName) {
+		if (!isReady() || !pendingUpdates.add(repositoryName)) {
+			return;
+		}
+		try {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					pendingUpdates.remove(repositoryName);
+					update(repositoryName);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingUpdates.remove(repositoryName);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (updateExecutor == null) {
+			updateExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("ChangedPathIndex-%s")
+					.setPriority(Thread.MIN_PRIORITY)
+					.setDaemon(true)
+					.build());
+		}
+		return updateExecutor;
+	}
+
+	/**
+	 * Adds the commits reachable from the current refs of a repository to its
+	 * index and writes the index.
+	 *
+	 * @param repositoryName
+	 * @return the updated index or null if the repository does not exist
+	 */
+	public ChangedPathIndex update(String repositoryName) {
+		Repository repository = repositoryManager.getRepository(repositoryName);
+		if (repository == null) {
+			return null;
+		}
+		try {
+			File file = ChangedPathIndex.getFile(repository);
+			ChangedPathIndex index = indexes.getIfPresent(repositoryName);
+			if (index == null) {
+				index = ChangedPathIndex.read(file);
+			}
+			if (index == null) {
+				index = ChangedPathIndex.empty();
+			}
+			long start = System.currentTimeMillis();
+			ChangedPathIndex updated = index.update(repository);
+			if (updated != index || !file.exists()) {
+				updated.write(file);
+				logger.debug("indexed {} changed path filters of {} in {} msecs",
+						updated.size() - index.size(), repositoryName, System.currentTimeMillis() - start);
+			}
+			cache(repositoryName, updated);
+			return updated;
+		} catch (IOException e) {
+			logger.error("failed to update the changed path index of " + repositoryName, e);
+			return null;
+		} finally {
+			repository.close();
+		}
+	}
+
+	/**
+	 * Returns the index of a repository.  If the index has not been built, the
+	 * build is scheduled and null is returned.  An index read from disk may be
+	 * missing the commits pushed since its last update, which therefore is
+	 * scheduled too.  An index which is larger than the cache is not used.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @return the index or null
+	 */
+	public ChangedPathIndex getIndex(String repositoryName, Repository repository) {
+		ChangedPathIndex index = indexes.getIfPresent(repositoryName);
+		if (index != null) {
+			return index;
+		}
+		File file = ChangedPathIndex.getFile(repository);
+		if (file.length() > maximumWeight) {
+			logger.debug("the changed path index of {} is larger than the cache", repositoryName);
+			return null;
+		}
+		try {
+			index = ChangedPathIndex.read(file);
+			if (index != null) {
+				cache(repositoryName, index);
+			}
+		} catch (IOException e) {
+			logger.warn("failed to read the changed path index of " + repositoryName, e);
+		}
+		scheduleUpdate(repositoryName);
+		return index;
+	}
+
+	private void cache(String repositoryName, ChangedPathIndex index) {
+		if (index.getMemoryUsage() <= maximumWeight) {
+			indexes.put(repositoryName, index);
+		} else {
+			indexes.invalidate(repositoryName);
+		}
+	}
+
+	/**
+	 * Returns a page of the history of a path.  The history of a tip is walked
+	 * one page ahead of the requested page and the commits found are
+	 * remembered with the state of the walk, so that paging forward continues
+	 * the walk where the previous page stopped.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param path
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all commits are returned
+	 * @return a paged list of commits
+	 */
+	public List<RevCommit> getRevLog(String repositoryName, Repository repository, String objectId, String path,
+			int offset, int maxCount) {
+		if (!isReady() || StringUtils.isEmpty(path) || maxCount == 0 || !JGitUtils.hasCommits(repository)) {
+			return JGitUtils.getRevLog(repository, objectId, path, offset, maxCount);
+		}
+		ChangedPathIndex index = getIndex(repositoryName, repository);
+		if (!StringUtils.isEmpty(objectId) && objectId.contains("..")) {
+			return JGitUtils.getRevLog(repository, objectId, path, offset, maxCount, index);
+		}
+		ObjectId tip;
+		try {
+			tip = StringUtils.isEmpty(objectId) ? JGitUtils.getDefaultBranch(repository)
+					: repository.resolve(objectId);
+		} catch (Exception e) {
+			tip = null;
+		}
+		if (tip == null) {
+			return new ArrayList<RevCommit>();
+		}
+
+		String key = repositoryName + ':' + tip.name() + ':' + path;
+		int wanted = maxCount < 0 ? -1 : offset + maxCount;
+		History history = histories.getIfPresent(key);
+		if (history == null) {
+			history = new History(Collections.<ObjectId> emptyList(), Collections.singletonList(tip.copy()));
+		}
+		if (!history.isComplete() && (wanted < 0 || history.ids.size() < wanted)) {
+			int limit = maxCount < 0 ? -1 : offset + 2 * maxCount;
+			history = walk(repository, history, path, index, limit);
+			if (history == null) {
+				return new ArrayList<RevCommit>();
+			}
+			histories.put(key, history);
+		}
+		return parseCommits(repository, history.ids, offset, maxCount);
+	}
+
+	/**
+	 * Continues the walk of a history until it has found limit commits.
+	 *
+	 * @return the extended history or null if the walk failed
+	 */
+	private History walk(Repository repository, History history, String path, ChangedPathIndex index, int limit) {
+		List<ObjectId> ids = new ArrayList<ObjectId>(history.ids);
+		Set<ObjectId> found = new HashSet<ObjectId>(history.ids);
+		Set<RevCommit> pending = new LinkedHashSet<RevCommit>();
+		try (RevWalk rw = new RevWalk(repository)) {
+			for (ObjectId id : history.pending) {
+				RevCommit commit = rw.parseCommit(id);
+				rw.markStart(commit);
+				pending.add(commit);
+			}
+			RevFilter filter;
+			if (index == null) {
+				filter = new TreeRevFilter(rw, AndTreeFilter.create(
+						PathFilterGroup.createFromStrings(Collections.singleton(path)),
+						TreeFilter.ANY_DIFF));
+			} else {
+				filter = new ChangedPathRevFilter(rw, path, index);
+			}
+			rw.setRevFilter(new PendingRevFilter(filter, pending, rw.newFlag("visited")));
+			// the iterator of the walk looks one commit ahead, which would be
+			// lost for the next page
+			RevCommit commit;
+			while ((commit = rw.next()) != null) {
+				// a commit dated before its parent may be visited again
+				if (found.add(commit)) {
+					ids.add(commit.copy());
+				}
+				if (limit > 0 && ids.size() >= limit) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			logger.error("failed to walk the history of " + path + " in " + repository.getDirectory(), e);
+			return null;
+		}
+		List<ObjectId> rest = new ArrayList<ObjectId>(pending.size());
+		for (RevCommit commit : pending) {
+			rest.add(commit.copy());
+		}
+		return new History(ids, rest);
+	}
+
+	private List<RevCommit> parseCommits(Repository repository, List<ObjectId> ids, int offset, int maxCount) {
+		List<RevCommit> commits = new ArrayList<RevCommit>();
+		try (RevWalk rw = new RevWalk(repository)) {
+			for (ObjectId id : page(ids, offset, maxCount)) {
+				commits.add(rw.parseCommit(id));
+			}
+		} catch (IOException e) {
+			logger.error("failed to parse the history of " + repository.getDirectory(), e);
+		}
+		return commits;
+	}
+
+	private static <X> List<X> page(List<X> list, int offset, int maxCount) {
+		int from = Math.min(Math.max(0, offset), list.size());
+		int to = maxCount < 0 ? list.size() : Math.min(list.size(), from + maxCount);
+		return new ArrayList<X>(list.subList(from, to));
+	}
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Substring and regular expression search of the blobs of the Lucene index.
+ *
+ * The content of a blob is indexed as its lower-cased trigrams.  A query is
+ * reduced to the literals which every match must contain; the blobs which
+ * contain all trigrams of these literals are the candidates, which are
+ * verified with the regular expression to find the matching lines.  A text
+ * of less than three characters verifies all blobs, a regular expression
+ * without a literal of at least three characters is rejected.  The regular
+ * expression is matched against a content which stops the match when the
+ * deadline of the search has passed.
+ */
+class CodeSearch {
+
+	/**
+	 * The trigrams are only indexed to select the candidates of a query.
+	 */
+	static final FieldType TRIGRAMS = new FieldType();
+
+	static {
+		TRIGRAMS.setIndexOptions(IndexOptions.DOCS);
+		TRIGRAMS.setTokenized(true);
+		TRIGRAMS.setOmitNorms(true);
+		TRIGRAMS.freeze();
+	}
+
+	private static final int GRAM = 3;
+
+	private final String text;
+
+	private final Pattern pattern;
+
+	private final List<String> literals;
+
+	/**
+	 * @param text
+	 *            the text or the regular expression to find
+	 * @param regex
+	 *            true if the text is a regular expression.  A literal text
+	 *            is matched case-insensitively unless it contains upper-case
+	 *            characters.
+	 * @throws IllegalArgumentException
+	 *             if the regular expression is invalid or if it has no literal
+	 *             of at least three characters
+	 */
+	CodeSearch(String text, boolean regex) {
+		this.text = text;
+		if (regex) {
+			this.pattern = Pattern.compile(text, Pattern.MULTILINE);
+			this.literals = getLiterals(text);
+			if (!hasTrigram(literals)) {
+				throw new IllegalArgumentException(MessageFormat.format(
+						"the regular expression {0} has no literal of at least {1} characters", text, GRAM));
+			}
+		} else {
+			int flags = text.equals(text.toLowerCase()) ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+			this.pattern = Pattern.compile(Pattern.quote(text), flags);
+			this.literals = new ArrayList<String>();
+			this.literals.add(text);
+		}
+	}
+
+	/**
+	 * Returns the analyzer which splits a text into its lower-cased trigrams.
+	 */
+	static Analyzer newTrigramAnalyzer() {
+		return new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new NGramTokenizer(GRAM, GRAM);
+				return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+			}
+		};
+	}
+
+	/**
+	 * Returns the query of the candidates, i.e. of the documents which contain
+	 * all trigrams of the literals of the search.
+	 *
+	 * @param field
+	 *            the field of the trigrams
+	 * @param filter
+	 *            the query which restricts the candidates, e.g. to blobs
+	 * @return the query of the candidates
+	 */
+	Query getCandidateQuery(String field, Query filter) {
+		Set<String> trigrams = new LinkedHashSet<String>();
+		for (String literal : literals) {
+			String value = literal.toLowerCase();
+			for (int i = 0; i + GRAM <= value.length(); i++) {
+				trigrams.add(value.substring(i, i + GRAM));
+			}
+		}
+		BooleanQuery.Builder bldr = new BooleanQuery.Builder();
+		bldr.add(filter, Occur.FILTER);
+		for (String trigram : trigrams) {
+			bldr.add(new TermQuery(new Term(field, trigram)), Occur.FILTER);
+		}
+		return bldr.build();
+	}
+
+	List<String> getLiterals() {
+		return literals;
+	}
+
+	private static boolean hasTrigram(List<String> literals) {
+		for (String literal : literals) {
+			if (literal.length() >= GRAM) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the html fragment of the matching lines of the content.
+	 *
+	 * @param content
+	 * @param path
+	 *            the path of the blob, which selects the language of the
+	 *            syntax highlighting
+	 * @param maxLines
+	 *            the maximum number of lines in the fragment
+	 * @param deadline
+	 *            the {@link System#nanoTime()} at which the match is stopped,
+	 *            0 if the match is not limited
+	 * @return the html fragment or null if the content does not match
+	 * @throws DeadlineExceededException
+	 *             if the deadline has passed
+	 */
+	String getFragment(String content, String path, int maxLines, long deadline) {
+		if (content == null) {
+			return null;
+		}
+		String lang = "";
+		String ext = StringUtils.getFileExtension(path).toLowerCase();
+		if (!StringUtils.isEmpty(ext)) {
+			// maintain leading space!
+			lang = " lang-" + ext;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		Matcher matcher = pattern.matcher(deadline == 0 ? content : new DeadlineCharSequence(content, deadline));
+		int lines = 0;
+		int line = 1;
+		int position = 0;
+		int lineStart = 0;
+		// the end of the line of the last match, the content is appended up
+		// to the highlighted index
+		int lineEnd = -1;
+		int highlighted = 0;
+		while (matcher.find()) {
+			if (matcher.end() == matcher.start()) {
+				// an empty match does not select a line
+				continue;
+			}
+			if (matcher.start() > lineEnd) {
+				if (lineEnd >= 0) {
+					closeLine(sb, content.substring(highlighted, lineEnd));
+					if (lines == maxLines) {
+						lineEnd = -1;
+						break;
+					}
+					sb.append("<span class=\"ellipses\">...</span><br/>");
+				}
+				// count the lines up to the match
+				for (; position < matcher.start(); position++) {
+					if (content.charAt(position) == '\n') {
+						line++;
+						lineStart = position + 1;
+					}
+				}
+				lineEnd = content.indexOf('\n', matcher.start());
+				if (lineEnd < 0) {
+					lineEnd = content.length();
+				}
+				sb.append(MessageFormat.format("<pre class=\"prettyprint linenums:{0,number,0}{1}\">", line, lang));
+				highlighted = lineStart;
+				lines++;
+			}
+			// highlight the match up to the end of its first line
+			int end = Math.min(matcher.end(), lineEnd);
+			sb.append(StringUtils.escapeForHtml(content.substring(highlighted, matcher.start()), false));
+			sb.append("<span class=\"highlight\">");
+			sb.append(StringUtils.escapeForHtml(content.substring(matcher.start(), end), false));
+			sb.append("</span>");
+			highlighted = end;
+		}
+		if (lines == 0) {
+			return null;
+		}
+		if (lineEnd >= 0) {
+			closeLine(sb, content.substring(highlighted, lineEnd));
+		}
+		return sb.toString();
+	}
+
+	private void closeLine(StringBuilder sb, String rest) {
+		if (rest.endsWith("\r")) {
+			rest = rest.substring(0, rest.length() - 1);
+		}
+		sb.append(StringUtils.escapeForHtml(rest, false));
+		sb.append("</pre>");
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	/**
+	 * Thrown when a search has passed its deadline.
+	 */
+	static class DeadlineExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		DeadlineExceededException() {
+			super("the deadline of the code search has passed");
+		}
+	}
+
+	/**
+	 * Content which checks the deadline while the regular expression reads
+	 * it, a catastrophic backtracking is stopped by its reads.
+	 */
+	private static class DeadlineCharSequence implements CharSequence {
+
+		private static final int CHECK_INTERVAL = 1024;
+
+		private final CharSequence content;
+
+		private final long deadline;
+
+		private int reads;
+
+		DeadlineCharSequence(CharSequence content, long deadline) {
+			this.content = content;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (++reads == CHECK_INTERVAL) {
+				reads = 0;
+				if (System.nanoTime() - deadline > 0) {
+					throw new DeadlineExceededException();
+				}
+			}
+			return content.charAt(index);
+		}
+
+		@Override
+		public int length() {
+			return content.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new DeadlineCharSequence(content.subSequence(start, end), deadline);
+		}
+
+		@Override
+		public String toString() {
+			return content.toString();
+		}
+	}
+
+	/**
+	 * Returns the literals which every match of the regular expression must
+	 * contain.  Groups, character classes and escapes are skipped and an
+	 * alternation outside of a group has no required literal.
+	 *
+	 * @param regex
+	 * @return the required literals
+	 */
+	static List<String> getLiterals(String regex) {
+		List<String> literals = new ArrayList<String>();
+		StringBuilder run = new StringBuilder();
+		int depth = 0;
+		boolean lastIsLiteral = false;
+		int length = regex.length();
+		for (int i = 0; i < length; i++) {
+			char c = regex.charAt(i);
+			if (c == '\\' && i + 1 < length) {
+				char next = regex.charAt(++i);
+				if (next == 'Q') {
+					// quoted literal up to \E
+					int end = regex.indexOf("\\E", i + 1);
+					String quoted = end < 0 ? regex.substring(i + 1) : regex.substring(i + 1, end);
+					i = end < 0 ? length : end + 1;
+					if (depth == 0 && quoted.length() > 0) {
+						// a quantifier applies to the last quoted character
+						run.append(quoted);
+						lastIsLiteral = true;
+					}
+					continue;
+				}
+				if (depth == 0 && !Character.isLetterOrDigit(next)) {
+					run.append(next);
+					lastIsLiteral = true;
+				} else {
+					// a character class, a back reference or a character code
+					flush(literals, run);
+					i = skipEscape(regex, i);
+					lastIsLiteral = false;
+				}
+				continue;
+			}
+			switch (c) {
+			case '(':
+				flush(literals, run);
+				depth++;
+				lastIsLiteral = false;
+				break;
+			case ')':
+				depth = Math.max(0, depth - 1);
+				lastIsLiteral = false;
+				break;
+			case '[':
+				flush(literals, run);
+				i = skipClass(regex, i);
+				lastIsLiteral = false;
+				break;
+			case '|':
+				if (depth == 0) {
+					literals.clear();
+					return literals;
+				}
+				break;
+			case '*':
+			case '?':
+			case '{':
+				// the previous character is optional
+				if (depth == 0 && lastIsLiteral && run.length() > 0) {
+					run.setLength(run.length() - 1);
+				}
+				flush(literals, run);
+				if (c == '{') {
+					int end = regex.indexOf('}', i);
+					i = end < 0 ? length : end;
+				}
+				// skip a lazy or possessive modifier
+				if (i + 1 < length && (regex.charAt(i + 1) == '?' || regex.charAt(i + 1) == '+')) {
+					i++;
+				}
+				lastIsLiteral = false;
+				break;
+			case '+':
+				flush(literals, run);
+				if (i + 1 < length && (regex.charAt(i + 1) == '?' || regex.charAt(i + 1) == '+')) {
+					i++;
+				}
+				lastIsLiteral = false;
+				break;
+			case '.':
+			case '^':
+			case '$':
+				flush(literals, run);
+				lastIsLiteral = false;
+				break;
+			default:
+				if (depth == 0) {
+					run.append(c);
+					lastIsLiteral = true;
+				}
+				break;
+			}
+		}
+		flush(literals, run);
+		return literals;
+	}
+
+	private static void flush(List<String> literals, StringBuilder run) {
+		if (run.length() > 0) {
+			literals.add(run.toString());
+			run.setLength(0);
+		}
+	}
+
+	/**
+	 * Returns the index of the last character of an escape whose letter or
+	 * digit is at the given index, i.e. of the digits of a hexadecimal, octal or
+	 * unicode escape, of the name of a property or of a control character.
+	 */
+	private static int skipEscape(String regex, int start) {
+		int length = regex.length();
+		char c = regex.charAt(start);
+		int end;
+		switch (c) {
+		case 'x':
+			if (start + 1 < length && regex.charAt(start + 1) == '{') {
+				end = regex.indexOf('}', start + 1);
+				return end < 0 ? length - 1 : end;
+			}
+			return skipDigits(regex, start, 2, 16);
+		case 'u':
+			return skipDigits(regex, start, 4, 16);
+		case '0':
+			// up to three octal digits, the first of three at most 3
+			int max = start + 1 < length && regex.charAt(start + 1) <= '3' ? 3 : 2;
+			return skipDigits(regex, start, max, 8);
+		case 'c':
+			return Math.min(start + 1, length - 1);
+		case 'p':
+		case 'P':
+		case 'N':
+			if (start + 1 < length && regex.charAt(start + 1) == '{') {
+				end = regex.indexOf('}', start + 1);
+				return end < 0 ? length - 1 : end;
+			}
+			return Math.min(start + 1, length - 1);
+		case 'k':
+			if (start + 1 < length && regex.charAt(start + 1) == '<') {
+				end = regex.indexOf('>', start + 1);
+				return end < 0 ? length - 1 : end;
+			}
+			return start;
+		default:
+			if (c >= '1' && c <= '9') {
+				// a back reference
+				return skipDigits(regex, start, length, 10);
+			}
+			return start;
+		}
+	}
+
+	/**
+	 * Returns the index of the last of at most max digits following the given
+	 * index.
+	 */
+	private static int skipDigits(String regex, int start, int max, int radix) {
+		int i = start;
+		while (i - start < max && i + 1 < regex.length() && Character.digit(regex.charAt(i + 1), radix) >= 0) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of the closing bracket of a character class.
+	 */
+	private static int skipClass(String regex, int start) {
+		int i = start + 1;
+		if (i < regex.length() && regex.charAt(i) == '^') {
+			i++;
+		}
+		if (i < regex.length() && regex.charAt(i) == ']') {
+			// a leading bracket is a literal
+			i++;
+		}
+		int depth = 1;
+		for (; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']' && --depth == 0) {
+				return i;
+			}
+		}
+		return regex.length();
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.Constants.SearchType;
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.utils.CommitMetadataIndex;
+import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The Commit Metadata service maintains the {@link CommitMetadataIndex} of the
+ * repositories and answers the commit searches from it.
+ *
+ * An index is read or built on a low-priority thread when its repository is
+ * first searched, and it is updated incrementally after every push.  Only
+ * this thread reads, repairs and writes the index files.  A search of a
+ * commit which is not indexed yet walks the history like before.
+ */
+public class CommitMetadataService {
+
+	private final Logger logger = LoggerFactory.getLogger(CommitMetadataService.class);
+
+	private final IStoredSettings settings;
+
+	private final IRepositoryManager repositoryManager;
+
+	private final long maximumWeight;
+
+	private final Cache<String, CommitMetadataIndex> indexes;
+
+	private final Set<String> pendingUpdates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private ExecutorService updateExecutor;
+
+	public CommitMetadataService(
+			IStoredSettings settings,
+			IRepositoryManager repositoryManager) {
+
+		this.settings = settings;
+		this.repositoryManager = repositoryManager;
+		this.maximumWeight = Math.max(1, Math.min(Integer.MAX_VALUE,
+				settings.getFilesize(Keys.git.commitMetadataIndexCacheSize, 64 * 1024 * 1024L)));
+		// the cache evicts an entry which is heavier than its segment at once,
+		// so it has a single segment, and an index which is heavier than the
+		// whole cache is not cached at all
+		this.indexes = CacheBuilder.newBuilder()
+				.concurrencyLevel(1)
+				.maximumWeight(maximumWeight)
+				.weigher(new Weigher<String, CommitMetadataIndex>() {
+					@Override
+					public int weigh(String key, CommitMetadataIndex index) {
+						return (int) Math.min(Integer.MAX_VALUE, index.getMemoryUsage());
+					}
+				})
+				.build();
+	}
+
+	public boolean isReady() {
+		return settings.getBoolean(Keys.git.enableCommitMetadataIndex, true);
+	}
+
+	public void close() {
+		synchronized (this) {
+			if (updateExecutor != null) {
+				updateExecutor.shutdownNow();
+			}
+		}
+		indexes.invalidateAll();
+	}
+
+	/**
+	 * Forgets the cached index of a repository which has been renamed or
+	 * deleted.
+	 *
+	 * @param repositoryName
+	 */
+	public void close(String repositoryName) {
+		indexes.invalidate(repositoryName);
+	}
+
+	/**
+	 * Schedules an update of the index of a repository.  Updates requested
+	 * while an update is pending are coalesced.
+	 *
+	 * @param repositoryName
+	 */
+	public void scheduleUpdate(final String repositoryName) {
+		if (!isReady() || !pendingUpdates.add(repositoryName)) {
+			return;
+		}
+		try {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					pendingUpdates.remove(repositoryName);
+					update(repositoryName);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingUpdates.remove(repositoryName);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (updateExecutor == null) {
+			updateExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("CommitMetadataIndex-%s")
+					.setPriority(Thread.MIN_PRIORITY)
+					.setDaemon(true)
+					.build());
+		}
+		return updateExecutor;
+	}
+
+	/**
+	 * Adds the commits reachable from the current refs of a repository to its
+	 * index and writes the index.
+	 *
+	 * @param repositoryName
+	 * @return the updated index or null if the repository does not exist or
+	 *         its index is larger than the cache
+	 */
+	public CommitMetadataIndex update(String repositoryName) {
+		Repository repository = repositoryManager.getRepository(repositoryName);
+		if (repository == null) {
+			return null;
+		}
+		try {
+			File file = CommitMetadataIndex.getFile(repository);
+			CommitMetadataIndex index = indexes.getIfPresent(repositoryName);
+			if (index == null) {
+				if (file.length() > maximumWeight) {
+					logger.debug("the commit metadata index of {} is larger than the cache", repositoryName);
+					return null;
+				}
+				index = read(repositoryName, file);
+				if (index.size() > 0) {
+					// search the commits indexed so far during the update
+					cache(repositoryName, index);
+				}
+			}
+			long start = System.currentTimeMillis();
+			int count = index.update(repository);
+			index.write(file);
+			cache(repositoryName, index);
+			if (count > 0) {
+				logger.debug("indexed the metadata of {} commits of {} in {} msecs", count, repositoryName,
+						System.currentTimeMillis() - start);
+			}
+			return index;
+		} catch (IOException e) {
+			logger.error("failed to update the commit metadata index of " + repositoryName, e);
+			return null;
+		} finally {
+			repository.close();
+		}
+	}
+
+	private void cache(String repositoryName, CommitMetadataIndex index) {
+		if (index.getMemoryUsage() <= maximumWeight) {
+			indexes.put(repositoryName, index);
+		} else {
+			indexes.invalidate(repositoryName);
+		}
+	}
+
+	private CommitMetadataIndex read(String repositoryName, File file) {
+		CommitMetadataIndex index = null;
+		try {
+			index = CommitMetadataIndex.read(file);
+		} catch (IOException e) {
+			logger.warn("failed to read the commit metadata index of " + repositoryName, e);
+		}
+		if (index == null) {
+			// missing or of another version, the next write replaces the file
+			index = CommitMetadataIndex.empty();
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the cached index of a repository.  If the index is not cached,
+	 * the update of the repository, which reads or builds the index, is
+	 * scheduled and null is returned.
+	 *
+	 * @param repositoryName
+	 * @return the index or null
+	 */
+	private CommitMetadataIndex getIndex(String repositoryName) {
+		CommitMetadataIndex index = indexes.getIfPresent(repositoryName);
+		if (index == null) {
+			scheduleUpdate(repositoryName);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the cached index of a repository.  Intended for testing purposes
+	 * only.
+	 */
+	CommitMetadataIndex getCachedIndex(String repositoryName) {
+		return indexes.getIfPresent(repositoryName);
+	}
+
+	/**
+	 * Returns a page of the commits of a branch which match a search value,
+	 * like {@link JGitUtils#searchRevlogs}.  If the branch is not indexed yet,
+	 * its history is walked.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param value
+	 * @param type
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all matches are returned
+	 * @return matching list of commits
+	 */
+	public List<RevCommit> searchRevlogs(String repositoryName, Repository repository, String objectId,
+			String value, SearchType type, int offset, int maxCount) {
+		if (!isReady() || StringUtils.isEmpty(value) || maxCount == 0 || !JGitUtils.hasCommits(repository)) {
+			return JGitUtils.searchRevlogs(repository, objectId, value, type, offset, maxCount);
+		}
+		CommitMetadataIndex index = getIndex(repositoryName);
+		if (index == null) {
+			return JGitUtils.searchRevlogs(repository, objectId, value, type, offset, maxCount);
+		}
+		try (RevWalk rw = new RevWalk(repository)) {
+			ObjectId tip = StringUtils.isEmpty(objectId) ? JGitUtils.getDefaultBranch(repository)
+					: repository.resolve(objectId);
+			if (tip == null) {
+				return new ArrayList<RevCommit>();
+			}
+			List<ObjectId> ids = index.search(rw.parseCommit(tip), value, type, offset, maxCount);
+			if (ids == null) {
+				// pushed after the last update
+				scheduleUpdate(repositoryName);
+				return JGitUtils.searchRevlogs(repository, objectId, value, type, offset, maxCount);
+			}
+			List<RevCommit> commits = new ArrayList<RevCommit>(ids.size());
+			for (ObjectId id : ids) {
+				commits.add(rw.parseCommit(id));
+			}
+			return commits;
+		} catch (Exception e) {
+			logger.error("failed to search the commits of " + repositoryName + " for " + value, e);
+			return new ArrayList<RevCommit>();
+		}
+	}
+}
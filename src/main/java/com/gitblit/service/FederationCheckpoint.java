@@ -0,0 +1,233 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.Ref;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.utils.FileUtils;
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Persisted progress of a federation pull.
+ *
+ * The checkpoint records a digest of the ref advertisement of every repository
+ * which has been synchronized from the origin Gitblit instance.  Progress is
+ * appended to a journal file after each repository completes so an interrupted
+ * pull resumes where it stopped and repositories whose advertised tips are
+ * unchanged are not fetched again.  The journal is compacted at the start of
+ * each pull.
+ */
+public class FederationCheckpoint {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FederationCheckpoint.class);
+
+	private static final String STARTED = "started";
+
+	private static final String COMPLETED = "completed";
+
+	private static final String TIP = "tip";
+
+	private static final String RESET = "reset";
+
+	private final File file;
+
+	private final Map<String, String> tips;
+
+	private long started;
+
+	private long completed;
+
+	private FederationCheckpoint(File file) {
+		this.file = file;
+		this.tips = new TreeMap<String, String>();
+	}
+
+	/**
+	 * Reads the checkpoint from the specified journal file.  A missing or
+	 * unreadable journal results in an empty checkpoint.
+	 *
+	 * @param file
+	 * @return a checkpoint
+	 */
+	public static FederationCheckpoint read(File file) {
+		FederationCheckpoint checkpoint = new FederationCheckpoint(file);
+		if (!file.exists()) {
+			return checkpoint;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String [] fields = line.split(" ", 3);
+				try {
+					if (STARTED.equals(fields[0]) && fields.length == 2) {
+						checkpoint.started = Long.parseLong(fields[1]);
+					} else if (COMPLETED.equals(fields[0]) && fields.length == 2) {
+						checkpoint.completed = Long.parseLong(fields[1]);
+					} else if (TIP.equals(fields[0]) && fields.length == 3) {
+						checkpoint.tips.put(fields[2], fields[1]);
+					} else if (RESET.equals(fields[0]) && fields.length == 2) {
+						checkpoint.tips.remove(fields[1]);
+					}
+				} catch (NumberFormatException e) {
+					// partially written entry of an interrupted pull
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Failed to read federation checkpoint {}, starting over", file, e);
+			checkpoint.tips.clear();
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Computes a digest of a ref advertisement.  The digest is independent of
+	 * the order of the refs.
+	 *
+	 * @param refs
+	 * @return the digest
+	 */
+	public static String digest(Collection<Ref> refs) {
+		List<String> lines = new ArrayList<String>();
+		for (Ref ref : refs) {
+			if (ref.getObjectId() == null) {
+				continue;
+			}
+			lines.add(ref.getName() + " " + ref.getObjectId().getName());
+		}
+		Collections.sort(lines);
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		return StringUtils.getSHA1(sb.toString());
+	}
+
+	/**
+	 * Returns true if the previous pull was interrupted before it completed.
+	 */
+	public synchronized boolean isInterrupted() {
+		return started > 0 && completed < started;
+	}
+
+	public synchronized int size() {
+		return tips.size();
+	}
+
+	/**
+	 * Returns true if the repository was synchronized with the specified
+	 * advertisement digest.
+	 *
+	 * @param repository
+	 * @param digest
+	 * @return true if the repository is unchanged
+	 */
+	public synchronized boolean isUnchanged(String repository, String digest) {
+		return digest != null && digest.equals(tips.get(repository));
+	}
+
+	/**
+	 * Marks the start of a pull and compacts the journal.
+	 */
+	public synchronized void start() {
+		started = System.currentTimeMillis();
+		StringBuilder sb = new StringBuilder();
+		sb.append(STARTED).append(' ').append(started).append('\n');
+		for (Map.Entry<String, String> entry : tips.entrySet()) {
+			sb.append(TIP).append(' ').append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+		}
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		FileUtils.writeContent(temp, sb.toString());
+		if (file.exists() && !file.delete()) {
+			LOGGER.warn("Failed to replace federation checkpoint {}", file);
+			return;
+		}
+		if (!temp.renameTo(file)) {
+			LOGGER.warn("Failed to write federation checkpoint {}", file);
+		}
+	}
+
+	/**
+	 * Records that the repository has been synchronized.
+	 *
+	 * @param repository
+	 * @param digest
+	 */
+	public synchronized void update(String repository, String digest) {
+		tips.put(repository, digest);
+		append(TIP + " " + digest + " " + repository);
+	}
+
+	/**
+	 * Forgets the repository so that it is fetched on the next pull.
+	 *
+	 * @param repository
+	 */
+	public synchronized void reset(String repository) {
+		if (tips.remove(repository) != null) {
+			append(RESET + " " + repository);
+		}
+	}
+
+	public synchronized void complete() {
+		completed = System.currentTimeMillis();
+		append(COMPLETED + " " + completed);
+	}
+
+	private void append(String entry) {
+		Writer writer = null;
+		try {
+			writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+			writer.write(entry);
+			writer.write('\n');
+		} catch (IOException e) {
+			LOGGER.warn("Failed to update federation checkpoint {}", file, e);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -16,7 +17,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -45,6 +52,7 @@ import com.gitblit.utils.FileUtils;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.JGitUtils.CloneResult;
 import com.gitblit.utils.StringUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public abstract class FederationPullService implements Runnable {
 
@@ -92,7 +100,12 @@ public abstract class FederationPullService implements Runnable {
 			FederationPullStatus was = registration.getLowestStatus();
 			try {
 				Date now = new Date(System.currentTimeMillis());
+				long start = System.nanoTime();
 				pull(registration);
+				registration.lastPullDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				logger.info(MessageFormat.format("Pulled {0} repositories from {1} @ {2} in {3} msecs ({4} fetched, {5} unchanged, {6} failed)",
+						registration.lastPullRepositories, registration.name, registration.url, registration.lastPullDuration,
+						registration.lastPullFetched, registration.lastPullUnchanged, registration.lastPullFailed));
 				sendStatusAcknowledgment(registration);
 				registration.lastPull = now;
 				FederationPullStatus is = registration.getLowestStatus();
@@ -122,10 +135,10 @@ public abstract class FederationPullService implements Runnable {
 	 * @param registration
 	 * @throws Exception
 	 */
-	private void pull(FederationModel registration) throws Exception {
+	private void pull(final FederationModel registration) throws Exception {
 		Map<String, RepositoryModel> repositories = FederationUtils.getRepositories(registration,
 				true);
-		String registrationFolder = registration.folder.toLowerCase().trim();
+		final String registrationFolder = registration.folder.toLowerCase().trim();
 		// confirm valid characters in server alias
 		Character c = StringUtils.findInvalidCharacter(registrationFolder);
 		if (c != null) {
@@ -134,166 +147,67 @@ public abstract class FederationPullService implements Runnable {
 			return;
 		}
 		File repositoriesFolder = gitblit.getRepositoriesFolder();
-		File registrationFolderFile = new File(repositoriesFolder, registrationFolder);
+		final File registrationFolderFile = new File(repositoriesFolder, registrationFolder);
 		registrationFolderFile.mkdirs();
 
-		// Clone/Pull the repository
-		for (Map.Entry<String, RepositoryModel> entry : repositories.entrySet()) {
-			String cloneUrl = entry.getKey();
-			RepositoryModel repository = entry.getValue();
-			if (!repository.hasCommits) {
-				logger.warn("Skipping federated repository {} from {} @ {}. Repository is EMPTY.",
-						repository.name, registration.name, registration.url);
-				registration.updateStatus(repository, FederationPullStatus.SKIPPED);
-				continue;
-			}
-
-			// Determine local repository name
-			String repositoryName;
-			if (StringUtils.isEmpty(registrationFolder)) {
-				repositoryName = repository.name;
-			} else {
-				repositoryName = registrationFolder + "/" + repository.name;
-			}
-
-			if (registration.bare) {
-				// bare repository, ensure .git suffix
-				if (!repositoryName.toLowerCase().endsWith(DOT_GIT_EXT)) {
-					repositoryName += DOT_GIT_EXT;
-				}
-			} else {
-				// normal repository, strip .git suffix
-				if (repositoryName.toLowerCase().endsWith(DOT_GIT_EXT)) {
-					repositoryName = repositoryName.substring(0,
-							repositoryName.indexOf(DOT_GIT_EXT));
-				}
-			}
-
-			// confirm that the origin of any pre-existing repository matches
-			// the clone url
-			String fetchHead = null;
-			Repository existingRepository = gitblit.getRepository(repositoryName);
-
-			if (existingRepository == null && gitblit.isCollectingGarbage(repositoryName)) {
-				logger.warn("Skipping local repository {}, busy collecting garbage", repositoryName);
-				continue;
-			}
-
-			if (existingRepository != null) {
-				StoredConfig config = existingRepository.getConfig();
-				config.load();
-				String origin = config.getString("remote", "origin", "url");
-				RevCommit commit = JGitUtils.getCommit(existingRepository,
-						org.eclipse.jgit.lib.Constants.FETCH_HEAD);
-				if (commit != null) {
-					fetchHead = commit.getName();
-				}
-				existingRepository.close();
-				if (!origin.startsWith(registration.url)) {
-					logger.warn("Skipping federated repository {} from {} @ {}. Origin does not match, consider EXCLUDING.",
-									repository.name, registration.name, registration.url);
-					registration.updateStatus(repository, FederationPullStatus.SKIPPED);
-					continue;
-				}
-			}
-
-			// clone/pull this repository
-			CredentialsProvider credentials = new UsernamePasswordCredentialsProvider(
-					Constants.FEDERATION_USER, registration.token);
-			logger.info("Pulling federated repository {} from {} @ {}", repository.name, registration.name, registration.url);
-
-			CloneResult result = JGitUtils.cloneRepository(registrationFolderFile, repository.name,
-					cloneUrl, registration.bare, credentials);
-			Repository r = gitblit.getRepository(repositoryName);
-			RepositoryModel rm = gitblit.getRepositoryModel(repositoryName);
-			repository.isFrozen = registration.mirror;
-			if (result.createdRepository) {
-				// default local settings
-				repository.federationStrategy = FederationStrategy.EXCLUDE;
-				repository.isFrozen = registration.mirror;
-				repository.showRemoteBranches = !registration.mirror;
-				logger.info("     cloning {}", repository.name);
-				registration.updateStatus(repository, FederationPullStatus.MIRRORED);
-			} else {
-				// fetch and update
-				boolean fetched = false;
-				RevCommit commit = JGitUtils.getCommit(r, org.eclipse.jgit.lib.Constants.FETCH_HEAD);
-				String newFetchHead = commit.getName();
-				fetched = fetchHead == null || !fetchHead.equals(newFetchHead);
-
-				if (registration.mirror) {
-					// mirror
-					if (fetched) {
-						// update local branches to match the remote tracking branches
-						for (RefModel ref : JGitUtils.getRemoteBranches(r, false, -1)) {
-							if (ref.displayName.startsWith("origin/")) {
-								String branch = org.eclipse.jgit.lib.Constants.R_HEADS
-										+ ref.displayName.substring(ref.displayName.indexOf('/') + 1);
-								String hash = ref.getReferencedObjectId().getName();
-
-								JGitUtils.setBranchRef(r, branch, hash);
-								logger.info("     resetting {} of {} to {}", branch, repository.name, hash);
+		// Clone/Pull the repositories in parallel
+		File checkpointFile = new File(registrationFolderFile, registration.name + "_federation.log");
+		final FederationCheckpoint checkpoint = FederationCheckpoint.read(checkpointFile);
+		if (checkpoint.isInterrupted()) {
+			logger.info("Resuming interrupted pull of {} @ {}, {} repositories already synchronized",
+					registration.name, registration.url, checkpoint.size());
+		}
+		checkpoint.start();
+
+		int workers = Math.max(1, gitblit.getSettings().getInteger(Keys.federation.pullWorkers, 2));
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				new ThreadFactoryBuilder()
+					.setNameFormat("FederationPull-" + registration.name + "-%s")
+					.setDaemon(true)
+					.build());
+		final AtomicInteger fetched = new AtomicInteger();
+		final AtomicInteger unchanged = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		try {
+			for (final Map.Entry<String, RepositoryModel> entry : repositories.entrySet()) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						RepositoryModel repository = entry.getValue();
+						try {
+							switch (pullRepository(registration, registrationFolder, registrationFolderFile,
+									entry.getKey(), repository, checkpoint)) {
+							case FETCHED:
+								fetched.incrementAndGet();
+								break;
+							case UNCHANGED:
+								unchanged.incrementAndGet();
+								break;
+							default:
+								break;
 							}
+						} catch (Throwable t) {
+							failed.incrementAndGet();
+							registration.updateStatus(repository, FederationPullStatus.FAILED);
+							logger.error("Failed to pull federated repository {} from {} @ {}",
+									repository.name, registration.name, registration.url, t);
 						}
-
-						String newHead;
-						if (StringUtils.isEmpty(repository.HEAD)) {
-							newHead = newFetchHead;
-						} else {
-							newHead = repository.HEAD;
-						}
-						JGitUtils.setHEADtoRef(r, newHead);
-						logger.info("     resetting HEAD of {} to {}", repository.name, newHead);
-						registration.updateStatus(repository, FederationPullStatus.MIRRORED);
-					} else {
-						// indicate no commits pulled
-						registration.updateStatus(repository, FederationPullStatus.NOCHANGE);
-					}
-				} else {
-					// non-mirror
-					if (fetched) {
-						// indicate commits pulled to origin/master
-						registration.updateStatus(repository, FederationPullStatus.PULLED);
-					} else {
-						// indicate no commits pulled
-						registration.updateStatus(repository, FederationPullStatus.NOCHANGE);
 					}
-				}
-
-				// preserve local settings
-				repository.isFrozen = rm.isFrozen;
-				repository.federationStrategy = rm.federationStrategy;
-
-				// merge federation sets
-				Set<String> federationSets = new HashSet<String>();
-				if (rm.federationSets != null) {
-					federationSets.addAll(rm.federationSets);
-				}
-				if (repository.federationSets != null) {
-					federationSets.addAll(repository.federationSets);
-				}
-				repository.federationSets = new ArrayList<String>(federationSets);
-
-				// merge indexed branches
-				Set<String> indexedBranches = new HashSet<String>();
-				if (rm.indexedBranches != null) {
-					indexedBranches.addAll(rm.indexedBranches);
-				}
-				if (repository.indexedBranches != null) {
-					indexedBranches.addAll(repository.indexedBranches);
-				}
-				repository.indexedBranches = new ArrayList<String>(indexedBranches);
-
+				}));
 			}
-			// only repositories that are actually _cloned_ from the origin
-			// Gitblit repository are marked as federated. If the origin
-			// is from somewhere else, these repositories are not considered
-			// "federated" repositories.
-			repository.isFederated = cloneUrl.startsWith(registration.url);
-
-			gitblit.updateConfiguration(r, repository);
-			r.close();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
 		}
+		checkpoint.complete();
+
+		registration.lastPullRepositories = repositories.size();
+		registration.lastPullFetched = fetched.get();
+		registration.lastPullUnchanged = unchanged.get();
+		registration.lastPullFailed = failed.get();
 
 		IUserService userService = null;
 
@@ -451,6 +365,224 @@ public abstract class FederationPullService implements Runnable {
 		}
 	}
 
+	/**
+	 * Outcome of pulling a single federated repository.
+	 */
+	enum PullOutcome {
+		FETCHED, UNCHANGED, SKIPPED
+	}
+
+	/**
+	 * Clones or fetches a single repository from the origin Gitblit instance.
+	 * The fetch is skipped if the advertised tips of the origin repository
+	 * match the tips recorded by the checkpoint.
+	 *
+	 * @param registration
+	 * @param registrationFolder
+	 * @param registrationFolderFile
+	 * @param cloneUrl
+	 * @param repository
+	 * @param checkpoint
+	 * @return the outcome
+	 * @throws Exception
+	 */
+	PullOutcome pullRepository(FederationModel registration, String registrationFolder,
+			File registrationFolderFile, String cloneUrl, RepositoryModel repository,
+			FederationCheckpoint checkpoint) throws Exception {
+
+		if (!repository.hasCommits) {
+			logger.warn("Skipping federated repository {} from {} @ {}. Repository is EMPTY.",
+					repository.name, registration.name, registration.url);
+			registration.updateStatus(repository, FederationPullStatus.SKIPPED);
+			return PullOutcome.SKIPPED;
+		}
+
+		// Determine local repository name
+		String repositoryName;
+		if (StringUtils.isEmpty(registrationFolder)) {
+			repositoryName = repository.name;
+		} else {
+			repositoryName = registrationFolder + "/" + repository.name;
+		}
+
+		if (registration.bare) {
+			// bare repository, ensure .git suffix
+			if (!repositoryName.toLowerCase().endsWith(DOT_GIT_EXT)) {
+				repositoryName += DOT_GIT_EXT;
+			}
+		} else {
+			// normal repository, strip .git suffix
+			if (repositoryName.toLowerCase().endsWith(DOT_GIT_EXT)) {
+				repositoryName = repositoryName.substring(0,
+						repositoryName.indexOf(DOT_GIT_EXT));
+			}
+		}
+
+		// confirm that the origin of any pre-existing repository matches
+		// the clone url
+		String fetchHead = null;
+		Repository existingRepository = gitblit.getRepository(repositoryName);
+
+		if (existingRepository == null && gitblit.isCollectingGarbage(repositoryName)) {
+			logger.warn("Skipping local repository {}, busy collecting garbage", repositoryName);
+			return PullOutcome.SKIPPED;
+		}
+
+		if (existingRepository != null) {
+			StoredConfig config = existingRepository.getConfig();
+			config.load();
+			String origin = config.getString("remote", "origin", "url");
+			RevCommit commit = JGitUtils.getCommit(existingRepository,
+					org.eclipse.jgit.lib.Constants.FETCH_HEAD);
+			if (commit != null) {
+				fetchHead = commit.getName();
+			}
+			existingRepository.close();
+			if (!origin.startsWith(registration.url)) {
+				logger.warn("Skipping federated repository {} from {} @ {}. Origin does not match, consider EXCLUDING.",
+								repository.name, registration.name, registration.url);
+				registration.updateStatus(repository, FederationPullStatus.SKIPPED);
+				return PullOutcome.SKIPPED;
+			}
+		}
+
+		CredentialsProvider credentials = new UsernamePasswordCredentialsProvider(
+				Constants.FEDERATION_USER, registration.token);
+
+		// compare the advertised tips with the tips of the last pull
+		String tips = FederationCheckpoint.digest(Git.lsRemoteRepository()
+				.setRemote(cloneUrl)
+				.setCredentialsProvider(credentials)
+				.call());
+		if (existingRepository != null && checkpoint.isUnchanged(repositoryName, tips)) {
+			logger.debug("Federated repository {} from {} @ {} is unchanged",
+					repository.name, registration.name, registration.url);
+			Repository r = gitblit.getRepository(repositoryName);
+			RepositoryModel rm = gitblit.getRepositoryModel(repositoryName);
+			registration.updateStatus(repository, FederationPullStatus.NOCHANGE);
+			mergeLocalSettings(repository, rm);
+			repository.isFederated = cloneUrl.startsWith(registration.url);
+			gitblit.updateConfiguration(r, repository);
+			r.close();
+			return PullOutcome.UNCHANGED;
+		}
+
+		// clone/pull this repository
+		checkpoint.reset(repositoryName);
+		logger.info("Pulling federated repository {} from {} @ {}", repository.name, registration.name, registration.url);
+
+		CloneResult result = JGitUtils.cloneRepository(registrationFolderFile, repository.name,
+				cloneUrl, registration.bare, credentials);
+		Repository r = gitblit.getRepository(repositoryName);
+		RepositoryModel rm = gitblit.getRepositoryModel(repositoryName);
+		repository.isFrozen = registration.mirror;
+		PullOutcome outcome = PullOutcome.FETCHED;
+		if (result.createdRepository) {
+			// default local settings
+			repository.federationStrategy = FederationStrategy.EXCLUDE;
+			repository.isFrozen = registration.mirror;
+			repository.showRemoteBranches = !registration.mirror;
+			logger.info("     cloning {}", repository.name);
+			registration.updateStatus(repository, FederationPullStatus.MIRRORED);
+		} else {
+			// fetch and update
+			boolean fetched = false;
+			RevCommit commit = JGitUtils.getCommit(r, org.eclipse.jgit.lib.Constants.FETCH_HEAD);
+			String newFetchHead = commit.getName();
+			fetched = fetchHead == null || !fetchHead.equals(newFetchHead);
+			if (!fetched) {
+				outcome = PullOutcome.UNCHANGED;
+			}
+
+			if (registration.mirror) {
+				// mirror
+				if (fetched) {
+					// update local branches to match the remote tracking branches
+					for (RefModel ref : JGitUtils.getRemoteBranches(r, false, -1)) {
+						if (ref.displayName.startsWith("origin/")) {
+							String branch = org.eclipse.jgit.lib.Constants.R_HEADS
+									+ ref.displayName.substring(ref.displayName.indexOf('/') + 1);
+							String hash = ref.getReferencedObjectId().getName();
+
+							JGitUtils.setBranchRef(r, branch, hash);
+							logger.info("     resetting {} of {} to {}", branch, repository.name, hash);
+						}
+					}
+
+					String newHead;
+					if (StringUtils.isEmpty(repository.HEAD)) {
+						newHead = newFetchHead;
+					} else {
+						newHead = repository.HEAD;
+					}
+					JGitUtils.setHEADtoRef(r, newHead);
+					logger.info("     resetting HEAD of {} to {}", repository.name, newHead);
+					registration.updateStatus(repository, FederationPullStatus.MIRRORED);
+				} else {
+					// indicate no commits pulled
+					registration.updateStatus(repository, FederationPullStatus.NOCHANGE);
+				}
+			} else {
+				// non-mirror
+				if (fetched) {
+					// indicate commits pulled to origin/master
+					registration.updateStatus(repository, FederationPullStatus.PULLED);
+				} else {
+					// indicate no commits pulled
+					registration.updateStatus(repository, FederationPullStatus.NOCHANGE);
+				}
+			}
+
+			mergeLocalSettings(repository, rm);
+		}
+		// only repositories that are actually _cloned_ from the origin
+		// Gitblit repository are marked as federated. If the origin
+		// is from somewhere else, these repositories are not considered
+		// "federated" repositories.
+		repository.isFederated = cloneUrl.startsWith(registration.url);
+
+		gitblit.updateConfiguration(r, repository);
+		r.close();
+
+		checkpoint.update(repositoryName, tips);
+		return outcome;
+	}
+
+	/**
+	 * Preserves the local settings of an existing repository and merges the
+	 * federation sets and indexed branches of the origin repository.
+	 *
+	 * @param repository
+	 *            the origin repository model
+	 * @param rm
+	 *            the local repository model
+	 */
+	private void mergeLocalSettings(RepositoryModel repository, RepositoryModel rm) {
+		// preserve local settings
+		repository.isFrozen = rm.isFrozen;
+		repository.federationStrategy = rm.federationStrategy;
+
+		// merge federation sets
+		Set<String> federationSets = new HashSet<String>();
+		if (rm.federationSets != null) {
+			federationSets.addAll(rm.federationSets);
+		}
+		if (repository.federationSets != null) {
+			federationSets.addAll(repository.federationSets);
+		}
+		repository.federationSets = new ArrayList<String>(federationSets);
+
+		// merge indexed branches
+		Set<String> indexedBranches = new HashSet<String>();
+		if (rm.indexedBranches != null) {
+			indexedBranches.addAll(rm.indexedBranches);
+		}
+		if (repository.indexedBranches != null) {
+			indexedBranches.addAll(repository.indexedBranches);
+		}
+		repository.indexedBranches = new ArrayList<String>(indexedBranches);
+	}
+
 	/**
 	 * Sends a status acknowledgment to the origin Gitblit instance. This
 	 * includes the results of the federated pull.
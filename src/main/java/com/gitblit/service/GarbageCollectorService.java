@@ -15,15 +15,23 @@
  */
 package com.gitblit.service;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jgit.api.GarbageCollectCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.internal.storage.file.PackFile;
 import org.eclipse.jgit.lib.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,13 +45,20 @@ import com.gitblit.utils.FileUtils;
 /**
  * The Garbage Collector Service handles periodic garbage collection in repositories.
  *
+ * The service also refreshes the cached pack of a repository: the
+ * bitmap-indexed pack of its reachable history which is streamed verbatim to
+ * cloning clients.  A refresh is triggered when too many objects have been
+ * pushed since the last GC, either by the daily scan or shortly after a push.
+ * A refresh is a repack which, unlike a GC, does not block access to the
+ * repository and does not count as a GC.
+ *
  * @author James Moger
  *
  */
 public class GarbageCollectorService implements Runnable {
 
 	public static enum GCStatus {
-		READY, COLLECTING;
+		READY, REPACKING, COLLECTING;
 
 		public boolean exceeds(GCStatus s) {
 			return ordinal() > s.ordinal();
@@ -61,6 +76,8 @@ public class GarbageCollectorService implements Runnable {
 
 	private final Map<String, GCStatus> gcCache = new ConcurrentHashMap<String, GCStatus>();
 
+	private final Set<String> pendingRefreshes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	public GarbageCollectorService(
 			IStoredSettings settings,
 			IRepositoryManager repositoryManager) {
@@ -86,6 +103,17 @@ public class GarbageCollectorService implements Runnable {
 		return setGCStatus(repositoryName, GCStatus.COLLECTING);
 	}
 
+	/**
+	 * Prevents garbage collection while the packs of the repository are
+	 * rewritten.  Unlike a GC, a repack does not block access to the repository.
+	 *
+	 * @param repositoryName
+	 * @return true if the repack lock has been acquired
+	 */
+	public boolean lockRepack(String repositoryName) {
+		return setGCStatus(repositoryName, GCStatus.REPACKING);
+	}
+
 	/**
 	 * Tries to set a GCStatus for the specified repository.
 	 *
@@ -128,6 +156,49 @@ public class GarbageCollectorService implements Runnable {
 		forceClose.set(true);
 	}
 
+	/**
+	 * Returns the number of objects outside of the cached pack which trigger
+	 * a refresh of the cached pack.
+	 *
+	 * @return the refresh threshold, 0 if disabled
+	 */
+	public int getCachedPackRefreshThreshold() {
+		return settings.getInteger(Keys.git.cachedPackRefreshThreshold, 5000);
+	}
+
+	/**
+	 * Indicates if pushes may trigger a refresh of the cached pack.
+	 *
+	 * @return true if cached packs are refreshed after pushes
+	 */
+	public boolean isRefreshingCachedPacks() {
+		return isReady() && getCachedPackRefreshThreshold() > 0;
+	}
+
+	/**
+	 * Marks the repository for a cached pack refresh.
+	 *
+	 * @param repositoryName
+	 * @return true if no refresh was pending and the caller should schedule one
+	 */
+	public boolean requestCachedPackRefresh(String repositoryName) {
+		return pendingRefreshes.add(repositoryName.toLowerCase());
+	}
+
+	/**
+	 * Repacks the repository if too many objects have been pushed since the
+	 * cached pack was written.  The periodic GC conditions are not evaluated.
+	 *
+	 * @param repositoryName
+	 */
+	public void refreshCachedPack(String repositoryName) {
+		pendingRefreshes.remove(repositoryName.toLowerCase());
+		if (!isRefreshingCachedPacks() || forceClose.get()) {
+			return;
+		}
+		collectGarbage(repositoryName, new Date(), true);
+	}
+
 	@Override
 	public void run() {
 		if (!isReady()) {
@@ -141,87 +212,204 @@ public class GarbageCollectorService implements Runnable {
 			if (forceClose.get()) {
 				break;
 			}
-			if (isCollectingGarbage(repositoryName)) {
-				logger.warn("Already collecting garbage from {}?!?", repositoryName);
-				continue;
+			collectGarbage(repositoryName, now, false);
+		}
+
+		running.set(false);
+	}
+
+	/**
+	 * Collects garbage in the repository if it satisfies one of its GC triggers.
+	 *
+	 * @param repositoryName
+	 * @param now
+	 * @param refreshOnly
+	 *            if true, only a stale cached pack triggers a repack
+	 */
+	private void collectGarbage(String repositoryName, Date now, boolean refreshOnly) {
+		if (isCollectingGarbage(repositoryName)) {
+			logger.warn("Already collecting garbage from {}?!?", repositoryName);
+			return;
+		}
+		boolean garbageCollected = false;
+		boolean locked = false;
+		RepositoryModel model = null;
+		Repository repository = null;
+		try {
+			model = repositoryManager.getRepositoryModel(repositoryName);
+			repository = repositoryManager.getRepository(repositoryName);
+			if (repository == null) {
+				logger.warn("GCExecutor is missing repository {}?!?", repositoryName);
+				return;
 			}
-			boolean garbageCollected = false;
-			RepositoryModel model = null;
-			Repository repository = null;
-			try {
-				model = repositoryManager.getRepositoryModel(repositoryName);
-				repository = repositoryManager.getRepository(repositoryName);
-				if (repository == null) {
-					logger.warn("GCExecutor is missing repository {}?!?", repositoryName);
-					continue;
-				}
 
-				if (!repositoryManager.isIdle(repository)) {
-					logger.debug("GCExecutor is skipping {} because it is not idle", repositoryName);
-					continue;
-				}
+			if (!repositoryManager.isIdle(repository)) {
+				logger.debug("GCExecutor is skipping {} because it is not idle", repositoryName);
+				return;
+			}
+
+			// the repack lock prevents other collections and repacks, it
+			// does not block access to the repository
+			if (!setGCStatus(repositoryName, GCStatus.REPACKING)) {
+				logger.warn("Can not acquire GC lock for {}, skipping", repositoryName);
+				return;
+			}
+			locked = true;
+
+			logger.debug("GCExecutor locked idle repository {}", repositoryName);
+
+			Git git = new Git(repository);
+			GarbageCollectCommand gc = git.gc();
+			Properties stats = gc.getStatistics();
+
+			// determine if this is a scheduled GC
+			Calendar cal = Calendar.getInstance();
+			cal.setTime(model.lastGC);
+			cal.set(Calendar.HOUR_OF_DAY, 0);
+			cal.set(Calendar.MINUTE, 0);
+			cal.set(Calendar.SECOND, 0);
+			cal.set(Calendar.MILLISECOND, 0);
+			cal.add(Calendar.DATE, model.gcPeriod);
+			Date gcDate = cal.getTime();
+			boolean shouldCollectGarbage = !refreshOnly && now.after(gcDate);
+
+			// determine if filesize triggered GC
+			long gcThreshold = FileUtils.convertSizeToLong(model.gcThreshold, 500*1024L);
+			long sizeOfLooseObjects = (Long) stats.get("sizeOfLooseObjects");
+			boolean hasEnoughGarbage = !refreshOnly && sizeOfLooseObjects >= gcThreshold;
+
+			// determine if the cached pack is stale.  pushed objects are
+			// usually kept in their own packs, not as loose objects, and
+			// every clone has to enumerate and compress them again.
+			long uncachedObjects = getUncachedObjectCount(repository, (Long) stats.get("numberOfLooseObjects"));
+			int refreshThreshold = getCachedPackRefreshThreshold();
+			boolean isCachedPackStale = refreshThreshold > 0 && uncachedObjects >= refreshThreshold;
+
+			// if we satisfy one of the requirements, GC
+			boolean hasGarbage = sizeOfLooseObjects > 0;
+			if (hasGarbage && (hasEnoughGarbage || shouldCollectGarbage)) {
+				long looseKB = sizeOfLooseObjects/1024L;
+				logger.info("Collecting {} KB of loose objects from {}", looseKB, repositoryName );
 
 				// By setting the GCStatus to COLLECTING we are
 				// disabling *all* access to this repository from Gitblit.
 				// Think of this as a clutch in a manual transmission vehicle.
-				if (!setGCStatus(repositoryName, GCStatus.COLLECTING)) {
-					logger.warn("Can not acquire GC lock for {}, skipping", repositoryName);
-					continue;
-				}
+				gcCache.put(repositoryName.toLowerCase(), GCStatus.COLLECTING);
 
-				logger.debug("GCExecutor locked idle repository {}", repositoryName);
-
-				Git git = new Git(repository);
-				GarbageCollectCommand gc = git.gc();
-				Properties stats = gc.getStatistics();
-
-				// determine if this is a scheduled GC
-				Calendar cal = Calendar.getInstance();
-				cal.setTime(model.lastGC);
-				cal.set(Calendar.HOUR_OF_DAY, 0);
-				cal.set(Calendar.MINUTE, 0);
-				cal.set(Calendar.SECOND, 0);
-				cal.set(Calendar.MILLISECOND, 0);
-				cal.add(Calendar.DATE, model.gcPeriod);
-				Date gcDate = cal.getTime();
-				boolean shouldCollectGarbage = now.after(gcDate);
-
-				// determine if filesize triggered GC
-				long gcThreshold = FileUtils.convertSizeToLong(model.gcThreshold, 500*1024L);
-				long sizeOfLooseObjects = (Long) stats.get("sizeOfLooseObjects");
-				boolean hasEnoughGarbage = sizeOfLooseObjects >= gcThreshold;
-
-				// if we satisfy one of the requirements, GC
-				boolean hasGarbage = sizeOfLooseObjects > 0;
-				if (hasGarbage && (hasEnoughGarbage || shouldCollectGarbage)) {
-					long looseKB = sizeOfLooseObjects/1024L;
-					logger.info("Collecting {} KB of loose objects from {}", looseKB, repositoryName );
-
-					// do the deed
-					gc.call();
-
-					garbageCollected = true;
-				}
-			} catch (Exception e) {
-				logger.error("Error collecting garbage in {}", repositoryName, e);
-			} finally {
-				// cleanup
-				if (repository != null) {
-					if (garbageCollected) {
-						// update the last GC date
-						model.lastGC = new Date();
-						repositoryManager.updateConfiguration(repository, model);
-					}
-
-					repository.close();
+				// do the deed
+				gc.call();
+
+				garbageCollected = true;
+			} else if (isCachedPackStale) {
+				logger.info("Refreshing the cached pack of {}, {} objects are not in the cached pack",
+						repositoryName, uncachedObjects);
+
+				// a repack writes the reachable objects into a new pack with
+				// a bitmap index while the repository remains accessible
+				new GC((FileRepository) repository).repack();
+			}
+		} catch (Exception e) {
+			logger.error("Error collecting garbage in {}", repositoryName, e);
+		} finally {
+			// cleanup
+			if (repository != null) {
+				if (garbageCollected) {
+					// update the last GC date
+					model.lastGC = new Date();
+					repositoryManager.updateConfiguration(repository, model);
 				}
 
-				// reset the GC lock
+				repository.close();
+			}
+
+			// reset the GC lock
+			if (locked) {
 				releaseLock(repositoryName);
 				logger.debug("GCExecutor released GC lock for {}", repositoryName);
 			}
 		}
+	}
 
-		running.set(false);
+	/**
+	 * Returns the number of objects which are not in the cached pack of the
+	 * repository.
+	 *
+	 * A GC writes the reachable objects into a pack with a bitmap index.  JGit
+	 * streams such a pack verbatim to cloning clients whose wants cover it, so
+	 * only the objects outside of it have to be enumerated and compressed for
+	 * each clone.  Packs older than the cached pack are ignored, JGit keeps the
+	 * packs replaced by a GC for a while.
+	 *
+	 * @param repository
+	 * @param looseObjects
+	 *            the number of loose objects
+	 * @return the number of objects outside of the cached pack
+	 * @throws IOException
+	 */
+	static long getUncachedObjectCount(Repository repository, long looseObjects) throws IOException {
+		if (!(repository instanceof FileRepository)) {
+			return 0;
+		}
+		Collection<PackFile> packs = ((FileRepository) repository).getObjectDatabase().getPacks();
+		long cachedPackTime = -1;
+		for (PackFile pack : packs) {
+			if (hasBitmapIndex(pack)) {
+				cachedPackTime = Math.max(cachedPackTime, pack.getPackFile().lastModified());
+			}
+		}
+		long count = looseObjects;
+		for (PackFile pack : packs) {
+			if (!hasBitmapIndex(pack) && pack.getPackFile().lastModified() > cachedPackTime) {
+				count += pack.getIndex().getObjectCount();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of objects in the packs with a bitmap index.
+	 *
+	 * @param repository
+	 * @return the number of objects covered by reachability bitmaps
+	 * @throws IOException
+	 */
+	static long getBitmapObjectCount(Repository repository) throws IOException {
+		if (!(repository instanceof FileRepository)) {
+			return 0;
+		}
+		long count = 0;
+		for (PackFile pack : ((FileRepository) repository).getObjectDatabase().getPacks()) {
+			if (hasBitmapIndex(pack)) {
+				count += pack.getIndex().getObjectCount();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns true if one of the packs of the repository has a bitmap index.
+	 *
+	 * @param repository
+	 * @return true if the repository has reachability bitmaps
+	 */
+	static boolean hasBitmapIndex(Repository repository) {
+		if (!(repository instanceof FileRepository)) {
+			return false;
+		}
+		for (PackFile pack : ((FileRepository) repository).getObjectDatabase().getPacks()) {
+			if (hasBitmapIndex(pack)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasBitmapIndex(PackFile pack) {
+		String name = pack.getPackFile().getName();
+		if (!name.endsWith(".pack")) {
+			return false;
+		}
+		String bitmap = name.substring(0, name.length() - ".pack".length()) + ".bitmap";
+		return new File(pack.getPackFile().getParentFile(), bitmap).exists();
 	}
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.util.Date;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.models.JGitCacheStatus;
+import com.gitblit.utils.DeepCopier;
+
+/**
+ * The JGit Cache service samples the JGit pack window cache and optionally
+ * adapts its limits to the observed load.
+ *
+ * JGit only reports the open pack files and the cached window bytes, so the
+ * service samples both once a minute.  If adaptive sizing is enabled, the
+ * packed git limit and the open files limit are doubled, within the heap
+ * budget, when the cache was saturated for at least half of the samples of an
+ * evaluation period.  They are halved, but never below the configured values,
+ * when the cache stayed below a quarter of its limits.  Resizing the cache
+ * discards all cached windows, so the limits are evaluated every 10 samples.
+ */
+public class JGitCacheService implements Runnable {
+
+	static final int SATURATION_PERCENT = 90;
+
+	static final int EVALUATION_SAMPLES = 10;
+
+	private static final int MAX_OPEN_FILES_FACTOR = 8;
+
+	private final Logger logger = LoggerFactory.getLogger(JGitCacheService.class);
+
+	private final IStoredSettings settings;
+
+	private final long baseLimit;
+
+	private final int baseOpenFiles;
+
+	private final int baseDeltaBaseCacheLimit;
+
+	private final JGitCacheStatus status;
+
+	private WindowCacheConfig config;
+
+	private int periodSamples;
+
+	private int periodBytesSaturated;
+
+	private int periodFilesSaturated;
+
+	private long periodPeakBytes;
+
+	private int periodPeakFiles;
+
+	public JGitCacheService(IStoredSettings settings, WindowCacheConfig config) {
+		this.settings = settings;
+		this.config = config;
+		this.baseLimit = config.getPackedGitLimit();
+		this.baseOpenFiles = config.getPackedGitOpenFiles();
+		this.baseDeltaBaseCacheLimit = config.getDeltaBaseCacheLimit();
+
+		this.status = new JGitCacheStatus();
+		this.status.adaptive = isAdaptive();
+		this.status.heapBudget = getHeapBudget();
+		updateLimits();
+	}
+
+	public boolean isAdaptive() {
+		return settings.getBoolean(Keys.git.adaptiveCacheSizing, false);
+	}
+
+	/**
+	 * Returns the maximum number of heap bytes which the adaptive sizing may
+	 * assign to the packed git limit.
+	 *
+	 * @return the heap budget in bytes
+	 */
+	public long getHeapBudget() {
+		int percent = settings.getInteger(Keys.git.adaptiveCacheHeapPercent, 25);
+		percent = Math.max(1, Math.min(90, percent));
+		return Runtime.getRuntime().maxMemory() / 100L * percent;
+	}
+
+	/**
+	 * Returns the current packed git limit, which differs from the configured
+	 * limit if the cache was resized.
+	 *
+	 * @return the packed git limit in bytes
+	 */
+	public synchronized long getPackedGitLimit() {
+		return config.getPackedGitLimit();
+	}
+
+	/**
+	 * Returns a snapshot of the limits and the usage of the window cache.
+	 *
+	 * @return the cache status
+	 */
+	public synchronized JGitCacheStatus getStatus() {
+		status.openFiles = WindowCacheStats.getOpenFiles();
+		status.openBytes = WindowCacheStats.getOpenBytes();
+		return DeepCopier.copy(status);
+	}
+
+	@Override
+	public void run() {
+		try {
+			sample(WindowCacheStats.getOpenFiles(), WindowCacheStats.getOpenBytes());
+		} catch (Exception e) {
+			logger.error("Failed to sample the JGit window cache", e);
+		}
+	}
+
+	/**
+	 * Records a sample of the window cache and evaluates the limits at the
+	 * end of an evaluation period.
+	 *
+	 * @param openFiles
+	 * @param openBytes
+	 */
+	synchronized void sample(int openFiles, long openBytes) {
+		boolean bytesSaturated = openBytes * 100 >= config.getPackedGitLimit() * SATURATION_PERCENT;
+		boolean filesSaturated = openFiles * 100 >= config.getPackedGitOpenFiles() * SATURATION_PERCENT;
+
+		status.openFiles = openFiles;
+		status.openBytes = openBytes;
+		status.peakOpenFiles = Math.max(status.peakOpenFiles, openFiles);
+		status.peakOpenBytes = Math.max(status.peakOpenBytes, openBytes);
+		status.lastSample = new Date();
+		status.samples++;
+		if (bytesSaturated) {
+			status.bytesSaturatedSamples++;
+			periodBytesSaturated++;
+		}
+		if (filesSaturated) {
+			status.filesSaturatedSamples++;
+			periodFilesSaturated++;
+		}
+		periodSamples++;
+		periodPeakBytes = Math.max(periodPeakBytes, openBytes);
+		periodPeakFiles = Math.max(periodPeakFiles, openFiles);
+
+		if (periodSamples >= EVALUATION_SAMPLES) {
+			if (status.adaptive) {
+				evaluate();
+			}
+			periodSamples = 0;
+			periodBytesSaturated = 0;
+			periodFilesSaturated = 0;
+			periodPeakBytes = 0;
+			periodPeakFiles = 0;
+		}
+	}
+
+	/**
+	 * Grows or shrinks the limits of the window cache according to the
+	 * samples of the evaluation period.
+	 */
+	private void evaluate() {
+		long limit = config.getPackedGitLimit();
+		int openFiles = config.getPackedGitOpenFiles();
+
+		long newLimit = limit;
+		if (periodBytesSaturated * 2 >= periodSamples) {
+			newLimit = Math.max(limit, Math.min(limit * 2, status.heapBudget));
+		} else if (periodPeakBytes * 4 < limit) {
+			newLimit = Math.max(baseLimit, limit / 2);
+		}
+
+		int newOpenFiles = openFiles;
+		if (periodFilesSaturated * 2 >= periodSamples) {
+			newOpenFiles = Math.max(openFiles, Math.min(openFiles * 2, baseOpenFiles * MAX_OPEN_FILES_FACTOR));
+		} else if (periodPeakFiles * 4 < openFiles) {
+			newOpenFiles = Math.max(baseOpenFiles, openFiles / 2);
+		}
+
+		if (newLimit == limit && newOpenFiles == openFiles) {
+			return;
+		}
+
+		WindowCacheConfig cfg = new WindowCacheConfig();
+		cfg.setPackedGitWindowSize(config.getPackedGitWindowSize());
+		cfg.setPackedGitMMAP(config.isPackedGitMMAP());
+		cfg.setStreamFileThreshold(config.getStreamFileThreshold());
+		cfg.setPackedGitLimit(newLimit);
+		cfg.setPackedGitOpenFiles(newOpenFiles);
+		// delta bases are cached per reader, keep them a fraction of the window cache
+		cfg.setDeltaBaseCacheLimit((int) Math.max(baseDeltaBaseCacheLimit, Math.min(newLimit / 8, Integer.MAX_VALUE)));
+		try {
+			install(cfg);
+		} catch (IllegalArgumentException e) {
+			logger.error("Failed to resize the JGit window cache", e);
+			return;
+		}
+
+		logger.info("Resized the JGit window cache from {} bytes and {} files to {} bytes and {} files",
+				limit, openFiles, newLimit, newOpenFiles);
+		config = cfg;
+		status.resizes++;
+		status.lastResize = new Date();
+		updateLimits();
+	}
+
+	/**
+	 * Installs the configuration.  This discards all cached windows.
+	 *
+	 * @param cfg
+	 */
+	protected void install(WindowCacheConfig cfg) {
+		cfg.install();
+	}
+
+	private void updateLimits() {
+		status.packedGitLimit = config.getPackedGitLimit();
+		status.packedGitWindowSize = config.getPackedGitWindowSize();
+		status.packedGitOpenFiles = config.getPackedGitOpenFiles();
+		status.deltaBaseCacheLimit = config.getDeltaBaseCacheLimit();
+		status.packedGitMmap = config.isPackedGitMMAP();
+	}
+}
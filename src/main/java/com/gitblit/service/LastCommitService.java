@@ -0,0 +1,326 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.PathModel;
+import com.gitblit.utils.LastCommitIndex;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The Last Commit service maintains the {@link LastCommitIndex} of the
+ * repositories, which annotates the entries of the tree browser with the last
+ * commit which changed them.
+ *
+ * A folder which has not been annotated yet is annotated on a low-priority
+ * thread and is shown without its last commits until then.  The annotated
+ * folders of the branches are updated incrementally after every push.
+ */
+public class LastCommitService {
+
+	private final Logger logger = LoggerFactory.getLogger(LastCommitService.class);
+
+	private final IStoredSettings settings;
+
+	private final IRepositoryManager repositoryManager;
+
+	private final long maximumWeight;
+
+	private final Cache<String, LastCommitIndex> indexes;
+
+	private final Set<String> pendingUpdates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private ExecutorService updateExecutor;
+
+	public LastCommitService(
+			IStoredSettings settings,
+			IRepositoryManager repositoryManager) {
+
+		this.settings = settings;
+		this.repositoryManager = repositoryManager;
+		this.maximumWeight = Math.max(1, Math.min(Integer.MAX_VALUE,
+				settings.getFilesize(Keys.git.lastCommitIndexCacheSize, 64 * 1024 * 1024L)));
+		// the cache evicts an entry which is heavier than its segment at once,
+		// so it has a single segment, and an index which is heavier than the
+		// whole cache is not cached at all
+		this.indexes = CacheBuilder.newBuilder()
+				.concurrencyLevel(1)
+				.maximumWeight(maximumWeight)
+				.weigher(new Weigher<String, LastCommitIndex>() {
+					@Override
+					public int weigh(String key, LastCommitIndex index) {
+						return (int) Math.min(Integer.MAX_VALUE, index.getMemoryUsage());
+					}
+				})
+				.build();
+	}
+
+	public boolean isReady() {
+		return settings.getBoolean(Keys.git.enableLastCommitIndex, true);
+	}
+
+	public void close() {
+		synchronized (this) {
+			if (updateExecutor != null) {
+				updateExecutor.shutdownNow();
+			}
+		}
+		indexes.invalidateAll();
+	}
+
+	/**
+	 * Forgets the cached index of a repository which has been renamed or
+	 * deleted.
+	 *
+	 * @param repositoryName
+	 */
+	public void close(String repositoryName) {
+		indexes.invalidate(repositoryName);
+	}
+
+	/**
+	 * Schedules the incremental update of the annotated folders of the
+	 * branches of a repository.
+	 *
+	 * @param repositoryName
+	 */
+	public void scheduleUpdate(final String repositoryName) {
+		if (!isReady()) {
+			return;
+		}
+		schedule(repositoryName, new Runnable() {
+			@Override
+			public void run() {
+				update(repositoryName);
+			}
+		});
+	}
+
+	/**
+	 * Schedules the annotation of a folder.  Requests for a folder while its
+	 * annotation is pending are coalesced.
+	 */
+	private void scheduleAnnotation(final String repositoryName, final ObjectId commitId, final String path) {
+		schedule(repositoryName + ':' + commitId.name() + ':' + path, new Runnable() {
+			@Override
+			public void run() {
+				Repository repository = repositoryManager.getRepository(repositoryName);
+				if (repository == null) {
+					return;
+				}
+				try {
+					LastCommitIndex index = getIndex(repositoryName, repository);
+					if (index == null) {
+						return;
+					}
+					long start = System.currentTimeMillis();
+					if (index.annotate(repository, commitId, path)) {
+						index.write(LastCommitIndex.getFile(repository));
+						cache(repositoryName, index);
+						logger.debug("annotated {}:{} of {} in {} msecs", commitId.name(), path, repositoryName,
+								System.currentTimeMillis() - start);
+					}
+				} catch (IOException e) {
+					logger.error("failed to annotate the last commits of " + path + " in " + repositoryName, e);
+				} finally {
+					repository.close();
+				}
+			}
+		});
+	}
+
+	private void schedule(final String key, final Runnable task) {
+		if (!pendingUpdates.add(key)) {
+			return;
+		}
+		try {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					pendingUpdates.remove(key);
+					task.run();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingUpdates.remove(key);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (updateExecutor == null) {
+			updateExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("LastCommitIndex-%s")
+					.setPriority(Thread.MIN_PRIORITY)
+					.setDaemon(true)
+					.build());
+		}
+		return updateExecutor;
+	}
+
+	/**
+	 * Annotates the folders of the branches of a repository which have been
+	 * changed since the last update and writes the index.
+	 *
+	 * @param repositoryName
+	 * @return the updated index or null if the repository does not exist or
+	 *         its index is larger than the cache
+	 */
+	public LastCommitIndex update(String repositoryName) {
+		Repository repository = repositoryManager.getRepository(repositoryName);
+		if (repository == null) {
+			return null;
+		}
+		try {
+			LastCommitIndex index = getIndex(repositoryName, repository);
+			if (index == null) {
+				return null;
+			}
+			long start = System.currentTimeMillis();
+			int count = index.update(repository);
+			index.write(LastCommitIndex.getFile(repository));
+			cache(repositoryName, index);
+			if (count > 0) {
+				logger.debug("annotated {} trees of {} in {} msecs", count, repositoryName,
+						System.currentTimeMillis() - start);
+			}
+			return index;
+		} catch (IOException e) {
+			logger.error("failed to update the last commit index of " + repositoryName, e);
+			return null;
+		} finally {
+			repository.close();
+		}
+	}
+
+	/**
+	 * Returns the index of a repository, reading it if it is not cached.  An
+	 * index which is larger than the cache is not used.
+	 */
+	private LastCommitIndex getIndex(String repositoryName, Repository repository) {
+		LastCommitIndex index = indexes.getIfPresent(repositoryName);
+		if (index != null) {
+			return index;
+		}
+		File file = LastCommitIndex.getFile(repository);
+		if (file.length() > maximumWeight) {
+			logger.debug("the last commit index of {} is larger than the cache", repositoryName);
+			return null;
+		}
+		try {
+			index = LastCommitIndex.read(file);
+		} catch (IOException e) {
+			logger.warn("failed to read the last commit index of " + repositoryName, e);
+		}
+		if (index == null) {
+			// missing or of another version, the next write replaces the file
+			index = LastCommitIndex.empty();
+		}
+		cache(repositoryName, index);
+		return index;
+	}
+
+	private void cache(String repositoryName, LastCommitIndex index) {
+		if (index.getMemoryUsage() <= maximumWeight) {
+			indexes.put(repositoryName, index);
+		} else {
+			indexes.invalidate(repositoryName);
+		}
+	}
+
+	/**
+	 * Sets the last commits of the entries of a folder.  If the folder has not
+	 * been annotated yet, its annotation is scheduled and the entries are left
+	 * unchanged.
+	 *
+	 * @param repositoryName
+	 * @param repository
+	 * @param commit
+	 * @param path
+	 *            the folder, the root folder if unspecified
+	 * @param paths
+	 *            the entries of the folder, the name of an entry may be the
+	 *            path of a collapsed chain of folders
+	 * @return true if the last commits have been set
+	 */
+	public boolean setLastCommits(String repositoryName, Repository repository, RevCommit commit, String path,
+			List<PathModel> paths) {
+		if (!isReady() || commit == null || paths.isEmpty()) {
+			return false;
+		}
+		Map<String, ObjectId> lastCommits;
+		try (ObjectReader reader = repository.newObjectReader(); RevWalk rw = new RevWalk(reader)) {
+			LastCommitIndex index = getIndex(repositoryName, repository);
+			if (index == null) {
+				return false;
+			}
+			RevCommit parsed = rw.parseCommit(commit);
+			lastCommits = index.getLastCommits(reader, parsed, path);
+			if (lastCommits == null) {
+				scheduleAnnotation(repositoryName, commit.copy(), path == null ? "" : path);
+				return false;
+			}
+			Map<ObjectId, RevCommit> parsedCommits = new HashMap<ObjectId, RevCommit>();
+			for (PathModel model : paths) {
+				if (model.isParentPath) {
+					continue;
+				}
+				int slash = model.name.indexOf('/');
+				ObjectId id = lastCommits.get(slash < 0 ? model.name : model.name.substring(0, slash));
+				if (id == null) {
+					continue;
+				}
+				RevCommit lastCommit = parsedCommits.get(id);
+				if (lastCommit == null) {
+					lastCommit = rw.parseCommit(id);
+					parsedCommits.put(id, lastCommit);
+				}
+				model.lastCommitId = lastCommit.getName();
+				model.lastCommitMessage = lastCommit.getShortMessage();
+				model.lastCommitAuthor = lastCommit.getAuthorIdent().getName();
+				model.lastCommitDate = lastCommit.getAuthorIdent().getWhen();
+			}
+			return true;
+		} catch (IOException e) {
+			logger.error("failed to read the last commits of " + path + " in " + repositoryName, e);
+			return false;
+		}
+	}
+}
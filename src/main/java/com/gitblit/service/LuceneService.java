@@ -24,39 +24,69 @@ import java.io.InputStream;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.DateTools.Resolution;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queries.TermsQuery;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.highlight.Fragmenter;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
@@ -65,6 +95,7 @@ import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
 import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
@@ -87,24 +118,60 @@ import com.gitblit.Constants.SearchObjectType;
 import com.gitblit.IStoredSettings;
 import com.gitblit.Keys;
 import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.ForkModel;
 import com.gitblit.models.PathModel.PathChangeModel;
 import com.gitblit.models.RefModel;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.SearchResult;
 import com.gitblit.utils.ArrayUtils;
 import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.LuceneIndexStore;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Histogram;
 import com.gitblit.utils.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * The Lucene service handles indexing and searching repositories.
  *
+ * By default every repository has its own index.  If web.luceneIndexShards is
+ * set, the repositories are indexed into a unified index of that many shards
+ * instead.  A repository always lives in the same shard and its documents
+ * carry the name of the repository, so a search runs the same query on the
+ * shards in parallel and filters the hits by the repositories the user may
+ * access.
+ *
+ * The content of a blob is indexed once per index in a content document,
+ * however many branches and paths of the repository, and in the unified index
+ * however many repositories of its fork network, share the blob.  The
+ * document of a blob on a branch only holds its path, its last commit and the
+ * id of the blob.  A query on the content is run on the content documents
+ * first and the matching blob ids are joined to the documents of the blobs.
+ * The repositories of a fork network live in the same shard.
+ *
  * @author James Moger
  *
  */
 public class LuceneService implements Runnable {
 
 
-	private static final int INDEX_VERSION = 6;
+	private static final int INDEX_VERSION = 9;
+
+	private static final Family<Histogram> INDEX_TIME = MetricRegistry.instance().histograms(
+			"gitblit_lucene_index_seconds", "Time to build or update the Lucene index of a repository", "operation");
+
+	private static final Family<Counter> INDEXED = MetricRegistry.instance().counters(
+			"gitblit_lucene_indexed_total", "Commits and blobs added to the Lucene indexes", "type");
+
+	private static final Histogram SEARCH_TIME = MetricRegistry.instance().histogram(
+			"gitblit_lucene_search_seconds", "Time to search the Lucene indexes");
+
+	private static final Histogram CODE_SEARCH_TIME = MetricRegistry.instance().histogram(
+			"gitblit_lucene_code_search_seconds", "Time to search the blobs of the Lucene indexes for a text or regex");
 
 	private static final String FIELD_OBJECT_TYPE = "type";
 	private static final String FIELD_PATH = "path";
@@ -116,9 +183,26 @@ public class LuceneService implements Runnable {
 	private static final String FIELD_COMMITTER = "committer";
 	private static final String FIELD_DATE = "date";
 	private static final String FIELD_TAG = "tag";
+	private static final String FIELD_REPOSITORY = "repository";
+	private static final String FIELD_CODE = "code";
+	private static final String FIELD_BLOB = "blob";
+
+	/**
+	 * The object type of the documents of the content of the blobs.
+	 */
+	private static final String CONTENT_TYPE = "content";
+
+	private static final Set<String> BLOB_FIELDS = Collections.singleton(FIELD_BLOB);
+
+	/**
+	 * The maximum number of hits of a query, or of candidates of a code search.
+	 */
+	private static final int MAX_HITS = 5000;
 
 	private static final String CONF_ALIAS = "aliases";
 	private static final String CONF_BRANCH = "branches";
+	private static final String CONF_INDEX = "index";
+	private static final String CONF_NETWORK = "network";
 
 	private final Logger logger = LoggerFactory.getLogger(LuceneService.class);
 
@@ -129,21 +213,94 @@ public class LuceneService implements Runnable {
 	private final Map<String, IndexSearcher> searchers = new ConcurrentHashMap<String, IndexSearcher>();
 	private final Map<String, IndexWriter> writers = new ConcurrentHashMap<String, IndexWriter>();
 
+	private final int shardCount;
+	private final File shardsFolder;
+	private final IndexWriter[] shardWriters;
+	private final IndexSearcher[] shardSearchers;
+	private final ExecutorService shardExecutor;
+
+	/**
+	 * Ordinals of the repositories, the sets of searched repositories are
+	 * cached as bitsets of their ordinals.
+	 */
+	private final Map<String, Integer> repositoryOrdinals = new ConcurrentHashMap<String, Integer>();
+	private final Cache<BitSet, Query> repositoryFilters = CacheBuilder.newBuilder()
+			.maximumSize(1000)
+			.expireAfterAccess(1, TimeUnit.HOURS)
+			.build();
+
+	/**
+	 * The fork networks of the repositories in the unified index, which
+	 * select their shard.
+	 */
+	private final Map<String, String> networks = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Repositories whose index is updated after a push.
+	 */
+	private final Set<String> pendingUpdates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Object indexLock = new Object();
+
 	private final String luceneIgnoreExtensions = "7z arc arj bin bmp dll doc docx exe gif gz jar jpg lib lzh odg odf odt pdf ppt png so swf xcf xls xlsx zip";
 	private Set<String> excludedExtensions;
 
 	public LuceneService(
 			IStoredSettings settings,
 			IRepositoryManager repositoryManager) {
+		this(settings, repositoryManager, null);
+	}
+
+	/**
+	 * @param settings
+	 * @param repositoryManager
+	 * @param indexFolder
+	 *            the folder of the unified index, which is used if
+	 *            web.luceneIndexShards is greater than zero
+	 * @since 1.10.1
+	 */
+	public LuceneService(
+			IStoredSettings settings,
+			IRepositoryManager repositoryManager,
+			File indexFolder) {
 
 		this.storedSettings = settings;
 		this.repositoryManager = repositoryManager;
 		this.repositoriesFolder = repositoryManager.getRepositoriesFolder();
 		String exts = luceneIgnoreExtensions;
+		int shards = 0;
 		if (settings != null) {
 			exts = settings.getString(Keys.web.luceneIgnoreExtensions, exts);
+			shards = settings.getInteger(Keys.web.luceneIndexShards, 0);
 		}
 		excludedExtensions = new TreeSet<String>(StringUtils.getStringsFromValue(exts));
+
+		this.shardCount = indexFolder == null ? 0 : Math.max(0, shards);
+		this.shardWriters = new IndexWriter[shardCount];
+		this.shardSearchers = new IndexSearcher[shardCount];
+		if (shardCount > 0) {
+			// the index is rebuilt if the number of shards changes
+			LuceneIndexStore store = new LuceneIndexStore(new File(indexFolder, shardCount + "-shards"), INDEX_VERSION);
+			this.shardsFolder = store.getPath().toFile();
+			this.shardExecutor = Executors.newFixedThreadPool(shardCount,
+					new ThreadFactoryBuilder()
+						.setNameFormat("LuceneSearch-%s")
+						.setDaemon(true)
+						.build());
+		} else {
+			this.shardsFolder = null;
+			this.shardExecutor = null;
+		}
+	}
+
+	/**
+	 * Returns true if the repositories are indexed into a unified, sharded
+	 * index instead of an index per repository.
+	 *
+	 * @return true if the index is unified
+	 * @since 1.10.1
+	 */
+	public boolean isUnifiedIndex() {
+		return shardCount > 0;
 	}
 
 	/**
@@ -167,14 +324,57 @@ public class LuceneService implements Runnable {
 		}
 
 		for (String repositoryName: repositoryManager.getRepositoryList()) {
+			index(repositoryName);
+		}
+	}
+
+	/**
+	 * Requests an update of the index of a repository which has been pushed
+	 * to.  Requests for a repository which has a pending update are coalesced.
+	 *
+	 * @param repositoryName
+	 * @return true if the update should be scheduled, false if an update is
+	 *         already pending or indexing is disabled
+	 * @since 1.10.1
+	 */
+	public boolean requestUpdate(String repositoryName) {
+		if (!storedSettings.getBoolean(Keys.web.allowLuceneIndexing, true)) {
+			return false;
+		}
+		return pendingUpdates.add(repositoryName);
+	}
+
+	/**
+	 * Updates the index of a repository for which an update was requested.
+	 *
+	 * @param repositoryName
+	 * @since 1.10.1
+	 */
+	public void update(String repositoryName) {
+		pendingUpdates.remove(repositoryName);
+		if (repositoryManager.isCollectingGarbage(repositoryName)) {
+			// the periodic run updates the index later
+			return;
+		}
+		index(repositoryName);
+	}
+
+	/**
+	 * Builds or updates the index of a repository which has indexed branches.
+	 * The periodic run and the updates requested by pushes are serialized.
+	 *
+	 * @param repositoryName
+	 */
+	private void index(String repositoryName) {
+		synchronized (indexLock) {
 			RepositoryModel model = repositoryManager.getRepositoryModel(repositoryName);
-			if (model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches)) {
+			if (model != null && model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches)) {
 				Repository repository = repositoryManager.getRepository(model.name);
 				if (repository == null) {
 					if (repositoryManager.isCollectingGarbage(model.name)) {
 						logger.info("Skipping Lucene index of {}, busy garbage collecting", repositoryName);
 					}
-					continue;
+					return;
 				}
 				index(model, repository);
 				repository.close();
@@ -193,10 +393,13 @@ public class LuceneService implements Runnable {
 	 *            the repository object
 	 */
 	private void index(RepositoryModel model, Repository repository) {
+		long start = System.nanoTime();
 		try {
-			if (shouldReindex(repository)) {
+			if (shouldReindex(model.name, repository)) {
 				// (re)build the entire index
 				IndexResult result = reindex(model, repository);
+				INDEX_TIME.labels("reindex").observeSince(start);
+				recordIndexed(result);
 
 				if (result.success) {
 					if (result.commitCount > 0) {
@@ -210,6 +413,8 @@ public class LuceneService implements Runnable {
 			} else {
 				// update the index with latest commits
 				IndexResult result = updateIndex(model, repository);
+				INDEX_TIME.labels("update").observeSince(start);
+				recordIndexed(result);
 				if (result.success) {
 					if (result.commitCount > 0) {
 						logger.info("Updated {} Lucene index with {} commits and {} files across {} branches in {} secs",
@@ -224,6 +429,14 @@ public class LuceneService implements Runnable {
 		}
 	}
 
+	private void recordIndexed(IndexResult result) {
+		if (result.success) {
+			INDEXED.labels("commit").add(result.commitCount);
+			INDEXED.labels("blob").add(result.blobCount);
+			INDEXED.labels("content").add(result.contentCount);
+		}
+	}
+
 	/**
 	 * Close the writer/searcher objects for a repository.
 	 *
@@ -254,6 +467,22 @@ public class LuceneService implements Runnable {
 	 *
 	 */
 	public synchronized void close() {
+		// close the shards of the unified index
+		for (int i = 0; i < shardCount; i++) {
+			try {
+				resetShardSearcher(i);
+				if (shardWriters[i] != null) {
+					shardWriters[i].close();
+					shardWriters[i] = null;
+				}
+			} catch (Throwable t) {
+				logger.error("Failed to close Lucene shard {}", i, t);
+			}
+		}
+		if (shardExecutor != null) {
+			shardExecutor.shutdownNow();
+		}
+
 		// close all writers
 		for (String writer : writers.keySet()) {
 			try {
@@ -283,6 +512,30 @@ public class LuceneService implements Runnable {
 	 * @return true, if successful
 	 */
 	public boolean deleteIndex(String repositoryName) {
+		if (isUnifiedIndex()) {
+			// delete the documents of the repository from its shard and the
+			// content of its blobs which no other repository shares
+			try {
+				int shard = getShard(repositoryName);
+				IndexWriter writer = getShardWriter(shard);
+				ContentIndex contents = new ContentIndex(writer);
+				try {
+					contents.delete(new TermQuery(new Term(FIELD_REPOSITORY, repositoryName)), null);
+					contents.purge();
+				} finally {
+					contents.close();
+				}
+				writer.commit();
+				resetShardSearcher(shard);
+			} catch (IOException e) {
+				logger.error("Failed to delete {} from the Lucene index", repositoryName, e);
+				return false;
+			}
+			networks.remove(repositoryName);
+			File configFile = getConfigFile(repositoryName);
+			return !configFile.exists() || configFile.delete();
+		}
+
 		// close any open writer/searcher
 		close(repositoryName);
 
@@ -356,13 +609,28 @@ public class LuceneService implements Runnable {
 		return StringUtils.getSHA1(branchName);
 	}
 
+	/**
+	 * Returns the Lucene configuration file of a repository in the unified
+	 * index.
+	 *
+	 * @param repositoryName
+	 * @return the config file
+	 */
+	private File getConfigFile(String repositoryName) {
+		return new File(shardsFolder, "repositories/" + StringUtils.getSHA1(repositoryName) + ".conf");
+	}
+
 	/**
 	 * Returns the Lucene configuration for the specified repository.
 	 *
+	 * @param repositoryName
 	 * @param repository
 	 * @return a config object
 	 */
-	private FileBasedConfig getConfig(Repository repository) {
+	private FileBasedConfig getConfig(String repositoryName, Repository repository) {
+		if (isUnifiedIndex()) {
+			return new FileBasedConfig(getConfigFile(repositoryName), FS.detect());
+		}
 		LuceneRepoIndexStore luceneIndex = new LuceneRepoIndexStore(repository.getDirectory(), INDEX_VERSION);
 		FileBasedConfig config = new FileBasedConfig(luceneIndex.getConfigFile(), FS.detect());
 		return config;
@@ -372,10 +640,15 @@ public class LuceneService implements Runnable {
 	 * Checks if an index exists for the repository, that is compatible with
 	 * INDEX_VERSION and the Lucene version.
 	 *
+	 * @param repositoryName
 	 * @param repository
 	 * @return true if no index is found for the repository, false otherwise.
 	 */
-	private boolean shouldReindex(Repository repository) {
+	private boolean shouldReindex(String repositoryName, Repository repository) {
+		if (isUnifiedIndex()) {
+			// the config of a repository is saved once it has been indexed
+			return !getConfigFile(repositoryName).exists();
+		}
 		return ! (new LuceneRepoIndexStore(repository.getDirectory(), INDEX_VERSION).hasIndex());
 	}
 
@@ -390,14 +663,22 @@ public class LuceneService implements Runnable {
 	 */
 	public IndexResult reindex(RepositoryModel model, Repository repository) {
 		IndexResult result = new IndexResult();
-		if (!deleteIndex(model.name)) {
+		if (!isUnifiedIndex() && !deleteIndex(model.name)) {
 			return result;
 		}
+		ContentIndex contents = null;
 		try {
 			String [] encodings = storedSettings.getStrings(Keys.web.blobEncodings).toArray(new String[0]);
-			FileBasedConfig config = getConfig(repository);
+			FileBasedConfig config = getConfig(model.name, repository);
 			Set<String> indexedCommits = new TreeSet<String>();
 			IndexWriter writer = getIndexWriter(model.name);
+			contents = new ContentIndex(writer);
+			if (isUnifiedIndex()) {
+				// the content of the blobs which are still referenced, e.g. by
+				// the forks of the repository, is kept
+				contents.delete(new TermQuery(new Term(FIELD_REPOSITORY, model.name)), null);
+				config.setString(CONF_INDEX, null, CONF_NETWORK, getNetwork(model.name));
+			}
 			// build a quick lookup of tags
 			Map<String, List<String>> tags = new HashMap<String, List<String>>();
 			for (RefModel tag : JGitUtils.getTags(repository, false, -1)) {
@@ -520,6 +801,7 @@ public class LuceneService implements Runnable {
 								Resolution.MINUTE);
 
 						Document doc = new Document();
+						doc.add(new Field(FIELD_REPOSITORY, model.name, StringField.TYPE_STORED));
 						doc.add(new Field(FIELD_OBJECT_TYPE, SearchObjectType.blob.name(), StringField.TYPE_STORED));
 						doc.add(new Field(FIELD_BRANCH, branchName, TextField.TYPE_STORED));
 						doc.add(new Field(FIELD_COMMIT, commit.getName(), TextField.TYPE_STORED));
@@ -536,19 +818,24 @@ public class LuceneService implements Runnable {
 							ext = name.substring(name.lastIndexOf('.') + 1);
 						}
 
-						// index the blob content
+						// index the blob content, unless it is indexed already
 						if (StringUtils.isEmpty(ext) || !excludedExtensions.contains(ext)) {
-							ObjectLoader ldr = repository.open(blobId, Constants.OBJ_BLOB);
-							InputStream in = ldr.openStream();
-							int n;
-							while ((n = in.read(tmp)) > 0) {
-								os.write(tmp, 0, n);
+							String id = blobId.getName();
+							if (!contents.contains(id)) {
+								ObjectLoader ldr = repository.open(blobId, Constants.OBJ_BLOB);
+								InputStream in = ldr.openStream();
+								int n;
+								while ((n = in.read(tmp)) > 0) {
+									os.write(tmp, 0, n);
+								}
+								in.close();
+								byte[] content = os.toByteArray();
+								String str = StringUtils.decodeString(content, encodings);
+								contents.add(id, str);
+								result.contentCount++;
+								os.reset();
 							}
-							in.close();
-							byte[] content = os.toByteArray();
-							String str = StringUtils.decodeString(content, encodings);
-							doc.add(new Field(FIELD_CONTENT, str, TextField.TYPE_STORED));
-							os.reset();
+							doc.add(new Field(FIELD_BLOB, id, StringField.TYPE_STORED));
 						}
 
 						// add the blob to the index
@@ -560,7 +847,7 @@ public class LuceneService implements Runnable {
 
 				// index the tip commit object
 				if (indexedCommits.add(tipId)) {
-					Document doc = createDocument(tip, tags.get(tipId));
+					Document doc = createDocument(model.name, tip, tags.get(tipId));
 					doc.add(new Field(FIELD_BRANCH, branchName, TextField.TYPE_STORED));
 					writer.addDocument(doc);
 					result.commitCount += 1;
@@ -574,7 +861,7 @@ public class LuceneService implements Runnable {
 				while ((rev = historyWalk.next()) != null) {
 					String hash = rev.getId().getName();
 					if (indexedCommits.add(hash)) {
-						Document doc = createDocument(rev, tags.get(hash));
+						Document doc = createDocument(model.name, rev, tags.get(hash));
 						doc.add(new Field(FIELD_BRANCH, branchName, TextField.TYPE_STORED));
 						writer.addDocument(doc);
 						result.commitCount += 1;
@@ -586,12 +873,17 @@ public class LuceneService implements Runnable {
 			reader.close();
 
 			// commit all changes and reset the searcher
+			contents.purge();
 			config.save();
 			writer.commit();
 			resetIndexSearcher(model.name);
 			result.success();
 		} catch (Exception e) {
 			logger.error("Exception while reindexing {}", model.name, e);
+		} finally {
+			if (contents != null) {
+				contents.close();
+			}
 		}
 		return result;
 	}
@@ -605,10 +897,12 @@ public class LuceneService implements Runnable {
 	 * @param branch
 	 *            the fully qualified branch name (e.g. refs/heads/master)
 	 * @param commit
+	 * @param contents
+	 *            the content documents of the index
 	 * @return true, if successful
 	 */
 	private IndexResult index(String repositoryName, Repository repository,
-			String branch, RevCommit commit) {
+			String branch, RevCommit commit, ContentIndex contents) {
 		IndexResult result = new IndexResult();
 		try {
 			String [] encodings = storedSettings.getStrings(Keys.web.blobEncodings).toArray(new String[0]);
@@ -621,12 +915,13 @@ public class LuceneService implements Runnable {
 					continue;
 				}
 				// delete the indexed blob
-				deleteBlob(repositoryName, branch, path.name);
+				contents.delete(getBlobQuery(repositoryName, branch, path.name), branch + "\n" + path.name);
 
 				// re-index the blob
 				if (!ChangeType.DELETE.equals(path.changeType)) {
 					result.blobCount++;
 					Document doc = new Document();
+					doc.add(new Field(FIELD_REPOSITORY, repositoryName, StringField.TYPE_STORED));
 					doc.add(new Field(FIELD_OBJECT_TYPE, SearchObjectType.blob.name(), StringField.TYPE_STORED));
 					doc.add(new Field(FIELD_BRANCH, branch, TextField.TYPE_STORED));
 					doc.add(new Field(FIELD_COMMIT, commit.getName(), TextField.TYPE_STORED));
@@ -644,13 +939,18 @@ public class LuceneService implements Runnable {
 					}
 
 					if (StringUtils.isEmpty(ext) || !excludedExtensions.contains(ext)) {
-						// read the blob content
-						String str = JGitUtils.getStringContent(repository, commit.getTree(),
-								path.path, encodings);
-						if (str != null) {
-							doc.add(new Field(FIELD_CONTENT, str, TextField.TYPE_STORED));
-							writer.addDocument(doc);
+						// read the blob content, unless it is indexed already
+						if (!contents.contains(path.objectId)) {
+							String str = JGitUtils.getStringContent(repository, path.objectId, encodings);
+							if (str == null) {
+								continue;
+							}
+							contents.add(path.objectId, str);
+							result.contentCount++;
 						}
+						doc.add(new Field(FIELD_BLOB, path.objectId, StringField.TYPE_STORED));
+						writer.addDocument(doc);
+						contents.added(branch + "\n" + path.path, path.objectId);
 					}
 				}
 			}
@@ -665,7 +965,7 @@ public class LuceneService implements Runnable {
 			}
 
 			// create and write the Lucene document
-			Document doc = createDocument(commit, commitTags);
+			Document doc = createDocument(repositoryName, commit, commitTags);
 			doc.add(new Field(FIELD_BRANCH, branch, TextField.TYPE_STORED));
 			result.commitCount++;
 			result.success = index(repositoryName, doc);
@@ -676,33 +976,55 @@ public class LuceneService implements Runnable {
 	}
 
 	/**
-	 * Delete a blob from the specified branch of the repository index.
+	 * Returns the query of the document of a blob on a branch.
 	 *
 	 * @param repositoryName
 	 * @param branch
 	 * @param path
+	 * @return the query
 	 * @throws Exception
-	 * @return true, if deleted, false if no record was deleted
 	 */
-	public boolean deleteBlob(String repositoryName, String branch, String path) throws Exception {
+	private Query getBlobQuery(String repositoryName, String branch, String path) throws Exception {
 		String pattern = MessageFormat.format("{0}:'{'0} AND {1}:\"'{'1'}'\" AND {2}:\"'{'2'}'\"", FIELD_OBJECT_TYPE, FIELD_BRANCH, FIELD_PATH);
 		String q = MessageFormat.format(pattern, SearchObjectType.blob.name(), branch, path);
 
 		StandardAnalyzer analyzer = new StandardAnalyzer();
 		QueryParser qp = new QueryParser(FIELD_SUMMARY, analyzer);
-		BooleanQuery query = new BooleanQuery.Builder().add(qp.parse(q), Occur.MUST).build();
+		BooleanQuery.Builder bldr = new BooleanQuery.Builder().add(qp.parse(q), Occur.MUST);
+		if (isUnifiedIndex()) {
+			bldr.add(new TermQuery(new Term(FIELD_REPOSITORY, repositoryName)), Occur.MUST);
+		}
+		return bldr.build();
+	}
 
+	/**
+	 * Delete a blob from the specified branch of the repository index.  The
+	 * content of the blob is deleted too, unless another branch, path or
+	 * repository shares it.
+	 *
+	 * @param repositoryName
+	 * @param branch
+	 * @param path
+	 * @throws Exception
+	 * @return true, if deleted, false if no record was deleted
+	 */
+	public boolean deleteBlob(String repositoryName, String branch, String path) throws Exception {
+		Query query = getBlobQuery(repositoryName, branch, path);
 		IndexWriter writer = getIndexWriter(repositoryName);
-		int numDocsBefore = writer.numDocs();
-		writer.deleteDocuments(query);
-		writer.commit();
-		int numDocsAfter = writer.numDocs();
-		if (numDocsBefore == numDocsAfter) {
-			logger.debug("no records found to delete {}", query.toString());
-			return false;
-		} else {
-			logger.debug("deleted {} records with {}", numDocsBefore - numDocsAfter, query.toString());
-			return true;
+		ContentIndex contents = new ContentIndex(writer);
+		try {
+			boolean deleted = contents.delete(query, null);
+			contents.purge();
+			writer.commit();
+			resetIndexSearcher(repositoryName);
+			if (deleted) {
+				logger.debug("deleted records with {}", query.toString());
+			} else {
+				logger.debug("no records found to delete {}", query.toString());
+			}
+			return deleted;
+		} finally {
+			contents.close();
 		}
 	}
 
@@ -715,9 +1037,11 @@ public class LuceneService implements Runnable {
 	 */
 	private IndexResult updateIndex(RepositoryModel model, Repository repository) {
 		IndexResult result = new IndexResult();
+		ContentIndex contents = null;
 		try {
-			FileBasedConfig config = getConfig(repository);
+			FileBasedConfig config = getConfig(model.name, repository);
 			config.load();
+			contents = new ContentIndex(getIndexWriter(model.name));
 
 			// build a quick lookup of annotated tags
 			Map<String, List<String>> tags = new HashMap<String, List<String>>();
@@ -810,7 +1134,7 @@ public class LuceneService implements Runnable {
 				Collections.reverse(revs);
 				for (RevCommit commit : revs) {
 					// index a commit
-					result.add(index(model.name, repository, branchName, commit));
+					result.add(index(model.name, repository, branchName, commit, contents));
 				}
 
 				// update the config
@@ -824,13 +1148,30 @@ public class LuceneService implements Runnable {
 			if (deletedBranches.size() > 0) {
 				for (String branch : deletedBranches) {
 					IndexWriter writer = getIndexWriter(model.name);
-					writer.deleteDocuments(new Term(FIELD_BRANCH, branch));
+					if (isUnifiedIndex()) {
+						contents.delete(new BooleanQuery.Builder()
+								.add(new TermQuery(new Term(FIELD_REPOSITORY, model.name)), Occur.MUST)
+								.add(new TermQuery(new Term(FIELD_BRANCH, branch)), Occur.MUST)
+								.build(), null);
+					} else {
+						contents.delete(new TermQuery(new Term(FIELD_BRANCH, branch)), null);
+					}
 					writer.commit();
 				}
 			}
+
+			// delete the content of the blobs which are no longer referenced
+			if (contents.purge() > 0) {
+				getIndexWriter(model.name).commit();
+				resetIndexSearcher(model.name);
+			}
 			result.success = true;
 		} catch (Throwable t) {
 			logger.error("Exception while updating {} Lucene index", model.name, t);
+		} finally {
+			if (contents != null) {
+				contents.close();
+			}
 		}
 		return result;
 	}
@@ -838,12 +1179,14 @@ public class LuceneService implements Runnable {
 	/**
 	 * Creates a Lucene document for a commit
 	 *
+	 * @param repositoryName
 	 * @param commit
 	 * @param tags
 	 * @return a Lucene document
 	 */
-	private Document createDocument(RevCommit commit, List<String> tags) {
+	private Document createDocument(String repositoryName, RevCommit commit, List<String> tags) {
 		Document doc = new Document();
+		doc.add(new Field(FIELD_REPOSITORY, repositoryName, StringField.TYPE_STORED));
 		doc.add(new Field(FIELD_OBJECT_TYPE, SearchObjectType.commit.name(), StringField.TYPE_STORED));
 		doc.add(new Field(FIELD_COMMIT, commit.getName(), TextField.TYPE_STORED));
 		doc.add(new Field(FIELD_DATE, DateTools.timeToString(commit.getCommitTime() * 1000L,
@@ -898,6 +1241,10 @@ public class LuceneService implements Runnable {
 	}
 
 	private synchronized void resetIndexSearcher(String repository) throws IOException {
+		if (isUnifiedIndex()) {
+			resetShardSearcher(getShard(repository));
+			return;
+		}
 		IndexSearcher searcher = searchers.remove(repository);
 		if (searcher != null) {
 			searcher.getIndexReader().close();
@@ -921,6 +1268,18 @@ public class LuceneService implements Runnable {
 		return searcher;
 	}
 
+	/**
+	 * Returns the analyzer of the documents, which splits the content of the
+	 * code field into trigrams.
+	 *
+	 * @return an analyzer
+	 */
+	private Analyzer newAnalyzer() {
+		Map<String, Analyzer> analyzers = new HashMap<String, Analyzer>();
+		analyzers.put(FIELD_CODE, CodeSearch.newTrigramAnalyzer());
+		return new PerFieldAnalyzerWrapper(new StandardAnalyzer(), analyzers);
+	}
+
 	/**
 	 * Gets an index writer for the repository. The index will be created if it
 	 * does not already exist or if forceCreate is specified.
@@ -930,14 +1289,16 @@ public class LuceneService implements Runnable {
 	 * @throws IOException
 	 */
 	private IndexWriter getIndexWriter(String repository) throws IOException {
+		if (isUnifiedIndex()) {
+			return getShardWriter(getShard(repository));
+		}
 		IndexWriter indexWriter = writers.get(repository);
 		if (indexWriter == null) {
 			File repositoryFolder = FileKey.resolve(new File(repositoriesFolder, repository), FS.DETECTED);
 			LuceneRepoIndexStore indexStore = new LuceneRepoIndexStore(repositoryFolder, INDEX_VERSION);
 			indexStore.create();
 			Directory directory = FSDirectory.open(indexStore.getPath());
-			StandardAnalyzer analyzer = new StandardAnalyzer();
-			IndexWriterConfig config = new IndexWriterConfig(analyzer);
+			IndexWriterConfig config = new IndexWriterConfig(newAnalyzer());
 			config.setOpenMode(OpenMode.CREATE_OR_APPEND);
 			indexWriter = new IndexWriter(directory, config);
 			writers.put(repository, indexWriter);
@@ -982,15 +1343,16 @@ public class LuceneService implements Runnable {
 	 * @return a list of SearchResults in order from highest to the lowest score
 	 *
 	 */
-	public List<SearchResult> search(String text, int page, int pageSize, String... repositories) {
+	public List<SearchResult> search(String text, final int page, final int pageSize, String... repositories) {
 		if (StringUtils.isEmpty(text)) {
 			return null;
 		}
 		if (ArrayUtils.isEmpty(repositories)) {
 			return null;
 		}
-		Set<SearchResult> results = new LinkedHashSet<SearchResult>();
-		StandardAnalyzer analyzer = new StandardAnalyzer();
+		long start = System.nanoTime();
+		final Set<SearchResult> results = new LinkedHashSet<SearchResult>();
+		final StandardAnalyzer analyzer = new StandardAnalyzer();
 		try {
 			// default search checks summary and content
 			BooleanQuery.Builder bldr = new BooleanQuery.Builder();
@@ -1003,52 +1365,826 @@ public class LuceneService implements Runnable {
 			qp.setAllowLeadingWildcard(true);
 			bldr.add(qp.parse(text), Occur.SHOULD);
 
-			IndexSearcher searcher;
+			final BooleanQuery query = bldr.build();
+			int offset = Math.max(0, (page - 1) * pageSize);
+			search(query, offset, repositories, new HitVisitor() {
+				@Override
+				public boolean visit(int hitId, ScoreDoc hit, Document doc, String repository, int totalHits)
+						throws Exception {
+					SearchResult result = createSearchResult(doc, hit.score, hitId, totalHits);
+					result.repository = repository;
+					String content = doc.get(FIELD_CONTENT);
+					result.fragment = getHighlightedFragment(analyzer, query, content, result);
+					results.add(result);
+					return results.size() < pageSize;
+				}
+			});
+		} catch (Exception e) {
+			logger.error("Exception while searching for {}", text, e);
+		} finally {
+			SEARCH_TIME.observeSince(start);
+		}
+		return new ArrayList<SearchResult>(results);
+	}
+
+	/**
+	 * Searches the blobs of the specified repositories for a text or a regular
+	 * expression.
+	 *
+	 * @param text
+	 *            if the text is null or empty, null is returned
+	 * @param regex
+	 *            true if the text is a regular expression
+	 * @param page
+	 *            the page number to retrieve. page is 1-indexed.
+	 * @param pageSize
+	 *            the number of elements to return for this page
+	 * @param repositories
+	 *            a list of repositories to search. if no repositories are
+	 *            specified null is returned.
+	 * @return a list of SearchResults in order from highest to the lowest score
+	 * @throws IllegalArgumentException
+	 *             if the regular expression is invalid or if it has no literal
+	 *             of at least three characters
+	 * @since 1.10.1
+	 */
+	public List<SearchResult> searchCode(String text, boolean regex, int page, int pageSize, List<String> repositories) {
+		if (ArrayUtils.isEmpty(repositories)) {
+			return null;
+		}
+		return searchCode(text, regex, page, pageSize, repositories.toArray(new String[0]));
+	}
+
+	/**
+	 * Searches the blobs of the specified repositories for a text or a regular
+	 * expression.  Unlike a query, which matches the words of the blobs, the
+	 * text may be any part of a line, e.g. "foo_bar(".  The fragment of a
+	 * result shows the matching lines of the blob.  The results are marked as
+	 * truncated if the search has exceeded its time budget or if there were
+	 * more candidates than could be verified.
+	 *
+	 * @param text
+	 *            if the text is null or empty, null is returned
+	 * @param regex
+	 *            true if the text is a regular expression
+	 * @param page
+	 *            the page number to retrieve. page is 1-indexed.
+	 * @param pageSize
+	 *            the number of elements to return for this page
+	 * @param repositories
+	 *            a list of repositories to search. if no repositories are
+	 *            specified null is returned.
+	 * @return a list of SearchResults in order from highest to the lowest score
+	 * @throws IllegalArgumentException
+	 *             if the regular expression is invalid or if it has no literal
+	 *             of at least three characters
+	 * @since 1.10.1
+	 */
+	public List<SearchResult> searchCode(String text, boolean regex, int page, final int pageSize,
+			String... repositories) {
+		if (StringUtils.isEmpty(text)) {
+			return null;
+		}
+		if (ArrayUtils.isEmpty(repositories)) {
+			return null;
+		}
+		final CodeSearch search = new CodeSearch(text, regex);
+		final long start = System.nanoTime();
+		final long budget = Math.max(0, storedSettings.getInteger(Keys.web.codeSearchBudget, 5000));
+		final long deadline = budget == 0 ? 0 : start + TimeUnit.MILLISECONDS.toNanos(budget);
+		final List<SearchResult> results = new ArrayList<SearchResult>();
+		final boolean [] truncated = { false };
+		try {
+			Query query = search.getCandidateQuery(FIELD_CODE,
+					new TermQuery(new Term(FIELD_OBJECT_TYPE, SearchObjectType.blob.name())));
+			final int offset = Math.max(0, (page - 1) * pageSize);
+			final int [] matches = { 0 };
+			final Map<String, String> fragments = new HashMap<String, String>();
+			// all candidates are verified to count the matching blobs
+			search(query, 0, repositories, new HitVisitor() {
+				@Override
+				public boolean visit(int hitId, ScoreDoc hit, Document doc, String repository, int totalHits)
+						throws Exception {
+					if (totalHits > MAX_HITS) {
+						// the candidates beyond the top hits are not verified
+						truncated[0] = true;
+					}
+					if (deadline != 0 && System.nanoTime() - deadline > 0) {
+						truncated[0] = true;
+						return false;
+					}
+					boolean onPage = matches[0] >= offset && results.size() < pageSize;
+					// a blob shared by branches or repositories is verified once
+					String path = doc.get(FIELD_PATH);
+					String key = doc.get(FIELD_BLOB) + "\n" + StringUtils.getFileExtension(path) + "\n" + onPage;
+					String fragment;
+					if (fragments.containsKey(key)) {
+						fragment = fragments.get(key);
+					} else {
+						try {
+							fragment = search.getFragment(doc.get(FIELD_CONTENT), path, onPage ? 5 : 1, deadline);
+						} catch (CodeSearch.DeadlineExceededException e) {
+							truncated[0] = true;
+							return false;
+						}
+						fragments.put(key, fragment);
+					}
+					if (fragment == null) {
+						return true;
+					}
+					matches[0]++;
+					if (onPage) {
+						SearchResult result = createSearchResult(doc, hit.score, matches[0], 0);
+						result.repository = repository;
+						result.fragment = fragment;
+						results.add(result);
+					}
+					return true;
+				}
+			});
+			if (truncated[0]) {
+				logger.warn("code search for {} was truncated after {} msecs with {} matches", text,
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), matches[0]);
+			}
+			for (SearchResult result : results) {
+				result.totalHits = matches[0];
+				result.truncated = truncated[0];
+			}
+		} catch (Exception e) {
+			logger.error("Exception while searching code for {}", text, e);
+		} finally {
+			CODE_SEARCH_TIME.observeSince(start);
+		}
+		return results;
+	}
+
+	/**
+	 * Receives the hits of a query in the order of their score.
+	 */
+	private interface HitVisitor {
+
+		/**
+		 * @param hitId
+		 *            the 1-based rank of the hit
+		 * @param hit
+		 * @param doc
+		 *            the document of the hit
+		 * @param repository
+		 *            the repository of the document
+		 * @param totalHits
+		 *            the number of documents which match the query
+		 * @return true to receive the next hit
+		 * @throws Exception
+		 */
+		boolean visit(int hitId, ScoreDoc hit, Document doc, String repository, int totalHits) throws Exception;
+	}
+
+	/**
+	 * Searches the indexes of the specified repositories and passes the hits
+	 * to the visitor.
+	 *
+	 * @param query
+	 * @param offset
+	 *            the number of top hits which are skipped
+	 * @param repositories
+	 * @param visitor
+	 * @throws Exception
+	 */
+	private void search(Query query, int offset, String[] repositories, HitVisitor visitor) throws Exception {
+		if (isUnifiedIndex()) {
+			searchShards(query, offset, repositories, visitor);
+			return;
+		}
+
+		IndexSearcher searcher;
+		if (repositories.length == 1) {
+			// single repository search
+			searcher = getIndexSearcher(repositories[0]);
+		} else {
+			// multiple repository search
+			List<IndexReader> readers = new ArrayList<IndexReader>();
+			for (String repository : repositories) {
+				IndexSearcher repositoryIndex = getIndexSearcher(repository);
+				readers.add(repositoryIndex.getIndexReader());
+			}
+			IndexReader[] rdrs = readers.toArray(new IndexReader[readers.size()]);
+			MultiSourceReader reader = new MultiSourceReader(rdrs);
+			searcher = new IndexSearcher(reader);
+		}
+
+		Query rewrittenQuery = searcher.rewrite(joinContent(query, Collections.singletonList(searcher)));
+		logger.debug(rewrittenQuery.toString());
+
+		TopScoreDocCollector collector = TopScoreDocCollector.create(MAX_HITS);
+		searcher.search(rewrittenQuery, collector);
+		ScoreDoc[] hits = collector.topDocs().scoreDocs;
+		int totalHits = collector.getTotalHits();
+		Map<String, String> contents = new HashMap<String, String>();
+		for (int i = offset; i < hits.length; i++) {
+			int docId = hits[i].doc;
+			Document doc = withContent(searcher, searcher.doc(docId), contents);
+			String repository;
 			if (repositories.length == 1) {
 				// single repository search
-				searcher = getIndexSearcher(repositories[0]);
+				repository = repositories[0];
 			} else {
-				// multiple repository search
-				List<IndexReader> readers = new ArrayList<IndexReader>();
-				for (String repository : repositories) {
-					IndexSearcher repositoryIndex = getIndexSearcher(repository);
-					readers.add(repositoryIndex.getIndexReader());
+				// multi-repository search
+				MultiSourceReader reader = (MultiSourceReader) searcher.getIndexReader();
+				int index = reader.getSourceIndex(docId);
+				repository = repositories[index];
+			}
+			if (!visitor.visit(i + 1, hits[i], doc, repository, totalHits)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Searches the shards of the unified index which hold any of the
+	 * repositories in parallel and merges their hits.
+	 *
+	 * @param query
+	 * @param offset
+	 *            the number of top hits which are skipped
+	 * @param repositories
+	 * @param visitor
+	 * @throws Exception
+	 */
+	private void searchShards(Query query, int offset, String[] repositories, HitVisitor visitor) throws Exception {
+		BitSet shards = new BitSet(shardCount);
+		for (String repository : repositories) {
+			shards.set(getShard(repository));
+		}
+
+		List<IndexSearcher> searchers = new ArrayList<IndexSearcher>();
+		try {
+			for (int shard = shards.nextSetBit(0); shard >= 0; shard = shards.nextSetBit(shard + 1)) {
+				searchers.add(acquireShardSearcher(shard));
+			}
+			final Query filteredQuery = new BooleanQuery.Builder()
+					.add(joinContent(query, searchers), Occur.MUST)
+					.add(getRepositoryFilter(repositories), Occur.FILTER)
+					.build();
+
+			List<Future<TopDocs>> futures = new ArrayList<Future<TopDocs>>();
+			for (final IndexSearcher searcher : searchers) {
+				futures.add(shardExecutor.submit(new Callable<TopDocs>() {
+					@Override
+					public TopDocs call() throws IOException {
+						TopScoreDocCollector collector = TopScoreDocCollector.create(MAX_HITS);
+						searcher.search(filteredQuery, collector);
+						return collector.topDocs();
+					}
+				}));
+			}
+			TopDocs[] shardHits = new TopDocs[futures.size()];
+			for (int i = 0; i < shardHits.length; i++) {
+				shardHits[i] = futures.get(i).get();
+			}
+
+			// the shard index of a merged hit is the index of its searcher
+			TopDocs hits = TopDocs.merge(MAX_HITS, shardHits);
+			Map<String, String> contents = new HashMap<String, String>();
+			for (int i = offset; i < hits.scoreDocs.length; i++) {
+				ScoreDoc hit = hits.scoreDocs[i];
+				IndexSearcher searcher = searchers.get(hit.shardIndex);
+				Document doc = withContent(searcher, searcher.doc(hit.doc), contents);
+				if (!visitor.visit(i + 1, hit, doc, doc.get(FIELD_REPOSITORY), hits.totalHits)) {
+					break;
 				}
-				IndexReader[] rdrs = readers.toArray(new IndexReader[readers.size()]);
-				MultiSourceReader reader = new MultiSourceReader(rdrs);
-				searcher = new IndexSearcher(reader);
 			}
+		} finally {
+			for (IndexSearcher searcher : searchers) {
+				searcher.getIndexReader().decRef();
+			}
+		}
+	}
 
-			BooleanQuery query = bldr.build();
-			Query rewrittenQuery = searcher.rewrite(query);
-			logger.debug(rewrittenQuery.toString());
+	/**
+	 * Joins the clauses of a query on the content of the blobs to the
+	 * documents of the blobs and excludes the content documents from the hits.
+	 *
+	 * @param query
+	 * @param searchers
+	 *            the searchers of the indexes which are searched
+	 * @return the query of the commits and of the blobs
+	 * @throws IOException
+	 */
+	private Query joinContent(Query query, List<IndexSearcher> searchers) throws IOException {
+		return new BooleanQuery.Builder()
+				.add(join(query, searchers), Occur.MUST)
+				.add(new TermQuery(new Term(FIELD_OBJECT_TYPE, CONTENT_TYPE)), Occur.MUST_NOT)
+				.build();
+	}
 
-			TopScoreDocCollector collector = TopScoreDocCollector.create(5000);
-			searcher.search(rewrittenQuery, collector);
-			int offset = Math.max(0, (page - 1) * pageSize);
-			ScoreDoc[] hits = collector.topDocs(offset, pageSize).scoreDocs;
-			int totalHits = collector.getTotalHits();
-			for (int i = 0; i < hits.length; i++) {
-				int docId = hits[i].doc;
-				Document doc = searcher.doc(docId);
-				SearchResult result = createSearchResult(doc, hits[i].score, offset + i + 1, totalHits);
-				if (repositories.length == 1) {
-					// single repository search
-					result.repository = repositories[0];
-				} else {
-					// multi-repository search
-					MultiSourceReader reader = (MultiSourceReader) searcher.getIndexReader();
-					int index = reader.getSourceIndex(docId);
-					result.repository = repositories[index];
+	/**
+	 * Replaces the clauses on the content in a query by their join.  The
+	 * required and the prohibited clauses on the content of a boolean query
+	 * are joined at once, e.g. all trigrams of a code search, so that the
+	 * content documents which match all of them are looked up.
+	 *
+	 * @param query
+	 * @param searchers
+	 * @return the joined query
+	 * @throws IOException
+	 */
+	private Query join(Query query, List<IndexSearcher> searchers) throws IOException {
+		if (isContentQuery(query)) {
+			return joinBlobs(query, searchers);
+		}
+		if (query instanceof BoostQuery) {
+			BoostQuery boostQuery = (BoostQuery) query;
+			return new BoostQuery(join(boostQuery.getQuery(), searchers), boostQuery.getBoost());
+		}
+		if (!(query instanceof BooleanQuery)) {
+			return query;
+		}
+		BooleanQuery booleanQuery = (BooleanQuery) query;
+		BooleanQuery.Builder bldr = new BooleanQuery.Builder();
+		bldr.setDisableCoord(booleanQuery.isCoordDisabled());
+		bldr.setMinimumNumberShouldMatch(booleanQuery.getMinimumNumberShouldMatch());
+		BooleanQuery.Builder required = new BooleanQuery.Builder();
+		BooleanQuery.Builder prohibited = new BooleanQuery.Builder();
+		Occur requiredOccur = null;
+		boolean isProhibited = false;
+		for (BooleanClause clause : booleanQuery.clauses()) {
+			Occur occur = clause.getOccur();
+			if (Occur.SHOULD == occur || !isContentQuery(clause.getQuery())) {
+				bldr.add(join(clause.getQuery(), searchers), occur);
+			} else if (Occur.MUST_NOT == occur) {
+				prohibited.add(clause.getQuery(), Occur.SHOULD);
+				isProhibited = true;
+			} else {
+				required.add(clause.getQuery(), occur);
+				if (requiredOccur == null || Occur.MUST == occur) {
+					requiredOccur = occur;
 				}
-				String content = doc.get(FIELD_CONTENT);
-				result.fragment = getHighlightedFragment(analyzer, query, content, result);
-				results.add(result);
 			}
-		} catch (Exception e) {
-			logger.error("Exception while searching for {}", text, e);
 		}
-		return new ArrayList<SearchResult>(results);
+		if (requiredOccur != null) {
+			bldr.add(joinBlobs(required.build(), searchers), requiredOccur);
+		}
+		if (isProhibited) {
+			bldr.add(joinBlobs(prohibited.build(), searchers), Occur.MUST_NOT);
+		}
+		return bldr.build();
+	}
+
+	/**
+	 * Returns true if a query only matches the content of blobs and commit
+	 * messages.
+	 *
+	 * @param query
+	 * @return true if the query is on the content
+	 */
+	private boolean isContentQuery(Query query) {
+		if (query instanceof BoostQuery) {
+			return isContentQuery(((BoostQuery) query).getQuery());
+		}
+		if (query instanceof BooleanQuery) {
+			List<BooleanClause> clauses = ((BooleanQuery) query).clauses();
+			for (BooleanClause clause : clauses) {
+				if (!isContentQuery(clause.getQuery())) {
+					return false;
+				}
+			}
+			return !clauses.isEmpty();
+		}
+		String field = null;
+		if (query instanceof TermQuery) {
+			field = ((TermQuery) query).getTerm().field();
+		} else if (query instanceof PhraseQuery) {
+			Term [] terms = ((PhraseQuery) query).getTerms();
+			if (terms.length > 0) {
+				field = terms[0].field();
+			}
+		} else if (query instanceof MultiPhraseQuery) {
+			List<Term []> terms = ((MultiPhraseQuery) query).getTermArrays();
+			if (!terms.isEmpty() && terms.get(0).length > 0) {
+				field = terms.get(0)[0].field();
+			}
+		} else if (query instanceof MultiTermQuery) {
+			field = ((MultiTermQuery) query).getField();
+		}
+		return FIELD_CONTENT.equals(field) || FIELD_CODE.equals(field);
+	}
+
+	/**
+	 * Joins a query on the content to the documents of the blobs.  The joined
+	 * query matches the documents of the blobs whose content document matches
+	 * the query, scored like their content, and it still matches the commits
+	 * by their message.
+	 *
+	 * @param query
+	 * @param searchers
+	 * @return the joined query
+	 * @throws IOException
+	 */
+	private Query joinBlobs(Query query, List<IndexSearcher> searchers) throws IOException {
+		Query contentQuery = new BooleanQuery.Builder()
+				.add(query, Occur.MUST)
+				.add(new TermQuery(new Term(FIELD_OBJECT_TYPE, CONTENT_TYPE)), Occur.FILTER)
+				.build();
+		// every matching content is collected, the top hits of the contents
+		// of all repositories of a shard may miss the filtered repositories
+		final Map<String, Float> scores = new HashMap<String, Float>();
+		for (IndexSearcher searcher : searchers) {
+			searcher.search(contentQuery, new SimpleCollector() {
+
+				private SortedDocValues blobs;
+
+				private Scorer scorer;
+
+				@Override
+				protected void doSetNextReader(LeafReaderContext context) throws IOException {
+					blobs = DocValues.getSorted(context.reader(), FIELD_BLOB);
+				}
+
+				@Override
+				public void setScorer(Scorer scorer) {
+					this.scorer = scorer;
+				}
+
+				@Override
+				public void collect(int doc) throws IOException {
+					if (blobs.getOrd(doc) < 0) {
+						return;
+					}
+					String blobId = blobs.get(doc).utf8ToString();
+					float score = scorer.score();
+					Float max = scores.get(blobId);
+					if (max == null || max < score) {
+						scores.put(blobId, score);
+					}
+				}
+
+				@Override
+				public boolean needsScores() {
+					return true;
+				}
+			});
+		}
+		if (scores.isEmpty()) {
+			return query;
+		}
+		return new BooleanQuery.Builder()
+				.add(query, Occur.SHOULD)
+				.add(new BlobQuery(scores), Occur.SHOULD)
+				.build();
+	}
+
+	/**
+	 * Matches the documents of blobs, each scored like the content of its
+	 * blob.
+	 */
+	private static class BlobQuery extends Query {
+
+		private final BytesRef [] blobIds;
+
+		private final float [] scores;
+
+		private final float topScore;
+
+		BlobQuery(Map<String, Float> scores) {
+			Map<String, Float> sorted = new TreeMap<String, Float>(scores);
+			this.blobIds = new BytesRef[sorted.size()];
+			this.scores = new float[sorted.size()];
+			float topScore = 0;
+			int i = 0;
+			for (Map.Entry<String, Float> entry : sorted.entrySet()) {
+				blobIds[i] = new BytesRef(entry.getKey());
+				this.scores[i] = entry.getValue();
+				topScore = Math.max(topScore, entry.getValue());
+				i++;
+			}
+			this.topScore = topScore;
+		}
+
+		@Override
+		public Weight createWeight(IndexSearcher searcher, boolean needsScores) {
+			return new Weight(this) {
+
+				private float queryWeight = 1f;
+
+				@Override
+				public void extractTerms(Set<Term> terms) {
+				}
+
+				@Override
+				public float getValueForNormalization() {
+					return queryWeight * topScore * queryWeight * topScore;
+				}
+
+				@Override
+				public void normalize(float norm, float boost) {
+					queryWeight = norm * boost;
+				}
+
+				@Override
+				public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+					Scorer scorer = scorer(context);
+					if (scorer != null && scorer.iterator().advance(doc) == doc) {
+						return Explanation.match(scorer.score(), "score of the content of the blob");
+					}
+					return Explanation.noMatch("no matching content of the blob");
+				}
+
+				@Override
+				public Scorer scorer(LeafReaderContext context) throws IOException {
+					Terms terms = context.reader().terms(FIELD_BLOB);
+					if (terms == null) {
+						return null;
+					}
+					// the documents are sorted with the index of their blob,
+					// a document holds a single blob
+					long [] docs = new long[16];
+					int count = 0;
+					TermsEnum termsEnum = terms.iterator();
+					PostingsEnum postings = null;
+					for (int i = 0; i < blobIds.length; i++) {
+						if (!termsEnum.seekExact(blobIds[i])) {
+							continue;
+						}
+						postings = termsEnum.postings(postings, PostingsEnum.NONE);
+						int doc;
+						while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+							if (count == docs.length) {
+								docs = Arrays.copyOf(docs, count * 2);
+							}
+							docs[count++] = ((long) doc << 32) | i;
+						}
+					}
+					if (count == 0) {
+						return null;
+					}
+					Arrays.sort(docs, 0, count);
+					return new BlobScorer(this, docs, count, queryWeight);
+				}
+			};
+		}
+
+		@Override
+		public String toString(String field) {
+			return FIELD_BLOB + ":(" + blobIds.length + " contents)";
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!super.equals(obj)) {
+				return false;
+			}
+			BlobQuery other = (BlobQuery) obj;
+			return Arrays.equals(blobIds, other.blobIds) && Arrays.equals(scores, other.scores);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * super.hashCode() + Arrays.hashCode(blobIds)) + Arrays.hashCode(scores);
+		}
+
+		private class BlobScorer extends Scorer {
+
+			private final long [] docs;
+
+			private final int count;
+
+			private final float queryWeight;
+
+			private int index = -1;
+
+			private int doc = -1;
+
+			BlobScorer(Weight weight, long [] docs, int count, float queryWeight) {
+				super(weight);
+				this.docs = docs;
+				this.count = count;
+				this.queryWeight = queryWeight;
+			}
+
+			@Override
+			public int docID() {
+				return doc;
+			}
+
+			@Override
+			public float score() {
+				return queryWeight * scores[(int) docs[index]];
+			}
+
+			@Override
+			public int freq() {
+				return 1;
+			}
+
+			@Override
+			public DocIdSetIterator iterator() {
+				return new DocIdSetIterator() {
+
+					@Override
+					public int docID() {
+						return doc;
+					}
+
+					@Override
+					public int nextDoc() {
+						if (++index < count) {
+							doc = (int) (docs[index] >>> 32);
+						} else {
+							index = count;
+							doc = NO_MORE_DOCS;
+						}
+						return doc;
+					}
+
+					@Override
+					public int advance(int target) {
+						while (nextDoc() < target) {
+						}
+						return doc;
+					}
+
+					@Override
+					public long cost() {
+						return count;
+					}
+				};
+			}
+		}
+	}
+
+	/**
+	 * Adds the content of a blob, which is stored once in its content
+	 * document, to the document of the blob.
+	 *
+	 * @param searcher
+	 * @param doc
+	 * @param contents
+	 *            the contents which have been read by the search
+	 * @return the document
+	 * @throws IOException
+	 */
+	private Document withContent(IndexSearcher searcher, Document doc, Map<String, String> contents)
+			throws IOException {
+		String blobId = doc.get(FIELD_BLOB);
+		if (blobId == null || doc.get(FIELD_CONTENT) != null) {
+			return doc;
+		}
+		String content = contents.get(blobId);
+		if (content == null) {
+			TopDocs hits = searcher.search(getContentQuery(blobId), 1);
+			if (hits.scoreDocs.length > 0) {
+				content = searcher.doc(hits.scoreDocs[0].doc).get(FIELD_CONTENT);
+			}
+			if (content == null) {
+				return doc;
+			}
+			contents.put(blobId, content);
+		}
+		doc.add(new StoredField(FIELD_CONTENT, content));
+		return doc;
+	}
+
+	private static Query getContentQuery(String blobId) {
+		return new BooleanQuery.Builder()
+				.add(new TermQuery(new Term(FIELD_BLOB, blobId)), Occur.FILTER)
+				.add(new TermQuery(new Term(FIELD_OBJECT_TYPE, CONTENT_TYPE)), Occur.FILTER)
+				.build();
+	}
+
+	/**
+	 * Returns the filter of the documents of the repositories.  The filters are
+	 * cached by the bitset of the ordinals of the repositories, i.e. by the
+	 * repositories a user may access, and the searchers cache the matching
+	 * documents of frequently used filters per segment.
+	 *
+	 * @param repositories
+	 * @return the filter query
+	 * @throws Exception
+	 */
+	private Query getRepositoryFilter(final String... repositories) throws Exception {
+		BitSet key = new BitSet();
+		for (String repository : repositories) {
+			key.set(getRepositoryOrdinal(repository));
+		}
+		return repositoryFilters.get(key, new Callable<Query>() {
+			@Override
+			public Query call() {
+				List<Term> terms = new ArrayList<Term>();
+				for (String repository : repositories) {
+					terms.add(new Term(FIELD_REPOSITORY, repository));
+				}
+				return new TermsQuery(terms);
+			}
+		});
+	}
+
+	private int getRepositoryOrdinal(String repository) {
+		Integer ordinal = repositoryOrdinals.get(repository);
+		if (ordinal == null) {
+			synchronized (repositoryOrdinals) {
+				ordinal = repositoryOrdinals.get(repository);
+				if (ordinal == null) {
+					ordinal = repositoryOrdinals.size();
+					repositoryOrdinals.put(repository, ordinal);
+				}
+			}
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Returns the shard of the unified index which holds the repository.  The
+	 * repositories of a fork network share a shard, so that they share the
+	 * content of their blobs.
+	 *
+	 * @param repository
+	 * @return the shard index
+	 */
+	private int getShard(String repository) {
+		return Math.floorMod(getNetwork(repository).hashCode(), shardCount);
+	}
+
+	/**
+	 * Returns the root of the fork network of a repository in the unified
+	 * index.  The network of an indexed repository is read from its config,
+	 * so that the repository stays in its shard if the root of its network is
+	 * renamed or deleted.
+	 *
+	 * @param repository
+	 * @return the name of the root repository
+	 */
+	private String getNetwork(String repository) {
+		String network = networks.get(repository);
+		if (network != null) {
+			return network;
+		}
+		File configFile = getConfigFile(repository);
+		if (configFile.exists()) {
+			FileBasedConfig config = new FileBasedConfig(configFile, FS.detect());
+			try {
+				config.load();
+				network = config.getString(CONF_INDEX, null, CONF_NETWORK);
+			} catch (Exception e) {
+				logger.error("Failed to read the Lucene config of {}", repository, e);
+			}
+		}
+		if (StringUtils.isEmpty(network)) {
+			ForkModel root = null;
+			if (repositoryManager.hasRepository(repository)) {
+				root = repositoryManager.getForkNetwork(repository);
+			}
+			network = root == null ? repository : root.repository.name;
+		}
+		networks.put(repository, network);
+		return network;
+	}
+
+	/**
+	 * Gets the index writer of a shard of the unified index.
+	 *
+	 * @param shard
+	 * @return an IndexWriter
+	 * @throws IOException
+	 */
+	private synchronized IndexWriter getShardWriter(int shard) throws IOException {
+		IndexWriter indexWriter = shardWriters[shard];
+		if (indexWriter == null) {
+			File folder = new File(shardsFolder, String.valueOf(shard));
+			folder.mkdirs();
+			Directory directory = FSDirectory.open(folder.toPath());
+			IndexWriterConfig config = new IndexWriterConfig(newAnalyzer());
+			config.setOpenMode(OpenMode.CREATE_OR_APPEND);
+			indexWriter = new IndexWriter(directory, config);
+			shardWriters[shard] = indexWriter;
+		}
+		return indexWriter;
+	}
+
+	/**
+	 * Gets the searcher of a shard of the unified index.  The reader of the
+	 * searcher is referenced until it is released with decRef, so that an
+	 * update of the shard does not close it during the search.
+	 *
+	 * @param shard
+	 * @return an IndexSearcher
+	 * @throws IOException
+	 */
+	private synchronized IndexSearcher acquireShardSearcher(int shard) throws IOException {
+		IndexSearcher searcher = shardSearchers[shard];
+		if (searcher == null) {
+			searcher = new IndexSearcher(DirectoryReader.open(getShardWriter(shard), true));
+			shardSearchers[shard] = searcher;
+		}
+		searcher.getIndexReader().incRef();
+		return searcher;
+	}
+
+	private synchronized void resetShardSearcher(int shard) throws IOException {
+		IndexSearcher searcher = shardSearchers[shard];
+		shardSearchers[shard] = null;
+		if (searcher != null) {
+			searcher.getIndexReader().close();
+		}
 	}
 
 	/**
@@ -1153,6 +2289,146 @@ public class LuceneService implements Runnable {
 		return sb.toString();
 	}
 
+	/**
+	 * The content documents of an index during an update.  The content of a
+	 * blob is added unless the index holds it already, and the content of the
+	 * blobs whose documents are deleted is purged at the end of the update
+	 * unless other documents still reference it.
+	 */
+	private class ContentIndex {
+
+		private final IndexWriter writer;
+
+		/**
+		 * The index before the update.
+		 */
+		private final IndexSearcher searcher;
+
+		private final Set<String> added = new HashSet<String>();
+
+		/**
+		 * The blobs of the documents added by the update, by branch and path.
+		 */
+		private final Map<String, String> addedBlobs = new HashMap<String, String>();
+
+		private final Set<String> released = new HashSet<String>();
+
+		ContentIndex(IndexWriter writer) throws IOException {
+			this.writer = writer;
+			this.searcher = new IndexSearcher(DirectoryReader.open(writer, true));
+		}
+
+		boolean contains(String blobId) throws IOException {
+			return added.contains(blobId) || searcher.count(getContentQuery(blobId)) > 0;
+		}
+
+		void add(String blobId, String content) throws IOException {
+			Document doc = new Document();
+			doc.add(new Field(FIELD_OBJECT_TYPE, CONTENT_TYPE, StringField.TYPE_STORED));
+			doc.add(new Field(FIELD_BLOB, blobId, StringField.TYPE_STORED));
+			doc.add(new SortedDocValuesField(FIELD_BLOB, new BytesRef(blobId)));
+			doc.add(new Field(FIELD_CONTENT, content, TextField.TYPE_STORED));
+			doc.add(new Field(FIELD_CODE, content, CodeSearch.TRIGRAMS));
+			writer.addDocument(doc);
+			added.add(blobId);
+		}
+
+		/**
+		 * Records the blob of a document added by the update.
+		 *
+		 * @param key
+		 *            the branch and the path of the document
+		 * @param blobId
+		 */
+		void added(String key, String blobId) {
+			addedBlobs.put(key, blobId);
+		}
+
+		/**
+		 * Deletes the documents of blobs and releases their content.
+		 *
+		 * @param query
+		 * @param key
+		 *            the branch and the path of the document, if it may have
+		 *            been added by the update
+		 * @return true if the index had documents to delete
+		 * @throws IOException
+		 */
+		boolean delete(Query query, String key) throws IOException {
+			final List<Integer> docs = new ArrayList<Integer>();
+			searcher.search(query, new SimpleCollector() {
+
+				private int docBase;
+
+				@Override
+				protected void doSetNextReader(LeafReaderContext context) {
+					docBase = context.docBase;
+				}
+
+				@Override
+				public void collect(int doc) {
+					docs.add(docBase + doc);
+				}
+
+				@Override
+				public boolean needsScores() {
+					return false;
+				}
+			});
+			for (int doc : docs) {
+				String blobId = searcher.doc(doc, BLOB_FIELDS).get(FIELD_BLOB);
+				if (blobId != null) {
+					released.add(blobId);
+				}
+			}
+			if (key != null && addedBlobs.containsKey(key)) {
+				released.add(addedBlobs.remove(key));
+			}
+			writer.deleteDocuments(query);
+			return !docs.isEmpty();
+		}
+
+		/**
+		 * Deletes the content of the released blobs which no document
+		 * references anymore.
+		 *
+		 * @return the number of deleted content documents
+		 * @throws IOException
+		 */
+		int purge() throws IOException {
+			if (released.isEmpty()) {
+				return 0;
+			}
+			int count = 0;
+			DirectoryReader reader = DirectoryReader.open(writer, true);
+			try {
+				IndexSearcher current = new IndexSearcher(reader);
+				for (String blobId : released) {
+					Query references = new BooleanQuery.Builder()
+							.add(new TermQuery(new Term(FIELD_BLOB, blobId)), Occur.FILTER)
+							.add(new TermQuery(new Term(FIELD_OBJECT_TYPE, SearchObjectType.blob.name())), Occur.FILTER)
+							.build();
+					if (current.count(references) == 0) {
+						writer.deleteDocuments(getContentQuery(blobId));
+						count++;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			released.clear();
+			return count;
+		}
+
+		void close() {
+			try {
+				searcher.getIndexReader().close();
+			} catch (IOException e) {
+				logger.error("Failed to close Lucene reader", e);
+			}
+		}
+	}
+
 	/**
 	 * Simple class to track the results of an index update.
 	 */
@@ -1163,11 +2439,13 @@ public class LuceneService implements Runnable {
 		int branchCount;
 		int commitCount;
 		int blobCount;
+		int contentCount;
 
 		void add(IndexResult result) {
 			this.branchCount += result.branchCount;
 			this.commitCount += result.commitCount;
 			this.blobCount += result.blobCount;
+			this.contentCount += result.contentCount;
 		}
 
 		void success() {
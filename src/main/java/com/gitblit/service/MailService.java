@@ -47,6 +47,10 @@ import org.slf4j.LoggerFactory;
 import com.gitblit.IStoredSettings;
 import com.gitblit.Keys;
 import com.gitblit.models.Mailing;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Gauge;
+import com.gitblit.utils.MetricRegistry.Histogram;
 import com.gitblit.utils.StringUtils;
 
 /**
@@ -57,6 +61,15 @@ import com.gitblit.utils.StringUtils;
  */
 public class MailService implements Runnable {
 
+	private static final Counter SENT = MetricRegistry.instance().counter(
+			"gitblit_mail_sent_total", "Messages delivered to the mail server");
+
+	private static final Counter FAILED = MetricRegistry.instance().counter(
+			"gitblit_mail_failures_total", "Failed deliveries, the message is retried on the next cycle");
+
+	private static final Histogram SEND_TIME = MetricRegistry.instance().histogram(
+			"gitblit_mail_send_seconds", "Time to deliver a message to the mail server");
+
 	private final Logger logger = LoggerFactory.getLogger(MailService.class);
 
 	private final Queue<Message> queue = new ConcurrentLinkedQueue<Message>();
@@ -68,6 +81,13 @@ public class MailService implements Runnable {
 	public MailService(IStoredSettings settings) {
 		this.settings = settings;
 
+		MetricRegistry.instance().gauge("gitblit_mail_queue_size", "Messages waiting to be sent", new Gauge() {
+			@Override
+			public double getValue() {
+				return queue.size();
+			}
+		});
+
 		final String mailUser = settings.getString(Keys.mail.username, null);
 		final String mailPassword = settings.getString(Keys.mail.password, null);
 		final boolean smtps = settings.getBoolean(Keys.mail.smtps, false);
@@ -277,8 +297,12 @@ public class MailService implements Runnable {
 							logger.info("send: '" + StringUtils.trimString(message.getSubject(), 60)
 									    + "' to:" + StringUtils.trimString(Arrays.toString(message.getAllRecipients()), 300));
 						}
+						long start = System.nanoTime();
 						Transport.send(message);
+						SEND_TIME.observeSince(start);
+						SENT.inc();
 					} catch (SendFailedException sfe) {
+						FAILED.inc();
 						if (settings.getBoolean(Keys.mail.debug, false)) {
 							logger.error("Failed to send message: {}", sfe.getMessage());
 							logger.info("   Invalid addresses: {}", Arrays.toString(sfe.getInvalidAddresses()));
@@ -291,6 +315,7 @@ public class MailService implements Runnable {
 						}
 						failures.add(message);
 					} catch (Throwable e) {
+						FAILED.inc();
 						logger.error("Failed to send message", e);
 						failures.add(message);
 					}
@@ -15,26 +15,42 @@
  */
 package com.gitblit.service;
 
-import java.text.MessageFormat;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.RefUpdate.Result;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchConnection;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.eclipse.jgit.transport.ReceiveCommand.Type;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.TrackingRefUpdate;
+import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,14 +58,26 @@ import com.gitblit.IStoredSettings;
 import com.gitblit.Keys;
 import com.gitblit.git.ReceiveCommandEvent;
 import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.MirrorStatus;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.tickets.BranchTicketService;
+import com.gitblit.utils.DeepCopier;
 import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.TimeUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * The Mirror service handles periodic fetching of mirrored repositories.
  *
+ * The service is ticked once a minute.  Each tick identifies any newly
+ * registered mirror repositories and dispatches the mirrors which are due for
+ * a check to a bounded pool of fetch workers.  A check first compares the
+ * upstream ref advertisement with the local refs and only negotiates a pack
+ * when the upstream has actually changed.  If adaptive polling is enabled,
+ * the polling interval of each mirror shrinks when the upstream changes and
+ * grows when it does not.
+ *
  * @author James Moger
  *
  */
@@ -59,6 +87,14 @@ public class MirrorService implements Runnable {
 
 	private final Set<String> repairAttempted = Collections.synchronizedSet(new HashSet<String>());
 
+	private final Map<String, Long> knownRepositories = new ConcurrentHashMap<String, Long>();
+
+	private final Map<String, MirrorStatus> mirrors = new ConcurrentHashMap<String, MirrorStatus>();
+
+	private final Set<String> queued = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final Set<String> fetching = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	private final IStoredSettings settings;
 
 	private final IRepositoryManager repositoryManager;
@@ -69,6 +105,16 @@ public class MirrorService implements Runnable {
 
 	private final UserModel gitblitUser;
 
+	private final long defaultInterval;
+
+	private final long minInterval;
+
+	private final long maxInterval;
+
+	private final boolean adaptive;
+
+	private ExecutorService fetchExecutor;
+
 	public MirrorService(
 			IStoredSettings settings,
 			IRepositoryManager repositoryManager) {
@@ -77,6 +123,14 @@ public class MirrorService implements Runnable {
 		this.repositoryManager = repositoryManager;
 		this.gitblitUser = new UserModel("gitblit");
 		this.gitblitUser.displayName = "Gitblit";
+
+		int period = TimeUtils.convertFrequencyToMinutes(settings.getString(Keys.git.mirrorPeriod, "30 mins"), 5);
+		int minPeriod = TimeUtils.convertFrequencyToMinutes(settings.getString(Keys.git.mirrorMinPeriod, "5 mins"), 5);
+		int maxPeriod = TimeUtils.convertFrequencyToMinutes(settings.getString(Keys.git.mirrorMaxPeriod, "6 hours"), 1);
+		this.adaptive = settings.getBoolean(Keys.git.mirrorAdaptivePeriod, true);
+		this.defaultInterval = period * TimeUtils.MIN;
+		this.minInterval = Math.min(minPeriod, period) * TimeUtils.MIN;
+		this.maxInterval = Math.max(maxPeriod, period) * TimeUtils.MIN;
 	}
 
 	public boolean isReady() {
@@ -84,11 +138,32 @@ public class MirrorService implements Runnable {
 	}
 
 	public boolean isRunning() {
-		return running.get();
+		return running.get() || !queued.isEmpty();
 	}
 
 	public void close() {
 		forceClose.set(true);
+		synchronized (this) {
+			if (fetchExecutor != null) {
+				fetchExecutor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the status of all known mirror repositories.
+	 *
+	 * @return the list of mirror statuses
+	 */
+	public List<MirrorStatus> getStatus() {
+		List<MirrorStatus> list = new ArrayList<MirrorStatus>();
+		for (MirrorStatus status : mirrors.values()) {
+			synchronized (status) {
+				list.add(DeepCopier.copy(status));
+			}
+		}
+		Collections.sort(list);
+		return list;
 	}
 
 	@Override
@@ -98,121 +173,387 @@ public class MirrorService implements Runnable {
 		}
 
 		running.set(true);
+		try {
+			identifyMirrors();
 
-		for (String repositoryName : repositoryManager.getRepositoryList()) {
-			if (forceClose.get()) {
-				break;
-			}
-			if (repositoryManager.isCollectingGarbage(repositoryName)) {
-				logger.debug("mirror is skipping {} garbagecollection", repositoryName);
-				continue;
-			}
-			RepositoryModel model = null;
-			Repository repository = null;
-			try {
-				model = repositoryManager.getRepositoryModel(repositoryName);
-				if (!model.isMirror && !model.isBare) {
-					// repository must be a valid bare git mirror
-					logger.debug("mirror is skipping {} !mirror !bare", repositoryName);
+			long now = System.currentTimeMillis();
+			for (final MirrorStatus status : mirrors.values()) {
+				if (forceClose.get()) {
+					break;
+				}
+				if (!status.isDue(now) || queued.contains(status.repository)) {
 					continue;
 				}
-
-				repository = repositoryManager.getRepository(repositoryName);
-				if (repository == null) {
-					logger.warn("MirrorExecutor is missing repository {}?!?", repositoryName);
+				if (repositoryManager.isCollectingGarbage(status.repository)) {
+					logger.debug("mirror is skipping {} garbagecollection", status.repository);
 					continue;
 				}
-
-				// automatically repair (some) invalid fetch ref specs
-				if (!repairAttempted.contains(repositoryName)) {
-					repairAttempted.add(repositoryName);
-					JGitUtils.repairFetchSpecs(repository);
+				queued.add(status.repository);
+				try {
+					getFetchExecutor().execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								if (!forceClose.get()) {
+									check(status.repository);
+								}
+							} finally {
+								queued.remove(status.repository);
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// service is closing
+					queued.remove(status.repository);
+					break;
 				}
+			}
+		} catch (Exception e) {
+			logger.error("Error scheduling mirror updates", e);
+		} finally {
+			running.set(false);
+		}
+	}
 
-				// find the first mirror remote - there should only be one
-				StoredConfig rc = repository.getConfig();
-				RemoteConfig mirror = null;
-				List<RemoteConfig> configs = RemoteConfig.getAllRemoteConfigs(rc);
-				for (RemoteConfig config : configs) {
-					if (config.isMirror()) {
-						mirror = config;
-						break;
-					}
-				}
+	/**
+	 * Tracks the repositories which have a mirror remote.  A repository is
+	 * inspected again only if its config has changed since it was last
+	 * inspected, and removed repositories are forgotten.
+	 */
+	protected void identifyMirrors() {
+		List<String> repositories = repositoryManager.getRepositoryList();
+		Set<String> current = new HashSet<String>(repositories);
+		knownRepositories.keySet().retainAll(current);
+		mirrors.keySet().retainAll(current);
 
-				if (mirror == null) {
-					// repository does not have a mirror remote
-					logger.debug("mirror is skipping {} no mirror remote found", repositoryName);
-					continue;
-				}
+		for (String repositoryName : repositories) {
+			long configModified = getConfigModified(repositoryName);
+			Long known = knownRepositories.put(repositoryName, configModified);
+			if (known != null && known == configModified) {
+				continue;
+			}
+			RepositoryModel model = repositoryManager.getRepositoryModel(repositoryName);
+			if (model == null || (!model.isMirror && !model.isBare)) {
+				// repository must be a valid bare git mirror
+				logger.debug("mirror is skipping {} !mirror !bare", repositoryName);
+				continue;
+			}
+			if (!model.isMirror && !hasMirrorRemote(repositoryName)) {
+				continue;
+			}
+			track(repositoryName);
+		}
+	}
+
+	/**
+	 * Returns the last modification time of the config of a repository.
+	 *
+	 * @param repositoryName
+	 * @return the time or 0 if the config is missing
+	 */
+	private long getConfigModified(String repositoryName) {
+		File folder = FileKey.resolve(new File(repositoryManager.getRepositoriesFolder(), repositoryName),
+				FS.DETECTED);
+		if (folder == null) {
+			return 0;
+		}
+		return new File(folder, Constants.CONFIG).lastModified();
+	}
 
-				logger.debug("checking {} remote {} for ref updates", repositoryName, mirror.getName());
-				final boolean testing = false;
-				Git git = new Git(repository);
-				CredentialsProvider creds = null;
-				URIish fetchUri = mirror.getURIs().get(0);
-				if (fetchUri.getUser() != null && fetchUri.getPass() != null) {
-				    creds = new UsernamePasswordCredentialsProvider(fetchUri.getUser(), fetchUri.getPass());
+	private boolean hasMirrorRemote(String repositoryName) {
+		Repository repository = repositoryManager.getRepository(repositoryName);
+		if (repository == null) {
+			return false;
+		}
+		try {
+			return getMirrorRemote(repository) != null;
+		} catch (Exception e) {
+			logger.error("Error reading remotes of {}", repositoryName, e);
+			return false;
+		} finally {
+			repository.close();
+		}
+	}
+
+	private MirrorStatus track(String repositoryName) {
+		MirrorStatus status = mirrors.get(repositoryName);
+		if (status == null) {
+			status = new MirrorStatus(repositoryName);
+			status.interval = defaultInterval;
+			MirrorStatus existing = mirrors.putIfAbsent(repositoryName, status);
+			if (existing != null) {
+				status = existing;
+			} else {
+				logger.debug("tracking mirror {}", repositoryName);
+			}
+		}
+		return status;
+	}
+
+	/**
+	 * Stops tracking a repository which is no longer a mirror.  It is
+	 * inspected again on the next tick.
+	 *
+	 * @param repositoryName
+	 */
+	private void untrack(String repositoryName) {
+		mirrors.remove(repositoryName);
+		knownRepositories.remove(repositoryName);
+	}
+
+	private synchronized ExecutorService getFetchExecutor() {
+		if (fetchExecutor == null) {
+			int workers = Math.max(1, settings.getInteger(Keys.git.mirrorWorkers, 2));
+			fetchExecutor = Executors.newFixedThreadPool(workers,
+					new ThreadFactoryBuilder()
+						.setNameFormat("MirrorFetch-%s")
+						.setDaemon(true)
+						.build());
+		}
+		return fetchExecutor;
+	}
+
+	/**
+	 * Checks the mirror for upstream ref changes and fetches them if needed.
+	 * This method blocks until the check is complete.
+	 *
+	 * @param repositoryName
+	 * @return the updated status of the mirror
+	 */
+	public MirrorStatus check(String repositoryName) {
+		MirrorStatus status = track(repositoryName);
+		if (!fetching.add(repositoryName)) {
+			// another worker is already fetching this mirror
+			return status;
+		}
+
+		long start = System.nanoTime();
+		boolean changed = false;
+		boolean failed = false;
+		String error = null;
+		boolean skipped = false;
+		boolean fetched = false;
+		Repository repository = null;
+		try {
+			RepositoryModel model = repositoryManager.getRepositoryModel(repositoryName);
+			repository = repositoryManager.getRepository(repositoryName);
+			if (model == null || repository == null) {
+				logger.warn("MirrorExecutor is missing repository {}?!?", repositoryName);
+				untrack(repositoryName);
+				return status;
+			}
+
+			// automatically repair (some) invalid fetch ref specs
+			if (!repairAttempted.contains(repositoryName)) {
+				repairAttempted.add(repositoryName);
+				JGitUtils.repairFetchSpecs(repository);
+			}
+
+			RemoteConfig mirror = getMirrorRemote(repository);
+			if (mirror == null) {
+				// repository does not have a mirror remote
+				logger.debug("mirror is skipping {} no mirror remote found", repositoryName);
+				untrack(repositoryName);
+				return status;
+			}
+			status.remote = mirror.getName();
+
+			logger.debug("checking {} remote {} for ref updates", repositoryName, mirror.getName());
+			Git git = new Git(repository);
+			CredentialsProvider creds = null;
+			URIish fetchUri = mirror.getURIs().get(0);
+			if (fetchUri.getUser() != null && fetchUri.getPass() != null) {
+			    creds = new UsernamePasswordCredentialsProvider(fetchUri.getUser(), fetchUri.getPass());
+			}
+
+			boolean prune = git.fetch().setRemote(mirror.getName()).isRemoveDeletedRefs();
+			if (!hasUpstreamChanges(repository, mirror, creds, prune)) {
+				logger.debug("mirror {} matches the advertised refs of {}", repositoryName, mirror.getName());
+				skipped = true;
+			} else {
+				FetchResult result = git.fetch().setCredentialsProvider(creds).setRemote(mirror.getName()).call();
+				fetched = true;
+				changed = processRefUpdates(model, repository, result.getTrackingRefUpdates());
+			}
+		} catch (Exception e) {
+			failed = true;
+			error = e.getMessage();
+			logger.error("Error updating mirror {}", repositoryName, e);
+		} finally {
+			// cleanup
+			if (repository != null) {
+				repository.close();
+			}
+
+			long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			synchronized (status) {
+				Date now = new Date();
+				status.checks++;
+				status.lastCheck = now;
+				status.lastDuration = duration;
+				status.totalDuration += duration;
+				if (skipped) {
+					status.skipped++;
 				}
-				FetchResult result = git.fetch().setCredentialsProvider(creds).setRemote(mirror.getName()).setDryRun(testing).call();
-				Collection<TrackingRefUpdate> refUpdates = result.getTrackingRefUpdates();
-				if (refUpdates.size() > 0) {
-					ReceiveCommand ticketBranchCmd = null;
-					for (TrackingRefUpdate ru : refUpdates) {
-						StringBuilder sb = new StringBuilder();
-						sb.append("updated mirror ");
-						sb.append(repositoryName);
-						sb.append(" ");
-						sb.append(ru.getRemoteName());
-						sb.append(" -> ");
-						sb.append(ru.getLocalName());
-						if (ru.getResult() == Result.FORCED) {
-							sb.append(" (forced)");
-						}
-						sb.append(" ");
-						sb.append(ru.getOldObjectId() == null ? "" : ru.getOldObjectId().abbreviate(7).name());
-						sb.append("..");
-						sb.append(ru.getNewObjectId() == null ? "" : ru.getNewObjectId().abbreviate(7).name());
-						logger.info(sb.toString());
-
-						if (BranchTicketService.BRANCH.equals(ru.getLocalName())) {
-							ReceiveCommand.Type type = null;
-							switch (ru.getResult()) {
-							case NEW:
-								type = Type.CREATE;
-								break;
-							case FAST_FORWARD:
-								type = Type.UPDATE;
-								break;
-							case FORCED:
-								type = Type.UPDATE_NONFASTFORWARD;
-								break;
-							default:
-								type = null;
-								break;
-							}
+				if (fetched) {
+					status.fetches++;
+				}
+				if (changed) {
+					status.lastChange = now;
+				}
+				if (failed) {
+					status.failures++;
+					status.lastError = error;
+				} else {
+					status.lastSync = now;
+					status.lastError = null;
+				}
+				status.interval = nextInterval(status.interval, changed, failed);
+				status.nextCheck = new Date(now.getTime() + status.interval);
+			}
+			fetching.remove(repositoryName);
+		}
+		return status;
+	}
 
-							if (type != null) {
-								ticketBranchCmd = new ReceiveCommand(ru.getOldObjectId(),
-									ru.getNewObjectId(), ru.getLocalName(), type);
-							}
+	/**
+	 * Determines the next polling interval for a mirror.  Changing mirrors are
+	 * polled more frequently, idle and failing mirrors are polled less
+	 * frequently.
+	 */
+	long nextInterval(long interval, boolean changed, boolean failed) {
+		if (!adaptive) {
+			return defaultInterval;
+		}
+		long next;
+		if (failed) {
+			next = interval * 2;
+		} else if (changed) {
+			next = interval / 2;
+		} else {
+			next = interval + (interval / 2);
+		}
+		return Math.max(minInterval, Math.min(maxInterval, next));
+	}
+
+	private RemoteConfig getMirrorRemote(Repository repository) throws Exception {
+		// find the first mirror remote - there should only be one
+		StoredConfig rc = repository.getConfig();
+		List<RemoteConfig> configs = RemoteConfig.getAllRemoteConfigs(rc);
+		for (RemoteConfig config : configs) {
+			if (config.isMirror()) {
+				return config;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compares the ref advertisement of the mirror remote with the local refs.
+	 * This is much cheaper than a fetch because no pack negotiation happens.
+	 *
+	 * @param repository
+	 * @param mirror
+	 * @param creds
+	 * @param prune true if the fetch would remove refs deleted upstream
+	 * @return true if a fetch would update at least one local ref
+	 */
+	protected boolean hasUpstreamChanges(Repository repository, RemoteConfig mirror,
+			CredentialsProvider creds, boolean prune) throws Exception {
+
+		Transport transport = Transport.open(repository, mirror);
+		try {
+			transport.setCredentialsProvider(creds);
+			FetchConnection connection = transport.openFetch();
+			try {
+				Set<String> advertised = new HashSet<String>();
+				for (Ref ref : connection.getRefs()) {
+					for (RefSpec spec : mirror.getFetchRefSpecs()) {
+						if (!spec.matchSource(ref)) {
+							continue;
+						}
+						String destination = spec.isWildcard() ? spec.expandFromSource(ref).getDestination() : spec.getDestination();
+						if (destination == null) {
+							continue;
+						}
+						advertised.add(destination);
+						Ref local = repository.exactRef(destination);
+						if (local == null || local.getObjectId() == null || !local.getObjectId().equals(ref.getObjectId())) {
+							return true;
 						}
 					}
+				}
 
-					if (ticketBranchCmd != null) {
-						repository.fireEvent(new ReceiveCommandEvent(model, ticketBranchCmd));
+				if (prune) {
+					for (Ref local : repository.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+						if (advertised.contains(local.getName())) {
+							continue;
+						}
+						for (RefSpec spec : mirror.getFetchRefSpecs()) {
+							if (spec.getDestination() != null && spec.matchDestination(local)) {
+								return true;
+							}
+						}
 					}
 				}
-			} catch (Exception e) {
-				logger.error("Error updating mirror {}", repositoryName, e);
+				return false;
 			} finally {
-				// cleanup
-				if (repository != null) {
-					repository.close();
+				connection.close();
+			}
+		} finally {
+			transport.close();
+		}
+	}
+
+	private boolean processRefUpdates(RepositoryModel model, Repository repository, Collection<TrackingRefUpdate> refUpdates) {
+		if (refUpdates.size() == 0) {
+			return false;
+		}
+		ReceiveCommand ticketBranchCmd = null;
+		for (TrackingRefUpdate ru : refUpdates) {
+			StringBuilder sb = new StringBuilder();
+			sb.append("updated mirror ");
+			sb.append(model.name);
+			sb.append(" ");
+			sb.append(ru.getRemoteName());
+			sb.append(" -> ");
+			sb.append(ru.getLocalName());
+			if (ru.getResult() == Result.FORCED) {
+				sb.append(" (forced)");
+			}
+			sb.append(" ");
+			sb.append(ru.getOldObjectId() == null ? "" : ru.getOldObjectId().abbreviate(7).name());
+			sb.append("..");
+			sb.append(ru.getNewObjectId() == null ? "" : ru.getNewObjectId().abbreviate(7).name());
+			logger.info(sb.toString());
+
+			if (BranchTicketService.BRANCH.equals(ru.getLocalName())) {
+				ReceiveCommand.Type type = null;
+				switch (ru.getResult()) {
+				case NEW:
+					type = Type.CREATE;
+					break;
+				case FAST_FORWARD:
+					type = Type.UPDATE;
+					break;
+				case FORCED:
+					type = Type.UPDATE_NONFASTFORWARD;
+					break;
+				default:
+					type = null;
+					break;
+				}
+
+				if (type != null) {
+					ticketBranchCmd = new ReceiveCommand(ru.getOldObjectId(),
+						ru.getNewObjectId(), ru.getLocalName(), type);
 				}
 			}
 		}
 
-		running.set(false);
+		if (ticketBranchCmd != null) {
+			repository.fireEvent(new ReceiveCommandEvent(model, ticketBranchCmd));
+		}
+		return true;
 	}
 }
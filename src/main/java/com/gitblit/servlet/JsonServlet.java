@@ -31,6 +31,8 @@ import org.slf4j.LoggerFactory;
 import com.gitblit.Constants;
 import com.gitblit.utils.JsonUtils;
 import com.gitblit.utils.StringUtils;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Servlet class for interpreting json requests.
@@ -121,11 +123,28 @@ public abstract class JsonServlet extends HttpServlet {
 
 	protected void serialize(HttpServletResponse response, Object o) throws IOException {
 		if (o != null) {
-			// Send JSON response
-			String json = JsonUtils.toJsonString(o);
-			response.setCharacterEncoding(Constants.ENCODING);
-			response.setContentType("application/json");
-			response.getWriter().append(json);
+			// Stream JSON response
+			Gson gson = JsonUtils.gson();
+			JsonWriter writer = newJsonWriter(response);
+			gson.toJson(o, o.getClass(), writer);
+			writer.flush();
 		}
 	}
+
+	/**
+	 * Returns a writer which streams JSON to the response, for responses
+	 * which are written one element at a time.
+	 *
+	 * @param response
+	 * @return a JSON writer
+	 * @throws IOException
+	 */
+	protected JsonWriter newJsonWriter(HttpServletResponse response) throws IOException {
+		response.setCharacterEncoding(Constants.ENCODING);
+		response.setContentType("application/json");
+		JsonWriter writer = new JsonWriter(response.getWriter());
+		// escape like Gson does for whole documents
+		writer.setHtmlSafe(true);
+		return writer;
+	}
 }
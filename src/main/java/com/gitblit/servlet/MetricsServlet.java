@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.MessageFormat;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.manager.IAuthenticationManager;
+import com.gitblit.models.UserModel;
+import com.gitblit.utils.MetricRegistry;
+
+/**
+ * Publishes the metrics of the server in the Prometheus text exposition
+ * format.
+ *
+ * The endpoint is disabled by default and requires an administrator unless
+ * anonymous scrapes are allowed.  Scrapers authenticate with http basic
+ * authentication.
+ */
+@Singleton
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final transient Logger logger = LoggerFactory.getLogger(MetricsServlet.class);
+
+	private final IStoredSettings settings;
+
+	private final IAuthenticationManager authenticationManager;
+
+	private final MetricRegistry registry;
+
+	@Inject
+	public MetricsServlet(IStoredSettings settings, IAuthenticationManager authenticationManager) {
+		this(settings, authenticationManager, MetricRegistry.instance());
+	}
+
+	MetricsServlet(IStoredSettings settings, IAuthenticationManager authenticationManager,
+			MetricRegistry registry) {
+		this.settings = settings;
+		this.authenticationManager = authenticationManager;
+		this.registry = registry;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		if (!settings.getBoolean(Keys.web.enableMetricsEndpoint, false)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		if (!settings.getBoolean(Keys.web.metricsEndpointAllowAnonymous, false)) {
+			UserModel user = authenticationManager.authenticate(request);
+			if (user == null) {
+				String challenge = MessageFormat.format("Basic realm=\"{0}\"", settings.getString(Keys.web.siteName, ""));
+				response.setHeader("WWW-Authenticate", challenge);
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+				return;
+			}
+			if (!user.canAdmin()) {
+				logger.warn("{} is not permitted to scrape the metrics", user.username);
+				response.sendError(HttpServletResponse.SC_FORBIDDEN);
+				return;
+			}
+		}
+
+		response.setContentType(CONTENT_TYPE);
+		response.setHeader("Cache-Control", "no-cache");
+		Writer writer = response.getWriter();
+		registry.write(writer);
+		writer.flush();
+	}
+}
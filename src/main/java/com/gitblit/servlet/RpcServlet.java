@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -30,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
 
 import com.gitblit.Constants;
 import com.gitblit.Constants.RpcRequest;
@@ -37,17 +39,23 @@ import com.gitblit.GitBlitException;
 import com.gitblit.IStoredSettings;
 import com.gitblit.Keys;
 import com.gitblit.manager.IGitblit;
+import com.gitblit.models.PathModel;
 import com.gitblit.models.RefModel;
 import com.gitblit.models.RegistrantAccessPermission;
 import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.models.ServerSettings;
 import com.gitblit.models.TeamModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.utils.DeepCopier;
 import com.gitblit.utils.HttpUtils;
 import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.JsonUtils;
+import com.gitblit.utils.RepositoryChanges;
 import com.gitblit.utils.RpcUtils;
 import com.gitblit.utils.StringUtils;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Handles remote procedure calls.
@@ -59,12 +67,29 @@ public class RpcServlet extends JsonServlet {
 
 	private static final long serialVersionUID = 1L;
 
-	public static final int PROTOCOL_VERSION = 8;
+	public static final int PROTOCOL_VERSION = 10;
 
 	private IStoredSettings settings;
 
 	private IGitblit gitblit;
 
+	private final Map<String, BranchList> branchLists = new ConcurrentHashMap<String, BranchList>();
+
+	/**
+	 * The branches of a repository at the version at which it was listed.
+	 */
+	private static class BranchList {
+
+		final long version;
+
+		final List<String> branches;
+
+		BranchList(long version, List<String> branches) {
+			this.version = version;
+			this.branches = branches;
+		}
+	}
+
 	@Inject
 	public RpcServlet(IStoredSettings settings, IGitblit gitblit) {
 		this.settings = settings;
@@ -110,50 +135,84 @@ public class RpcServlet extends JsonServlet {
 			sb.append("{0}");
 			String cloneUrl = sb.toString();
 
-			// list repositories
-			List<RepositoryModel> list = gitblit.getRepositoryModels(user);
-			Map<String, RepositoryModel> repositories = new HashMap<String, RepositoryModel>();
-			for (RepositoryModel model : list) {
-				String url = MessageFormat.format(cloneUrl, model.name);
-				repositories.put(url, model);
-			}
-			result = repositories;
+			RepositoryChanges changes = gitblit.getRepositoryChanges();
+			long version = changes.getVersion();
+			String fingerprint = getFingerprint(user, cloneUrl);
+			if (isNotModified(request, response, version, fingerprint)) {
+				return;
+			}
+			long since = getDeltaSince(request, response, changes, fingerprint);
+
+			// stream the repositories, loading one model at a time
+			Gson gson = JsonUtils.gson();
+			JsonWriter writer = newJsonWriter(response);
+			writer.beginObject();
+			for (String name : gitblit.queryRepositories(user, new RepositoryQuery())) {
+				if (since >= 0 && !changes.isChangedSince(name, since)) {
+					continue;
+				}
+				RepositoryModel model = gitblit.getRepositoryModel(user, name);
+				if (model == null) {
+					continue;
+				}
+				writer.name(MessageFormat.format(cloneUrl, model.name));
+				gson.toJson(model, RepositoryModel.class, writer);
+			}
+			writer.endObject();
+			writer.flush();
 		} else if (RpcRequest.LIST_BRANCHES.equals(reqType)) {
 			// list all local branches in all repositories accessible to user
+			RepositoryChanges changes = gitblit.getRepositoryChanges();
+			long version = changes.getVersion();
+			String fingerprint = getFingerprint(user, StringUtils.isEmpty(objectName) ? "" : objectName);
+			if (isNotModified(request, response, version, fingerprint)) {
+				return;
+			}
+			long since = getDeltaSince(request, response, changes, fingerprint);
+
+			RepositoryQuery query = new RepositoryQuery();
+			if (!StringUtils.isEmpty(objectName)) {
+				query.repository = objectName;
+			}
 			Map<String, List<String>> localBranches = new HashMap<String, List<String>>();
-			List<RepositoryModel> models = gitblit.getRepositoryModels(user);
-			for (RepositoryModel model : models) {
-				if (!model.hasCommits) {
-					// skip empty repository
+			for (String name : gitblit.queryRepositories(user, query)) {
+				if (!StringUtils.isEmpty(objectName) && !objectName.equals(name)) {
+					// skip repository if a name was submitted and it doesn't match
 					continue;
 				}
-				if (model.isCollectingGarbage) {
-					// skip garbage collecting repository
-					logger.warn(MessageFormat.format("Temporarily excluding {0} from RPC, busy collecting garbage",
-							model.name));
+				if (since >= 0 && !changes.isChangedSince(name, since)) {
 					continue;
 				}
-				if(!StringUtils.isEmpty(objectName) && !objectName.equals(model.name)) {
-					// skip repository if a name was submitted and it doesn't match
+				List<String> branches = getBranches(name, changes.getVersion(name));
+				if (branches == null) {
 					continue;
 				}
-				// get local branches
-				Repository repository = gitblit.getRepository(model.name);
-				List<RefModel> refs = JGitUtils.getLocalBranches(repository, false, -1);
-				if (model.showRemoteBranches) {
-					// add remote branches if repository displays them
-					refs.addAll(JGitUtils.getRemoteBranches(repository, false, -1));
+				if (branches.size() > 0 || since >= 0) {
+					// a delta lists changed repositories which lost their branches
+					localBranches.put(name, branches);
 				}
-				if (refs.size() > 0) {
-					List<String> branches = new ArrayList<String>();
-					for (RefModel ref : refs) {
-						branches.add(ref.getName());
-					}
-					localBranches.put(model.name, branches);
+			}
+			result = localBranches;
+		} else if (RpcRequest.LIST_TREE.equals(reqType)) {
+			// list a folder with the last commits of its entries
+			RepositoryModel model = gitblit.getRepositoryModel(user, objectName);
+			if (model == null) {
+				response.sendError(forbiddenCode);
+			} else if (!model.hasCommits) {
+				result = new ArrayList<PathModel>();
+			} else {
+				String path = request.getParameter("f");
+				Repository repository = gitblit.getRepository(model.name);
+				RevCommit commit = JGitUtils.getCommit(repository, request.getParameter("h"));
+				if (commit == null) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				} else {
+					List<PathModel> paths = JGitUtils.getFilesInPath2(repository, path, commit);
+					gitblit.setLastCommits(model.name, repository, commit, path, paths);
+					result = paths;
 				}
 				repository.close();
 			}
-			result = localBranches;
 		} else if (RpcRequest.GET_USER.equals(reqType)) {
 			if (StringUtils.isEmpty(objectName)) {
 				if (UserModel.ANONYMOUS.equals(user)) {
@@ -433,4 +492,133 @@ public class RpcServlet extends JsonServlet {
 		// send the result of the request
 		serialize(response, result);
 	}
+
+	/**
+	 * Returns a fingerprint of what determines a listing for a user: the
+	 * permissions of the user and of the teams of the user and the parameters
+	 * of the request.
+	 */
+	private String getFingerprint(UserModel user, String parameters) {
+		StringBuilder sb = new StringBuilder(parameters);
+		if (user == null) {
+			sb.append("\n$anonymous");
+		} else {
+			sb.append('\n').append(user.username).append(':').append(user.canAdmin).append(user.permissions);
+			for (TeamModel team : user.teams) {
+				sb.append('\n').append(team.name).append(':').append(team.canAdmin).append(team.permissions);
+			}
+		}
+		return StringUtils.getSHA1(sb.toString()).substring(0, 16);
+	}
+
+	/**
+	 * Returns true if the repository list is versioned by the repository
+	 * changes.  An uncached list is scanned again for every request and may
+	 * find repositories which appeared on disk without a recorded change.
+	 *
+	 * @return true if the repository list is cached
+	 */
+	private boolean isVersionedList() {
+		return settings.getBoolean(Keys.git.cacheRepositoryList, true);
+	}
+
+	/**
+	 * Sets the ETag of a listing and answers a request for the listing which
+	 * the client already has with 304 Not Modified.  A listing of an uncached
+	 * repository list has no ETag.
+	 *
+	 * @return true if the listing is not modified
+	 */
+	private boolean isNotModified(HttpServletRequest request, HttpServletResponse response, long version,
+			String fingerprint) {
+		if (!isVersionedList()) {
+			return false;
+		}
+		String etag = "\"" + version + "." + fingerprint + "\"";
+		response.setHeader("ETag", etag);
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the version of the since parameter if only the repositories
+	 * which changed after that version need to be listed.  The since parameter
+	 * is the ETag of a previous listing for the same user and parameters.
+	 *
+	 * @return the version or -1 if the full listing must be sent
+	 */
+	private long getDeltaSince(HttpServletRequest request, HttpServletResponse response, RepositoryChanges changes,
+			String fingerprint) {
+		String since = request.getParameter("since");
+		if (StringUtils.isEmpty(since) || !isVersionedList()) {
+			return -1;
+		}
+		since = since.replace("\"", "");
+		int dot = since.indexOf('.');
+		if (dot < 0 || !fingerprint.equals(since.substring(dot + 1))) {
+			return -1;
+		}
+		long version;
+		try {
+			version = Long.parseLong(since.substring(0, dot));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+		if (!changes.isDeltaSince(version)) {
+			return -1;
+		}
+		response.setHeader("X-Gitblit-Delta", "true");
+		return version;
+	}
+
+	/**
+	 * Returns the branches of a repository.  The branches are listed again
+	 * only if the repository has changed since they were last listed.
+	 *
+	 * @param repositoryName
+	 * @param version
+	 *            the version at which the repository last changed
+	 * @return the branches or null if the repository is not available
+	 */
+	private List<String> getBranches(String repositoryName, long version) {
+		String key = repositoryName.toLowerCase();
+		BranchList list = branchLists.get(key);
+		if (list != null && list.version == version) {
+			return list.branches;
+		}
+		RepositoryModel model = gitblit.getRepositoryModel(repositoryName);
+		if (model == null) {
+			branchLists.remove(key);
+			return null;
+		}
+		if (model.isCollectingGarbage) {
+			// skip garbage collecting repository
+			logger.warn(MessageFormat.format("Temporarily excluding {0} from RPC, busy collecting garbage",
+					model.name));
+			return null;
+		}
+		List<String> branches = new ArrayList<String>();
+		if (model.hasCommits) {
+			// get local branches
+			Repository repository = gitblit.getRepository(model.name);
+			if (repository == null) {
+				return null;
+			}
+			List<RefModel> refs = JGitUtils.getLocalBranches(repository, false, -1);
+			if (model.showRemoteBranches) {
+				// add remote branches if repository displays them
+				refs.addAll(JGitUtils.getRemoteBranches(repository, false, -1));
+			}
+			for (RefModel ref : refs) {
+				branches.add(ref.getName());
+			}
+			repository.close();
+		}
+		branchLists.put(key, new BranchList(version, branches));
+		return branches;
+	}
 }
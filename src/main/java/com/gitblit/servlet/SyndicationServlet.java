@@ -15,6 +15,7 @@
  */
 package com.gitblit.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
@@ -42,8 +45,11 @@ import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.servlet.AuthenticationFilter.AuthenticatedRequest;
 import com.gitblit.utils.BugtraqProcessor;
+import com.gitblit.utils.FeedCache;
+import com.gitblit.utils.FeedCache.Feed;
 import com.gitblit.utils.HttpUtils;
 import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.RepositoryChanges;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.utils.SyndicationUtils;
 import com.google.inject.Inject;
@@ -70,6 +76,10 @@ public class SyndicationServlet extends HttpServlet {
 
 	private IProjectManager projectManager;
 
+	private final FeedCache feedCache;
+
+	private final FeedCache searchCache;
+
 	@Inject
 	public SyndicationServlet(
 			IStoredSettings settings,
@@ -79,6 +89,10 @@ public class SyndicationServlet extends HttpServlet {
 		this.settings = settings;
 		this.repositoryManager = repositoryManager;
 		this.projectManager = projectManager;
+		this.feedCache = new FeedCache("syndication",
+				settings.getFilesize(Keys.web.syndicationCacheSize, 8 * 1024 * 1024L));
+		this.searchCache = new FeedCache("syndication_search",
+				settings.getFilesize(Keys.web.syndicationSearchCacheSize, 2 * 1024 * 1024L));
 	}
 
 	/**
@@ -236,6 +250,33 @@ public class SyndicationServlet extends HttpServlet {
 		}
 		char fsc = settings.getChar(Keys.web.forwardSlashCharacter, '/');
 
+		// identify the feed by its parameters and by the state of its repositories
+		StringBuilder key = new StringBuilder();
+		key.append(gitblitUrl).append('\n').append(repositoryName).append('\n').append(objectId);
+		key.append('\n').append(objectType).append(':').append(length).append(':').append(offset);
+		key.append('\n').append(feedTitle).append('\n').append(feedDescription);
+		if (!StringUtils.isEmpty(searchString)) {
+			key.append('\n').append(searchType).append(':').append(searchString);
+		}
+		RepositoryChanges changes = repositoryManager.getRepositoryChanges();
+		for (String name : repositories) {
+			key.append('\n').append(name).append(':').append(changes.getVersion(name));
+			key.append(':').append(getTip(name, objectId));
+		}
+		String etag = FeedCache.getETag(key.toString());
+		FeedCache cache = StringUtils.isEmpty(searchString) ? feedCache : searchCache;
+		response.setHeader("ETag", etag);
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		Feed feed = cache.get(etag);
+		if (feed != null) {
+			writeFeed(request, response, feed);
+			return;
+		}
+
 		List<FeedEntryModel> entries = new ArrayList<FeedEntryModel>();
 
 		for (String name : repositories) {
@@ -305,8 +346,8 @@ public class SyndicationServlet extends HttpServlet {
 					commits = JGitUtils.getRevLog(repository, objectId, offset, length);
 				} else {
 					// repository search
-					commits = JGitUtils.searchRevlogs(repository, objectId, searchString, searchType,
-							offset, length);
+					commits = repositoryManager.searchRevlogs(name, repository, objectId, searchString,
+							searchType, offset, length);
 				}
 				Map<ObjectId, List<RefModel>> allRefs = JGitUtils.getAllRefs(repository, model.showRemoteBranches);
 				BugtraqProcessor processor = new BugtraqProcessor(settings);
@@ -377,13 +418,66 @@ public class SyndicationServlet extends HttpServlet {
 		}
 
 		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
 			SyndicationUtils.toRSS(gitblitUrl, feedLink, getTitle(feedTitle, objectId),
-					feedDescription, entries, response.getOutputStream());
+					feedDescription, entries, os);
+			// the dates of the entries do not change with a rewritten history
+			feed = cache.put(etag, os.toByteArray(), System.currentTimeMillis());
+			writeFeed(request, response, feed);
 		} catch (Exception e) {
 			logger.error("An error occurred during feed generation", e);
 		}
 	}
 
+	/**
+	 * Returns the id of the commit a feed of a repository starts from.
+	 *
+	 * @param repositoryName
+	 * @param objectId
+	 * @return the commit id or "-" if the repository or the commit are not available
+	 */
+	private String getTip(String repositoryName, String objectId) {
+		Repository repository = repositoryManager.getRepository(repositoryName);
+		if (repository == null) {
+			return "-";
+		}
+		try {
+			ObjectId id = repository.resolve(objectId);
+			return id == null ? "-" : id.getName();
+		} catch (Exception e) {
+			return "-";
+		} finally {
+			repository.close();
+		}
+	}
+
+	/**
+	 * Writes a feed, or 304 Not Modified if the client has the feed already.
+	 *
+	 * @param request
+	 * @param response
+	 * @param feed
+	 * @throws java.io.IOException
+	 */
+	private void writeFeed(HttpServletRequest request, HttpServletResponse response, Feed feed)
+			throws java.io.IOException {
+		response.setDateHeader("Last-Modified", feed.lastModified);
+		long ifModifiedSince = -1;
+		try {
+			ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException e) {
+			// ignore a malformed date
+		}
+		// dates of http headers are in seconds
+		if (ifModifiedSince >= 0 && request.getHeader("If-None-Match") == null
+				&& feed.lastModified / 1000 <= ifModifiedSince / 1000) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setContentLength(feed.content.length);
+		response.getOutputStream().write(feed.content);
+	}
+
 	@Override
 	protected void doPost(javax.servlet.http.HttpServletRequest request,
 			javax.servlet.http.HttpServletResponse response) throws javax.servlet.ServletException,
@@ -720,13 +720,26 @@ public class BranchTicketService extends ITicketService implements RefsChangedLi
 	 * @return true, if the change was committed
 	 */
 	@Override
-	protected synchronized boolean commitChangeImpl(RepositoryModel repository, long ticketId, Change change) {
+	protected boolean commitChangeImpl(RepositoryModel repository, long ticketId, Change change) {
+		return commitChangesImpl(repository, ticketId, Arrays.asList(change));
+	}
+
+	/**
+	 * Commit several ticket changes to the repository as a single commit.
+	 *
+	 * @param repository
+	 * @param ticketId
+	 * @param changes
+	 * @return true, if the changes were committed
+	 */
+	@Override
+	protected synchronized boolean commitChangesImpl(RepositoryModel repository, long ticketId, List<Change> changes) {
 		boolean success = false;
 
 		Repository db = repositoryManager.getRepository(repository.name);
 		try {
-			DirCache index = createIndex(db, ticketId, change);
-			success = commitIndex(db, index, change.author, "#" + ticketId);
+			DirCache index = createIndex(db, ticketId, changes);
+			success = commitIndex(db, index, changes.get(0).author, "#" + ticketId);
 
 		} catch (Throwable t) {
 			log.error("Failed to commit ticket {} to {}", ticketId, db.getDirectory(), t);
@@ -737,14 +750,14 @@ public class BranchTicketService extends ITicketService implements RefsChangedLi
 	}
 
 	/**
-	 * Creates an in-memory index of the ticket change.
+	 * Creates an in-memory index of the ticket changes.
 	 *
 	 * @param changeId
-	 * @param change
+	 * @param changes
 	 * @return an in-memory index
 	 * @throws IOException
 	 */
-	private DirCache createIndex(Repository db, long ticketId, Change change)
+	private DirCache createIndex(Repository db, long ticketId, List<Change> changes)
 			throws IOException, ClassNotFoundException, NoSuchFieldException {
 
 		String ticketPath = toTicketPath(ticketId);
@@ -756,15 +769,16 @@ public class BranchTicketService extends ITicketService implements RefsChangedLi
 		try {
 			// create/update the journal
 			// exclude the attachment content
-			List<Change> changes = getJournal(db, ticketId);
-			changes.add(change);
-			String journal = TicketSerializer.serializeJournal(changes).trim();
+			List<Change> journalChanges = getJournal(db, ticketId);
+			journalChanges.addAll(changes);
+			String journal = TicketSerializer.serializeJournal(journalChanges).trim();
+			Change last = changes.get(changes.size() - 1);
 
 			byte [] journalBytes = journal.getBytes(Constants.ENCODING);
 			String journalPath = ticketPath + "/" + JOURNAL;
 			final DirCacheEntry journalEntry = new DirCacheEntry(journalPath);
 			journalEntry.setLength(journalBytes.length);
-			journalEntry.setLastModified(change.date.getTime());
+			journalEntry.setLastModified(last.date.getTime());
 			journalEntry.setFileMode(FileMode.REGULAR_FILE);
 			journalEntry.setObjectId(inserter.insert(org.eclipse.jgit.lib.Constants.OBJ_BLOB, journalBytes));
 
@@ -772,11 +786,20 @@ public class BranchTicketService extends ITicketService implements RefsChangedLi
 			builder.add(journalEntry);
 			ignorePaths.add(journalEntry.getPathString());
 
-			// Add any attachments to the index
-			if (change.hasAttachments()) {
+			// Add any attachments to the index, the most recent upload of
+			// an attachment name wins
+			Set<String> attachmentPaths = new HashSet<String>();
+			for (int i = changes.size() - 1; i >= 0; i--) {
+				Change change = changes.get(i);
+				if (!change.hasAttachments()) {
+					continue;
+				}
 				for (Attachment attachment : change.attachments) {
 					// build a path name for the attachment and mark as ignored
 					String path = toAttachmentPath(ticketId, attachment.name);
+					if (!attachmentPaths.add(path)) {
+						continue;
+					}
 					ignorePaths.add(path);
 
 					// create an index entry for this attachment
@@ -18,6 +18,7 @@ package com.gitblit.tickets;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -464,14 +465,27 @@ public class FileTicketService extends ITicketService {
 	 * @return true, if the change was committed
 	 */
 	@Override
-	protected synchronized boolean commitChangeImpl(RepositoryModel repository, long ticketId, Change change) {
+	protected boolean commitChangeImpl(RepositoryModel repository, long ticketId, Change change) {
+		return commitChangesImpl(repository, ticketId, Arrays.asList(change));
+	}
+
+	/**
+	 * Appends several changes to the ticket journal with a single write.
+	 *
+	 * @param repository
+	 * @param ticketId
+	 * @param changes
+	 * @return true, if the changes were committed
+	 */
+	@Override
+	protected synchronized boolean commitChangesImpl(RepositoryModel repository, long ticketId, List<Change> changes) {
 		boolean success = false;
 
 		Repository db = repositoryManager.getRepository(repository.name);
 		try {
-			List<Change> changes = getJournal(db, ticketId);
-			changes.add(change);
-			String journal = TicketSerializer.serializeJournal(changes).trim();
+			List<Change> journalChanges = getJournal(db, ticketId);
+			journalChanges.addAll(changes);
+			String journal = TicketSerializer.serializeJournal(journalChanges).trim();
 
 			String journalPath = toTicketPath(ticketId) + "/" + JOURNAL;
 			File file = new File(db.getDirectory(), journalPath);
@@ -54,8 +54,11 @@ import com.gitblit.models.TicketModel.TicketLink;
 import com.gitblit.tickets.TicketIndexer.Lucene;
 import com.gitblit.utils.DeepCopier;
 import com.gitblit.utils.DiffUtils;
-import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.DiffUtils.DiffStat;
+import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Gauge;
 import com.gitblit.utils.StringUtils;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -83,6 +86,12 @@ public abstract class ITicketService implements IManager {
 
 	private static final String DUE_DATE_PATTERN = "yyyy-MM-dd";
 
+	private static final Counter CACHE_HITS = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result").labels("tickets", "hit");
+
+	private static final Counter CACHE_MISSES = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result").labels("tickets", "miss");
+
 	/**
 	 * Object filter interface to querying against all available ticket models.
 	 */
@@ -170,6 +179,13 @@ public abstract class ITicketService implements IManager {
 				.expireAfterAccess(30, TimeUnit.MINUTES)
 				.build();
 
+		MetricRegistry.instance().gauges("gitblit_cache_size", "Entries held by a cache", "cache").register(new Gauge() {
+			@Override
+			public double getValue() {
+				return ticketsCache.size();
+			}
+		}, "tickets");
+
 		this.labelsCache = new ConcurrentHashMap<String, List<TicketLabel>>();
 		this.milestonesCache = new ConcurrentHashMap<String, List<TicketMilestone>>();
 
@@ -863,6 +879,7 @@ public abstract class ITicketService implements IManager {
 
 		// if ticket not cached
 		if (ticket == null) {
+			CACHE_MISSES.inc();
 			//load ticket
 			ticket = getTicketImpl(repository, ticketId);
 			// if ticket exists
@@ -886,6 +903,8 @@ public abstract class ITicketService implements IManager {
 				//cache ticket
 				ticketsCache.put(key, ticket);
 			}
+		} else {
+			CACHE_HITS.inc();
 		}
 		return ticket;
 	}
@@ -1085,49 +1104,118 @@ public abstract class ITicketService implements IManager {
 		
 		if (success) {
 			//Now that the ticket has been successfully persisted add references to this ticket from linked tickets
-			if (change.hasPendingLinks()) {
-				for (TicketLink link : change.pendingLinks) {
-					TicketModel linkedTicket = getTicket(repository, link.targetTicketId);
-					Change dstChange = null;
+			promotePendingLinks(repository, ticketId, change);
+		}
+		
+		return ticket;
+	}
+
+	/**
+	 * Updates a ticket with several changes which are persisted together and
+	 * promotes their pending links into references.  This is preferable to
+	 * successive single updates when many changes are produced at once, e.g.
+	 * by a push which references the ticket from several commits.
+	 *
+	 * @param repository
+	 * @param ticketId
+	 * @param changes
+	 * @return the ticket model if successful, null if failure
+	 * @since 1.10.1
+	 */
+	public final TicketModel updateTicket(RepositoryModel repository, long ticketId, List<Change> changes) {
+		if (changes == null || changes.isEmpty()) {
+			throw new RuntimeException("changes can not be empty!");
+		}
+		if (changes.size() == 1) {
+			return updateTicket(repository, ticketId, changes.get(0));
+		}
+		if (ticketId <= 0) {
+			throw new RuntimeException("must specify a ticket to batch changes!");
+		}
+		for (Change change : changes) {
+			if (StringUtils.isEmpty(change.author)) {
+				throw new RuntimeException("must specify a change author!");
+			}
+		}
+
+		TicketKey key = new TicketKey(repository, ticketId);
+		ticketsCache.invalidate(key);
+
+		if (!commitChangesImpl(repository, ticketId, changes)) {
+			return null;
+		}
+
+		TicketModel ticket = getTicket(repository, ticketId);
+		ticketsCache.put(key, ticket);
+		indexer.index(ticket);
+
+		// call the ticket hooks
+		if (pluginManager != null) {
+			for (Change change : changes) {
+				for (TicketHook hook : pluginManager.getExtensions(TicketHook.class)) {
+					try {
+						hook.onUpdateTicket(ticket, change);
+					} catch (Exception e) {
+						log.error("Failed to execute extension", e);
+					}
+				}
+			}
+		}
+
+		for (Change change : changes) {
+			promotePendingLinks(repository, ticketId, change);
+		}
+		return ticket;
+	}
+
+	/**
+	 * Adds references to a ticket from the tickets linked by a change.
+	 *
+	 * @param repository
+	 * @param ticketId, or 0 for links in general
+	 * @param change
+	 */
+	private void promotePendingLinks(RepositoryModel repository, long ticketId, Change change) {
+		if (change.hasPendingLinks()) {
+			for (TicketLink link : change.pendingLinks) {
+				TicketModel linkedTicket = getTicket(repository, link.targetTicketId);
+				Change dstChange = null;
+				
+				//Ignore if not available or self reference 
+				if (linkedTicket != null && link.targetTicketId != ticketId) {
+					dstChange = new Change(change.author, change.date);
 					
-					//Ignore if not available or self reference 
-					if (linkedTicket != null && link.targetTicketId != ticketId) {
-						dstChange = new Change(change.author, change.date);
-						
-						switch (link.action) {
-							case Comment: {
-								if (ticketId == 0) {
-									throw new RuntimeException("must specify a ticket when linking a comment!");
-								}
-								dstChange.referenceTicket(ticketId, change.comment.id);
-							} break;
-							
-							case Commit: {
-								dstChange.referenceCommit(link.hash);
-							} break;
-							
-							default: {
-								throw new RuntimeException(
-										String.format("must add persist logic for link of type %s", link.action));
+					switch (link.action) {
+						case Comment: {
+							if (ticketId == 0) {
+								throw new RuntimeException("must specify a ticket when linking a comment!");
 							}
+							dstChange.referenceTicket(ticketId, change.comment.id);
+						} break;
+						
+						case Commit: {
+							dstChange.referenceCommit(link.hash);
+						} break;
+						
+						default: {
+							throw new RuntimeException(
+									String.format("must add persist logic for link of type %s", link.action));
 						}
 					}
-					
-					if (dstChange != null) {
-						//If not deleted then remain null in journal
-						if (link.isDelete) {
-							dstChange.reference.deleted = true;
-						}
+				}
+				
+				if (dstChange != null) {
+					//If not deleted then remain null in journal
+					if (link.isDelete) {
+						dstChange.reference.deleted = true;
+					}
 
-						if (updateTicket(repository, link.targetTicketId, dstChange) != null) {
-							link.success = true;
-						}
+					if (updateTicket(repository, link.targetTicketId, dstChange) != null) {
+						link.success = true;
 					}
 				}
 			}
 		}
-		
-		return ticket;
 	}
 
 	/**
@@ -1326,6 +1414,26 @@ public abstract class ITicketService implements IManager {
 	 */
 	protected abstract boolean commitChangeImpl(RepositoryModel repository, long ticketId, Change change);
 
+	/**
+	 * Commit several ticket changes to the repository.  The default
+	 * implementation commits the changes one at a time; services which can
+	 * persist a batch in a single write should override this method.
+	 *
+	 * @param repository
+	 * @param ticketId
+	 * @param changes
+	 * @return true, if all the changes were committed
+	 * @since 1.10.1
+	 */
+	protected boolean commitChangesImpl(RepositoryModel repository, long ticketId, List<Change> changes) {
+		for (Change change : changes) {
+			if (!commitChangeImpl(repository, ticketId, change)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 
 	/**
 	 * Searches for the specified text.  This will use the indexer, if available,
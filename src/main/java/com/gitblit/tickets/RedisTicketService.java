@@ -17,6 +17,7 @@ package com.gitblit.tickets;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -478,18 +479,34 @@ public class RedisTicketService extends ITicketService {
 	 */
 	@Override
 	protected boolean commitChangeImpl(RepositoryModel repository, long ticketId, Change change) {
+		return commitChangesImpl(repository, ticketId, Arrays.asList(change));
+	}
+
+	/**
+	 * Atomically appends several changes to the ticket journal.
+	 *
+	 * @param repository
+	 * @param ticketId
+	 * @param changes
+	 * @return true, if the changes were committed
+	 */
+	@Override
+	protected boolean commitChangesImpl(RepositoryModel repository, long ticketId, List<Change> changes) {
 		Jedis jedis = pool.getResource();
 		if (jedis == null) {
 			return false;
 		}
 		try {
-			List<Change> changes = getJournal(jedis, repository, ticketId);
-			changes.add(change);
+			List<Change> journalChanges = getJournal(jedis, repository, ticketId);
+			journalChanges.addAll(changes);
 			// build a new effective ticket from the changes
-			TicketModel ticket = TicketModel.buildTicket(changes);
+			TicketModel ticket = TicketModel.buildTicket(journalChanges);
 
 			String object = TicketSerializer.serialize(ticket);
-			String journal = TicketSerializer.serialize(change);
+			String [] journal = new String[changes.size()];
+			for (int i = 0; i < changes.size(); i++) {
+				journal[i] = TicketSerializer.serialize(changes.get(i));
+			}
 
 			// atomically store ticket
 			Transaction t = jedis.multi();
@@ -62,6 +62,9 @@ import com.gitblit.models.TicketModel.Attachment;
 import com.gitblit.models.TicketModel.Patchset;
 import com.gitblit.models.TicketModel.Status;
 import com.gitblit.utils.LuceneIndexStore;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Histogram;
 import com.gitblit.utils.StringUtils;
 
 /**
@@ -168,6 +171,9 @@ public class TicketIndexer {
 		}
 	}
 
+	private static final Family<Histogram> OPERATIONS = MetricRegistry.instance().histograms(
+			"gitblit_ticket_index_seconds", "Time of ticket index updates and queries", "operation");
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final LuceneIndexStore indexStore;
@@ -243,6 +249,7 @@ public class TicketIndexer {
 	 * @param tickets
 	 */
 	public void index(List<TicketModel> tickets) {
+		long start = System.nanoTime();
 		try {
 			IndexWriter writer = getWriter();
 			for (TicketModel ticket : tickets) {
@@ -253,6 +260,8 @@ public class TicketIndexer {
 			closeSearcher();
 		} catch (Exception e) {
 			log.error("error", e);
+		} finally {
+			OPERATIONS.labels("bulk_index").observeSince(start);
 		}
 	}
 
@@ -262,6 +271,7 @@ public class TicketIndexer {
 	 * @param ticket
 	 */
 	public void index(TicketModel ticket) {
+		long start = System.nanoTime();
 		try {
 			IndexWriter writer = getWriter();
 			delete(ticket.repository, ticket.number, writer);
@@ -271,6 +281,8 @@ public class TicketIndexer {
 			closeSearcher();
 		} catch (Exception e) {
 			log.error("error", e);
+		} finally {
+			OPERATIONS.labels("index").observeSince(start);
 		}
 	}
 
@@ -342,6 +354,7 @@ public class TicketIndexer {
 		if (StringUtils.isEmpty(text)) {
 			return Collections.emptyList();
 		}
+		long start = System.nanoTime();
 		Set<QueryResult> results = new LinkedHashSet<QueryResult>();
 		StandardAnalyzer analyzer = new StandardAnalyzer();
 		try {
@@ -383,6 +396,8 @@ public class TicketIndexer {
 			}
 		} catch (Exception e) {
 			log.error("Exception while searching for {}", text, e);
+		} finally {
+			OPERATIONS.labels("search").observeSince(start);
 		}
 		return new ArrayList<QueryResult>(results);
 	}
@@ -403,6 +418,7 @@ public class TicketIndexer {
 			return Collections.emptyList();
 		}
 
+		long start = System.nanoTime();
 		Set<QueryResult> results = new LinkedHashSet<QueryResult>();
 		StandardAnalyzer analyzer = new StandardAnalyzer();
 		try {
@@ -435,6 +451,8 @@ public class TicketIndexer {
 			}
 		} catch (Exception e) {
 			log.error("Exception while searching for {}", queryText, e);
+		} finally {
+			OPERATIONS.labels("query").observeSince(start);
 		}
 		return new ArrayList<QueryResult>(results);
 	}
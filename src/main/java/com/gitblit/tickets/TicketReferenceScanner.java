@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.tickets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.models.TicketModel.TicketAction;
+import com.gitblit.models.TicketModel.TicketLink;
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Identifies the tickets closed or referenced by commit messages.
+ *
+ * The ticket patterns are compiled once and shared by all scanners.  A
+ * scanner reuses its matchers and skips messages which can not contain a
+ * ticket number, so it is cheap to scan long histories.  A scanner is not
+ * thread-safe.
+ */
+public class TicketReferenceScanner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TicketReferenceScanner.class);
+
+	public static final String DEFAULT_CLOSE_REGEX = "(?:fixes|closes)[\\s-]+#?(\\d+)";
+
+	public static final String DEFAULT_LINK_REGEX = "(?:ref|task|issue|bug)?[\\s-]*#(\\d+)";
+
+	private static final ConcurrentMap<String, Pattern> PATTERNS = new ConcurrentHashMap<String, Pattern>();
+
+	private final Matcher close;
+
+	private final Matcher link;
+
+	public TicketReferenceScanner(IStoredSettings settings) {
+		this.close = matcher(settings.getString(Keys.tickets.closeOnPushCommitMessageRegex, DEFAULT_CLOSE_REGEX),
+				DEFAULT_CLOSE_REGEX);
+		this.link = matcher(settings.getString(Keys.tickets.linkOnPushCommitMessageRegex, DEFAULT_LINK_REGEX),
+				DEFAULT_LINK_REGEX);
+	}
+
+	private static Matcher matcher(String regex, String defaultRegex) {
+		if (StringUtils.isEmpty(regex)) {
+			regex = defaultRegex;
+		}
+		Pattern pattern = PATTERNS.get(regex);
+		if (pattern == null) {
+			try {
+				pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+			} catch (Exception e) {
+				LOGGER.error(String.format("Failed to compile ticket pattern \"%s\"", regex), e);
+				pattern = Pattern.compile(defaultRegex, Pattern.CASE_INSENSITIVE);
+			}
+			PATTERNS.putIfAbsent(regex, pattern);
+		}
+		return pattern.matcher("");
+	}
+
+	/**
+	 * Identifies the tickets closed or referenced by the commit.  A ticket is
+	 * reported once per commit; closing takes precedence over referencing.
+	 *
+	 * @param commit
+	 *            a commit with a parsed body
+	 * @return the ticket links of the commit
+	 */
+	public List<TicketLink> scan(RevCommit commit) {
+		return scan(commit.getName(), commit.getFullMessage());
+	}
+
+	/**
+	 * Identifies the tickets closed or referenced by a commit message.
+	 *
+	 * @param commitId
+	 * @param message
+	 * @return the ticket links of the message
+	 */
+	public List<TicketLink> scan(String commitId, String message) {
+		if (!hasDigit(message)) {
+			// the patterns capture ticket numbers
+			return Collections.emptyList();
+		}
+
+		List<TicketLink> links = new ArrayList<TicketLink>();
+		List<Long> linked = new ArrayList<Long>();
+
+		// parse commit message looking for fixes/closes #n
+		close.reset(message);
+		while (close.find()) {
+			long number = parse(close, commitId);
+			if (number > 0 && !linked.contains(number)) {
+				links.add(new TicketLink(number, TicketAction.Close, commitId));
+				linked.add(number);
+			}
+		}
+
+		// parse commit message looking for ref #n
+		link.reset(message);
+		while (link.find()) {
+			long number = parse(link, commitId);
+			// most generic case so don't include tickets more precisely linked
+			if (number > 0 && !linked.contains(number)) {
+				links.add(new TicketLink(number, TicketAction.Commit, commitId));
+				linked.add(number);
+			}
+		}
+		return links;
+	}
+
+	private static long parse(Matcher m, String commitId) {
+		try {
+			return Long.parseLong(m.group(1));
+		} catch (Exception e) {
+			LOGGER.error(String.format("Failed to parse \"%s\" in commit %s", m.pattern().pattern(), commitId), e);
+			return 0;
+		}
+	}
+
+	private static boolean hasDigit(String message) {
+		if (message == null) {
+			return false;
+		}
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			if (c >= '0' && c <= '9') {
+				return true;
+			}
+		}
+		return false;
+	}
+}
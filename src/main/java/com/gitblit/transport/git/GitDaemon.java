@@ -47,16 +47,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.text.MessageFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PacketLineOut;
 import org.eclipse.jgit.transport.ReceivePack;
 import org.eclipse.jgit.transport.ServiceMayNotContinueException;
 import org.eclipse.jgit.transport.UploadPack;
@@ -91,6 +103,9 @@ public class GitDaemon {
 
 	private static final int BACKLOG = 5;
 
+	/** Timeout (in milliseconds) for telling a refused client why. */
+	private static final int REJECT_TIMEOUT = 2000;
+
 	private InetSocketAddress myAddress;
 
 	private final GitDaemonService[] services;
@@ -111,6 +126,24 @@ public class GitDaemon {
 
 	private ReceivePackFactory<GitDaemonClient> receivePackFactory;
 
+	private final int threads;
+
+	private final int backlog;
+
+	private final int maxConnectionsPerIp;
+
+	private final boolean virtualThreads;
+
+	private ThreadPoolExecutor executor;
+
+	private final ConcurrentMap<InetAddress, AtomicInteger> connectionsPerIp;
+
+	private final AtomicInteger active;
+
+	private final AtomicLong accepted;
+
+	private final AtomicLong rejected;
+
 	public GitDaemon(IGitblit gitblit) {
 
 		IStoredSettings settings = gitblit.getSettings();
@@ -127,6 +160,15 @@ public class GitDaemon {
 		uploadPackFactory = new GitblitUploadPackFactory<GitDaemonClient>(gitblit);
 		receivePackFactory = new GitblitReceivePackFactory<GitDaemonClient>(gitblit);
 
+		threads = Math.max(1, settings.getInteger(Keys.git.daemonThreads, 16));
+		backlog = Math.max(0, settings.getInteger(Keys.git.daemonBacklog, 50));
+		maxConnectionsPerIp = Math.max(0, settings.getInteger(Keys.git.daemonMaxConnectionsPerIp, 8));
+		virtualThreads = settings.getBoolean(Keys.git.daemonVirtualThreads, false);
+		connectionsPerIp = new ConcurrentHashMap<InetAddress, AtomicInteger>();
+		active = new AtomicInteger();
+		accepted = new AtomicLong();
+		rejected = new AtomicLong();
+
 		run = new AtomicBoolean(false);
 		processors = new ThreadGroup("Git-Daemon");
 		services = new GitDaemonService[] { new GitDaemonService("upload-pack", "uploadpack") {
@@ -176,6 +218,27 @@ public class GitDaemon {
 		}
 	}
 
+	/** @return the number of connections being served. */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/** @return the number of connections waiting for a worker thread. */
+	public int getQueuedCount() {
+		ThreadPoolExecutor pool = executor;
+		return pool == null ? 0 : pool.getQueue().size();
+	}
+
+	/** @return the number of connections accepted since the daemon started. */
+	public long getAcceptedCount() {
+		return accepted.get();
+	}
+
+	/** @return the number of connections refused since the daemon started. */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
 	/** @return timeout (in seconds) before aborting an IO operation. */
 	public int getTimeout() {
 		return timeout;
@@ -206,9 +269,16 @@ public class GitDaemon {
 			throw new IllegalStateException(JGitText.get().daemonAlreadyRunning);
 
 		final ServerSocket listenSock = new ServerSocket(myAddress != null ? myAddress.getPort()
-				: 0, BACKLOG, myAddress != null ? myAddress.getAddress() : null);
+				: 0, Math.max(BACKLOG, backlog), myAddress != null ? myAddress.getAddress() : null);
 		myAddress = (InetSocketAddress) listenSock.getLocalSocketAddress();
 
+		// a bounded pool of workers serves the clients, connections beyond
+		// the backlog are refused by the accept thread
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				backlog > 0 ? new ArrayBlockingQueue<Runnable>(backlog) : new SynchronousQueue<Runnable>(),
+				newThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+
 		run.set(true);
 		acceptSocket = listenSock;
 		acceptThread = new Thread(processors, "Git-Daemon-Accept") {
@@ -239,6 +309,34 @@ public class GitDaemon {
 		logger.info(MessageFormat.format("Git Daemon is listening on {0}:{1,number,0}", myAddress.getAddress().getHostAddress(), myAddress.getPort()));
 	}
 
+	/**
+	 * Creates the factory of the worker threads.  Virtual threads are used if
+	 * requested and supported by the runtime.
+	 */
+	private ThreadFactory newThreadFactory() {
+		if (virtualThreads) {
+			try {
+				// Thread.ofVirtual().name(prefix, start).factory() on Java 21+
+				Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+				builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Git-Daemon-Client-", 1L);
+				ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+				logger.info("Git Daemon clients are served by virtual threads");
+				return factory;
+			} catch (Exception e) {
+				logger.warn("Virtual threads are not supported by this runtime, using platform threads");
+			}
+		}
+		return new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(processors, r, "Git-Daemon-Client-" + counter.incrementAndGet());
+			}
+		};
+	}
+
 	/** @return true if this daemon is receiving connections. */
 	public boolean isRunning() {
 		return run.get();
@@ -258,11 +356,14 @@ public class GitDaemon {
 			try {
 				// join the accept thread
 				acceptThread.join();
-				logger.info("Git Daemon stopped.");
+				logger.info(MessageFormat.format("Git Daemon stopped, {0} connections served, {1} refused.",
+						accepted.get() - rejected.get(), rejected.get()));
 			} catch (InterruptedException e) {
 				logger.error("Accept thread join interrupted", e);
 			} finally {
 				acceptThread = null;
+				// let the active clients finish
+				executor.shutdown();
 			}
 		}
 	}
@@ -274,31 +375,115 @@ public class GitDaemon {
 		if (peer instanceof InetSocketAddress)
 			dc.setRemoteAddress(((InetSocketAddress) peer).getAddress());
 
-		new Thread(processors, "Git-Daemon-Client " + peer.toString()) {
-			@Override
-			public void run() {
-				try {
-					dc.execute(s);
-				} catch (ServiceNotEnabledException e) {
-					// Ignored. Client cannot use this repository.
-				} catch (ServiceNotAuthorizedException e) {
-					// Ignored. Client cannot use this repository.
-				} catch (IOException e) {
-					// Ignore unexpected IO exceptions from clients
-				} finally {
-					try {
-						s.getInputStream().close();
-					} catch (IOException e) {
-						// Ignore close exceptions
-					}
+		accepted.incrementAndGet();
+		final InetAddress ip = dc.getRemoteAddress();
+		if (ip != null && maxConnectionsPerIp > 0) {
+			if (acquire(ip) > maxConnectionsPerIp) {
+				release(ip);
+				reject(s, "too many connections from " + ip.getHostAddress());
+				return;
+			}
+		}
+
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					active.incrementAndGet();
 					try {
-						s.getOutputStream().close();
+						dc.execute(s);
+					} catch (ServiceNotEnabledException e) {
+						// Ignored. Client cannot use this repository.
+					} catch (ServiceNotAuthorizedException e) {
+						// Ignored. Client cannot use this repository.
 					} catch (IOException e) {
-						// Ignore close exceptions
+						// Ignore unexpected IO exceptions from clients
+					} finally {
+						active.decrementAndGet();
+						release(ip);
+						close(s);
 					}
 				}
+
+				@Override
+				public String toString() {
+					return "Git-Daemon-Client " + peer;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			release(ip);
+			reject(s, "server is busy, please try again later");
+		}
+	}
+
+	/**
+	 * Takes a connection slot of the client address.
+	 *
+	 * @return the number of connections of the address, including this one
+	 */
+	private int acquire(InetAddress ip) {
+		while (true) {
+			AtomicInteger count = connectionsPerIp.putIfAbsent(ip, new AtomicInteger(1));
+			if (count == null) {
+				return 1;
+			}
+			int n = count.get();
+			if (n <= 0) {
+				// the counter is being removed by a release, retry with a
+				// new counter
+				connectionsPerIp.remove(ip, count);
+			} else if (count.compareAndSet(n, n + 1)) {
+				return n + 1;
 			}
-		}.start();
+		}
+	}
+
+	/** Releases a connection slot of the client address. */
+	private void release(InetAddress ip) {
+		if (ip == null || maxConnectionsPerIp <= 0) {
+			return;
+		}
+		AtomicInteger count = connectionsPerIp.get(ip);
+		if (count != null && count.decrementAndGet() <= 0) {
+			connectionsPerIp.remove(ip, count);
+		}
+	}
+
+	/**
+	 * Refuses a connection with a protocol error which the git client
+	 * reports to the user.
+	 */
+	private void reject(final Socket s, String reason) {
+		rejected.incrementAndGet();
+		logger.debug(MessageFormat.format("Git Daemon refused {0}: {1}", s.getRemoteSocketAddress(), reason));
+		try {
+			s.setSoTimeout(REJECT_TIMEOUT);
+			PacketLineOut pckOut = new PacketLineOut(s.getOutputStream());
+			pckOut.writeString("ERR " + reason + "\n");
+			pckOut.flush();
+		} catch (IOException e) {
+			// Ignore, the client is gone
+		} finally {
+			close(s);
+		}
+	}
+
+	private void close(final Socket s) {
+		try {
+			s.getInputStream().close();
+		} catch (IOException e) {
+			// Ignore close exceptions
+		}
+		try {
+			s.getOutputStream().close();
+		} catch (IOException e) {
+			// Ignore close exceptions
+		}
+		try {
+			s.close();
+		} catch (IOException e) {
+			// Ignore close exceptions
+		}
 	}
 
 	synchronized GitDaemonService matchService(final String cmd) {
@@ -25,6 +25,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.sshd.common.SshException;
@@ -40,9 +41,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.gitblit.Keys;
+import com.gitblit.transport.ssh.commands.SshCommandQueues.QueueType;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.utils.WorkQueue;
 import com.gitblit.utils.WorkQueue.CancelableRunnable;
+import com.gitblit.utils.WorkQueue.Executor;
+import com.gitblit.utils.WorkQueue.OwnedRunnable;
 import com.gitblit.utils.cli.CmdLineParser;
 import com.google.common.base.Charsets;
 import com.google.common.util.concurrent.Atomics;
@@ -59,6 +63,8 @@ public abstract class BaseCommand implements Command, SessionAware {
 
 	public final static int STATUS_NOT_ADMIN = PRIVATE_STATUS | 3;
 
+	public final static int STATUS_BUSY = PRIVATE_STATUS | 4;
+
 	protected InputStream in;
 
 	protected OutputStream out;
@@ -297,9 +303,10 @@ public abstract class BaseCommand implements Command, SessionAware {
 		parseCommandLine();
 	}
 
-	private final class TaskThunk implements CancelableRunnable {
+	private final class TaskThunk implements CancelableRunnable, OwnedRunnable {
 		private final CommandRunnable thunk;
 		private final String taskName;
+		private final String owner;
 
 		private TaskThunk(final CommandRunnable thunk) {
 			this.thunk = thunk;
@@ -307,6 +314,12 @@ public abstract class BaseCommand implements Command, SessionAware {
 			StringBuilder m = new StringBuilder();
 			m.append(ctx.getCommandLine());
 			this.taskName = m.toString();
+			this.owner = ctx.getClient().getUsername();
+		}
+
+		@Override
+		public String getOwner() {
+			return owner;
 		}
 
 		@Override
@@ -478,7 +491,34 @@ public abstract class BaseCommand implements Command, SessionAware {
 	 */
 	protected void startThread(final CommandRunnable thunk) {
 		final TaskThunk tt = new TaskThunk(thunk);
-		task.set(workQueue.getDefaultQueue().submit(tt));
+		SshCommandQueues queues = ctx.getQueues();
+		Executor executor;
+		if (queues == null) {
+			executor = workQueue.getDefaultQueue();
+		} else {
+			executor = queues.getQueue(getQueueType());
+		}
+		try {
+			task.set(executor.submit(tt));
+		} catch (RejectedExecutionException e) {
+			log.warn("Rejected {} for {}: {}", ctx.getCommandLine(), ctx.getClient().getUsername(), e.getMessage());
+			try {
+				err.write("fatal: server is busy, please try again later\n".getBytes(Charsets.UTF_8));
+				err.flush();
+			} catch (IOException e2) {
+			}
+			onExit(STATUS_BUSY);
+		}
+	}
+
+	/**
+	 * Returns the queue which executes this command.  Commands are executed
+	 * on the interactive queue unless they transfer packs.
+	 *
+	 * @return the queue type
+	 */
+	protected QueueType getQueueType() {
+		return QueueType.INTERACTIVE;
 	}
 
 	/** Thrown from {@link CommandRunnable#run()} with client message and code. */
@@ -39,11 +39,17 @@ class RootDispatcher extends DispatchCommand {
 	private Logger log = LoggerFactory.getLogger(getClass());
 
 	public RootDispatcher(IGitblit gitblit, SshDaemonClient client, String cmdLine, WorkQueue workQueue) {
+		this(gitblit, client, cmdLine, workQueue, null);
+	}
+
+	public RootDispatcher(IGitblit gitblit, SshDaemonClient client, String cmdLine, WorkQueue workQueue,
+			SshCommandQueues queues) {
 		super();
-		setContext(new SshCommandContext(gitblit, client, cmdLine));
+		setContext(new SshCommandContext(gitblit, client, cmdLine, queues));
 		setWorkQueue(workQueue);
 
 		register(VersionCommand.class);
+		register(ShowQueueCommand.class);
 		register(GitDispatcher.class);
 		register(KeysDispatcher.class);
 		register(PluginDispatcher.class);
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.transport.ssh.commands;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.kohsuke.args4j.Option;
+
+import com.gitblit.utils.FlipTable;
+import com.gitblit.utils.FlipTable.Borders;
+import com.gitblit.utils.TaskInfoFactory;
+import com.gitblit.utils.WorkQueue;
+import com.gitblit.utils.WorkQueue.Executor;
+import com.gitblit.utils.WorkQueue.Task;
+
+@CommandMetaData(name = "show-queue", aliases = { "ps" }, description = "Display the work queues and their tasks", admin = true)
+public class ShowQueueCommand extends SshCommand {
+
+	@Option(name = "--tabbed", usage = "generate tabbed-text output")
+	protected boolean tabbed;
+
+	@Override
+	public void run() throws UnloggedFailure {
+		WorkQueue workQueue = getWorkQueue();
+		if (workQueue == null) {
+			throw new UnloggedFailure(1, "The work queue is not available");
+		}
+
+		List<Executor> queues = workQueue.getQueues();
+		final SimpleDateFormat df = new SimpleDateFormat("HH:mm:ss");
+		List<Object[]> tasks = workQueue.getTaskInfos(new TaskInfoFactory<Object[]>() {
+			@Override
+			public Object[] getTaskInfo(Task<?> task) {
+				return new Object[] { String.format("%08x", task.getTaskId()), task.getState(),
+						task.getQueueName(), task.getOwner() == null ? "" : task.getOwner(),
+						df.format(task.getStartTime()), task.toString() };
+			}
+		});
+		Collections.sort(tasks, new Comparator<Object[]>() {
+			@Override
+			public int compare(Object[] o1, Object[] o2) {
+				return ((Task.State) o1[1]).compareTo((Task.State) o2[1]);
+			}
+		});
+
+		if (tabbed) {
+			for (Executor queue : queues) {
+				stdout.println(String.format("%s\t%d\t%d\t%d\t%d\t%d\t%d\t%d", queue.getName(),
+						queue.getCorePoolSize(), queue.getActiveCount(), queue.getQueuedCount(),
+						queue.getStartedCount(), queue.getRejectedCount(), queue.getAverageWaitTime(),
+						queue.getMaxWaitTime()));
+			}
+			for (Object[] task : tasks) {
+				stdout.println(String.format("%s\t%s\t%s\t%s\t%s\t%s", task));
+			}
+			return;
+		}
+
+		String[] queueHeaders = { "Queue", "Threads", "Running", "Waiting", "Started", "Rejected",
+				"Avg wait (ms)", "Max wait (ms)" };
+		Object[][] queueData = new Object[queues.size()][];
+		for (int i = 0; i < queues.size(); i++) {
+			Executor queue = queues.get(i);
+			queueData[i] = new Object[] { queue.getName(), queue.getCorePoolSize(), queue.getActiveCount(),
+					queue.getQueuedCount(), queue.getStartedCount(), queue.getRejectedCount(),
+					queue.getAverageWaitTime(), queue.getMaxWaitTime() };
+		}
+		stdout.println(FlipTable.of(queueHeaders, queueData, Borders.BODY_HCOLS));
+
+		if (!tasks.isEmpty()) {
+			String[] taskHeaders = { "Task", "State", "Queue", "User", "Queued", "Command" };
+			stdout.println(FlipTable.of(taskHeaders, tasks.toArray(new Object[tasks.size()][]), Borders.BODY_HCOLS));
+		}
+	}
+}
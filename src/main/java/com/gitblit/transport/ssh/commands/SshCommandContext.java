@@ -24,11 +24,17 @@ public class SshCommandContext {
 	private final IGitblit gitblit;
 	private final SshDaemonClient client;
 	private final String commandLine;
+	private final SshCommandQueues queues;
 
 	public SshCommandContext(IGitblit gitblit, SshDaemonClient client, String commandLine) {
+		this(gitblit, client, commandLine, null);
+	}
+
+	public SshCommandContext(IGitblit gitblit, SshDaemonClient client, String commandLine, SshCommandQueues queues) {
 		this.gitblit = gitblit;
 		this.client = client;
 		this.commandLine = commandLine;
+		this.queues = queues;
 	}
 
 	public IGitblit getGitblit() {
@@ -42,4 +48,13 @@ public class SshCommandContext {
 	public String getCommandLine() {
 		return commandLine;
 	}
+
+	/**
+	 * Returns the command execution queues, may be null.
+	 *
+	 * @return the command queues
+	 */
+	public SshCommandQueues getQueues() {
+		return queues;
+	}
 }
@@ -48,6 +48,7 @@ public class SshCommandFactory implements CommandFactory {
 	private static final Logger logger = LoggerFactory.getLogger(SshCommandFactory.class);
 
 	private final WorkQueue workQueue;
+	private final SshCommandQueues queues;
 	private final IGitblit gitblit;
 	private final ScheduledExecutorService startExecutor;
 	private final ExecutorService destroyExecutor;
@@ -58,6 +59,7 @@ public class SshCommandFactory implements CommandFactory {
 
 		int threads = gitblit.getSettings().getInteger(Keys.git.sshCommandStartThreads, 2);
 		startExecutor = workQueue.createQueue(threads, "SshCommandStart");
+		queues = new SshCommandQueues(gitblit.getSettings(), workQueue);
 		destroyExecutor = Executors.newSingleThreadExecutor(
 				new ThreadFactoryBuilder()
 					.setNameFormat("SshCommandDestroy-%s")
@@ -70,7 +72,7 @@ public class SshCommandFactory implements CommandFactory {
 	}
 
 	public RootDispatcher createRootDispatcher(SshDaemonClient client, String commandLine) {
-		return new RootDispatcher(gitblit, client, commandLine, workQueue);
+		return new RootDispatcher(gitblit, client, commandLine, workQueue, queues);
 	}
 
 	@Override
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.transport.ssh.commands;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.Keys;
+import com.gitblit.utils.WorkQueue;
+import com.gitblit.utils.WorkQueue.Executor;
+
+/**
+ * The execution queues of SSH commands.
+ *
+ * Clones and fetches, pushes and all other commands are executed on separate
+ * queues so that long transfers of one kind can not block the others.  Each
+ * queue shares its threads fairly among the users and limits the number of
+ * commands which may wait for a thread.
+ */
+public class SshCommandQueues {
+
+	public static enum QueueType {
+		UPLOAD("SshUpload"), RECEIVE("SshReceive"), INTERACTIVE("SshInteractive");
+
+		final String queueName;
+
+		QueueType(String queueName) {
+			this.queueName = queueName;
+		}
+	}
+
+	private final Map<QueueType, Executor> queues;
+
+	public SshCommandQueues(IStoredSettings settings, WorkQueue workQueue) {
+		int maxQueued = settings.getInteger(Keys.git.sshMaxQueuedCommands, 50);
+		int maxQueuedPerUser = settings.getInteger(Keys.git.sshMaxQueuedCommandsPerUser, 10);
+
+		queues = new EnumMap<QueueType, Executor>(QueueType.class);
+		create(workQueue, QueueType.UPLOAD, settings.getInteger(Keys.git.sshUploadThreads, 2),
+				maxQueued, maxQueuedPerUser);
+		create(workQueue, QueueType.RECEIVE, settings.getInteger(Keys.git.sshReceiveThreads, 2),
+				maxQueued, maxQueuedPerUser);
+		create(workQueue, QueueType.INTERACTIVE, settings.getInteger(Keys.git.sshInteractiveThreads, 1),
+				maxQueued, maxQueuedPerUser);
+	}
+
+	private void create(WorkQueue workQueue, QueueType type, int threads, int maxQueued, int maxQueuedPerUser) {
+		Executor executor = workQueue.createQueue(Math.max(1, threads), type.queueName);
+		executor.setFairShare(true);
+		executor.setAdmissionLimits(Math.max(0, maxQueued), Math.max(0, maxQueuedPerUser));
+		queues.put(type, executor);
+	}
+
+	public Executor getQueue(QueueType type) {
+		return queues.get(type);
+	}
+
+	public List<Executor> getQueues() {
+		return new ArrayList<Executor>(queues.values());
+	}
+}
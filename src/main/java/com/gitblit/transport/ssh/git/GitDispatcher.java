@@ -57,12 +57,17 @@ public class GitDispatcher extends DispatchCommand {
 		register(Upload.class);
 		register(Receive.class);
 		register(GarbageCollectionCommand.class);
+		register(PostReceiveQueueCommand.class);
+		register(HookScriptsCommand.class);
 	}
 
 	@Override
 	protected void provideStateTo(final BaseCommand cmd) {
 		super.provideStateTo(cmd);
 
+		if (!(cmd instanceof BaseGitCommand)) {
+			return;
+		}
 		BaseGitCommand a = (BaseGitCommand) cmd;
 		a.setRepositoryResolver(repositoryResolver);
 		a.setUploadPackFactory(uploadPackFactory);
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.transport.ssh.git;
+
+import java.util.List;
+
+import com.gitblit.git.GroovyHookEngine;
+import com.gitblit.models.HookScriptMetrics;
+import com.gitblit.transport.ssh.commands.CommandMetaData;
+import com.gitblit.transport.ssh.commands.ListCommand;
+import com.gitblit.utils.FlipTable;
+import com.gitblit.utils.FlipTable.Borders;
+
+@CommandMetaData(name = "hooks", description = "List the execution metrics of the Groovy hook scripts", admin = true)
+public class HookScriptsCommand extends ListCommand<HookScriptMetrics> {
+
+	@Override
+	protected List<HookScriptMetrics> getItems() throws UnloggedFailure {
+		GroovyHookEngine engine = getContext().getGitblit().getGroovyHookEngine();
+		if (engine == null) {
+			throw new UnloggedFailure(1, "Groovy hooks are not available");
+		}
+		return engine.getMetrics();
+	}
+
+	@Override
+	protected void asTable(List<HookScriptMetrics> list) {
+		String[] headers = { "Script", "Runs", "Failures", "Timeouts", "Compiled", "Avg (ms)", "Max (ms)", "Last (ms)" };
+		Object[][] data = new Object[list.size()][];
+		for (int i = 0; i < list.size(); i++) {
+			HookScriptMetrics m = list.get(i);
+			data[i] = new Object[] { m.script, m.count, m.failures, m.timeouts, m.compilations,
+					m.getAverageTime(), m.maxTime, m.lastTime };
+		}
+		stdout.println(FlipTable.of(headers, data, Borders.BODY_HCOLS));
+	}
+
+	@Override
+	protected void asTabbed(List<HookScriptMetrics> list) {
+		for (HookScriptMetrics m : list) {
+			outTabbed(m.script, m.count, m.failures, m.timeouts, m.compilations,
+					m.getAverageTime(), m.maxTime, m.lastTime);
+		}
+	}
+}
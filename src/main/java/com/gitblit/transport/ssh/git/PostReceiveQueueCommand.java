@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.transport.ssh.git;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.gitblit.git.PostReceiveQueue;
+import com.gitblit.models.PostReceiveStatus;
+import com.gitblit.models.PostReceiveStatus.StepMetrics;
+import com.gitblit.transport.ssh.commands.CommandMetaData;
+import com.gitblit.transport.ssh.commands.ListCommand;
+import com.gitblit.utils.FlipTable;
+import com.gitblit.utils.FlipTable.Borders;
+
+@CommandMetaData(name = "post-receive", description = "List the status of deferred post-receive processing", admin = true)
+public class PostReceiveQueueCommand extends ListCommand<PostReceiveStatus> {
+
+	@Override
+	protected List<PostReceiveStatus> getItems() throws UnloggedFailure {
+		PostReceiveQueue queue = getContext().getGitblit().getPostReceiveQueue();
+		if (queue == null || !queue.isEnabled()) {
+			throw new UnloggedFailure(1, "Post-receive processing is synchronous");
+		}
+		return queue.getStatus();
+	}
+
+	@Override
+	protected void asTable(List<PostReceiveStatus> list) {
+		String[] headers;
+		if (verbose) {
+			headers = new String[] { "Repository", "Step", "Count", "Failures", "Avg (ms)", "Max (ms)", "Last (ms)" };
+		} else {
+			headers = new String[] { "Repository", "Pending", "Completed", "Retries", "Failed", "Latency (ms)", "Last Error" };
+		}
+		List<Object[]> data = new ArrayList<Object[]>();
+		for (PostReceiveStatus s : list) {
+			if (verbose) {
+				for (Map.Entry<String, StepMetrics> entry : s.steps.entrySet()) {
+					StepMetrics m = entry.getValue();
+					data.add(new Object[] { s.repository, entry.getKey(), m.count, m.failures,
+							m.getAverageTime(), m.maxTime, m.lastTime });
+				}
+			} else {
+				data.add(new Object[] { s.repository, s.pending, s.completed, s.retries, s.failed,
+						s.lastLatency, s.lastError == null ? "" : s.lastError });
+			}
+		}
+		stdout.println(FlipTable.of(headers, data.toArray(new Object[data.size()][]), Borders.BODY_HCOLS));
+	}
+
+	@Override
+	protected void asTabbed(List<PostReceiveStatus> list) {
+		for (PostReceiveStatus s : list) {
+			if (verbose) {
+				for (Map.Entry<String, StepMetrics> entry : s.steps.entrySet()) {
+					StepMetrics m = entry.getValue();
+					outTabbed(s.repository, entry.getKey(), m.count, m.failures,
+							m.getAverageTime(), m.maxTime, m.lastTime);
+				}
+			} else {
+				outTabbed(s.repository, s.pending, s.completed, s.retries, s.failed,
+						s.lastLatency, s.lastError == null ? "" : s.lastError);
+			}
+		}
+	}
+}
@@ -20,9 +20,15 @@ import org.eclipse.jgit.transport.ReceivePack;
 
 import com.gitblit.transport.ssh.SshKey;
 import com.gitblit.transport.ssh.commands.CommandMetaData;
+import com.gitblit.transport.ssh.commands.SshCommandQueues.QueueType;
 
 @CommandMetaData(name = "git-receive-pack", description = "Receives pushes from a client", hidden = true)
 public class Receive extends BaseGitCommand {
+	@Override
+	protected QueueType getQueueType() {
+		return QueueType.RECEIVE;
+	}
+
 	@Override
 	protected void runImpl() throws Failure {
 		SshKey key = getContext().getClient().getKey();
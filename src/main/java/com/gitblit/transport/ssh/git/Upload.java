@@ -20,9 +20,15 @@ import org.eclipse.jgit.transport.UploadPack;
 
 import com.gitblit.transport.ssh.SshKey;
 import com.gitblit.transport.ssh.commands.CommandMetaData;
+import com.gitblit.transport.ssh.commands.SshCommandQueues.QueueType;
 
 @CommandMetaData(name = "git-upload-pack", description = "Sends packs to a client for clone and fetch", hidden = true)
 public class Upload extends BaseGitCommand {
+	@Override
+	protected QueueType getQueueType() {
+		return QueueType.UPLOAD;
+	}
+
 	@Override
 	protected void runImpl() throws Failure {
 		try {
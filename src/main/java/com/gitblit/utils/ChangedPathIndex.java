@@ -0,0 +1,431 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Index of the paths changed by the commits of a repository.
+ *
+ * Like the changed-path filters of the Git commit-graph, the index keeps a
+ * Bloom filter of the paths, and of their parent folders, which a commit
+ * changed compared to its first parent.  A filter answers that a commit did
+ * not change a path without reading any trees, so the history of a rarely
+ * changed path skips almost all commits.  A commit which changed more than
+ * {@link #MAX_CHANGED_PATHS} paths has a filter which matches all paths.
+ *
+ * The index is immutable; an update returns a new index which also contains
+ * the commits reachable from the current refs.  The index is persisted in the
+ * objects/info folder of the repository.
+ */
+public class ChangedPathIndex {
+
+	public static final int MAX_CHANGED_PATHS = 512;
+
+	private static final int BITS_PER_PATH = 10;
+
+	private static final int HASHES = 7;
+
+	private static final int MAGIC = 0x47424350; // GBCP
+
+	private static final int VERSION = 1;
+
+	private static final HashFunction HASH1 = Hashing.murmur3_32(0x293ae76f);
+
+	private static final HashFunction HASH2 = Hashing.murmur3_32(0x7e646e2c);
+
+	private static final byte[] ALL_PATHS = { (byte) 0xff };
+
+	private static final ChangedPathIndex EMPTY = new ChangedPathIndex(new ObjectId[0], new byte[0], new int[1],
+			new byte[0]);
+
+	/**
+	 * The hashes of a path, which are computed once for all commits.
+	 */
+	public static class Key {
+
+		private final String path;
+
+		private final int hash1;
+
+		private final int hash2;
+
+		public Key(String path) {
+			if (path.endsWith("/")) {
+				path = path.substring(0, path.length() - 1);
+			}
+			this.path = path;
+			byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+			this.hash1 = HASH1.hashBytes(bytes).asInt();
+			this.hash2 = HASH2.hashBytes(bytes).asInt();
+		}
+
+		@Override
+		public String toString() {
+			return path;
+		}
+	}
+
+	private final ObjectId[] tips;
+
+	/**
+	 * The sorted raw ids of the commits.
+	 */
+	private final byte[] ids;
+
+	/**
+	 * The offsets of the filters of the commits; the filter of the i-th commit
+	 * ends at the offset of the next commit.
+	 */
+	private final int[] offsets;
+
+	private final byte[] filters;
+
+	private ChangedPathIndex(ObjectId[] tips, byte[] ids, int[] offsets, byte[] filters) {
+		this.tips = tips;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.filters = filters;
+	}
+
+	/**
+	 * Returns the index of a repository without commits.
+	 */
+	public static ChangedPathIndex empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the file of the persisted index of a repository.
+	 *
+	 * @param repository
+	 * @return the index file
+	 */
+	public static File getFile(Repository repository) {
+		return new File(repository.getDirectory(), "objects/info/gitblit-changed-paths");
+	}
+
+	/**
+	 * @return the number of indexed commits
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * @return the approximate number of bytes used by the index
+	 */
+	public long getMemoryUsage() {
+		return ids.length + 4L * offsets.length + filters.length + 40L * tips.length;
+	}
+
+	/**
+	 * @return the tips of the refs when the index was updated
+	 */
+	public List<ObjectId> getTips() {
+		return Arrays.asList(tips);
+	}
+
+	private int find(AnyObjectId commit) {
+		int low = 0;
+		int high = size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = commit.compareTo(ids, mid * Constants.OBJECT_ID_LENGTH);
+			if (cmp > 0) {
+				low = mid + 1;
+			} else if (cmp < 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param commit
+	 * @return true if the index has the filter of the commit
+	 */
+	public boolean contains(AnyObjectId commit) {
+		return find(commit) >= 0;
+	}
+
+	/**
+	 * Returns false if the commit did certainly not change the path, or one of
+	 * its subpaths, compared to its first parent.  A commit which is not
+	 * indexed may have changed any path.
+	 *
+	 * @param commit
+	 * @param key
+	 *            the key of the path
+	 * @return false if the commit did not change the path
+	 */
+	public boolean mightHaveChanged(AnyObjectId commit, Key key) {
+		int i = find(commit);
+		if (i < 0) {
+			return true;
+		}
+		return mightContain(filters, offsets[i], offsets[i + 1] - offsets[i], key);
+	}
+
+	private static boolean mightContain(byte[] filter, int offset, int length, Key key) {
+		if (length == 0) {
+			// the commit changed no path
+			return false;
+		}
+		int bits = length * 8;
+		for (int i = 0; i < HASHES; i++) {
+			int bit = Math.floorMod(key.hash1 + i * key.hash2, bits);
+			if ((filter[offset + (bit >>> 3)] & (1 << (bit & 7))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the Bloom filter of the changed paths of a commit.
+	 *
+	 * @param reader
+	 * @param commit
+	 *            a commit with parsed headers
+	 * @return the filter
+	 * @throws IOException
+	 */
+	static byte[] createFilter(ObjectReader reader, RevWalk rw, RevCommit commit) throws IOException {
+		Set<String> paths = new LinkedHashSet<String>();
+		try (TreeWalk tw = new TreeWalk(reader)) {
+			if (commit.getParentCount() > 0) {
+				tw.addTree(rw.parseCommit(commit.getParent(0)).getTree());
+			} else {
+				tw.addTree(new EmptyTreeIterator());
+			}
+			tw.addTree(commit.getTree());
+			tw.setFilter(TreeFilter.ANY_DIFF);
+			tw.setRecursive(true);
+			while (tw.next()) {
+				String path = tw.getPathString();
+				// the folders of the path changed too
+				int slash = path.length();
+				while (slash > 0 && paths.add(path.substring(0, slash))) {
+					slash = path.lastIndexOf('/', slash - 1);
+				}
+				if (paths.size() > MAX_CHANGED_PATHS) {
+					return ALL_PATHS;
+				}
+			}
+		}
+		if (paths.isEmpty()) {
+			return new byte[0];
+		}
+		byte[] filter = new byte[(paths.size() * BITS_PER_PATH + 7) / 8];
+		int bits = filter.length * 8;
+		for (String path : paths) {
+			Key key = new Key(path);
+			for (int i = 0; i < HASHES; i++) {
+				int bit = Math.floorMod(key.hash1 + i * key.hash2, bits);
+				filter[bit >>> 3] |= 1 << (bit & 7);
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 * Returns an index which also contains the commits reachable from the
+	 * current refs of the repository.  The commits reachable from the tips of
+	 * the last update are not walked again.
+	 *
+	 * @param repository
+	 * @return the updated index or this index if no commit was added
+	 * @throws IOException
+	 */
+	public ChangedPathIndex update(Repository repository) throws IOException {
+		Set<ObjectId> heads = new LinkedHashSet<ObjectId>();
+		Map<ObjectId, byte[]> added = new TreeMap<ObjectId, byte[]>();
+		try (ObjectReader reader = repository.newObjectReader(); RevWalk rw = new RevWalk(reader)) {
+			rw.setRetainBody(false);
+			for (Ref ref : repository.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+				if (ref.getObjectId() == null) {
+					continue;
+				}
+				try {
+					RevObject object = rw.peel(rw.parseAny(ref.getObjectId()));
+					if (object instanceof RevCommit && heads.add(object.copy())) {
+						rw.markStart((RevCommit) object);
+					}
+				} catch (MissingObjectException e) {
+					// a broken ref
+				}
+			}
+			if (heads.equals(new LinkedHashSet<ObjectId>(getTips()))) {
+				return this;
+			}
+			for (ObjectId tip : tips) {
+				try {
+					rw.markUninteresting(rw.parseCommit(tip));
+				} catch (MissingObjectException e) {
+					// the tip has been pruned after a rewrite
+				}
+			}
+			RevCommit commit;
+			while ((commit = rw.next()) != null) {
+				if (!contains(commit)) {
+					added.put(commit.copy(), createFilter(reader, rw, commit));
+				}
+			}
+		}
+		return merge(heads, added);
+	}
+
+	private ChangedPathIndex merge(Collection<ObjectId> heads, Map<ObjectId, byte[]> added) {
+		int size = size() + added.size();
+		int length = filters.length;
+		for (byte[] filter : added.values()) {
+			length += filter.length;
+		}
+		byte[] newIds = new byte[size * Constants.OBJECT_ID_LENGTH];
+		int[] newOffsets = new int[size + 1];
+		byte[] newFilters = new byte[length];
+
+		int i = 0;
+		int n = 0;
+		for (Map.Entry<ObjectId, byte[]> entry : added.entrySet()) {
+			// copy the indexed commits before the added commit
+			while (i < size() && entry.getKey().compareTo(ids, i * Constants.OBJECT_ID_LENGTH) > 0) {
+				n = copy(i++, n, newIds, newOffsets, newFilters);
+			}
+			entry.getKey().copyRawTo(newIds, n * Constants.OBJECT_ID_LENGTH);
+			byte[] filter = entry.getValue();
+			System.arraycopy(filter, 0, newFilters, newOffsets[n], filter.length);
+			newOffsets[n + 1] = newOffsets[n] + filter.length;
+			n++;
+		}
+		while (i < size()) {
+			n = copy(i++, n, newIds, newOffsets, newFilters);
+		}
+		return new ChangedPathIndex(heads.toArray(new ObjectId[heads.size()]), newIds, newOffsets, newFilters);
+	}
+
+	private int copy(int i, int n, byte[] newIds, int[] newOffsets, byte[] newFilters) {
+		System.arraycopy(ids, i * Constants.OBJECT_ID_LENGTH, newIds, n * Constants.OBJECT_ID_LENGTH,
+				Constants.OBJECT_ID_LENGTH);
+		int length = offsets[i + 1] - offsets[i];
+		System.arraycopy(filters, offsets[i], newFilters, newOffsets[n], length);
+		newOffsets[n + 1] = newOffsets[n] + length;
+		return n + 1;
+	}
+
+	/**
+	 * Reads a persisted index.
+	 *
+	 * @param file
+	 * @return the index or null if the file does not exist or has another
+	 *         version
+	 * @throws IOException
+	 */
+	public static ChangedPathIndex read(File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			List<ObjectId> tips = new ArrayList<ObjectId>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				in.readFully(raw);
+				tips.add(ObjectId.fromRaw(raw));
+			}
+			int size = in.readInt();
+			byte[] ids = new byte[size * Constants.OBJECT_ID_LENGTH];
+			in.readFully(ids);
+			int[] offsets = new int[size + 1];
+			for (int i = 0; i <= size; i++) {
+				offsets[i] = in.readInt();
+			}
+			byte[] filters = new byte[offsets[size]];
+			in.readFully(filters);
+			return new ChangedPathIndex(tips.toArray(new ObjectId[tips.size()]), ids, offsets, filters);
+		}
+	}
+
+	/**
+	 * Writes the index to a temporary file which replaces the file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		file.getParentFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(tips.length);
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (ObjectId tip : tips) {
+				tip.copyRawTo(raw, 0);
+				out.write(raw);
+			}
+			out.writeInt(size());
+			out.write(ids);
+			for (int offset : offsets) {
+				out.writeInt(offset);
+			}
+			out.write(filters);
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
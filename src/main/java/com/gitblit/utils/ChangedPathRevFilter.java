@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Selects the commits which changed a path.
+ *
+ * A commit with one parent whose changed paths filter excludes the path is
+ * skipped without reading its trees.  All other commits, e.g. merges, are
+ * diffed like a tree filter of the walk.
+ */
+public class ChangedPathRevFilter extends RevFilter {
+
+	private final RevWalk walk;
+
+	private final String path;
+
+	private final ChangedPathIndex index;
+
+	private final ChangedPathIndex.Key key;
+
+	private final TreeRevFilter diff;
+
+	/**
+	 * @param walk
+	 *            the walk which uses the filter
+	 * @param path
+	 * @param index
+	 *            the changed paths of the commits
+	 */
+	public ChangedPathRevFilter(RevWalk walk, String path, ChangedPathIndex index) {
+		this.walk = walk;
+		this.path = path;
+		this.index = index;
+		this.key = new ChangedPathIndex.Key(path);
+		this.diff = new TreeRevFilter(walk, AndTreeFilter.create(
+				PathFilterGroup.createFromStrings(Collections.singleton(path)),
+				TreeFilter.ANY_DIFF));
+	}
+
+	@Override
+	public boolean include(RevWalk rw, RevCommit c) throws StopWalkException, MissingObjectException,
+			IncorrectObjectTypeException, IOException {
+		if (c.getParentCount() == 1 && !index.mightHaveChanged(c, key)) {
+			return false;
+		}
+		return diff.include(rw, c);
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new ChangedPathRevFilter(walk, path, index);
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "CHANGED_PATH(" + path + ")";
+	}
+}
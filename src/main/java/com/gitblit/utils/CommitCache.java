@@ -32,6 +32,8 @@ import org.slf4j.LoggerFactory;
 
 import com.gitblit.models.RefModel;
 import com.gitblit.models.RepositoryCommit;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
 
 /**
  * Caches repository commits for re-use in the dashboard and activity pages.
@@ -43,6 +45,13 @@ public class CommitCache {
 
 	private static final CommitCache instance;
 
+	private static final Family<Counter> REQUESTS = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result");
+
+	private static final Counter HITS = REQUESTS.labels("commits", "hit");
+
+	private static final Counter MISSES = REQUESTS.labels("commits", "miss");
+
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
 	protected final Map<String, ObjectCache<List<RepositoryCommit>>> cache;
@@ -181,6 +190,7 @@ public class CommitCache {
 			synchronized (repoCache) {
 				List<RepositoryCommit> commits;
 				if (!repoCache.hasCurrent(branchKey, tipDate)) {
+					MISSES.inc();
 					commits = repoCache.getObject(branchKey);
 					if (ArrayUtils.isEmpty(commits)) {
 						// we don't have any cached commits for this branch, reload
@@ -200,6 +210,7 @@ public class CommitCache {
 					}
 				} else {
 					// cache is current
+					HITS.inc();
 					commits = repoCache.getObject(branchKey);
 					// evict older commits outside the cache window
 					commits = reduce(commits, cacheCutoffDate);
@@ -0,0 +1,637 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * The commit graph of a repository.
+ *
+ * Like the commit-graph file of Git, the graph keeps the parents, the commit
+ * time and the generation number of every commit in fixed-size records, so
+ * the file is read as is instead of being parsed.  It is read into the heap
+ * because a memory-mapped file can neither be replaced by the next update nor
+ * be deleted with its repository on Windows.  The generation number
+ * of a commit is one more than the maximum generation of its parents; a
+ * commit can only reach commits of a lower generation, which stops the
+ * reachability queries of the graph early without reading any commit
+ * object.
+ *
+ * The graph is immutable; an update returns a new graph which also contains
+ * the commits reachable from the current refs.  The queries return null if a
+ * commit is not in the graph, e.g. because it has been pushed after the last
+ * update.
+ */
+public class CommitGraph {
+
+	private static final int MAGIC = 0x47424347; // GBCG
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 20;
+
+	/**
+	 * parent1, parent2, generation, commit time
+	 */
+	private static final int RECORD_SIZE = 16;
+
+	private static final int NO_PARENT = -1;
+
+	/**
+	 * Marks the second parent of an octopus merge as an index into the extra
+	 * edges and the last extra edge of a commit.
+	 */
+	private static final int EXTRA_EDGES = 0x80000000;
+
+	private static final int PARENT1 = 1;
+
+	private static final int PARENT2 = 2;
+
+	private static final CommitGraph EMPTY = new CommitGraph(build(new ObjectId[0], 0, 0, new byte[0],
+			new byte[0]));
+
+	private final ByteBuffer buffer;
+
+	private final int size;
+
+	private final int tipCount;
+
+	private CommitGraph(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(8);
+		this.tipCount = buffer.getInt(16);
+	}
+
+	/**
+	 * Returns the graph of a repository without commits.
+	 */
+	public static CommitGraph empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the file of the persisted graph of a repository.
+	 *
+	 * @param repository
+	 * @return the graph file
+	 */
+	public static File getFile(Repository repository) {
+		return new File(repository.getDirectory(), "objects/info/gitblit-commit-graph");
+	}
+
+	/**
+	 * @return the number of commits of the graph
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of bytes of the graph
+	 */
+	public int getByteSize() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * @return the tips of the refs when the graph was updated
+	 */
+	public List<ObjectId> getTips() {
+		List<ObjectId> tips = new ArrayList<ObjectId>(tipCount);
+		for (int i = 0; i < tipCount; i++) {
+			tips.add(getId(tipsOffset(), i));
+		}
+		return tips;
+	}
+
+	private int tipsOffset() {
+		return HEADER_SIZE;
+	}
+
+	private int idsOffset() {
+		return HEADER_SIZE + tipCount * Constants.OBJECT_ID_LENGTH;
+	}
+
+	private int recordsOffset() {
+		return idsOffset() + size * Constants.OBJECT_ID_LENGTH;
+	}
+
+	private int extraEdgesOffset() {
+		return recordsOffset() + size * RECORD_SIZE;
+	}
+
+	private ObjectId getId(int offset, int i) {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		for (int j = 0; j < raw.length; j++) {
+			raw[j] = buffer.get(offset + i * Constants.OBJECT_ID_LENGTH + j);
+		}
+		return ObjectId.fromRaw(raw);
+	}
+
+	/**
+	 * @param i
+	 *            the position of a commit
+	 * @return the id of the commit
+	 */
+	ObjectId getId(int i) {
+		return getId(idsOffset(), i);
+	}
+
+	/**
+	 * Returns the position of a commit in the graph.
+	 *
+	 * @param commit
+	 * @return the position or -1 if the commit is null or not in the graph
+	 */
+	int find(AnyObjectId commit) {
+		if (commit == null) {
+			return -1;
+		}
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		commit.copyRawTo(raw, 0);
+		int ids = idsOffset();
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = 0;
+			int offset = ids + mid * Constants.OBJECT_ID_LENGTH;
+			for (int j = 0; j < raw.length && cmp == 0; j++) {
+				cmp = (raw[j] & 0xff) - (buffer.get(offset + j) & 0xff);
+			}
+			if (cmp > 0) {
+				low = mid + 1;
+			} else if (cmp < 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param commit
+	 * @return true if the commit is in the graph
+	 */
+	public boolean contains(AnyObjectId commit) {
+		return find(commit) >= 0;
+	}
+
+	int getGeneration(int i) {
+		return buffer.getInt(recordsOffset() + i * RECORD_SIZE + 8);
+	}
+
+	int getCommitTime(int i) {
+		return buffer.getInt(recordsOffset() + i * RECORD_SIZE + 12);
+	}
+
+	/**
+	 * @param i
+	 *            the position of a commit
+	 * @return the positions of the parents of the commit
+	 */
+	int[] getParents(int i) {
+		int record = recordsOffset() + i * RECORD_SIZE;
+		int parent1 = buffer.getInt(record);
+		int parent2 = buffer.getInt(record + 4);
+		if (parent1 == NO_PARENT) {
+			return new int[0];
+		} else if (parent2 == NO_PARENT) {
+			return new int[] { parent1 };
+		} else if ((parent2 & EXTRA_EDGES) == 0) {
+			return new int[] { parent1, parent2 };
+		}
+		List<Integer> parents = new ArrayList<Integer>();
+		parents.add(parent1);
+		int edge = extraEdgesOffset() + 4 * (parent2 & ~EXTRA_EDGES);
+		int parent;
+		do {
+			parent = buffer.getInt(edge);
+			parents.add(parent & ~EXTRA_EDGES);
+			edge += 4;
+		} while ((parent & EXTRA_EDGES) == 0);
+		int[] array = new int[parents.size()];
+		for (int j = 0; j < array.length; j++) {
+			array[j] = parents.get(j);
+		}
+		return array;
+	}
+
+	/**
+	 * Returns true if the commit is the tip or an ancestor of the tip.
+	 *
+	 * @param commit
+	 * @param tip
+	 * @return true if the commit is reachable from the tip or null if one of
+	 *         the commits is not in the graph
+	 */
+	public Boolean isMergedInto(AnyObjectId commit, AnyObjectId tip) {
+		int base = find(commit);
+		int start = find(tip);
+		if (base < 0 || start < 0) {
+			return null;
+		}
+		int generation = getGeneration(base);
+		BitSet visited = new BitSet();
+		List<Integer> stack = new ArrayList<Integer>();
+		stack.add(start);
+		visited.set(start);
+		while (!stack.isEmpty()) {
+			int c = stack.remove(stack.size() - 1);
+			if (c == base) {
+				return true;
+			}
+			for (int p : getParents(c)) {
+				// a commit of the same or a lower generation can not reach the commit
+				if (!visited.get(p) && (p == base || getGeneration(p) > generation)) {
+					visited.set(p);
+					stack.add(p);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the best common ancestor of two commits.
+	 *
+	 * @param a
+	 * @param b
+	 * @return the merge base, ObjectId.zeroId() if the commits have no common
+	 *         ancestor or null if one of the commits is not in the graph
+	 */
+	public ObjectId getMergeBase(AnyObjectId a, AnyObjectId b) {
+		int ia = find(a);
+		int ib = find(b);
+		if (ia < 0 || ib < 0) {
+			return null;
+		}
+		Paint paint = new Paint();
+		paint.add(ia, PARENT1);
+		paint.add(ib, PARENT2);
+		while (!paint.queue.isEmpty()) {
+			int c = paint.poll();
+			int flags = paint.flags.get(c);
+			if (flags == (PARENT1 | PARENT2)) {
+				// the descendants of a commit have higher generations and
+				// have been visited, so the first common ancestor is a best one
+				return getId(c);
+			}
+			for (int p : getParents(c)) {
+				paint.add(p, flags);
+			}
+		}
+		return ObjectId.zeroId();
+	}
+
+	/**
+	 * Returns the number of commits which are reachable from the tip but not
+	 * from the base.
+	 *
+	 * @param base
+	 * @param tip
+	 * @return the number of commits or -1 if one of the commits is not in the
+	 *         graph
+	 */
+	public int countCommits(AnyObjectId base, AnyObjectId tip) {
+		int ib = find(base);
+		int it = find(tip);
+		if (ib < 0 || it < 0) {
+			return -1;
+		}
+		Paint paint = new Paint();
+		paint.add(it, PARENT1);
+		paint.add(ib, PARENT2);
+		int count = 0;
+		while (paint.unreachable > 0) {
+			int c = paint.poll();
+			int flags = paint.flags.get(c);
+			if (flags == PARENT1) {
+				count++;
+				paint.unreachable--;
+			}
+			for (int p : getParents(c)) {
+				paint.add(p, flags);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Paints the ancestors of two commits in the order of descending
+	 * generations, so the flags of a commit are complete when it is polled.
+	 */
+	private class Paint {
+
+		final Map<Integer, Integer> flags = new HashMap<Integer, Integer>();
+
+		final PriorityQueue<Integer> queue = new PriorityQueue<Integer>(64, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int cmp = Integer.compare(getGeneration(b), getGeneration(a));
+				if (cmp == 0) {
+					cmp = Integer.compare(getCommitTime(b), getCommitTime(a));
+				}
+				return cmp;
+			}
+		});
+
+		/**
+		 * The number of queued commits which are not reachable from the
+		 * second commit.
+		 */
+		int unreachable;
+
+		final BitSet polled = new BitSet();
+
+		void add(int c, int flag) {
+			Integer current = flags.get(c);
+			if (current == null) {
+				flags.put(c, flag);
+				queue.add(c);
+				if ((flag & PARENT2) == 0) {
+					unreachable++;
+				}
+			} else if ((current | flag) != current) {
+				flags.put(c, current | flag);
+				if ((current & PARENT2) == 0 && (flag & PARENT2) != 0 && !polled.get(c)) {
+					unreachable--;
+				}
+			}
+		}
+
+		int poll() {
+			int c = queue.poll();
+			polled.set(c);
+			return c;
+		}
+	}
+
+	/**
+	 * Returns a graph which also contains the commits reachable from the
+	 * current refs of the repository.  The commits reachable from the tips of
+	 * the last update are not walked again.
+	 *
+	 * @param repository
+	 * @return the updated graph or this graph if no commit was added
+	 * @throws IOException
+	 */
+	public CommitGraph update(Repository repository) throws IOException {
+		Set<ObjectId> heads = new LinkedHashSet<ObjectId>();
+		List<RevCommit> added = new ArrayList<RevCommit>();
+		try (RevWalk rw = new RevWalk(repository)) {
+			rw.setRetainBody(false);
+			rw.sort(RevSort.TOPO);
+			rw.sort(RevSort.REVERSE, true);
+			for (Ref ref : repository.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+				if (ref.getObjectId() == null) {
+					continue;
+				}
+				try {
+					RevObject object = rw.peel(rw.parseAny(ref.getObjectId()));
+					if (object instanceof RevCommit && heads.add(object.copy())) {
+						rw.markStart((RevCommit) object);
+					}
+				} catch (MissingObjectException e) {
+					// a broken ref
+				}
+			}
+			if (heads.equals(new LinkedHashSet<ObjectId>(getTips()))) {
+				return this;
+			}
+			for (ObjectId tip : getTips()) {
+				try {
+					rw.markUninteresting(rw.parseCommit(tip));
+				} catch (MissingObjectException e) {
+					// the tip has been pruned after a rewrite
+				}
+			}
+			// the parents of a commit are walked before the commit
+			RevCommit commit;
+			while ((commit = rw.next()) != null) {
+				if (!contains(commit)) {
+					added.add(commit);
+				}
+			}
+		}
+		return merge(heads, added);
+	}
+
+	private CommitGraph merge(Set<ObjectId> heads, List<RevCommit> added) {
+		// the generations of the added commits, in topological order
+		Map<ObjectId, Integer> generations = new HashMap<ObjectId, Integer>();
+		for (RevCommit commit : added) {
+			int generation = 0;
+			for (RevCommit parent : commit.getParents()) {
+				Integer g = generations.get(parent);
+				if (g == null) {
+					g = getGeneration(find(parent));
+				}
+				generation = Math.max(generation, g);
+			}
+			generations.put(commit, generation + 1);
+		}
+
+		// the positions of all commits in the merged graph
+		TreeMap<ObjectId, RevCommit> sorted = new TreeMap<ObjectId, RevCommit>();
+		for (RevCommit commit : added) {
+			sorted.put(commit, commit);
+		}
+		int newSize = size + added.size();
+		ObjectId[] ids = new ObjectId[newSize];
+		int[] positions = new int[size];
+		Map<ObjectId, Integer> addedPositions = new HashMap<ObjectId, Integer>();
+		int i = 0;
+		int n = 0;
+		ObjectId next = size > 0 ? getId(0) : null;
+		for (ObjectId id : sorted.keySet()) {
+			while (next != null && next.compareTo(id) < 0) {
+				ids[n] = next;
+				positions[i++] = n++;
+				next = i < size ? getId(i) : null;
+			}
+			ids[n] = id;
+			addedPositions.put(id, n++);
+		}
+		while (next != null) {
+			ids[n] = next;
+			positions[i++] = n++;
+			next = i < size ? getId(i) : null;
+		}
+
+		int[][] parents = new int[newSize][];
+		int[] generation = new int[newSize];
+		int[] commitTime = new int[newSize];
+		for (int j = 0; j < size; j++) {
+			int position = positions[j];
+			int[] p = getParents(j);
+			for (int k = 0; k < p.length; k++) {
+				p[k] = positions[p[k]];
+			}
+			parents[position] = p;
+			generation[position] = getGeneration(j);
+			commitTime[position] = getCommitTime(j);
+		}
+		for (RevCommit commit : added) {
+			int position = addedPositions.get(commit);
+			int[] p = new int[commit.getParentCount()];
+			for (int k = 0; k < p.length; k++) {
+				Integer parent = addedPositions.get(commit.getParent(k));
+				p[k] = parent == null ? positions[find(commit.getParent(k))] : parent;
+			}
+			parents[position] = p;
+			generation[position] = generations.get(commit);
+			commitTime[position] = commit.getCommitTime();
+		}
+
+		int extraEdges = 0;
+		for (int[] p : parents) {
+			if (p.length > 2) {
+				extraEdges += p.length - 1;
+			}
+		}
+		byte[] records = new byte[newSize * RECORD_SIZE + extraEdges * 4];
+		ByteBuffer data = ByteBuffer.wrap(records);
+		int edge = 0;
+		for (int j = 0; j < newSize; j++) {
+			int[] p = parents[j];
+			data.putInt(j * RECORD_SIZE, p.length > 0 ? p[0] : NO_PARENT);
+			if (p.length > 2) {
+				data.putInt(j * RECORD_SIZE + 4, EXTRA_EDGES | edge);
+				for (int k = 1; k < p.length; k++) {
+					int value = k == p.length - 1 ? EXTRA_EDGES | p[k] : p[k];
+					data.putInt(newSize * RECORD_SIZE + 4 * edge++, value);
+				}
+			} else {
+				data.putInt(j * RECORD_SIZE + 4, p.length > 1 ? p[1] : NO_PARENT);
+			}
+			data.putInt(j * RECORD_SIZE + 8, generation[j]);
+			data.putInt(j * RECORD_SIZE + 12, commitTime[j]);
+		}
+		byte[] rawIds = new byte[newSize * Constants.OBJECT_ID_LENGTH];
+		for (int j = 0; j < newSize; j++) {
+			ids[j].copyRawTo(rawIds, j * Constants.OBJECT_ID_LENGTH);
+		}
+		return new CommitGraph(build(heads.toArray(new ObjectId[heads.size()]), newSize, extraEdges, rawIds, records));
+	}
+
+	private static ByteBuffer build(ObjectId[] tips, int size, int extraEdges, byte[] ids, byte[] records) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + tips.length * Constants.OBJECT_ID_LENGTH
+				+ ids.length + records.length);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(size);
+		buffer.putInt(extraEdges);
+		buffer.putInt(tips.length);
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		for (ObjectId tip : tips) {
+			tip.copyRawTo(raw, 0);
+			buffer.put(raw);
+		}
+		buffer.put(ids);
+		buffer.put(records);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Reads a persisted graph into memory.
+	 *
+	 * @param file
+	 * @return the graph or null if the file does not exist or has another
+	 *         version
+	 * @throws IOException
+	 */
+	public static CommitGraph read(File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER_SIZE) {
+				return null;
+			}
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("commit graph too large: " + file);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("commit graph truncated: " + file);
+				}
+			}
+			buffer.flip();
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				return null;
+			}
+			return new CommitGraph(buffer);
+		}
+	}
+
+	/**
+	 * Writes the graph to a temporary file which replaces the file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		file.getParentFile().mkdirs();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+			ByteBuffer data = buffer.duplicate();
+			data.rewind();
+			byte[] chunk = new byte[64 * 1024];
+			while (data.hasRemaining()) {
+				int length = Math.min(chunk.length, data.remaining());
+				data.get(chunk, 0, length);
+				out.write(chunk, 0, length);
+			}
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
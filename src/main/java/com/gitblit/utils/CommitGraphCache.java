@@ -0,0 +1,253 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Caches the {@link CommitGraph} of the repositories for the reachability
+ * queries of {@link JGitUtils}.
+ *
+ * A graph is read from its file when it is first requested.  A missing
+ * graph is built, and a cached graph is brought up to date, on a single
+ * low-priority thread; until then the queries walk the commits.  Graphs are
+ * updated after every push.
+ */
+public class CommitGraphCache {
+
+	private static final CommitGraphCache instance;
+
+	private static final Family<Counter> REQUESTS = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result");
+
+	private static final Counter HITS = REQUESTS.labels("commitgraph", "hit");
+
+	private static final Counter MISSES = REQUESTS.labels("commitgraph", "miss");
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Set<File> pendingUpdates = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+	private volatile Cache<File, CommitGraph> graphs;
+
+	private volatile long maximumBytes;
+
+	private ExecutorService updateExecutor;
+
+	public static CommitGraphCache instance() {
+		return instance;
+	}
+
+	static {
+		instance = new CommitGraphCache();
+	}
+
+	protected CommitGraphCache() {
+	}
+
+	/**
+	 * Enables the cache.
+	 *
+	 * @param maximumBytes
+	 *            the maximum size of the cached graphs, 0 disables the cache
+	 */
+	public synchronized void configure(long maximumBytes) {
+		if (maximumBytes <= 0) {
+			graphs = null;
+			return;
+		}
+		this.maximumBytes = maximumBytes;
+		// a single segment, the limit of a segment would be a fraction of the
+		// maximum weight and would evict large graphs as soon as they are added
+		graphs = CacheBuilder.newBuilder()
+				.concurrencyLevel(1)
+				.maximumWeight(maximumBytes)
+				.weigher(new Weigher<File, CommitGraph>() {
+					@Override
+					public int weigh(File key, CommitGraph graph) {
+						return graph.getByteSize();
+					}
+				})
+				.build();
+	}
+
+	public boolean isEnabled() {
+		return graphs != null;
+	}
+
+	/**
+	 * Disables the cache and stops pending updates.
+	 */
+	public synchronized void close() {
+		graphs = null;
+		if (updateExecutor != null) {
+			updateExecutor.shutdownNow();
+			updateExecutor = null;
+		}
+	}
+
+	/**
+	 * Forgets the graph of a repository which has been renamed or deleted.
+	 *
+	 * @param repository
+	 */
+	public void clear(Repository repository) {
+		Cache<File, CommitGraph> cache = graphs;
+		if (cache != null && repository.getDirectory() != null) {
+			cache.invalidate(repository.getDirectory());
+		}
+	}
+
+	/**
+	 * Returns the graph of a repository.  The graph may be missing the commits
+	 * pushed since its last update.
+	 *
+	 * @param repository
+	 * @return the graph or null if the graph has not been built yet or if it
+	 *         is larger than the cache
+	 */
+	public CommitGraph get(Repository repository) {
+		Cache<File, CommitGraph> cache = graphs;
+		File dir = repository.getDirectory();
+		if (cache == null || dir == null) {
+			return null;
+		}
+		CommitGraph graph = cache.getIfPresent(dir);
+		if (graph != null) {
+			HITS.inc();
+			return graph;
+		}
+		MISSES.inc();
+		File file = CommitGraph.getFile(repository);
+		if (file.length() > maximumBytes) {
+			// a graph which can not be cached is not read for every query
+			return null;
+		}
+		try {
+			graph = CommitGraph.read(file);
+			if (graph != null) {
+				cache.put(dir, graph);
+			}
+		} catch (IOException e) {
+			logger.warn("failed to read the commit graph of " + dir, e);
+		}
+		scheduleUpdate(repository);
+		return graph;
+	}
+
+	/**
+	 * Schedules an update of the graph of a repository.  Updates requested
+	 * while an update is pending are coalesced.
+	 *
+	 * @param repository
+	 */
+	public void scheduleUpdate(Repository repository) {
+		final File dir = repository.getDirectory();
+		if (!isEnabled() || dir == null || !pendingUpdates.add(dir)) {
+			return;
+		}
+		try {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					pendingUpdates.remove(dir);
+					try {
+						Repository r = RepositoryCache.open(FileKey.exact(dir, FS.DETECTED), true);
+						try {
+							update(r);
+						} finally {
+							r.close();
+						}
+					} catch (IOException e) {
+						logger.error("failed to open " + dir, e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingUpdates.remove(dir);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (updateExecutor == null) {
+			updateExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("CommitGraph-%s")
+					.setPriority(Thread.MIN_PRIORITY)
+					.setDaemon(true)
+					.build());
+		}
+		return updateExecutor;
+	}
+
+	/**
+	 * Adds the commits reachable from the current refs of a repository to its
+	 * graph and writes the graph.
+	 *
+	 * @param repository
+	 * @return the updated graph or null if the cache is disabled or the update
+	 *         failed
+	 */
+	public CommitGraph update(Repository repository) {
+		Cache<File, CommitGraph> cache = graphs;
+		File dir = repository.getDirectory();
+		if (cache == null || dir == null) {
+			return null;
+		}
+		try {
+			File file = CommitGraph.getFile(repository);
+			CommitGraph graph = cache.getIfPresent(dir);
+			if (graph == null) {
+				graph = CommitGraph.read(file);
+			}
+			if (graph == null) {
+				graph = CommitGraph.empty();
+			}
+			long start = System.currentTimeMillis();
+			CommitGraph updated = graph.update(repository);
+			if (updated != graph || !file.exists()) {
+				updated.write(file);
+				logger.debug("added {} commits to the commit graph of {} in {} msecs",
+						updated.size() - graph.size(), dir, System.currentTimeMillis() - start);
+			}
+			cache.put(dir, updated);
+			return updated;
+		} catch (IOException e) {
+			logger.error("failed to update the commit graph of " + dir, e);
+			return null;
+		}
+	}
+}
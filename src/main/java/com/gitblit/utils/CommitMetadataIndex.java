@@ -0,0 +1,597 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.gitblit.Constants.SearchType;
+
+/**
+ * The commit metadata index of a repository.
+ *
+ * The index keeps the parents, the commit time, the author, the committer and
+ * the message of every commit reachable from the refs in columns, so a search
+ * of the history of a branch neither parses nor inflates any commit.  The
+ * authors and committers are kept once per distinct identity, so an identity
+ * search matches the identities first and then only compares numbers.  The
+ * lowercase messages are kept as UTF-8 bytes in a single array.
+ *
+ * The history of a tip is visited in the order of a RevWalk without sorting,
+ * i.e. the most recent pending commit first, and the values are matched like
+ * {@link JGitUtils#searchRevlogs}, so the index returns the same pages.
+ *
+ * The commits are appended to the index file as they are added, so an update
+ * after a push writes only the pushed commits.  Reading the file never
+ * modifies it, an incomplete last record is only dropped by the next write.
+ * Therefore the index must only be written by a single thread.
+ */
+public class CommitMetadataIndex {
+
+	private static final int MAGIC = 0x4742434d; // GBCM
+
+	private static final int VERSION = 1;
+
+	private static final int IDENTITY = 1;
+
+	private static final int COMMIT = 2;
+
+	private static final int TIPS = 3;
+
+	private final Map<ObjectId, Integer> positions = new HashMap<ObjectId, Integer>();
+
+	private ObjectId[] ids = new ObjectId[16];
+
+	private int[] commitTimes = new int[16];
+
+	private int[] authors = new int[16];
+
+	private int[] committers = new int[16];
+
+	/**
+	 * The message of commit i is messages[messageOffsets[i]] to
+	 * messages[messageOffsets[i + 1] - 1].
+	 */
+	private int[] messageOffsets = new int[17];
+
+	private byte[] messages = new byte[1024];
+
+	/**
+	 * The parents of commit i are parents[parentOffsets[i]] to
+	 * parents[parentOffsets[i + 1] - 1].
+	 */
+	private int[] parentOffsets = new int[17];
+
+	private int[] parents = new int[16];
+
+	private int size;
+
+	private final List<String> identityNames = new ArrayList<String>();
+
+	private final List<String> identityEmails = new ArrayList<String>();
+
+	private final Map<String, Integer> identities = new HashMap<String, Integer>();
+
+	private ObjectId[] tips = new ObjectId[0];
+
+	private int writtenIdentities;
+
+	private int writtenCommits;
+
+	private boolean writtenTips;
+
+	/**
+	 * The length of the file up to the last record written or read, 0 if the
+	 * file has to be written anew.
+	 */
+	private long length;
+
+	private long memoryUsage;
+
+	/**
+	 * The order of the history of the last searched tip.
+	 */
+	private int orderStart = -1;
+
+	private int[] order;
+
+	private CommitMetadataIndex() {
+	}
+
+	/**
+	 * Returns an index without commits.
+	 */
+	public static CommitMetadataIndex empty() {
+		return new CommitMetadataIndex();
+	}
+
+	/**
+	 * Returns the file of the persisted index of a repository.
+	 *
+	 * @param repository
+	 * @return the index file
+	 */
+	public static File getFile(Repository repository) {
+		return new File(repository.getDirectory(), "objects/info/gitblit-commit-metadata");
+	}
+
+	/**
+	 * @return the number of indexed commits
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the approximate number of bytes used by the index
+	 */
+	public synchronized long getMemoryUsage() {
+		return memoryUsage + (order == null ? 0 : 4L * order.length);
+	}
+
+	/**
+	 * @param commit
+	 * @return true if the commit is in the index
+	 */
+	public synchronized boolean contains(AnyObjectId commit) {
+		return positions.containsKey(commit);
+	}
+
+	/**
+	 * Returns a page of the commits of the history of a tip which match a
+	 * value, like {@link JGitUtils#searchRevlogs}.
+	 *
+	 * @param tip
+	 * @param value
+	 * @param type
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all matching commits are returned
+	 * @return the matching commits or null if the tip is not in the index
+	 */
+	public synchronized List<ObjectId> search(AnyObjectId tip, String value, SearchType type, int offset,
+			int maxCount) {
+		Integer start = positions.get(tip);
+		if (start == null) {
+			return null;
+		}
+		List<ObjectId> list = new ArrayList<ObjectId>();
+		if (StringUtils.isEmpty(value) || maxCount == 0) {
+			return list;
+		}
+		String lcValue = value.toLowerCase();
+		byte[] pattern = lcValue.getBytes(StandardCharsets.UTF_8);
+		BitSet matchingIdentities = null;
+		if (type != SearchType.COMMIT) {
+			matchingIdentities = new BitSet(identityNames.size());
+			for (int i = 0; i < identityNames.size(); i++) {
+				if (identityNames.get(i).indexOf(lcValue) > -1 || identityEmails.get(i).indexOf(lcValue) > -1) {
+					matchingIdentities.set(i);
+				}
+			}
+			if (matchingIdentities.isEmpty()) {
+				return list;
+			}
+		}
+		int count = 0;
+		for (int c : getOrder(start)) {
+			boolean include;
+			switch (type) {
+			case AUTHOR:
+				include = matchingIdentities.get(authors[c]);
+				break;
+			case COMMITTER:
+				include = matchingIdentities.get(committers[c]);
+				break;
+			default:
+				include = contains(messageOffsets[c], messageOffsets[c + 1], pattern);
+				break;
+			}
+			if (include && count++ >= offset) {
+				list.add(ids[c]);
+				if (maxCount > 0 && list.size() == maxCount) {
+					break;
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the history of a commit in the order of a RevWalk without
+	 * sorting: the pending commit with the most recent commit time is visited
+	 * next and pending commits of the same time are visited in the order in
+	 * which they were reached.
+	 */
+	private int[] getOrder(int start) {
+		if (start == orderStart) {
+			return order;
+		}
+		int[] visited = new int[16];
+		int count = 0;
+		int[] pending = new int[16];
+		int sequence = 0;
+		BitSet seen = new BitSet(size);
+		PriorityQueue<Long> queue = new PriorityQueue<Long>();
+		seen.set(start);
+		pending[sequence] = start;
+		queue.add(key(commitTimes[start], sequence++));
+		while (!queue.isEmpty()) {
+			int c = pending[(int) (queue.poll() & 0xffffffffL)];
+			if (count == visited.length) {
+				visited = Arrays.copyOf(visited, 2 * count);
+			}
+			visited[count++] = c;
+			for (int i = parentOffsets[c]; i < parentOffsets[c + 1]; i++) {
+				int p = parents[i];
+				if (!seen.get(p)) {
+					seen.set(p);
+					if (sequence == pending.length) {
+						pending = Arrays.copyOf(pending, 2 * sequence);
+					}
+					pending[sequence] = p;
+					queue.add(key(commitTimes[p], sequence++));
+				}
+			}
+		}
+		order = Arrays.copyOf(visited, count);
+		orderStart = start;
+		return order;
+	}
+
+	/**
+	 * Returns true if the bytes of the messages from start to end contain the
+	 * pattern.  The UTF-8 encoding of a string contains the encoding of a
+	 * substring only where the string contains the substring.
+	 */
+	private boolean contains(int start, int end, byte[] pattern) {
+		int last = end - pattern.length;
+		byte first = pattern[0];
+		for (int i = start; i <= last; i++) {
+			if (messages[i] != first) {
+				continue;
+			}
+			int k = 1;
+			while (k < pattern.length && messages[i + k] == pattern[k]) {
+				k++;
+			}
+			if (k == pattern.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long key(int commitTime, int sequence) {
+		return ((long) -commitTime << 32) | sequence;
+	}
+
+	/**
+	 * Adds the commits reachable from the current refs of the repository to
+	 * the index.  The commits reachable from the tips of the last update are
+	 * not walked again.
+	 *
+	 * @param repository
+	 * @return the number of added commits
+	 * @throws IOException
+	 */
+	public int update(Repository repository) throws IOException {
+		Set<ObjectId> heads = new LinkedHashSet<ObjectId>();
+		int added = 0;
+		try (RevWalk rw = new RevWalk(repository)) {
+			rw.setRetainBody(false);
+			rw.sort(RevSort.TOPO);
+			rw.sort(RevSort.REVERSE, true);
+			for (Ref ref : repository.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+				if (ref.getObjectId() == null) {
+					continue;
+				}
+				try {
+					RevObject object = rw.peel(rw.parseAny(ref.getObjectId()));
+					if (object instanceof RevCommit && heads.add(object.copy())) {
+						rw.markStart((RevCommit) object);
+					}
+				} catch (MissingObjectException e) {
+					// a broken ref
+				}
+			}
+			ObjectId[] lastTips;
+			synchronized (this) {
+				lastTips = tips;
+			}
+			if (heads.equals(new LinkedHashSet<ObjectId>(Arrays.asList(lastTips)))) {
+				return 0;
+			}
+			for (ObjectId tip : lastTips) {
+				try {
+					rw.markUninteresting(rw.parseCommit(tip));
+				} catch (MissingObjectException e) {
+					// the tip has been pruned after a rewrite
+				}
+			}
+			// the parents of a commit are walked before the commit
+			RevCommit commit;
+			while ((commit = rw.next()) != null) {
+				if (contains(commit)) {
+					continue;
+				}
+				rw.parseBody(commit);
+				add(commit);
+				commit.disposeBody();
+				added++;
+			}
+		}
+		synchronized (this) {
+			tips = heads.toArray(new ObjectId[heads.size()]);
+			writtenTips = false;
+		}
+		return added;
+	}
+
+	private synchronized void add(RevCommit commit) {
+		int[] p = new int[commit.getParentCount()];
+		int n = 0;
+		for (int k = 0; k < p.length; k++) {
+			Integer parent = positions.get(commit.getParent(k));
+			if (parent != null) {
+				// the parents of a shallow commit are missing
+				p[n++] = parent;
+			}
+		}
+		add(commit.copy(), commit.getCommitTime(), identity(commit.getAuthorIdent()),
+				identity(commit.getCommitterIdent()), Arrays.copyOf(p, n),
+				commit.getFullMessage().toLowerCase().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private int identity(PersonIdent ident) {
+		return identity(ident.getName().toLowerCase(), ident.getEmailAddress().toLowerCase());
+	}
+
+	private int identity(String name, String email) {
+		String key = name + '\n' + email;
+		Integer identity = identities.get(key);
+		if (identity == null) {
+			identity = identityNames.size();
+			identityNames.add(name);
+			identityEmails.add(email);
+			identities.put(key, identity);
+			memoryUsage += 96 + 4 * key.length();
+		}
+		return identity;
+	}
+
+	private void add(ObjectId id, int commitTime, int author, int committer, int[] p, byte[] message) {
+		if (size == ids.length) {
+			int capacity = 2 * size;
+			ids = Arrays.copyOf(ids, capacity);
+			commitTimes = Arrays.copyOf(commitTimes, capacity);
+			authors = Arrays.copyOf(authors, capacity);
+			committers = Arrays.copyOf(committers, capacity);
+			messageOffsets = Arrays.copyOf(messageOffsets, capacity + 1);
+			parentOffsets = Arrays.copyOf(parentOffsets, capacity + 1);
+		}
+		int messageOffset = messageOffsets[size];
+		if (messageOffset + message.length > messages.length) {
+			messages = Arrays.copyOf(messages, Math.max(2 * messages.length, messageOffset + message.length));
+		}
+		System.arraycopy(message, 0, messages, messageOffset, message.length);
+		int offset = parentOffsets[size];
+		if (offset + p.length > parents.length) {
+			parents = Arrays.copyOf(parents, Math.max(2 * parents.length, offset + p.length));
+		}
+		System.arraycopy(p, 0, parents, offset, p.length);
+		ids[size] = id;
+		commitTimes[size] = commitTime;
+		authors[size] = author;
+		committers[size] = committer;
+		messageOffsets[size + 1] = messageOffset + message.length;
+		parentOffsets[size + 1] = offset + p.length;
+		positions.put(id, size);
+		size++;
+		memoryUsage += 140 + 4 * p.length + message.length;
+	}
+
+	/**
+	 * Reads an index file.  An incomplete record at the end of the file, which
+	 * an interrupted or a concurrent write may leave, is ignored.
+	 *
+	 * @param file
+	 * @return the index or null if the file does not exist or has another
+	 *         version
+	 * @throws IOException
+	 */
+	public static CommitMetadataIndex read(File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		CommitMetadataIndex index = new CommitMetadataIndex();
+		long valid;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			valid = 8;
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			long limit = file.length();
+			try {
+				while (true) {
+					long length;
+					int type = in.readByte();
+					switch (type) {
+					case IDENTITY:
+						byte[] name = readBytes(in, limit);
+						byte[] email = readBytes(in, limit);
+						index.identity(new String(name, StandardCharsets.UTF_8), new String(email, StandardCharsets.UTF_8));
+						length = 8 + name.length + email.length;
+						break;
+					case COMMIT:
+						in.readFully(raw);
+						int commitTime = in.readInt();
+						int author = in.readInt();
+						int committer = in.readInt();
+						int parentCount = in.readInt();
+						if (parentCount < 0 || 4L * parentCount > limit) {
+							throw new EOFException();
+						}
+						int[] p = new int[parentCount];
+						for (int k = 0; k < p.length; k++) {
+							p[k] = in.readInt();
+						}
+						byte[] message = readBytes(in, limit);
+						index.add(ObjectId.fromRaw(raw), commitTime, author, committer, p, message);
+						length = Constants.OBJECT_ID_LENGTH + 16 + 4 * p.length + 4 + message.length;
+						break;
+					case TIPS:
+						// the tips are valid with the commits written before them
+						int tipCount = in.readInt();
+						if (tipCount < 0 || (long) tipCount * Constants.OBJECT_ID_LENGTH > limit) {
+							throw new EOFException();
+						}
+						ObjectId[] tips = new ObjectId[tipCount];
+						for (int k = 0; k < tips.length; k++) {
+							in.readFully(raw);
+							tips[k] = ObjectId.fromRaw(raw);
+						}
+						index.tips = tips;
+						length = 4 + tips.length * Constants.OBJECT_ID_LENGTH;
+						break;
+					default:
+						throw new EOFException();
+					}
+					valid += 1 + length;
+				}
+			} catch (EOFException e) {
+				// end of the records
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+		index.writtenIdentities = index.identityNames.size();
+		index.writtenCommits = index.size;
+		index.writtenTips = true;
+		index.length = valid;
+		return index;
+	}
+
+	private static byte[] readBytes(DataInputStream in, long limit) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > limit) {
+			throw new EOFException();
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeBytes(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Appends the identities and commits which have been added since the last
+	 * write to the file, followed by the tips of the last update.  An
+	 * incomplete last record is truncated first.  The file is written anew if
+	 * the index has not been read from it or if it has been replaced.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		long fileLength = file.length();
+		if (writtenTips && writtenCommits == size && length > 0 && fileLength == length) {
+			return;
+		}
+		file.getParentFile().mkdirs();
+		boolean header = length == 0 || fileLength < length;
+		if (header) {
+			writtenIdentities = 0;
+			writtenCommits = 0;
+		} else if (fileLength > length) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(length);
+			}
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !header)))) {
+			if (header) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+			}
+			for (int i = writtenIdentities; i < identityNames.size(); i++) {
+				out.writeByte(IDENTITY);
+				writeBytes(out, identityNames.get(i));
+				writeBytes(out, identityEmails.get(i));
+			}
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (int i = writtenCommits; i < size; i++) {
+				out.writeByte(COMMIT);
+				ids[i].copyRawTo(raw, 0);
+				out.write(raw);
+				out.writeInt(commitTimes[i]);
+				out.writeInt(authors[i]);
+				out.writeInt(committers[i]);
+				out.writeInt(parentOffsets[i + 1] - parentOffsets[i]);
+				for (int k = parentOffsets[i]; k < parentOffsets[i + 1]; k++) {
+					out.writeInt(parents[k]);
+				}
+				out.writeInt(messageOffsets[i + 1] - messageOffsets[i]);
+				out.write(messages, messageOffsets[i], messageOffsets[i + 1] - messageOffsets[i]);
+			}
+			out.writeByte(TIPS);
+			out.writeInt(tips.length);
+			for (ObjectId tip : tips) {
+				tip.copyRawTo(raw, 0);
+				out.write(raw);
+			}
+		}
+		writtenIdentities = identityNames.size();
+		writtenCommits = size;
+		writtenTips = true;
+		length = file.length();
+	}
+}
@@ -16,6 +16,8 @@
 package com.gitblit.utils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -32,6 +34,7 @@ import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.RawParseUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,6 +75,25 @@ public class DiffUtils {
 
 	}
 
+	/**
+	 * Callback interface for links to the diffs of single files. If given, the files of an
+	 * {@link DiffOutputType#HTML HTML} commitdiff whose diff is not shown because it is too large,
+	 * or because the commitdiff was truncated, link to their own diff so that it can be fetched
+	 * on demand.
+	 */
+	public interface DiffLinkHandler {
+
+		/**
+		 * Returns the url of the diff of a single file.
+		 *
+		 * @param diffEntry
+		 *            the diff entry of the file
+		 * @return the url, or {@code null} if the file should not be linked
+		 */
+		public String getDiffUrl(final DiffEntry diffEntry);
+
+	}
+
 	/**
 	 * Enumeration for the diff output types.
 	 */
@@ -158,7 +180,7 @@ public class DiffUtils {
 
 		private final String commitId;
 		
-		private final Repository repository;
+		private transient Repository repository;
 
 		public DiffStat(String commitId, Repository repository) {
 			this.commitId = commitId;
@@ -171,6 +193,14 @@ public class DiffUtils {
 			return pcm;
 		}
 
+		/**
+		 * Releases the repository once all paths have been added, so that the diffstat may be
+		 * cached.
+		 */
+		void releaseRepository() {
+			repository = null;
+		}
+
 		public int getInsertions() {
 			int val = 0;
 			for (PathChangeModel entry : paths) {
@@ -374,22 +404,93 @@ public class DiffUtils {
 	 */
 	public static DiffOutput getDiff(Repository repository, RevCommit baseCommit, RevCommit commit, String path,
 			DiffComparator comparator, DiffOutputType outputType, final BinaryDiffHandler handler, int tabLength) {
+		return getDiff(repository, baseCommit, commit, path, comparator, outputType, handler, null, tabLength);
+	}
+
+	/**
+	 * Returns the diff between two commits for the specified file.
+	 *
+	 * @param repository
+	 * @param baseCommit
+	 *            if base commit is null the diff is to the primary parent of
+	 *            the commit.
+	 * @param commit
+	 * @param path
+	 *            if the path is specified, the diff is restricted to that file
+	 *            or folder. if unspecified, the diff is for the entire commit.
+	 * @param comparator
+	 * @param outputType
+	 * @param handler
+	 *            to use for rendering binary diffs if {@code outputType} is {@link DiffOutputType#HTML HTML}.
+	 *            May be {@code null}, resulting in the default behavior.
+	 * @param linkHandler
+	 *            to use for linking files whose diff is not shown if {@code outputType} is
+	 *            {@link DiffOutputType#HTML HTML}. May be {@code null}.
+	 * @param tabLength
+	 * @return the diff
+	 */
+	public static DiffOutput getDiff(Repository repository, RevCommit baseCommit, RevCommit commit, String path,
+			DiffComparator comparator, DiffOutputType outputType, final BinaryDiffHandler handler,
+			final DiffLinkHandler linkHandler, int tabLength) {
 		DiffStat stat = null;
 		String diff = null;
 		try {
-			ByteArrayOutputStream os = null;
-
-			DiffFormatter df;
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
 			switch (outputType) {
 			case HTML:
-				df = new GitBlitDiffFormatter(commit.getName(), repository, path, handler, tabLength);
+				stat = writeDiff(repository, baseCommit, commit, path, comparator, handler, linkHandler, tabLength, os);
+				diff = RawParseUtils.decode(os.toByteArray());
 				break;
 			case PLAIN:
 			default:
-				os = new ByteArrayOutputStream();
-				df = new DiffFormatter(os);
+				formatDiff(new DiffFormatter(os), repository, baseCommit, commit, path, comparator);
+				diff = os.toString();
 				break;
 			}
+		} catch (Throwable t) {
+			LOGGER.error("failed to generate commit diff!", t);
+		}
+
+		return new DiffOutput(outputType, diff, stat);
+	}
+
+	/**
+	 * Writes the html diff between two commits for the specified file to the
+	 * output stream. The html of each file is written as soon as the file is
+	 * complete, so the diff is never held in memory as a whole.
+	 *
+	 * @param repository
+	 * @param baseCommit
+	 *            if base commit is null the diff is to the primary parent of
+	 *            the commit.
+	 * @param commit
+	 * @param path
+	 *            if the path is specified, the diff is restricted to that file
+	 *            or folder. if unspecified, the diff is for the entire commit.
+	 * @param comparator
+	 * @param handler
+	 *            to use for rendering binary diffs, may be {@code null}
+	 * @param linkHandler
+	 *            to use for linking files whose diff is not shown, may be {@code null}
+	 * @param tabLength
+	 * @param out
+	 * @return the diffstat
+	 * @throws IOException
+	 */
+	public static DiffStat writeDiff(Repository repository, RevCommit baseCommit, RevCommit commit, String path,
+			DiffComparator comparator, BinaryDiffHandler handler, DiffLinkHandler linkHandler, int tabLength,
+			OutputStream out) throws IOException {
+		GitBlitDiffFormatter df = new GitBlitDiffFormatter(commit.getName(), repository, path, handler,
+				linkHandler, tabLength, out);
+		formatDiff(df, repository, baseCommit, commit, path, comparator);
+		DiffStat stat = df.getDiffStat();
+		stat.releaseRepository();
+		return stat;
+	}
+
+	private static void formatDiff(DiffFormatter df, Repository repository, RevCommit baseCommit, RevCommit commit,
+			String path, DiffComparator comparator) throws IOException {
+		try {
 			df.setRepository(repository);
 			df.setDiffComparator((comparator == null ? DiffComparator.SHOW_WHITESPACE : comparator).textComparator);
 			df.setDetectRenames(true);
@@ -422,18 +523,9 @@ public class DiffUtils {
 				df.format(diffEntries);
 			}
 			df.flush();
-			if (df instanceof GitBlitDiffFormatter) {
-				// workaround for complex private methods in DiffFormatter
-				diff = ((GitBlitDiffFormatter) df).getHtml();
-				stat = ((GitBlitDiffFormatter) df).getDiffStat();
-			} else {
-				diff = os.toString();
-			}
-		} catch (Throwable t) {
-			LOGGER.error("failed to generate commit diff!", t);
+		} finally {
+			df.close();
 		}
-
-		return new DiffOutput(outputType, diff, stat);
 	}
 
 	/**
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Caches generated feeds by a key which identifies their content.
+ *
+ * The key of a feed is made of its parameters and of the state of its
+ * repositories, so a cached feed never has to be invalidated: a change of a
+ * repository changes the key and the stale feed is evicted eventually.
+ */
+public class FeedCache {
+
+	private static final Family<Counter> REQUESTS = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result");
+
+	private final Cache<String, Feed> feeds;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	/**
+	 * A generated feed.
+	 */
+	public static class Feed {
+
+		public final String etag;
+
+		public final byte[] content;
+
+		/**
+		 * The time the feed was generated.
+		 */
+		public final long lastModified;
+
+		Feed(String etag, byte[] content, long lastModified) {
+			this.etag = etag;
+			this.content = content;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * @param name
+	 *            the name of the cache in the metrics
+	 * @param maximumBytes
+	 *            the approximate maximum size of the cached feeds, 0 disables
+	 *            the cache
+	 */
+	public FeedCache(String name, long maximumBytes) {
+		this.hits = REQUESTS.labels(name, "hit");
+		this.misses = REQUESTS.labels(name, "miss");
+		if (maximumBytes <= 0) {
+			this.feeds = null;
+			return;
+		}
+		this.feeds = CacheBuilder.newBuilder()
+				.maximumWeight(maximumBytes)
+				.weigher(new Weigher<String, Feed>() {
+					@Override
+					public int weigh(String etag, Feed feed) {
+						return 128 + feed.content.length;
+					}
+				})
+				.build();
+	}
+
+	/**
+	 * Returns the strong ETag of the feed with a key.
+	 *
+	 * @param key
+	 *            the parameters of the feed and the state of its repositories
+	 * @return a quoted ETag
+	 */
+	public static String getETag(String key) {
+		return "\"" + StringUtils.getSHA1(key) + "\"";
+	}
+
+	public boolean isEnabled() {
+		return feeds != null;
+	}
+
+	/**
+	 * @param etag
+	 * @return the cached feed or null
+	 */
+	public Feed get(String etag) {
+		if (feeds == null) {
+			return null;
+		}
+		Feed feed = feeds.getIfPresent(etag);
+		if (feed == null) {
+			misses.inc();
+		} else {
+			hits.inc();
+		}
+		return feed;
+	}
+
+	/**
+	 * Caches a generated feed.
+	 *
+	 * @param etag
+	 * @param content
+	 * @param lastModified
+	 * @return the feed
+	 */
+	public Feed put(String etag, byte[] content, long lastModified) {
+		Feed feed = new Feed(etag, content, lastModified);
+		if (feeds != null) {
+			feeds.put(etag, feed);
+		}
+		return feed;
+	}
+
+	public void clear() {
+		if (feeds != null) {
+			feeds.invalidateAll();
+		}
+	}
+}
@@ -18,7 +18,9 @@ package com.gitblit.utils;
 import static org.eclipse.jgit.lib.Constants.encode;
 import static org.eclipse.jgit.lib.Constants.encodeASCII;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -38,11 +40,17 @@ import org.eclipse.jgit.util.RawParseUtils;
 
 import com.gitblit.models.PathModel.PathChangeModel;
 import com.gitblit.utils.DiffUtils.BinaryDiffHandler;
+import com.gitblit.utils.DiffUtils.DiffLinkHandler;
 import com.gitblit.utils.DiffUtils.DiffStat;
 import com.gitblit.wicket.GitBlitWebApp;
 
 /**
  * Generates an html snippet of a diff in Gitblit's style, tracks changed paths, and calculates diff stats.
+ * <p>
+ * The html of a file is written to the output stream when the file is complete, so only the html of one
+ * file is buffered at a time. The number of lines and the number of bytes are limited per file and for
+ * the whole diff.
+ * </p>
  *
  * @author James Moger
  * @author Tom <tw201207@gmail.com>
@@ -75,10 +83,39 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	 */
 	private static final int GLOBAL_DIFF_LIMIT = 20000;
 
+	/**
+	 * gitblit.properties key for the per-file limit on the size of the html of a diff.
+	 */
+	private static final String DIFF_BYTES_PER_FILE_KEY = "web.maxDiffBytesPerFile";
+
+	/**
+	 * gitblit.properties key for the global limit on the size of the html of a diff.
+	 */
+	private static final String GLOBAL_DIFF_BYTES_KEY = "web.maxDiffBytes";
+
+	/**
+	 * Files whose html is larger are not shown in commitdiffs, even if they have less than
+	 * {@link #DIFF_LIMIT_PER_FILE} lines, because a line may be arbitrarily long. Can be reduced
+	 * (but not increased) through gitblit.properties key {@link #DIFF_BYTES_PER_FILE_KEY}.
+	 */
+	private static final long DIFF_BYTES_PER_FILE = 2 * 1024 * 1024L;
+
+	/**
+	 * Global limit on the size of the html of a diff, which also applies to single-file diffs. Can be
+	 * reduced (but not increased) through gitblit.properties key {@link #GLOBAL_DIFF_BYTES_KEY}.
+	 */
+	private static final long GLOBAL_DIFF_BYTES = 16 * 1024 * 1024L;
+
 	private static final boolean CONVERT_TABS = true;
 
+	/** Buffer for the diff of the current file. */
 	private final DiffOutputStream os;
 
+	/** Receives the html of the complete files. */
+	private final OutputStream out;
+
+	private final DiffLinkHandler linkHandler;
+
 	private final DiffStat diffStat;
 
 	private PathChangeModel currentPath;
@@ -103,6 +140,14 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	 */
 	private final int globalDiffLimit;
 
+	/**
+	 * Limit on the size of the html of a file diff. Set to -1 (switches off the limit) for single-file diffs.
+	 */
+	private final long maxDiffBytesPerFile;
+
+	/** Global limit on the size of the html of the diff. */
+	private final long globalDiffBytes;
+
 	/** Number of lines for the current file diff. Set to zero when a new DiffEntry is started. */
 	private int nofLinesCurrent;
 	/**
@@ -121,8 +166,8 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	private int totalNofLinesPrevious;
 	/** Running total of the number of diff lines written. Updated until we exceed the global limit. */
 	private int totalNofLinesCurrent;
-	/** Stream position to reset to if we decided to truncate the commitdiff. */
-	private int truncateTo;
+	/** Number of bytes written to the output stream. */
+	private long totalBytes;
 	/** Whether we decided to truncate the commitdiff. */
 	private boolean truncated;
 	/** If {@link #truncated}, contains all entries skipped. */
@@ -166,15 +211,39 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	}
 
 	public GitBlitDiffFormatter(String commitId, Repository repository, String path, BinaryDiffHandler handler, int tabLength) {
+		this(commitId, repository, path, handler, null, tabLength, new ByteArrayOutputStream());
+	}
+
+	/**
+	 * Creates a formatter which writes the html of the diff to the output stream.
+	 *
+	 * @param commitId
+	 * @param repository
+	 * @param path
+	 *            the path of a single-file diff, or null for a commitdiff
+	 * @param handler
+	 *            renders binary diffs, may be null
+	 * @param linkHandler
+	 *            links the files whose diff is not shown to their own diff, may be null
+	 * @param tabLength
+	 * @param out
+	 *            receives the html of the diff, file by file
+	 */
+	public GitBlitDiffFormatter(String commitId, Repository repository, String path, BinaryDiffHandler handler,
+			DiffLinkHandler linkHandler, int tabLength, OutputStream out) {
 		super(new DiffOutputStream());
 		this.os = (DiffOutputStream) getOutputStream();
 		this.os.setFormatter(this, handler);
+		this.out = out;
+		this.linkHandler = linkHandler;
 		this.diffStat = new DiffStat(commitId, repository);
 		this.tabLength = tabLength;
 		// If we have a full commitdiff, install maxima to avoid generating a super-long diff listing that
 		// will only tax the browser too much.
 		maxDiffLinesPerFile = path != null ? -1 : getLimit(DIFF_LIMIT_PER_FILE_KEY, 500, DIFF_LIMIT_PER_FILE);
 		globalDiffLimit = path != null ? -1 : getLimit(GLOBAL_DIFF_LIMIT_KEY, 1000, GLOBAL_DIFF_LIMIT);
+		maxDiffBytesPerFile = path != null ? -1 : getByteLimit(DIFF_BYTES_PER_FILE_KEY, 64 * 1024L, DIFF_BYTES_PER_FILE);
+		globalDiffBytes = getByteLimit(GLOBAL_DIFF_BYTES_KEY, 1024 * 1024L, GLOBAL_DIFF_BYTES);
 	}
 
 	/**
@@ -204,6 +273,33 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 		return maximum;
 	}
 
+	/**
+	 * Determines a size limit to use for HTML diff output.
+	 *
+	 * @param key
+	 *            to use to read the value from the GitBlit settings, if available.
+	 * @param minimum
+	 *            minimum value to enforce
+	 * @param maximum
+	 *            maximum (and default) value to enforce
+	 * @return the limit in bytes
+	 */
+	private long getByteLimit(String key, long minimum, long maximum) {
+		if (Application.exists()) {
+			Application application = Application.get();
+			if (application instanceof GitBlitWebApp) {
+				GitBlitWebApp webApp = (GitBlitWebApp) application;
+				long configValue = webApp.settings().getFilesize(key, maximum);
+				if (configValue < minimum) {
+					return minimum;
+				} else if (configValue < maximum) {
+					return configValue;
+				}
+			}
+		}
+		return maximum;
+	}
+
 	/**
 	 * Returns a localized message string, if there is a localization; otherwise the given default value.
 	 *
@@ -232,11 +328,11 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 		entry = ent;
 		if (!truncated) {
 			totalNofLinesPrevious = totalNofLinesCurrent;
-			if (globalDiffLimit > 0 && totalNofLinesPrevious > globalDiffLimit) {
+			if ((globalDiffLimit > 0 && totalNofLinesPrevious > globalDiffLimit)
+					|| (globalDiffBytes > 0 && totalBytes > globalDiffBytes)) {
 				truncated = true;
 				isOff = true;
 			}
-			truncateTo = os.size();
 		} else {
 			isOff = true;
 		}
@@ -263,15 +359,28 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 		if (!truncated) {
 			// Close the table
 			os.write("</tbody></table></div>\n".getBytes());
+			writeFile();
 		}
+		os.reset();
+	}
+
+	/**
+	 * Writes the html of the current file to the output stream.
+	 */
+	private void writeFile() throws IOException {
+		byte[] html = toHtml(RawParseUtils.decode(os.toByteArray())).getBytes(StandardCharsets.UTF_8);
+		out.write(html);
+		totalBytes += html.length;
 	}
 
 	@Override
 	public void flush() throws IOException {
-		if (truncated) {
-			os.resetTo(truncateTo);
+		if (truncated && !skipped.isEmpty()) {
+			out.write(getTruncatedHtml().getBytes(StandardCharsets.UTF_8));
+			skipped.clear();
 		}
 		super.flush();
+		out.flush();
 	}
 
 	/**
@@ -280,7 +389,7 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	private void reset() {
 		if (!isOff) {
 			os.resetTo(startCurrent);
-			writeFullWidthLine(getMsg("gb.diffFileDiffTooLarge", "Diff too large"));
+			writeFullWidthLine(getMsg("gb.diffFileDiffTooLarge", "Diff too large"), getDiffUrl(entry));
 			totalNofLinesCurrent = totalNofLinesPrevious;
 			isOff = true;
 		}
@@ -395,9 +504,26 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	 *            to put on that line; will be HTML-escaped.
 	 */
 	private void writeFullWidthLine(String text) {
+		writeFullWidthLine(text, null);
+	}
+
+	/**
+	 * Writes a line spanning the full width of the code view, including the gutter, with a link
+	 * to the diff of the current file.
+	 *
+	 * @param text
+	 *            to put on that line; will be HTML-escaped.
+	 * @param diffUrl
+	 *            the url of the diff of the file, may be null
+	 */
+	private void writeFullWidthLine(String text, String diffUrl) {
 		try {
 			os.write("<tr><td class='diff-cell' colspan='4'>".getBytes());
 			os.write(StringUtils.escapeForHtml(text, false).getBytes());
+			if (diffUrl != null) {
+				os.write(MessageFormat.format(" <a href=\"{0}\">{1}</a>", StringUtils.escapeForHtml(diffUrl, false),
+						StringUtils.escapeForHtml(getMsg("gb.diffShowFile", "show diff"), false)).getBytes());
+			}
 			os.write("</td></tr>\n".getBytes());
 		} catch (IOException ex) {
 			// Cannot happen with a ByteArrayOutputStream
@@ -418,6 +544,8 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 		totalNofLinesCurrent++;
 		if (nofLinesCurrent > maxDiffLinesPerFile && maxDiffLinesPerFile > 0) {
 			reset();
+		} else if (isTooLarge()) {
+			reset();
 		} else {
 			// output diff
 			os.write("<tr>".getBytes());
@@ -443,6 +571,27 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 		}
 	}
 
+	/**
+	 * Determines whether the html of the current file exceeds the size limits.
+	 */
+	private boolean isTooLarge() {
+		int size = os.size() - startCurrent;
+		if (maxDiffBytesPerFile > 0 && size > maxDiffBytesPerFile) {
+			return true;
+		}
+		return globalDiffBytes > 0 && totalBytes + size > globalDiffBytes;
+	}
+
+	/**
+	 * Returns the url of the diff of a single file, if the file has a diff of its own.
+	 */
+	private String getDiffUrl(DiffEntry entry) {
+		if (linkHandler == null || ChangeType.DELETE.equals(entry.getChangeType())) {
+			return null;
+		}
+		return linkHandler.getDiffUrl(entry);
+	}
+
 	/**
 	 * Convert the given code line to HTML.
 	 *
@@ -468,13 +617,15 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 	}
 
 	/**
-	 * Workaround function for complex private methods in DiffFormatter. This sets the html for the diff headers.
+	 * Workaround function for complex private methods in DiffFormatter. This removes the diff headers
+	 * from the formatted diff of a file.
 	 *
-	 * @return
+	 * @param formatted
+	 *            the formatted diff of a file
+	 * @return the html of the file
 	 */
-	public String getHtml() {
-		String html = RawParseUtils.decode(os.toByteArray());
-		String[] lines = html.split("\n");
+	private String toHtml(String formatted) {
+		String[] lines = formatted.split("\n");
 		StringBuilder sb = new StringBuilder();
 		for (String line : lines) {
 			if (line.startsWith("index") || line.startsWith("similarity")
@@ -506,30 +657,52 @@ public class GitBlitDiffFormatter extends DiffFormatter {
 				sb.append('\n');
 			}
 		}
-		if (truncated) {
-			sb.append(MessageFormat.format("<div class='header'><div class='diffHeader'>{0}</div></div>",
-					StringUtils.escapeForHtml(getMsg("gb.diffTruncated", "Diff truncated after the above file"), false)));
-			// List all files not shown. We can be sure we do have at least one path in skipped.
-			sb.append("<div class='diff'><table cellpadding='0'><tbody><tr><td class='diff-cell' colspan='4'>");
-			String deletedSuffix = StringUtils.escapeForHtml(getMsg("gb.diffDeletedFileSkipped", "(deleted)"), false);
-			boolean first = true;
-			for (DiffEntry entry : skipped) {
-				if (!first) {
-					sb.append('\n');
-				}
-				if (ChangeType.DELETE.equals(entry.getChangeType())) {
-					sb.append("<span id=\"n" + entry.getOldId().name() + "\">" + StringUtils.escapeForHtml(entry.getOldPath(), false) + ' ' + deletedSuffix + "</span>");
-				} else {
-					sb.append("<span id=\"n" + entry.getNewId().name() + "\">" + StringUtils.escapeForHtml(entry.getNewPath(), false) + "</span>");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the html which lists the files skipped after the diff was truncated.
+	 */
+	private String getTruncatedHtml() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(MessageFormat.format("<div class='header'><div class='diffHeader'>{0}</div></div>",
+				StringUtils.escapeForHtml(getMsg("gb.diffTruncated", "Diff truncated after the above file"), false)));
+		// List all files not shown. We can be sure we do have at least one path in skipped.
+		sb.append("<div class='diff'><table cellpadding='0'><tbody><tr><td class='diff-cell' colspan='4'>");
+		String deletedSuffix = StringUtils.escapeForHtml(getMsg("gb.diffDeletedFileSkipped", "(deleted)"), false);
+		boolean first = true;
+		for (DiffEntry entry : skipped) {
+			if (!first) {
+				sb.append('\n');
+			}
+			if (ChangeType.DELETE.equals(entry.getChangeType())) {
+				sb.append("<span id=\"n" + entry.getOldId().name() + "\">" + StringUtils.escapeForHtml(entry.getOldPath(), false) + ' ' + deletedSuffix + "</span>");
+			} else {
+				String path = StringUtils.escapeForHtml(entry.getNewPath(), false);
+				String url = getDiffUrl(entry);
+				if (url != null) {
+					path = "<a href=\"" + StringUtils.escapeForHtml(url, false) + "\">" + path + "</a>";
 				}
-				first = false;
+				sb.append("<span id=\"n" + entry.getNewId().name() + "\">" + path + "</span>");
 			}
-			skipped.clear();
-			sb.append("</td></tr></tbody></table></div>");
+			first = false;
 		}
+		sb.append("</td></tr></tbody></table></div>");
 		return sb.toString();
 	}
 
+	/**
+	 * Returns the html of the diff, if the formatter was created without an output stream.
+	 *
+	 * @return the html of the diff
+	 */
+	public String getHtml() {
+		if (!(out instanceof ByteArrayOutputStream)) {
+			throw new IllegalStateException("The diff has been written to the output stream");
+		}
+		return RawParseUtils.decode(((ByteArrayOutputStream) out).toByteArray());
+	}
+
 	public DiffStat getDiffStat() {
 		return diffStat;
 	}
@@ -30,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.filefilter.TrueFileFilter;
@@ -63,6 +62,7 @@ import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
@@ -90,7 +90,6 @@ import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
@@ -102,17 +101,15 @@ import org.slf4j.LoggerFactory;
 import com.gitblit.Constants.MergeType;
 import com.gitblit.GitBlitException;
 import com.gitblit.IStoredSettings;
-import com.gitblit.Keys;
 import com.gitblit.git.PatchsetCommand;
 import com.gitblit.models.FilestoreModel;
 import com.gitblit.models.GitNote;
 import com.gitblit.models.PathModel;
 import com.gitblit.models.PathModel.PathChangeModel;
-import com.gitblit.models.TicketModel.TicketAction;
 import com.gitblit.models.TicketModel.TicketLink;
 import com.gitblit.models.RefModel;
 import com.gitblit.models.SubmoduleModel;
-import com.google.common.base.Strings;
+import com.gitblit.tickets.TicketReferenceScanner;
 
 /**
  * Collection of static methods for retrieving information from a repository.
@@ -874,46 +871,7 @@ public class JGitUtils {
 	 */
 	public static List<PathModel> getFilesInPath(Repository repository, String path,
 			RevCommit commit) {
-		List<PathModel> list = new ArrayList<PathModel>();
-		if (!hasCommits(repository)) {
-			return list;
-		}
-		if (commit == null) {
-			commit = getCommit(repository, null);
-		}
-		final TreeWalk tw = new TreeWalk(repository);
-		try {
-			tw.addTree(commit.getTree());
-			if (!StringUtils.isEmpty(path)) {
-				PathFilter f = PathFilter.create(path);
-				tw.setFilter(f);
-				tw.setRecursive(false);
-				boolean foundFolder = false;
-				while (tw.next()) {
-					if (!foundFolder && tw.isSubtree()) {
-						tw.enterSubtree();
-					}
-					if (tw.getPathString().equals(path)) {
-						foundFolder = true;
-						continue;
-					}
-					if (foundFolder) {
-						list.add(getPathModel(tw, path, commit));
-					}
-				}
-			} else {
-				tw.setRecursive(false);
-				while (tw.next()) {
-					list.add(getPathModel(tw, null, commit));
-				}
-			}
-		} catch (IOException e) {
-			error(e, repository, "{0} failed to get files for commit {1}", commit.getName());
-		} finally {
-			tw.close();
-		}
-		Collections.sort(list);
-		return list;
+		return getFilesInPath(repository, path, commit, false);
 	}
 
 	/**
@@ -921,7 +879,9 @@ public class JGitUtils {
 	 * commit. If the repository does not exist or is empty, an empty list is
 	 * returned.
 	 *
-	 * This is modified version that implements path compression feature.
+	 * This is modified version that implements path compression feature: a
+	 * chain of folders which each hold nothing but one folder is listed as one
+	 * entry named like "a/b/c".
 	 *
 	 * @param repository
 	 * @param path
@@ -931,7 +891,15 @@ public class JGitUtils {
 	 * @return list of files in specified path
 	 */
 	public static List<PathModel> getFilesInPath2(Repository repository, String path, RevCommit commit) {
+		return getFilesInPath(repository, path, commit, true);
+	}
 
+	/**
+	 * Lists one level of the tree of a folder.  The listings of the trees are
+	 * cached by the {@link TreeListingCache}.
+	 */
+	private static List<PathModel> getFilesInPath(Repository repository, String path, RevCommit commit,
+			boolean compressPaths) {
 		List<PathModel> list = new ArrayList<PathModel>();
 		if (!hasCommits(repository)) {
 			return list;
@@ -939,35 +907,31 @@ public class JGitUtils {
 		if (commit == null) {
 			commit = getCommit(repository, null);
 		}
-		final TreeWalk tw = new TreeWalk(repository);
-		try {
-
-			tw.addTree(commit.getTree());
-			final boolean isPathEmpty = Strings.isNullOrEmpty(path);
-
-			if (!isPathEmpty) {
-				PathFilter f = PathFilter.create(path);
-				tw.setFilter(f);
-			}
-
-			tw.setRecursive(true);
-			List<String> paths = new ArrayList<>();
-
-			while (tw.next()) {
-				String pathString = tw.getPathString();
-				String child = isPathEmpty ? pathString : pathString.replaceFirst(Pattern.quote(String.format("%s/", path)), "");
-				paths.add(child);
+		String basePath = StringUtils.isEmpty(path) ? "" : path;
+		if (basePath.endsWith("/")) {
+			basePath = basePath.substring(0, basePath.length() - 1);
+		}
+		try (ObjectReader reader = repository.newObjectReader()) {
+			ObjectId treeId = commit.getTree();
+			if (!basePath.isEmpty()) {
+				try (TreeWalk tw = TreeWalk.forPath(reader, basePath, commit.getTree())) {
+					if (tw == null || !tw.isSubtree()) {
+						// not a folder
+						return list;
+					}
+					treeId = tw.getObjectId(0);
+				}
 			}
-
-			for(String p: PathUtils.compressPaths(paths)) {
-				String pathString = isPathEmpty ? p : String.format("%s/%s", path, p);
-				list.add(getPathModel(repository, pathString, path, commit));
+			TreeListingCache cache = TreeListingCache.instance();
+			List<TreeListingCache.Entry> entries = compressPaths
+					? cache.getCompressedEntries(reader, treeId) : cache.getEntries(reader, treeId);
+			for (TreeListingCache.Entry entry : entries) {
+				String pathString = basePath.isEmpty() ? entry.name : basePath + "/" + entry.name;
+				list.add(new PathModel(entry.name, pathString, entry.filestoreItem, entry.size, entry.mode,
+						entry.objectId.getName(), commit.getName()));
 			}
-
 		} catch (IOException e) {
 			error(e, repository, "{0} failed to get files for commit {1}", commit.getName());
-		} finally {
-			tw.close();
 		}
 		Collections.sort(list);
 		return list;
@@ -1256,51 +1220,6 @@ public class JGitUtils {
 		return null;
 	}
 
-	/**
-	 * Returns a path model by path string
-	 *
-	 * @param repo
-	 * @param path
-	 * @param filter
-	 * @param commit
-	 * @return a path model of the specified object
-	 */
-	private static PathModel getPathModel(Repository repo, String path, String filter, RevCommit commit)
-			throws IOException {
-
-		long size = 0;
-		FilestoreModel filestoreItem = null;
-		TreeWalk tw = TreeWalk.forPath(repo, path, commit.getTree());
-		String pathString = path;
-
-		if (!tw.isSubtree() && (tw.getFileMode(0) != FileMode.GITLINK)) {
-
-			pathString = PathUtils.getLastPathComponent(pathString);
-			
-			size = tw.getObjectReader().getObjectSize(tw.getObjectId(0), Constants.OBJ_BLOB);
-			
-			if (isPossibleFilestoreItem(size)) {
-				filestoreItem = getFilestoreItem(tw.getObjectReader().open(tw.getObjectId(0)));
-			}
-		} else if (tw.isSubtree()) {
-
-			// do not display dirs that are behind in the path
-			if (!Strings.isNullOrEmpty(filter)) {
-				pathString = path.replaceFirst(filter + "/", "");
-			}
-
-			// remove the last slash from path in displayed link
-			if (pathString != null && pathString.charAt(pathString.length()-1) == '/') {
-				pathString = pathString.substring(0, pathString.length()-1);
-			}
-		}
-
-		return new PathModel(pathString, tw.getPathString(), filestoreItem, size, tw.getFileMode(0).getBits(),
-				tw.getObjectId(0).getName(), commit.getName());
-
-	}
-
-
 	/**
 	 * Returns a permissions representation of the mode bits.
 	 *
@@ -1411,6 +1330,29 @@ public class JGitUtils {
 	 */
 	public static List<RevCommit> getRevLog(Repository repository, String objectId, String path,
 			int offset, int maxCount) {
+		return getRevLog(repository, objectId, path, offset, maxCount, null);
+	}
+
+	/**
+	 * Returns a list of commits for the repository or a path within the
+	 * repository. The commits which did not change the path according to the
+	 * changed path index are skipped without diffing their trees.
+	 *
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, HEAD is assumed.
+	 * @param path
+	 *            if unspecified, commits for repository are returned. If
+	 *            specified, commits for the path are returned.
+	 * @param offset
+	 * @param maxCount
+	 *            if < 0, all commits are returned.
+	 * @param index
+	 *            the changed path index of the repository, may be null
+	 * @return a paged list of commits
+	 */
+	public static List<RevCommit> getRevLog(Repository repository, String objectId, String path,
+			int offset, int maxCount, ChangedPathIndex index) {
 		List<RevCommit> list = new ArrayList<RevCommit>();
 		if (maxCount == 0) {
 			return list;
@@ -1444,7 +1386,9 @@ public class JGitUtils {
 			if (startRange != null) {
 				rw.markUninteresting(rw.parseCommit(startRange));
 			}
-			if (!StringUtils.isEmpty(path)) {
+			if (!StringUtils.isEmpty(path) && index != null) {
+				rw.setRevFilter(new ChangedPathRevFilter(rw, path, index));
+			} else if (!StringUtils.isEmpty(path)) {
 				TreeFilter filter = AndTreeFilter.create(
 						PathFilterGroup.createFromStrings(Collections.singleton(path)),
 						TreeFilter.ANY_DIFF);
@@ -2397,6 +2341,13 @@ public class JGitUtils {
 	 * @return true if there is the commit is an ancestor of the tip
 	 */
 	public static boolean isMergedInto(Repository repository, ObjectId commitId, ObjectId tipCommitId) {
+		CommitGraph graph = CommitGraphCache.instance().get(repository);
+		if (graph != null) {
+			Boolean merged = graph.isMergedInto(commitId, tipCommitId);
+			if (merged != null) {
+				return merged;
+			}
+		}
 		// traverse the revlog looking for a commit chain between the endpoints
 		RevWalk rw = new RevWalk(repository);
 		try {
@@ -2422,6 +2373,13 @@ public class JGitUtils {
 	 * @return the commit id of the merge base or null if there is no common base
 	 */
 	public static String getMergeBase(Repository repository, ObjectId commitIdA, ObjectId commitIdB) {
+		CommitGraph graph = CommitGraphCache.instance().get(repository);
+		if (graph != null) {
+			ObjectId mergeBase = graph.getMergeBase(commitIdA, commitIdB);
+			if (mergeBase != null) {
+				return ObjectId.zeroId().equals(mergeBase) ? null : mergeBase.getName();
+			}
+		}
 		RevWalk rw = new RevWalk(repository);
 		try {
 			RevCommit a = rw.lookupCommit(commitIdA);
@@ -2569,6 +2527,21 @@ public class JGitUtils {
 			}
 		}
 
+		/**
+		 * Returns true if the commit is reachable from the tip, using the
+		 * commit graph of the repository if it contains both commits.
+		 */
+		boolean isMergedInto(RevCommit commit, RevCommit tip) throws IOException {
+			CommitGraph graph = CommitGraphCache.instance().get(repository);
+			if (graph != null) {
+				Boolean merged = graph.isMergedInto(commit, tip);
+				if (merged != null) {
+					return merged;
+				}
+			}
+			return revWalk.isMergedInto(commit, tip);
+		}
+
 
 		abstract MergeStatus _canMerge() throws IOException;
 
@@ -2582,7 +2555,7 @@ public class JGitUtils {
 				if (srcTip == null) {
 					return MergeStatus.MISSING_SRC_BRANCH;
 				}
-				if (revWalk.isMergedInto(srcTip, branchTip)) {
+				if (isMergedInto(srcTip, branchTip)) {
 					// already merged
 					return MergeStatus.ALREADY_MERGED;
 				}
@@ -2609,7 +2582,7 @@ public class JGitUtils {
 		MergeResult merge(PersonIdent committer, String message) {
 			try {
 				prepare();
-				if (revWalk.isMergedInto(srcTip, branchTip)) {
+				if (isMergedInto(srcTip, branchTip)) {
 					// already merged
 					return new MergeResult(MergeStatus.ALREADY_MERGED, null);
 				}
@@ -2636,7 +2609,7 @@ public class JGitUtils {
 
 		@Override
 		MergeStatus _canMerge() throws IOException {
-			if (revWalk.isMergedInto(branchTip, srcTip)) {
+			if (isMergedInto(branchTip, srcTip)) {
 				// fast-forward
 				return MergeStatus.MERGEABLE;
 			}
@@ -2646,7 +2619,7 @@ public class JGitUtils {
 
 		@Override
 		MergeResult _merge(PersonIdent committer, String message) throws IOException {
-			if (! revWalk.isMergedInto(branchTip, srcTip)) {
+			if (! isMergedInto(branchTip, srcTip)) {
 				// is not fast-forward
 				return new MergeResult(MergeStatus.FAILED, null);
 			}
@@ -2666,7 +2639,7 @@ public class JGitUtils {
 
 		@Override
 		MergeStatus _canMerge() throws IOException {
-			if (revWalk.isMergedInto(branchTip, srcTip)) {
+			if (isMergedInto(branchTip, srcTip)) {
 				// fast-forward
 				return MergeStatus.MERGEABLE;
 			}
@@ -2682,7 +2655,7 @@ public class JGitUtils {
 
 		@Override
 		MergeResult _merge(PersonIdent committer, String message) throws IOException {
-			if (revWalk.isMergedInto(branchTip, srcTip)) {
+			if (isMergedInto(branchTip, srcTip)) {
 				// fast-forward
 				mergeCommit = srcTip;
 				refLogMessage = "merge " + src + ": Fast-forward";
@@ -2995,54 +2968,7 @@ public class JGitUtils {
 	@NotNull
 	public static List<TicketLink> identifyTicketsFromCommitMessage(Repository repository, IStoredSettings settings,
 			RevCommit commit) {
-		List<TicketLink> ticketLinks = new ArrayList<TicketLink>();
-		List<Long> linkedTickets = new ArrayList<Long>();
-
-		// parse commit message looking for fixes/closes #n
-		final String xFixDefault = "(?:fixes|closes)[\\s-]+#?(\\d+)";
-		String xFix = settings.getString(Keys.tickets.closeOnPushCommitMessageRegex, xFixDefault);
-		if (StringUtils.isEmpty(xFix)) {
-			xFix = xFixDefault;
-		}
-		try {
-			Pattern p = Pattern.compile(xFix, Pattern.CASE_INSENSITIVE);
-			Matcher m = p.matcher(commit.getFullMessage());
-			while (m.find()) {
-				String val = m.group(1);
-				long number = Long.parseLong(val); 
-				
-				if (number > 0) {
-					ticketLinks.add(new TicketLink(number, TicketAction.Close));
-					linkedTickets.add(number);
-				}
-			}
-		} catch (Exception e) {
-			LOGGER.error(String.format("Failed to parse \"%s\" in commit %s", xFix, commit.getName()), e);
-		}
-		
-		// parse commit message looking for ref #n
-		final String xRefDefault = "(?:ref|task|issue|bug)?[\\s-]*#(\\d+)";
-		String xRef = settings.getString(Keys.tickets.linkOnPushCommitMessageRegex, xRefDefault);
-		if (StringUtils.isEmpty(xRef)) {
-			xRef = xRefDefault;
-		}
-		try {
-			Pattern p = Pattern.compile(xRef, Pattern.CASE_INSENSITIVE);
-			Matcher m = p.matcher(commit.getFullMessage());
-			while (m.find()) {
-				String val = m.group(1);
-				long number = Long.parseLong(val); 
-				//Most generic case so don't included tickets more precisely linked
-				if ((number > 0) && (!linkedTickets.contains(number))) {
-					ticketLinks.add( new TicketLink(number, TicketAction.Commit, commit.getName()));
-					linkedTickets.add(number);
-				}
-			}
-		} catch (Exception e) {
-			LOGGER.error(String.format("Failed to parse \"%s\" in commit %s", xRef, commit.getName()), e);
-		}
-
-		return ticketLinks;
+		return new ArrayList<TicketLink>(new TicketReferenceScanner(settings).scan(commit));
 	}
 	
 	/**
@@ -3066,12 +2992,14 @@ public class JGitUtils {
 			RevCommit base = walk.parseCommit(repository.resolve(baseSha));
 			walk.markStart(tip);
 			walk.markUninteresting(base);
+			TicketReferenceScanner scanner = new TicketReferenceScanner(settings);
 			for (;;) {
 				RevCommit commit = walk.next();
 				if (commit == null) {
 					break;
 				}
-				links.addAll(JGitUtils.identifyTicketsFromCommitMessage(repository, settings, commit));
+				links.addAll(scanner.scan(commit));
+				commit.disposeBody();
 			}
 		} catch (IOException e) {
 			LOGGER.error("failed to identify tickets between commits.", e);
@@ -3083,6 +3011,13 @@ public class JGitUtils {
 	}
 	
 	public static int countCommits(Repository repository, RevWalk walk, ObjectId baseId, ObjectId tipId) {
+		CommitGraph graph = CommitGraphCache.instance().get(repository);
+		if (graph != null) {
+			int count = graph.countCommits(baseId, tipId);
+			if (count >= 0) {
+				return count;
+			}
+		}
 		int count = 0;
 		walk.reset();
 		walk.sort(RevSort.TOPO);
@@ -0,0 +1,541 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Remembers the last commit which changed each entry of a folder, so the
+ * tree browser can show it without walking the history.
+ *
+ * The last commits are keyed by the id of the tree of a folder and kept in
+ * the order of its entries.  A tree is annotated from the annotated trees of
+ * the parent commits where possible.  The remaining entries are found by
+ * walking the history of the folder, which stops early at a commit whose
+ * folder has been annotated already.  A tree which reappears, e.g. after a
+ * revert, keeps the annotations of its first appearance.
+ *
+ * The index is kept in memory and new annotations are appended to a file in
+ * objects/info of the repository.  Reading the file never modifies it, an
+ * incomplete last record is only dropped by the next write.  Therefore the
+ * index must only be written by a single thread.
+ */
+public class LastCommitIndex {
+
+	private static final int MAGIC = 0x47424c43; // GBLC
+
+	private static final int VERSION = 1;
+
+	/**
+	 * The maximum number of new first-parent commits which are annotated one
+	 * by one when a branch is updated.  A branch which moved further is only
+	 * annotated at its tip.
+	 */
+	private static final int MAX_INCREMENTAL_COMMITS = 1000;
+
+	private final Map<ObjectId, ObjectId[]> trees = new ConcurrentHashMap<ObjectId, ObjectId[]>();
+
+	private final Map<ObjectId, ObjectId> commits = new HashMap<ObjectId, ObjectId>();
+
+	private final List<ObjectId> unwritten = new ArrayList<ObjectId>();
+
+	/**
+	 * The length of the file up to the last tree written or read, 0 if the
+	 * file has to be written anew.
+	 */
+	private long length;
+
+	private volatile long memoryUsage;
+
+	/**
+	 * The entries of a tree in the order of the tree.
+	 */
+	private static class Listing {
+
+		final List<String> names = new ArrayList<String>();
+
+		final List<ObjectId> ids = new ArrayList<ObjectId>();
+
+		final List<Boolean> folders = new ArrayList<Boolean>();
+
+		final Map<String, Integer> index = new HashMap<String, Integer>();
+
+		int indexOf(String name) {
+			Integer i = index.get(name);
+			return i == null ? -1 : i;
+		}
+
+		ObjectId get(String name) {
+			Integer i = index.get(name);
+			return i == null ? null : ids.get(i);
+		}
+	}
+
+	public static LastCommitIndex empty() {
+		return new LastCommitIndex();
+	}
+
+	/**
+	 * Returns the file of the index of a repository.
+	 *
+	 * @param repository
+	 * @return the index file
+	 */
+	public static File getFile(Repository repository) {
+		return new File(repository.getDirectory(), "objects/info/gitblit-last-commits");
+	}
+
+	/**
+	 * @return the number of annotated trees
+	 */
+	public int size() {
+		return trees.size();
+	}
+
+	/**
+	 * @return the approximate memory used by the index
+	 */
+	public long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	/**
+	 * @param treeId
+	 * @return true if the tree has been annotated
+	 */
+	public boolean contains(AnyObjectId treeId) {
+		return trees.containsKey(treeId);
+	}
+
+	/**
+	 * Returns the last commits of the entries of a folder at a commit, if the
+	 * tree of the folder has been annotated.
+	 *
+	 * @param reader
+	 * @param commit
+	 *            a commit with parsed headers
+	 * @param path
+	 *            the folder, the root folder if unspecified
+	 * @return the last commit by entry name, or null if the tree has not been
+	 *         annotated yet
+	 * @throws IOException
+	 */
+	public Map<String, ObjectId> getLastCommits(ObjectReader reader, RevCommit commit, String path)
+			throws IOException {
+		ObjectId treeId = getTree(reader, commit, path);
+		if (treeId == null) {
+			// not a folder
+			return new HashMap<String, ObjectId>();
+		}
+		ObjectId[] annotations = trees.get(treeId);
+		if (annotations == null) {
+			return null;
+		}
+		Listing listing = read(reader, treeId);
+		Map<String, ObjectId> lastCommits = new LinkedHashMap<String, ObjectId>();
+		for (int i = 0; i < listing.names.size() && i < annotations.length; i++) {
+			if (annotations[i] != null) {
+				lastCommits.put(listing.names.get(i), annotations[i]);
+			}
+		}
+		return lastCommits;
+	}
+
+	/**
+	 * Annotates the tree of a folder at a commit, unless it has been annotated
+	 * already.
+	 *
+	 * @param repository
+	 * @param commitId
+	 * @param path
+	 *            the folder, the root folder if unspecified
+	 * @return true if the folder exists at the commit
+	 * @throws IOException
+	 */
+	public boolean annotate(Repository repository, AnyObjectId commitId, String path) throws IOException {
+		try (RevWalk rw = new RevWalk(repository)) {
+			return annotate(rw, rw.parseCommit(commitId), path) != null;
+		}
+	}
+
+	/**
+	 * Annotates the folders of the local branches which have been changed
+	 * since the last annotations.  The root folder of each branch is annotated
+	 * for every new first-parent commit, together with the changed folders
+	 * whose previous version had been annotated.  Like this every folder which
+	 * has been browsed once stays annotated.
+	 *
+	 * @param repository
+	 * @return the number of annotated trees
+	 * @throws IOException
+	 */
+	public int update(Repository repository) throws IOException {
+		int count = size();
+		try (RevWalk rw = new RevWalk(repository)) {
+			for (Ref ref : repository.getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+				if (ref.getObjectId() == null) {
+					continue;
+				}
+				RevObject object = rw.peel(rw.parseAny(ref.getObjectId()));
+				if (object instanceof RevCommit) {
+					update(rw, (RevCommit) object);
+				}
+			}
+		}
+		return size() - count;
+	}
+
+	private void update(RevWalk rw, RevCommit tip) throws IOException {
+		List<RevCommit> chain = new ArrayList<RevCommit>();
+		RevCommit commit = tip;
+		while (commit != null && chain.size() < MAX_INCREMENTAL_COMMITS) {
+			rw.parseHeaders(commit);
+			if (trees.containsKey(commit.getTree())) {
+				break;
+			}
+			chain.add(commit);
+			commit = commit.getParentCount() > 0 ? commit.getParent(0) : null;
+		}
+		if (chain.size() >= MAX_INCREMENTAL_COMMITS) {
+			annotate(rw, tip, "");
+			return;
+		}
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			annotateChanges(rw, chain.get(i), "");
+		}
+	}
+
+	/**
+	 * Annotates the root folder of a commit and the folders changed by the
+	 * commit whose version in the first parent has been annotated.
+	 */
+	private void annotateChanges(RevWalk rw, RevCommit commit, String path) throws IOException {
+		ObjectReader reader = rw.getObjectReader();
+		rw.parseHeaders(commit);
+		ObjectId treeId = getTree(reader, commit, path);
+		ObjectId parentTreeId = null;
+		if (commit.getParentCount() > 0) {
+			rw.parseHeaders(commit.getParent(0));
+			parentTreeId = getTree(reader, commit.getParent(0), path);
+		}
+		if (path.isEmpty() || (parentTreeId != null && trees.containsKey(parentTreeId))) {
+			annotate(rw, commit, path);
+		}
+		if (treeId == null || parentTreeId == null || parentTreeId.equals(treeId)) {
+			return;
+		}
+		Listing listing = read(reader, treeId);
+		Listing parentListing = read(reader, parentTreeId);
+		for (int i = 0; i < listing.names.size(); i++) {
+			ObjectId previous = parentListing.get(listing.names.get(i));
+			if (listing.folders.get(i) && previous != null && !previous.equals(listing.ids.get(i))) {
+				annotateChanges(rw, commit, join(path, listing.names.get(i)));
+			}
+		}
+	}
+
+	private ObjectId[] annotate(RevWalk rw, RevCommit commit, String path) throws IOException {
+		ObjectReader reader = rw.getObjectReader();
+		rw.parseHeaders(commit);
+		ObjectId treeId = getTree(reader, commit, path);
+		if (treeId == null) {
+			return null;
+		}
+		ObjectId[] annotations = trees.get(treeId);
+		if (annotations != null) {
+			return annotations;
+		}
+		Listing listing = read(reader, treeId);
+		annotations = new ObjectId[listing.names.size()];
+		int pending = inherit(rw, commit, path, listing, annotations);
+		if (pending > 0) {
+			walk(reader, commit, path, listing, annotations, pending);
+		}
+		put(treeId, annotations);
+		return annotations;
+	}
+
+	/**
+	 * Annotates the entries which have been changed by a commit and the
+	 * entries which are unchanged from a parent whose folder is annotated.
+	 *
+	 * @return the number of entries which remain to be annotated
+	 */
+	private int inherit(RevWalk rw, RevCommit commit, String path, Listing listing, ObjectId[] annotations)
+			throws IOException {
+		ObjectReader reader = rw.getObjectReader();
+		int parents = commit.getParentCount();
+		Listing[] parentListings = new Listing[parents];
+		ObjectId[][] parentAnnotations = new ObjectId[parents][];
+		for (int k = 0; k < parents; k++) {
+			RevCommit parent = commit.getParent(k);
+			rw.parseHeaders(parent);
+			ObjectId parentTreeId = getTree(reader, parent, path);
+			if (parentTreeId != null) {
+				parentListings[k] = read(reader, parentTreeId);
+				parentAnnotations[k] = trees.get(parentTreeId);
+			}
+		}
+		int pending = 0;
+		for (int i = 0; i < annotations.length; i++) {
+			String name = listing.names.get(i);
+			ObjectId id = listing.ids.get(i);
+			boolean unchanged = false;
+			for (int k = 0; k < parents && annotations[i] == null; k++) {
+				if (parentListings[k] != null && id.equals(parentListings[k].get(name))) {
+					unchanged = true;
+					if (parentAnnotations[k] != null) {
+						annotations[i] = parentAnnotations[k][parentListings[k].indexOf(name)];
+					}
+				}
+			}
+			if (!unchanged) {
+				annotations[i] = commit.copy();
+			} else if (annotations[i] == null) {
+				pending++;
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * Walks the history of a folder to find the newest commit which changed
+	 * each of the remaining entries to its current version.
+	 */
+	private void walk(ObjectReader reader, RevCommit commit, String path, Listing listing,
+			ObjectId[] annotations, int pending) throws IOException {
+		try (RevWalk rw = new RevWalk(reader)) {
+			rw.setRetainBody(false);
+			rw.sort(RevSort.COMMIT_TIME_DESC);
+			if (StringUtils.isEmpty(path)) {
+				rw.setTreeFilter(TreeFilter.ANY_DIFF);
+			} else {
+				rw.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF));
+			}
+			rw.markStart(rw.parseCommit(commit));
+			RevCommit c;
+			while (pending > 0 && (c = rw.next()) != null) {
+				ObjectId treeId = getTree(reader, c, path);
+				if (treeId == null) {
+					continue;
+				}
+				Listing current = read(reader, treeId);
+				ObjectId[] known = trees.get(treeId);
+				Listing[] parentListings = null;
+				for (int i = 0; i < annotations.length; i++) {
+					String name = listing.names.get(i);
+					if (annotations[i] != null || !listing.ids.get(i).equals(current.get(name))) {
+						continue;
+					}
+					if (known != null) {
+						annotations[i] = known[current.indexOf(name)];
+					} else {
+						if (parentListings == null) {
+							parentListings = new Listing[c.getParentCount()];
+							for (int k = 0; k < parentListings.length; k++) {
+								rw.parseHeaders(c.getParent(k));
+								ObjectId parentTreeId = getTree(reader, c.getParent(k), path);
+								parentListings[k] = parentTreeId == null ? new Listing() : read(reader, parentTreeId);
+							}
+						}
+						boolean changed = true;
+						for (Listing parentListing : parentListings) {
+							if (listing.ids.get(i).equals(parentListing.get(name))) {
+								changed = false;
+								break;
+							}
+						}
+						if (changed) {
+							annotations[i] = c.copy();
+						}
+					}
+					if (annotations[i] != null) {
+						pending--;
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized void put(ObjectId treeId, ObjectId[] annotations) {
+		long usage = 64 + 8 * annotations.length;
+		for (int i = 0; i < annotations.length; i++) {
+			if (annotations[i] == null) {
+				continue;
+			}
+			ObjectId commit = commits.get(annotations[i]);
+			if (commit == null) {
+				commit = annotations[i];
+				commits.put(commit, commit);
+				usage += 80;
+			}
+			annotations[i] = commit;
+		}
+		if (trees.put(treeId.copy(), annotations) == null) {
+			unwritten.add(treeId.copy());
+			memoryUsage += usage;
+		}
+	}
+
+	private static ObjectId getTree(ObjectReader reader, RevCommit commit, String path) throws IOException {
+		if (StringUtils.isEmpty(path)) {
+			return commit.getTree();
+		}
+		try (TreeWalk tw = TreeWalk.forPath(reader, path, commit.getTree())) {
+			return tw != null && tw.isSubtree() ? tw.getObjectId(0) : null;
+		}
+	}
+
+	private static Listing read(ObjectReader reader, AnyObjectId treeId) throws IOException {
+		Listing listing = new Listing();
+		CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId);
+		for (; !parser.eof(); parser.next()) {
+			listing.index.put(parser.getEntryPathString(), listing.names.size());
+			listing.names.add(parser.getEntryPathString());
+			listing.ids.add(parser.getEntryObjectId());
+			listing.folders.add(FileMode.TREE.equals(parser.getEntryRawMode()));
+		}
+		return listing;
+	}
+
+	private static String join(String path, String name) {
+		return StringUtils.isEmpty(path) ? name : path + "/" + name;
+	}
+
+	/**
+	 * Reads a persisted index.  An incomplete last record, which is left by
+	 * an interrupted or a concurrent append, is ignored.
+	 *
+	 * @param file
+	 * @return the index or null if the file does not exist or has another
+	 *         version
+	 * @throws IOException
+	 */
+	public static LastCommitIndex read(File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		LastCommitIndex index = new LastCommitIndex();
+		long valid;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			valid = 8;
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			ObjectId zero = ObjectId.zeroId();
+			try {
+				while (true) {
+					in.readFully(raw);
+					ObjectId treeId = ObjectId.fromRaw(raw);
+					int count = in.readInt();
+					ObjectId[] annotations = new ObjectId[count];
+					for (int i = 0; i < count; i++) {
+						in.readFully(raw);
+						ObjectId commit = ObjectId.fromRaw(raw);
+						annotations[i] = zero.equals(commit) ? null : commit;
+					}
+					index.put(treeId, annotations);
+					valid += Constants.OBJECT_ID_LENGTH + 4 + count * Constants.OBJECT_ID_LENGTH;
+				}
+			} catch (EOFException e) {
+				// end of the records
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+		index.unwritten.clear();
+		index.length = valid;
+		return index;
+	}
+
+	/**
+	 * Appends the trees which have been annotated since the last write to the
+	 * file.  An incomplete last record is truncated first.  The file is
+	 * written anew if the index has not been read from it or if it has been
+	 * replaced.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		long fileLength = file.length();
+		if (unwritten.isEmpty() && length > 0 && fileLength == length) {
+			return;
+		}
+		file.getParentFile().mkdirs();
+		boolean header = length == 0 || fileLength < length;
+		if (header) {
+			unwritten.clear();
+			unwritten.addAll(trees.keySet());
+		} else if (fileLength > length) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(length);
+			}
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !header)))) {
+			if (header) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+			}
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (ObjectId treeId : unwritten) {
+				ObjectId[] annotations = trees.get(treeId);
+				treeId.copyRawTo(raw, 0);
+				out.write(raw);
+				out.writeInt(annotations.length);
+				for (ObjectId commit : annotations) {
+					(commit == null ? ObjectId.zeroId() : commit).copyRawTo(raw, 0);
+					out.write(raw);
+				}
+			}
+		}
+		unwritten.clear();
+		length = file.length();
+	}
+}
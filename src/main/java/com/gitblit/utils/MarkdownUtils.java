@@ -77,8 +77,22 @@ public class MarkdownUtils {
 	 * @throws java.text.ParseException
 	 */
 	public static String transformMarkdown(String markdown, LinkRenderer linkRenderer) {
+		return transformMarkdown(markdown, linkRenderer, PegDownProcessor.DEFAULT_MAX_PARSING_TIME);
+	}
+
+	/**
+	 * Returns the html version of the markdown source text or null if parsing
+	 * the markdown takes longer than the specified time.
+	 *
+	 * @param markdown
+	 * @param linkRenderer
+	 * @param maxParsingTime
+	 *            the maximum parsing time in milliseconds
+	 * @return html version of markdown text or null
+	 */
+	public static String transformMarkdown(String markdown, LinkRenderer linkRenderer, long maxParsingTime) {
 		try {
-			PegDownProcessor pd = new PegDownProcessor(ALL & ~SMARTYPANTS & ~ANCHORLINKS);
+			PegDownProcessor pd = new PegDownProcessor(ALL & ~SMARTYPANTS & ~ANCHORLINKS, maxParsingTime);
 			RootNode astRoot = pd.parseMarkdown(markdown.toCharArray());
 			return new WorkaroundHtmlSerializer(linkRenderer == null ? new LinkRenderer() : linkRenderer).toHtml(astRoot);
 		} catch (ParsingTimeoutException e) {
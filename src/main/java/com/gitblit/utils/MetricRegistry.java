@@ -0,0 +1,438 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metric registry collects the counters, gauges and latency histograms of
+ * the server and writes them in the Prometheus text exposition format.
+ *
+ * Metrics are looked up once, usually into static fields of the instrumented
+ * class.  Recording a value only increments striped adders, so concurrent
+ * requests are not serialized by the instrumentation.  The labeled metrics of
+ * a family are created on first use; label values must come from a small,
+ * fixed set (transports, page classes, operations) and never from user input.
+ */
+public class MetricRegistry {
+
+	/**
+	 * The default latency buckets, in seconds.
+	 */
+	public static final double [] LATENCY_BUCKETS = { 0.005d, 0.01d, 0.025d, 0.05d, 0.1d, 0.25d, 0.5d,
+		1d, 2.5d, 5d, 10d, 30d, 60d, 300d };
+
+	private static final MetricRegistry instance = new MetricRegistry();
+
+	private final Logger logger = LoggerFactory.getLogger(MetricRegistry.class);
+
+	private final ConcurrentMap<String, Family<?>> families = new ConcurrentSkipListMap<String, Family<?>>();
+
+	/**
+	 * Returns the registry of the server.
+	 *
+	 * @return the metric registry
+	 */
+	public static MetricRegistry instance() {
+		return instance;
+	}
+
+	public static enum Type {
+		COUNTER, GAUGE, HISTOGRAM;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * Returns the family of counters with the specified name.
+	 *
+	 * @param name
+	 * @param help
+	 * @param labelNames
+	 * @return the counter family
+	 */
+	public Family<Counter> counters(String name, String help, String... labelNames) {
+		return family(name, help, Type.COUNTER, labelNames);
+	}
+
+	/**
+	 * Returns the unlabeled counter with the specified name.
+	 *
+	 * @param name
+	 * @param help
+	 * @return the counter
+	 */
+	public Counter counter(String name, String help) {
+		return counters(name, help).labels();
+	}
+
+	/**
+	 * Returns the family of gauges with the specified name.  Gauges are read
+	 * when the metrics are written and must be registered with
+	 * {@link Family#register(Metric, String...)}.
+	 *
+	 * @param name
+	 * @param help
+	 * @param labelNames
+	 * @return the gauge family
+	 */
+	public Family<Gauge> gauges(String name, String help, String... labelNames) {
+		return family(name, help, Type.GAUGE, labelNames);
+	}
+
+	/**
+	 * Registers an unlabeled gauge, replacing a previously registered gauge
+	 * of the same name.
+	 *
+	 * @param name
+	 * @param help
+	 * @param gauge
+	 */
+	public void gauge(String name, String help, Gauge gauge) {
+		gauges(name, help).register(gauge);
+	}
+
+	/**
+	 * Returns the family of latency histograms with the specified name.
+	 *
+	 * @param name
+	 * @param help
+	 * @param labelNames
+	 * @return the histogram family
+	 */
+	public Family<Histogram> histograms(String name, String help, String... labelNames) {
+		return family(name, help, Type.HISTOGRAM, labelNames);
+	}
+
+	/**
+	 * Returns the unlabeled latency histogram with the specified name.
+	 *
+	 * @param name
+	 * @param help
+	 * @return the histogram
+	 */
+	public Histogram histogram(String name, String help) {
+		return histograms(name, help).labels();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Metric> Family<T> family(String name, String help, Type type, String... labelNames) {
+		Family<?> family = families.get(name);
+		if (family == null) {
+			Family<?> created = new Family<T>(name, help, type, labelNames);
+			family = families.putIfAbsent(name, created);
+			if (family == null) {
+				family = created;
+			}
+		}
+		if (family.type != type || family.labelNames.length != labelNames.length) {
+			throw new IllegalArgumentException(String.format("Metric %s is already registered as a %s with %d labels",
+					name, family.type, family.labelNames.length));
+		}
+		return (Family<T>) family;
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format.
+	 *
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void write(Writer writer) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (Family<?> family : families.values()) {
+			if (family.children.isEmpty()) {
+				continue;
+			}
+			sb.setLength(0);
+			sb.append("# HELP ").append(family.name).append(' ').append(escape(family.help, false)).append('\n');
+			sb.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, ? extends Metric> entry : family.children.entrySet()) {
+				try {
+					entry.getValue().write(sb, family.name, entry.getKey());
+				} catch (Exception e) {
+					logger.error("Failed to read metric {}{{}}", family.name, entry.getKey(), e);
+				}
+			}
+			writer.write(sb.toString());
+		}
+	}
+
+	static String escape(String value, boolean quotes) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (char c : value.toCharArray()) {
+			switch (c) {
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '"':
+				sb.append(quotes ? "\\\"" : "\"");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	static String format(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		} else if (value == Math.rint(value) && Math.abs(value) < 1e15d) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	private static void sample(StringBuilder sb, String name, String labels, String value) {
+		sb.append(name);
+		if (labels.length() > 0) {
+			sb.append('{').append(labels).append('}');
+		}
+		sb.append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * A family is the set of metrics which share a name and differ by the
+	 * values of their labels.
+	 */
+	public static class Family<T extends Metric> {
+
+		final String name;
+
+		final String help;
+
+		final Type type;
+
+		final String [] labelNames;
+
+		final ConcurrentMap<String, T> children = new ConcurrentSkipListMap<String, T>();
+
+		Family(String name, String help, Type type, String... labelNames) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.labelNames = labelNames;
+		}
+
+		/**
+		 * Returns the metric with the specified label values, creating it if
+		 * necessary.
+		 *
+		 * @param labelValues
+		 * @return the metric
+		 */
+		@SuppressWarnings("unchecked")
+		public T labels(String... labelValues) {
+			String key = key(labelValues);
+			T metric = children.get(key);
+			if (metric == null) {
+				T created;
+				switch (type) {
+				case COUNTER:
+					created = (T) new Counter();
+					break;
+				case HISTOGRAM:
+					created = (T) new Histogram(LATENCY_BUCKETS);
+					break;
+				default:
+					throw new IllegalStateException(String.format("Gauge %s{%s} is not registered", name, key));
+				}
+				metric = children.putIfAbsent(key, created);
+				if (metric == null) {
+					metric = created;
+				}
+			}
+			return metric;
+		}
+
+		/**
+		 * Registers the metric with the specified label values, replacing a
+		 * previously registered metric.
+		 *
+		 * @param metric
+		 * @param labelValues
+		 */
+		public void register(T metric, String... labelValues) {
+			children.put(key(labelValues), metric);
+		}
+
+		/**
+		 * Removes the metric with the specified label values.
+		 *
+		 * @param labelValues
+		 */
+		public void remove(String... labelValues) {
+			children.remove(key(labelValues));
+		}
+
+		private String key(String... labelValues) {
+			if (labelValues.length != labelNames.length) {
+				throw new IllegalArgumentException(String.format("Metric %s expects %d label values",
+						name, labelNames.length));
+			}
+			if (labelValues.length == 0) {
+				return "";
+			}
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < labelValues.length; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(labelNames[i]).append("=\"").append(escape(labelValues[i], true)).append('"');
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Base class of all metrics.
+	 */
+	public static abstract class Metric {
+
+		abstract void write(StringBuilder sb, String name, String labels);
+	}
+
+	/**
+	 * A counter only ever increases.
+	 */
+	public static class Counter extends Metric {
+
+		private final LongAdder value = new LongAdder();
+
+		public void inc() {
+			value.increment();
+		}
+
+		public void add(long amount) {
+			value.add(amount);
+		}
+
+		public long get() {
+			return value.sum();
+		}
+
+		@Override
+		void write(StringBuilder sb, String name, String labels) {
+			sample(sb, name, labels, Long.toString(get()));
+		}
+	}
+
+	/**
+	 * A gauge reports a value which is read when the metrics are written,
+	 * for example the size of a cache.
+	 */
+	public static abstract class Gauge extends Metric {
+
+		public abstract double getValue();
+
+		@Override
+		void write(StringBuilder sb, String name, String labels) {
+			sample(sb, name, labels, format(getValue()));
+		}
+	}
+
+	/**
+	 * A histogram counts durations in fixed buckets.
+	 */
+	public static class Histogram extends Metric {
+
+		private final double [] bounds;
+
+		private final long [] nanoBounds;
+
+		private final LongAdder [] buckets;
+
+		private final LongAdder sum = new LongAdder();
+
+		public Histogram(double... bounds) {
+			this.bounds = bounds;
+			this.nanoBounds = new long[bounds.length];
+			this.buckets = new LongAdder[bounds.length + 1];
+			for (int i = 0; i < bounds.length; i++) {
+				nanoBounds[i] = (long) (bounds[i] * TimeUnit.SECONDS.toNanos(1));
+			}
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Records a duration.
+		 *
+		 * @param nanos
+		 */
+		public void observe(long nanos) {
+			int i = 0;
+			while (i < nanoBounds.length && nanos > nanoBounds[i]) {
+				i++;
+			}
+			buckets[i].increment();
+			sum.add(nanos);
+		}
+
+		/**
+		 * Records the duration since the specified {@link System#nanoTime()}.
+		 *
+		 * @param startNanos
+		 */
+		public void observeSince(long startNanos) {
+			observe(System.nanoTime() - startNanos);
+		}
+
+		public void observeMillis(long millis) {
+			observe(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucket : buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+
+		@Override
+		void write(StringBuilder sb, String name, String labels) {
+			String prefix = labels.length() == 0 ? "" : labels + ",";
+			long count = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				count += buckets[i].sum();
+				String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+				sample(sb, name + "_bucket", prefix + "le=\"" + le + "\"", Long.toString(count));
+			}
+			sample(sb, name + "_sum", labels, format(sum.sum() / 1e9d));
+			sample(sb, name + "_count", labels, Long.toString(count));
+		}
+	}
+}
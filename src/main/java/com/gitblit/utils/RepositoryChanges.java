@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the version at which each repository was last changed, so that
+ * clients may ask for the repositories which changed since a version they
+ * have already seen.
+ *
+ * Versions start at the time the registry was created, so a version handed
+ * out by an earlier run of the server is never mistaken for a current one.
+ * A removal can not be expressed as a delta, so a client whose version
+ * precedes the last removal has to fetch the full list again.
+ */
+public class RepositoryChanges {
+
+	private final long base;
+
+	private final AtomicLong version;
+
+	private final Map<String, Long> versions = new ConcurrentHashMap<String, Long>();
+
+	private volatile long lastRemoval;
+
+	public RepositoryChanges() {
+		this.base = System.currentTimeMillis();
+		this.version = new AtomicLong(base);
+		this.lastRemoval = base;
+	}
+
+	/**
+	 * Records a change of the refs or of the settings of a repository.
+	 *
+	 * @param repositoryName
+	 * @return the new version
+	 */
+	public long changed(String repositoryName) {
+		long v = version.incrementAndGet();
+		versions.put(repositoryName.toLowerCase(), v);
+		return v;
+	}
+
+	/**
+	 * Records the removal of a repository, which was deleted or renamed.
+	 *
+	 * @param repositoryName
+	 * @return the new version
+	 */
+	public long removed(String repositoryName) {
+		long v = version.incrementAndGet();
+		versions.remove(repositoryName.toLowerCase());
+		lastRemoval = v;
+		return v;
+	}
+
+	/**
+	 * Records a change which may have affected any repository, so that no
+	 * delta is served for an earlier version.
+	 *
+	 * @return the new version
+	 */
+	public long reset() {
+		long v = version.incrementAndGet();
+		lastRemoval = v;
+		return v;
+	}
+
+	/**
+	 * @return the current version of all repositories
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * @param repositoryName
+	 * @return the version at which the repository was last changed
+	 */
+	public long getVersion(String repositoryName) {
+		Long v = versions.get(repositoryName.toLowerCase());
+		return v == null ? base : v;
+	}
+
+	/**
+	 * Returns true if the repositories which changed after a version are a
+	 * complete delta of that version, i.e. the version was handed out by this
+	 * registry and no repository has been removed since.
+	 *
+	 * @param since
+	 * @return true if a delta may be served
+	 */
+	public boolean isDeltaSince(long since) {
+		return since >= lastRemoval && since <= version.get();
+	}
+
+	/**
+	 * @param repositoryName
+	 * @param since
+	 * @return true if the repository changed after the version
+	 */
+	public boolean isChangedSince(String repositoryName, long since) {
+		return getVersion(repositoryName) > since;
+	}
+}
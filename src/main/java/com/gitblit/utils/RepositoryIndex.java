@@ -0,0 +1,219 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
+import com.gitblit.models.RepositoryQuery.Sort;
+import com.gitblit.models.TeamModel;
+import com.gitblit.models.UserModel;
+
+/**
+ * Immutable index of the repository list which answers repository queries
+ * without copying or reloading the repository models.
+ *
+ * The index captures the sort keys of the repositories when it is created and
+ * sorts the repositories once per sort order.  A query walks the sorted
+ * repositories and returns the names of the matching repositories which the
+ * user may view, so that only the displayed repositories need to be loaded.
+ * The index must be replaced when the repository list changes.
+ */
+public class RepositoryIndex {
+
+	private final Entry[] entries;
+
+	private final Map<Sort, Entry[]> sorted;
+
+	public RepositoryIndex(Collection<RepositoryModel> models) {
+		List<Entry> list = new ArrayList<Entry>(models.size());
+		for (RepositoryModel model : models) {
+			if (model != null) {
+				list.add(new Entry(model));
+			}
+		}
+		this.entries = list.toArray(new Entry[list.size()]);
+		this.sorted = new EnumMap<Sort, Entry[]>(Sort.class);
+	}
+
+	public int size() {
+		return entries.length;
+	}
+
+	/**
+	 * Returns the names of the repositories which match the query and which
+	 * the user may view, in the order of the query.
+	 *
+	 * @param query
+	 * @param user
+	 *            the user or null for anonymous
+	 * @param rootProject
+	 *            the name of the project of the repositories which are not in
+	 *            a folder
+	 * @param teams
+	 *            the team models of the team criteria of the query
+	 * @return the list of repository names
+	 */
+	public List<String> query(RepositoryQuery query, UserModel user, String rootProject, List<TeamModel> teams) {
+		if (user == null) {
+			user = UserModel.ANONYMOUS;
+		}
+		Pattern pattern = StringUtils.isEmpty(query.regex) ? null : Pattern.compile(query.regex);
+		String group = null;
+		if (!StringUtils.isEmpty(query.project) && !query.project.equalsIgnoreCase(rootProject)) {
+			group = query.project.toLowerCase() + "/";
+		}
+
+		Entry[] order = getSorted(query.sort == null ? Sort.name : query.sort);
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < order.length; i++) {
+			Entry entry = order[query.ascending ? i : order.length - 1 - i];
+			if (query.hasCriteria() && !matchesCriteria(entry, query, pattern, group, teams)) {
+				continue;
+			}
+			if (query.since != null && !entry.lastChange.after(query.since)) {
+				continue;
+			}
+			if (!query.includePersonal && entry.model.isPersonalRepository()) {
+				continue;
+			}
+			if (!canList(user, entry.model)) {
+				continue;
+			}
+			names.add(entry.model.name);
+		}
+		return names;
+	}
+
+	private boolean matchesCriteria(Entry entry, RepositoryQuery query, Pattern pattern, String group,
+			List<TeamModel> teams) {
+		RepositoryModel model = entry.model;
+		if (!StringUtils.isEmpty(query.repository) && model.name.equalsIgnoreCase(query.repository)) {
+			return true;
+		}
+		if (!StringUtils.isEmpty(query.project)) {
+			if (group == null ? model.name.indexOf('/') == -1 : entry.lowerName.startsWith(group)) {
+				return true;
+			}
+		}
+		if (pattern != null && pattern.matcher(model.name).find()) {
+			return true;
+		}
+		for (String set : query.sets) {
+			if (model.federationSets.contains(set)) {
+				return true;
+			}
+		}
+		if (teams != null) {
+			for (TeamModel team : teams) {
+				if (team.hasRepositoryPermission(model.name)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Empty repositories are only listed for the users which may push to them.
+	 */
+	private boolean canList(UserModel user, RepositoryModel model) {
+		if (!user.canView(model)) {
+			return false;
+		}
+		return model.hasCommits || UserModel.ANONYMOUS.canPush(model) || user.canPush(model);
+	}
+
+	private synchronized Entry[] getSorted(Sort sort) {
+		Entry[] order = sorted.get(sort);
+		if (order == null) {
+			order = entries.clone();
+			Arrays.sort(order, comparator(sort));
+			sorted.put(sort, order);
+		}
+		return order;
+	}
+
+	private static Comparator<Entry> comparator(Sort sort) {
+		switch (sort) {
+		case description:
+			return new Comparator<Entry>() {
+				@Override
+				public int compare(Entry o1, Entry o2) {
+					int c = o1.description.compareTo(o2.description);
+					return c == 0 ? o1.model.compareTo(o2.model) : c;
+				}
+			};
+		case owner:
+			return new Comparator<Entry>() {
+				@Override
+				public int compare(Entry o1, Entry o2) {
+					int c = o1.owners.compareTo(o2.owners);
+					return c == 0 ? o1.model.compareTo(o2.model) : c;
+				}
+			};
+		case lastChange:
+			return new Comparator<Entry>() {
+				@Override
+				public int compare(Entry o1, Entry o2) {
+					int c = o1.lastChange.compareTo(o2.lastChange);
+					return c == 0 ? o1.model.compareTo(o2.model) : c;
+				}
+			};
+		default:
+			return new Comparator<Entry>() {
+				@Override
+				public int compare(Entry o1, Entry o2) {
+					return o1.model.compareTo(o2.model);
+				}
+			};
+		}
+	}
+
+	/**
+	 * The sort keys of a repository, captured when the index is created
+	 * because the cached repository models are updated in place.
+	 */
+	private static class Entry {
+
+		final RepositoryModel model;
+
+		final String lowerName;
+
+		final String description;
+
+		final String owners;
+
+		final Date lastChange;
+
+		Entry(RepositoryModel model) {
+			this.model = model;
+			this.lowerName = model.name.toLowerCase();
+			this.description = model.description == null ? "" : model.description;
+			this.owners = ArrayUtils.toString(model.owners);
+			this.lastChange = model.lastChange == null ? new Date(0) : model.lastChange;
+		}
+	}
+}
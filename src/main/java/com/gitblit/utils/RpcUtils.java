@@ -29,6 +29,7 @@ import com.gitblit.models.FederationModel;
 import com.gitblit.models.FederationProposal;
 import com.gitblit.models.FederationSet;
 import com.gitblit.models.FeedModel;
+import com.gitblit.models.PathModel;
 import com.gitblit.models.RegistrantAccessPermission;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.ServerSettings;
@@ -72,6 +73,9 @@ public class RpcUtils {
 	private static final Type BRANCHES_TYPE = new TypeToken<Map<String, Collection<String>>>() {
 	}.getType();
 
+	private static final Type PATHS_TYPE = new TypeToken<Collection<PathModel>>() {
+	}.getType();
+
 	public static final Type REGISTRANT_PERMISSIONS_TYPE = new TypeToken<Collection<RegistrantAccessPermission>>() {
 	}.getType();
 
@@ -653,6 +657,35 @@ public class RpcUtils {
 		return branches;
 	}
 
+	/**
+	 * Retrieves the entries of a folder of a repository.  The entries carry
+	 * their last commit, if the folder has been indexed by the server.
+	 *
+	 * @param serverUrl
+	 * @param repository
+	 * @param objectId
+	 *            if unspecified, the default branch is assumed
+	 * @param path
+	 *            if unspecified, the root folder is assumed
+	 * @param account
+	 * @param password
+	 * @return the entries of the folder
+	 * @throws IOException
+	 * @since 1.10.1
+	 */
+	public static List<PathModel> getTree(String serverUrl, String repository, String objectId, String path,
+			String account, char[] password) throws IOException {
+		String url = asLink(serverUrl, RpcRequest.LIST_TREE, repository);
+		if (!StringUtils.isEmpty(objectId)) {
+			url += "&h=" + StringUtils.encodeURL(objectId);
+		}
+		if (!StringUtils.isEmpty(path)) {
+			url += "&f=" + StringUtils.encodeURL(path);
+		}
+		Collection<PathModel> paths = JsonUtils.retrieveJson(url, PATHS_TYPE, account, password);
+		return new ArrayList<PathModel>(paths);
+	}
+
 	/**
 	 * Retrieves a list of available branch feeds in the Gitblit server.
 	 *
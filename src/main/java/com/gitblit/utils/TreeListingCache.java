@@ -0,0 +1,215 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.models.FilestoreModel;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Caches the entries of trees for the tree browser.
+ *
+ * A tree object never changes, so its listing is keyed by its id and shared
+ * by all commits, branches and forks which contain it.  Only one level of a
+ * tree is read at a time.
+ */
+public class TreeListingCache {
+
+	private static final TreeListingCache instance;
+
+	private static final Family<Counter> REQUESTS = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result");
+
+	private static final Counter HITS = REQUESTS.labels("treelisting", "hit");
+
+	private static final Counter MISSES = REQUESTS.labels("treelisting", "miss");
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TreeListingCache.class);
+
+	private volatile Cache<ObjectId, List<Entry>> listings;
+
+	/**
+	 * An entry of a tree.
+	 */
+	public static class Entry {
+
+		public final String name;
+
+		public final int mode;
+
+		public final ObjectId objectId;
+
+		/**
+		 * The size of a blob, 0 for trees and submodules.
+		 */
+		public final long size;
+
+		public final FilestoreModel filestoreItem;
+
+		Entry(String name, int mode, ObjectId objectId, long size, FilestoreModel filestoreItem) {
+			this.name = name;
+			this.mode = mode;
+			this.objectId = objectId;
+			this.size = size;
+			this.filestoreItem = filestoreItem;
+		}
+
+		public boolean isTree() {
+			return FileMode.TREE.equals(mode);
+		}
+	}
+
+	public static TreeListingCache instance() {
+		return instance;
+	}
+
+	static {
+		instance = new TreeListingCache();
+	}
+
+	protected TreeListingCache() {
+	}
+
+	/**
+	 * Enables the cache.
+	 *
+	 * @param maximumBytes
+	 *            the approximate maximum size of the cached listings, 0
+	 *            disables the cache
+	 */
+	public synchronized void configure(long maximumBytes) {
+		if (maximumBytes <= 0) {
+			listings = null;
+			return;
+		}
+		listings = CacheBuilder.newBuilder()
+				.maximumWeight(maximumBytes)
+				.weigher(new Weigher<ObjectId, List<Entry>>() {
+					@Override
+					public int weigh(ObjectId treeId, List<Entry> entries) {
+						int weight = 64;
+						for (Entry entry : entries) {
+							weight += 96 + 2 * entry.name.length();
+						}
+						return weight;
+					}
+				})
+				.build();
+	}
+
+	public boolean isEnabled() {
+		return listings != null;
+	}
+
+	public synchronized void close() {
+		listings = null;
+	}
+
+	/**
+	 * Returns the entries of a tree in the order of the tree.
+	 *
+	 * @param reader
+	 * @param treeId
+	 * @return the entries of the tree
+	 * @throws IOException
+	 */
+	public List<Entry> getEntries(ObjectReader reader, AnyObjectId treeId) throws IOException {
+		Cache<ObjectId, List<Entry>> cache = listings;
+		if (cache == null) {
+			return read(reader, treeId);
+		}
+		List<Entry> entries = cache.getIfPresent(treeId);
+		if (entries != null) {
+			HITS.inc();
+			return entries;
+		}
+		MISSES.inc();
+		entries = read(reader, treeId);
+		cache.put(treeId.copy(), entries);
+		return entries;
+	}
+
+	/**
+	 * Returns the entries of a tree where a chain of folders which each hold
+	 * nothing but one folder is collapsed into its last folder.  The name of
+	 * a collapsed entry is the relative path of that folder, like "a/b/c".
+	 *
+	 * @param reader
+	 * @param treeId
+	 * @return the entries of the tree
+	 * @throws IOException
+	 */
+	public List<Entry> getCompressedEntries(ObjectReader reader, AnyObjectId treeId) throws IOException {
+		List<Entry> entries = getEntries(reader, treeId);
+		List<Entry> compressed = new ArrayList<Entry>(entries.size());
+		for (Entry entry : entries) {
+			if (entry.isTree()) {
+				StringBuilder name = new StringBuilder(entry.name);
+				List<Entry> children;
+				while ((children = getEntries(reader, entry.objectId)).size() == 1 && children.get(0).isTree()) {
+					entry = children.get(0);
+					name.append('/').append(entry.name);
+				}
+				if (name.length() > entry.name.length()) {
+					entry = new Entry(name.toString(), entry.mode, entry.objectId, entry.size, entry.filestoreItem);
+				}
+			}
+			compressed.add(entry);
+		}
+		return compressed;
+	}
+
+	private static List<Entry> read(ObjectReader reader, AnyObjectId treeId) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId);
+		for (; !parser.eof(); parser.next()) {
+			FileMode mode = parser.getEntryFileMode();
+			ObjectId objectId = parser.getEntryObjectId();
+			String name = parser.getEntryPathString();
+			long size = 0;
+			FilestoreModel filestoreItem = null;
+			if (mode.getObjectType() == Constants.OBJ_BLOB) {
+				try {
+					size = reader.getObjectSize(objectId, Constants.OBJ_BLOB);
+					if (JGitUtils.isPossibleFilestoreItem(size)) {
+						filestoreItem = JGitUtils.getFilestoreItem(reader.open(objectId));
+					}
+				} catch (Throwable t) {
+					LOGGER.error("failed to retrieve blob size for " + name, t);
+				}
+			}
+			entries.add(new Entry(name, mode.getBits(), objectId, size, filestoreItem));
+		}
+		return Collections.unmodifiableList(entries);
+	}
+}
@@ -18,13 +18,16 @@ import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
@@ -32,6 +35,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,6 +81,11 @@ public class WorkQueue {
     return r;
   }
 
+  /** Get all of the executor queues. */
+  public List<Executor> getQueues() {
+    return new ArrayList<Executor>(queues);
+  }
+
   /** Get all of the tasks currently scheduled in any work queue. */
   public List<Task<?>> getTasks() {
     final List<Task<?>> r = new ArrayList<Task<?>>();
@@ -131,6 +140,21 @@ public class WorkQueue {
   /** An isolated queue. */
   public class Executor extends ScheduledThreadPoolExecutor {
     private final ConcurrentHashMap<Integer, Task<?>> all;
+    private final String name;
+
+    // admission control and fair-share scheduling, guarded by owners
+    private final Map<String, Owner> owners;
+    private volatile boolean fairShare;
+    private volatile int maxQueued;
+    private volatile int maxQueuedPerOwner;
+    private int queued;
+    private long virtualTime;
+
+    private final AtomicLong sequence;
+    private final AtomicLong started;
+    private final AtomicLong rejected;
+    private final AtomicLong totalWaitTime;
+    private final AtomicLong maxWaitTime;
 
     Executor(final int corePoolSize, final String prefix) {
       super(corePoolSize, new ThreadFactory() {
@@ -151,21 +175,99 @@ public class WorkQueue {
           0.75f, // load factor
           corePoolSize + 4 // concurrency level
           );
+      name = prefix;
+      owners = new HashMap<String, Owner>();
+      sequence = new AtomicLong();
+      started = new AtomicLong();
+      rejected = new AtomicLong();
+      totalWaitTime = new AtomicLong();
+      maxWaitTime = new AtomicLong();
     }
 
     public void unregisterWorkQueue() {
       queues.remove(this);
     }
 
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Orders waiting tasks so that every owner gets an equal share of the
+     * worker threads, instead of the submission order. An owner who queues
+     * many tasks at once can not delay the tasks of other owners by more
+     * than one task each. Fair-share queues are meant for tasks which are
+     * submitted without a delay.
+     */
+    public void setFairShare(boolean fairShare) {
+      this.fairShare = fairShare;
+    }
+
+    public boolean isFairShare() {
+      return fairShare;
+    }
+
+    /**
+     * Limits the number of tasks waiting for a worker thread, in total and
+     * per owner. Tasks beyond a limit are rejected with a
+     * {@link RejectedExecutionException}. A limit of 0 is unlimited.
+     */
+    public void setAdmissionLimits(int maxQueued, int maxQueuedPerOwner) {
+      this.maxQueued = maxQueued;
+      this.maxQueuedPerOwner = maxQueuedPerOwner;
+    }
+
+    public int getMaxQueued() {
+      return maxQueued;
+    }
+
+    public int getMaxQueuedPerOwner() {
+      return maxQueuedPerOwner;
+    }
+
+    /** Number of tasks waiting for a worker thread. */
+    public int getQueuedCount() {
+      synchronized (owners) {
+        return queued;
+      }
+    }
+
+    /** Number of tasks which have been started. */
+    public long getStartedCount() {
+      return started.get();
+    }
+
+    /** Number of tasks which have been refused by the admission limits. */
+    public long getRejectedCount() {
+      return rejected.get();
+    }
+
+    /** Average time a started task has waited for a worker thread. */
+    public long getAverageWaitTime() {
+      long count = started.get();
+      return count == 0 ? 0 : totalWaitTime.get() / count;
+    }
+
+    /** Longest time a started task has waited for a worker thread. */
+    public long getMaxWaitTime() {
+      return maxWaitTime.get();
+    }
+
     @Override
     protected <V> RunnableScheduledFuture<V> decorateTask(
         final Runnable runnable, RunnableScheduledFuture<V> r) {
       r = super.decorateTask(runnable, r);
+      String owner = null;
+      if (runnable instanceof OwnedRunnable) {
+        owner = ((OwnedRunnable) runnable).getOwner();
+      }
+      final long tag = admit(owner == null ? "" : owner);
+      final long seq = sequence.incrementAndGet();
       for (;;) {
         final int id = idGenerator.next();
 
         Task<V> task;
-        task = new Task<V>(runnable, r, this, id);
+        task = new Task<V>(runnable, r, this, id, owner, tag, seq);
 
         if (all.putIfAbsent(task.getTaskId(), task) == null) {
           return task;
@@ -173,6 +275,60 @@ public class WorkQueue {
       }
     }
 
+    /**
+     * Admits a task of the owner, returning its virtual start time. The
+     * tasks of an owner are spaced one unit apart, starting from the
+     * virtual time of the most recently started task.
+     */
+    private long admit(final String owner) {
+      synchronized (owners) {
+        Owner o = owners.get(owner);
+        int max = maxQueued;
+        int maxPerOwner = maxQueuedPerOwner;
+        if ((max > 0 && queued >= max)
+            || (maxPerOwner > 0 && o != null && o.queued >= maxPerOwner)) {
+          rejected.incrementAndGet();
+          throw new RejectedExecutionException(String.format(
+              "%s queue is full, %d tasks waiting", name, queued));
+        }
+        if (o == null) {
+          o = new Owner();
+          owners.put(owner, o);
+        }
+        o.queued++;
+        o.tag = Math.max(virtualTime, o.tag) + 1;
+        queued++;
+        return o.tag;
+      }
+    }
+
+    /** Accounts for a task which stopped waiting, started or not. */
+    void dequeued(final Task<?> task, final boolean start) {
+      synchronized (owners) {
+        String owner = task.getOwner() == null ? "" : task.getOwner();
+        Owner o = owners.get(owner);
+        if (o != null && --o.queued <= 0) {
+          // the owner has no waiting tasks, virtual time covers its tags
+          owners.remove(owner);
+        }
+        queued--;
+        if (start) {
+          virtualTime = Math.max(virtualTime, task.tag);
+        }
+      }
+      if (start) {
+        long wait = System.currentTimeMillis() - task.getStartTime().getTime();
+        started.incrementAndGet();
+        totalWaitTime.addAndGet(wait);
+        long max;
+        while (wait > (max = maxWaitTime.get())) {
+          if (maxWaitTime.compareAndSet(max, wait)) {
+            break;
+          }
+        }
+      }
+    }
+
     @Override
     protected <V> RunnableScheduledFuture<V> decorateTask(
         final Callable<V> callable, final RunnableScheduledFuture<V> task) {
@@ -181,6 +337,7 @@ public class WorkQueue {
 
     void remove(final Task<?> task) {
       all.remove(task.getTaskId(), task);
+      task.dequeue(false);
     }
 
     Task<?> getTask(final int id) {
@@ -196,6 +353,18 @@ public class WorkQueue {
     }
   }
 
+  /** Waiting tasks and the virtual time of the last admitted task of an owner. */
+  private static class Owner {
+    int queued;
+    long tag;
+  }
+
+  /** Runnable executed on behalf of an owner, such as a user. */
+  public interface OwnedRunnable extends Runnable {
+    /** Returns the owner the execution is accounted to, may be null. */
+    public String getOwner();
+  }
+
   /** Runnable needing to know it was canceled. */
   public interface CancelableRunnable extends Runnable {
     /** Notifies the runnable it was canceled. */
@@ -228,22 +397,46 @@ public class WorkQueue {
     private final Executor executor;
     private final int taskId;
     private final AtomicBoolean running;
+    private final AtomicBoolean waiting;
     private final Date startTime;
+    private final String owner;
+    private final long tag;
+    private final long seq;
 
     Task(Runnable runnable, RunnableScheduledFuture<V> task, Executor executor,
-        int taskId) {
+        int taskId, String owner, long tag, long seq) {
       this.runnable = runnable;
       this.task = task;
       this.executor = executor;
       this.taskId = taskId;
       this.running = new AtomicBoolean();
+      this.waiting = new AtomicBoolean(true);
       this.startTime = new Date();
+      this.owner = owner;
+      this.tag = tag;
+      this.seq = seq;
     }
 
     public int getTaskId() {
       return taskId;
     }
 
+    /** The owner the task is accounted to, may be null. */
+    public String getOwner() {
+      return owner;
+    }
+
+    /** The name of the queue which executes the task. */
+    public String getQueueName() {
+      return executor.getName();
+    }
+
+    void dequeue(boolean start) {
+      if (waiting.compareAndSet(true, false)) {
+        executor.dequeued(this, start);
+      }
+    }
+
     public State getState() {
       if (isCancelled()) {
         return State.CANCELLED;
@@ -291,6 +484,13 @@ public class WorkQueue {
 
     @Override
 	public int compareTo(Delayed o) {
+      if (executor.isFairShare() && o instanceof Task
+          && ((Task<?>) o).executor == executor) {
+        // order by virtual start time, then by submission
+        Task<?> t = (Task<?>) o;
+        int cmp = Long.compare(tag, t.tag);
+        return cmp != 0 ? cmp : Long.compare(seq, t.seq);
+      }
       return task.compareTo(o);
     }
 
@@ -328,6 +528,7 @@ public class WorkQueue {
     @Override
 	public void run() {
       if (running.compareAndSet(false, true)) {
+        dequeue(true);
         try {
           task.run();
         } finally {
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.markup.repeater.data.IDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+
+/**
+ * Data provider of the elements of a list model.
+ *
+ * Unlike a ListDataProvider, neither the provider nor the models of the items
+ * keep the list or its elements in the page store.  The models of the items
+ * only remember the index of their element and they retrieve the element from
+ * the list model when they are attached again.  The list model should be a
+ * detachable model which reloads the list from the server-side caches.
+ *
+ * @param <T>
+ */
+public class DetachableListDataProvider<T> implements IDataProvider<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final IModel<? extends List<T>> listModel;
+
+	private transient int nextIndex;
+
+	public DetachableListDataProvider(IModel<? extends List<T>> listModel) {
+		this.listModel = listModel;
+	}
+
+	private List<T> getList() {
+		List<T> list = listModel.getObject();
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+
+	@Override
+	public Iterator<T> iterator(int first, int count) {
+		// DataView requests the item models in the order of the iterator
+		nextIndex = first;
+		return getList().subList(first, first + count).iterator();
+	}
+
+	@Override
+	public int size() {
+		return getList().size();
+	}
+
+	@Override
+	public IModel<T> model(T object) {
+		return new ElementModel(nextIndex++, object);
+	}
+
+	@Override
+	public void detach() {
+		listModel.detach();
+	}
+
+	private class ElementModel extends LoadableDetachableModel<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		ElementModel(int index, T object) {
+			super(object);
+			this.index = index;
+		}
+
+		@Override
+		protected T load() {
+			List<T> list = getList();
+			return index < list.size() ? list.get(index) : null;
+		}
+
+		@Override
+		protected void onDetach() {
+			listModel.detach();
+		}
+	}
+}
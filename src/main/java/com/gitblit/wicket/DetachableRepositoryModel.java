@@ -0,0 +1,50 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import org.apache.wicket.model.LoadableDetachableModel;
+
+import com.gitblit.models.RepositoryModel;
+
+/**
+ * Wicket model of a repository which only keeps the repository name in the
+ * page store.  The repository model is reloaded from the repository manager
+ * when the model is attached again.
+ */
+public class DetachableRepositoryModel extends LoadableDetachableModel<RepositoryModel> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String repositoryName;
+
+	public DetachableRepositoryModel(String repositoryName) {
+		this.repositoryName = repositoryName;
+	}
+
+	public DetachableRepositoryModel(RepositoryModel model) {
+		super(model);
+		this.repositoryName = model.name;
+	}
+
+	public String getRepositoryName() {
+		return repositoryName;
+	}
+
+	@Override
+	protected RepositoryModel load() {
+		return GitBlitWebApp.get().repositories().getRepositoryModel(repositoryName);
+	}
+}
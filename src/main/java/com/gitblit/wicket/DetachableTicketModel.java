@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import org.apache.wicket.model.LoadableDetachableModel;
+
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.TicketModel;
+
+/**
+ * Wicket model of a ticket which only keeps the repository name and the ticket
+ * number in the page store.  The ticket is reloaded from the ticket service,
+ * which caches recently used tickets, when the model is attached again.
+ */
+public class DetachableTicketModel extends LoadableDetachableModel<TicketModel> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String repositoryName;
+
+	private final long number;
+
+	public DetachableTicketModel(String repositoryName, TicketModel ticket) {
+		super(ticket);
+		this.repositoryName = repositoryName;
+		this.number = ticket.number;
+	}
+
+	@Override
+	protected TicketModel load() {
+		GitBlitWebApp app = GitBlitWebApp.get();
+		RepositoryModel repository = app.repositories().getRepositoryModel(repositoryName);
+		if (repository == null) {
+			return null;
+		}
+		return app.tickets().getTicket(repository, number);
+	}
+}
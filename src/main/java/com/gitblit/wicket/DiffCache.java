@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import com.gitblit.utils.DiffUtils.DiffOutput;
+
+/**
+ * Bounded cache of rendered html diffs, shared by all users.
+ *
+ * The keys identify the diff by its repository, its base and tip commits, its
+ * options and the context used to generate the links of the diff.  Because
+ * commits are immutable the cached diffs never need to be invalidated.
+ */
+public class DiffCache extends RenderCache<DiffOutput> {
+
+	/** Approximate size of the diffstat of a changed path. */
+	private static final int PATH_SIZE = 256;
+
+	public DiffCache(long maximumBytes) {
+		super("diff", maximumBytes);
+	}
+
+	@Override
+	protected long weigh(String key, DiffOutput diff) {
+		// java strings hold two bytes per char
+		long size = 2L * (key.length() + diff.content.length());
+		if (diff.stat != null) {
+			size += PATH_SIZE * diff.stat.paths.size();
+		}
+		return size;
+	}
+
+	@Override
+	public void put(String key, DiffOutput diff) {
+		if (diff.content != null) {
+			super.put(key, diff);
+		}
+	}
+}
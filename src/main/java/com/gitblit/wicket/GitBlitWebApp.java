@@ -23,11 +23,14 @@ import java.util.TimeZone;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.Request;
+import org.apache.wicket.RequestCycle;
 import org.apache.wicket.Response;
 import org.apache.wicket.Session;
 import org.apache.wicket.application.IClassResolver;
 import org.apache.wicket.markup.html.WebPage;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.WebRequest;
+import org.apache.wicket.protocol.http.WebResponse;
 
 import ro.fortsoft.pf4j.PluginState;
 import ro.fortsoft.pf4j.PluginWrapper;
@@ -115,6 +118,10 @@ public class GitBlitWebApp extends WebApplication implements GitblitWicketApp {
 
 	private final XssFilter xssFilter;
 
+	private final MarkupCache markupCache;
+
+	private final DiffCache diffCache;
+
 	private final IRuntimeManager runtimeManager;
 
 	private final IPluginManager pluginManager;
@@ -158,6 +165,8 @@ public class GitBlitWebApp extends WebApplication implements GitblitWicketApp {
 		this.ticketServiceProvider = ticketServiceProvider;
 		this.settings = runtimeManager.getSettings();
 		this.xssFilter = runtimeManager.getXssFilter();
+		this.markupCache = new MarkupCache(settings.getFilesize(Keys.web.markupCacheSize, 10 * 1024 * 1024L));
+		this.diffCache = new DiffCache(settings.getFilesize(Keys.web.diffCacheSize, 32 * 1024 * 1024L));
 		this.runtimeManager = runtimeManager;
 		this.pluginManager = pluginManager;
 		this.notificationManager = notificationManager;
@@ -328,6 +337,11 @@ public class GitBlitWebApp extends WebApplication implements GitblitWicketApp {
 		return gitBlitWebSession;
 	}
 
+	@Override
+	public RequestCycle newRequestCycle(Request request, Response response) {
+		return new GitblitRequestCycle(this, (WebRequest) request, (WebResponse) response);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.gitblit.wicket.Webapp#settings()
 	 */
@@ -344,6 +358,22 @@ public class GitBlitWebApp extends WebApplication implements GitblitWicketApp {
 		return xssFilter;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.gitblit.wicket.Webapp#markupCache()
+	 */
+	@Override
+	public MarkupCache markupCache() {
+		return markupCache;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.gitblit.wicket.Webapp#diffCache()
+	 */
+	@Override
+	public DiffCache diffCache() {
+		return diffCache;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.gitblit.wicket.Webapp#isDebugMode()
 	 */
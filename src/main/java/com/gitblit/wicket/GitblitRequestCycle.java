@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.WebRequest;
+import org.apache.wicket.protocol.http.WebRequestCycle;
+import org.apache.wicket.protocol.http.WebResponse;
+import org.apache.wicket.util.lang.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.Keys;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Histogram;
+
+/**
+ * Request cycle which records the render time of every page request and,
+ * if web.measurePageSizes is enabled, the serialized size of the pages.
+ *
+ * Requests which do not respond with a page, like resources and redirects to
+ * external urls, are not recorded.
+ */
+public class GitblitRequestCycle extends WebRequestCycle {
+
+	private static final Family<Histogram> RENDER_TIME = MetricRegistry.instance().histograms(
+			"gitblit_web_page_seconds", "Time to process a request and render the page", "page");
+
+	private static final Family<Counter> ERRORS = MetricRegistry.instance().counters(
+			"gitblit_web_errors_total", "Page requests which failed with an exception", "page");
+
+	private static final Family<Counter> PAGE_SIZE = MetricRegistry.instance().counters(
+			"gitblit_web_page_size_bytes_total", "Serialized size of the rendered pages", "page");
+
+	private static final Family<Counter> PAGE_SIZE_SAMPLES = MetricRegistry.instance().counters(
+			"gitblit_web_page_size_samples_total", "Rendered pages whose serialized size was measured", "page");
+
+	private static final Logger logger = LoggerFactory.getLogger(GitblitRequestCycle.class);
+
+	private long startNanos;
+
+	public GitblitRequestCycle(WebApplication application, WebRequest request, WebResponse response) {
+		super(application, request, response);
+	}
+
+	@Override
+	protected void onBeginRequest() {
+		super.onBeginRequest();
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	protected void onEndRequest() {
+		super.onEndRequest();
+		String page = getPageLabel();
+		if (page != null) {
+			RENDER_TIME.labels(page).observeSince(startNanos);
+			if (GitBlitWebApp.get().settings().getBoolean(Keys.web.measurePageSizes, false)) {
+				measurePageSize(page);
+			}
+		}
+	}
+
+	/**
+	 * Records the serialized size of the response page.  The page has been
+	 * detached at this point so the size is the size of the page in the page
+	 * store.
+	 */
+	private void measurePageSize(String label) {
+		Page page = getResponsePage();
+		if (page == null) {
+			return;
+		}
+		long size = Objects.sizeof(page);
+		if (size < 0) {
+			logger.warn("failed to measure the serialized size of {}", label);
+			return;
+		}
+		PAGE_SIZE.labels(label).add(size);
+		PAGE_SIZE_SAMPLES.labels(label).inc();
+		logger.debug("{} serialized size is {} bytes", label, size);
+	}
+
+	@Override
+	public Page onRuntimeException(Page page, RuntimeException e) {
+		String label = page == null ? getPageLabel() : page.getClass().getSimpleName();
+		ERRORS.labels(label == null ? "unknown" : label).inc();
+		return super.onRuntimeException(page, e);
+	}
+
+	private String getPageLabel() {
+		Class<? extends Page> pageClass = getResponsePageClass();
+		return pageClass == null ? null : pageClass.getSimpleName();
+	}
+}
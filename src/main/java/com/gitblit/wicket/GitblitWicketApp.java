@@ -35,6 +35,22 @@ public interface GitblitWicketApp {
 
 	public abstract XssFilter xssFilter();
 
+	/**
+	 * Returns the cache of rendered markup documents shared by all pages.
+	 *
+	 * @return the markup cache
+	 * @since 1.10.1
+	 */
+	public abstract MarkupCache markupCache();
+
+	/**
+	 * Returns the cache of rendered diffs shared by all pages.
+	 *
+	 * @return the diff cache
+	 * @since 1.10.1
+	 */
+	public abstract DiffCache diffCache();
+
 	/**
 	 * Is Gitblit running in debug mode?
 	 *
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+/**
+ * Bounded cache of rendered markup documents, shared by all users.
+ *
+ * The keys identify the markup by its blob id, its syntax and the context
+ * used to rewrite repository-relative links, see
+ * {@link MarkupProcessor#parse(String, String, String, String)}, or mark the
+ * unfiltered html of {@link MarkupProcessor#transformMarkdown(String)}.  The
+ * values are the rendered html, XSS filtered for repository documents.
+ */
+public class MarkupCache extends RenderCache<String> {
+
+	public MarkupCache(long maximumBytes) {
+		super("markup", maximumBytes);
+	}
+
+	@Override
+	protected long weigh(String key, String html) {
+		// java strings hold two bytes per char
+		return 2L * (key.length() + html.length());
+	}
+}
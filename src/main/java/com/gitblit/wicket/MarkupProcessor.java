@@ -19,6 +19,7 @@ import static org.pegdown.FastEncoder.encode;
 
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,9 +27,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.wicket.Page;
 import org.apache.wicket.RequestCycle;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.mylyn.wikitext.confluence.core.ConfluenceLanguage;
@@ -42,6 +46,7 @@ import org.eclipse.mylyn.wikitext.tracwiki.core.TracWikiLanguage;
 import org.eclipse.mylyn.wikitext.twiki.core.TWikiLanguage;
 import org.pegdown.DefaultVerbatimSerializer;
 import org.pegdown.LinkRenderer;
+import org.pegdown.PegDownProcessor;
 import org.pegdown.ToHtmlSerializer;
 import org.pegdown.VerbatimSerializer;
 import org.pegdown.ast.ExpImageNode;
@@ -59,6 +64,10 @@ import com.gitblit.models.PathModel;
 import com.gitblit.servlet.RawServlet;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.MarkdownUtils;
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Histogram;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.utils.XssFilter;
 import com.gitblit.wicket.pages.DocPage;
@@ -68,6 +77,11 @@ import com.google.common.base.Joiner;
  * Processes markup content and generates html with repository-relative page and
  * image linking.
  *
+ * Rendered documents are cached by the blob id of their markup, the syntax and
+ * the context of the link rewriting, if the processor is created with a
+ * {@link MarkupCache}.  A document which takes longer than the render budget
+ * is displayed as plain text.
+ *
  * @author James Moger
  *
  */
@@ -77,12 +91,20 @@ public class MarkupProcessor {
 		PLAIN, MARKDOWN, TWIKI, TRACWIKI, TEXTILE, MEDIAWIKI, CONFLUENCE
 	}
 
+	private static final Family<Histogram> RENDER_TIME = MetricRegistry.instance().histograms(
+			"gitblit_markup_render_seconds", "Time to render and filter a markup document", "syntax");
+
+	private static final Counter FALLBACKS = MetricRegistry.instance().counter(
+			"gitblit_markup_fallbacks_total", "Documents displayed as plain text because they exceeded the render budget");
+
 	private Logger logger = LoggerFactory.getLogger(getClass());
 
 	private final IStoredSettings settings;
 
 	private final XssFilter xssFilter;
 
+	private final MarkupCache cache;
+
 	public static List<String> getMarkupExtensions(IStoredSettings settings) {
 		List<String> list = new ArrayList<String>();
 		list.addAll(settings.getStrings(Keys.web.confluenceExtensions));
@@ -95,8 +117,13 @@ public class MarkupProcessor {
 	}
 
 	public MarkupProcessor(IStoredSettings settings, XssFilter xssFilter) {
+		this(settings, xssFilter, null);
+	}
+
+	public MarkupProcessor(IStoredSettings settings, XssFilter xssFilter, MarkupCache cache) {
 		this.settings = settings;
 		this.xssFilter = xssFilter;
+		this.cache = cache;
 	}
 
 	public List<String> getMarkupExtensions() {
@@ -118,6 +145,13 @@ public class MarkupProcessor {
 		return settings.getStrings(Keys.web.blobEncodings).toArray(new String[0]);
 	}
 
+	/**
+	 * Returns the render budget in milliseconds, 0 if unlimited.
+	 */
+	private long getRenderBudget() {
+		return Math.max(0, settings.getInteger(Keys.web.markupRenderBudget, 2000));
+	}
+
 	private MarkupSyntax determineSyntax(String documentPath) {
 		String ext = StringUtils.getFileExtension(documentPath).toLowerCase();
 		if (StringUtils.isEmpty(ext)) {
@@ -208,14 +242,26 @@ public class MarkupProcessor {
 		final MarkupSyntax syntax = determineSyntax(documentPath);
 		final MarkupDocument doc = new MarkupDocument(documentPath, markupText, syntax);
 
+		String key = null;
+		if (markupText != null && cache != null && cache.isEnabled()) {
+			key = getCacheKey(repositoryName, commitId, documentPath, markupText, syntax);
+			doc.html = cache.get(key);
+			if (doc.html != null) {
+				return doc;
+			}
+		}
+
 		if (markupText != null) {
+			long budget = getRenderBudget();
+			boolean fallback = false;
+			long start = System.nanoTime();
 			try {
 				switch (syntax){
 				case CONFLUENCE:
 					parse(doc, repositoryName, commitId, new ConfluenceLanguage());
 					break;
 				case MARKDOWN:
-					parse(doc, repositoryName, commitId);
+					parse(doc, repositoryName, commitId, budget);
 					break;
 				case MEDIAWIKI:
 					parse(doc, repositoryName, commitId, new MediaWikiLanguage());
@@ -236,6 +282,22 @@ public class MarkupProcessor {
 			} catch (Exception e) {
 				logger.error("failed to transform " + syntax, e);
 			}
+
+			long duration = System.nanoTime() - start;
+			RENDER_TIME.labels(syntax.name().toLowerCase()).observe(duration);
+			if (budget > 0 && duration >= TimeUnit.MILLISECONDS.toNanos(budget) && !MarkupSyntax.PLAIN.equals(syntax)) {
+				// too expensive to render, display the document as plain text
+				logger.warn("rendering {} of {} took {} msecs, exceeding the budget of {} msecs, displaying plain text",
+						documentPath, repositoryName, TimeUnit.NANOSECONDS.toMillis(duration), budget);
+				FALLBACKS.inc();
+				fallback = true;
+				doc.html = MarkdownUtils.transformPlainText(StringUtils.escapeForHtml(markupText, false));
+			}
+
+			if (key != null && doc.html != null && !fallback) {
+				// only cache rendered documents, the budget may suffice on another attempt
+				cache.put(key, doc.html);
+			}
 		}
 
 		if (doc.html == null) {
@@ -310,14 +372,64 @@ public class MarkupProcessor {
 		doc.html = safeContent;
 	}
 
+	/**
+	 * Returns the key of a rendered document.  Rendered documents depend on
+	 * the markup, identified by its blob id, the syntax and everything used to
+	 * rewrite relative links: the repository, the commit, the path of the
+	 * document and the url of the current page.
+	 */
+	private String getCacheKey(String repositoryName, String commitId, String documentPath,
+			String markupText, MarkupSyntax syntax) {
+		String contextUrl = "";
+		if (RequestCycle.get() != null) {
+			contextUrl = RequestCycle.get().getRequest().getRelativePathPrefixToContextRoot();
+		}
+		return Joiner.on('\n').useForNull("").join(getBlobId(markupText), syntax, repositoryName, commitId,
+				documentPath, contextUrl, settings.getString(Keys.web.forwardSlashCharacter, "/"),
+				settings.getBoolean(Keys.web.mountParameters, true));
+	}
+
+	private static String getBlobId(String markupText) {
+		ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+		return formatter.idFor(Constants.OBJ_BLOB, markupText.getBytes(StandardCharsets.UTF_8)).getName();
+	}
+
+	/**
+	 * Transforms markdown which is not stored in a repository, like the
+	 * project descriptions, to html.  Links are not rewritten and the html is
+	 * not filtered.
+	 *
+	 * @param markdown
+	 * @return the html or null if parsing the markdown timed out
+	 */
+	public String transformMarkdown(String markdown) {
+		String key = null;
+		if (cache != null && cache.isEnabled()) {
+			key = Joiner.on('\n').join(getBlobId(markdown), MarkupSyntax.MARKDOWN, "unfiltered");
+			String html = cache.get(key);
+			if (html != null) {
+				return html;
+			}
+		}
+		long start = System.nanoTime();
+		String html = MarkdownUtils.transformMarkdown(markdown);
+		RENDER_TIME.labels(MarkupSyntax.MARKDOWN.name().toLowerCase()).observeSince(start);
+		if (key != null && html != null) {
+			cache.put(key, html);
+		}
+		return html;
+	}
+
 	/**
 	 * Parses the document as Markdown using Pegdown.
 	 *
 	 * @param doc
 	 * @param repositoryName
 	 * @param commitId
+	 * @param budget
+	 *            the maximum parsing time in milliseconds, 0 if unlimited
 	 */
-	private void parse(final MarkupDocument doc, final String repositoryName, final String commitId) {
+	private void parse(final MarkupDocument doc, final String repositoryName, final String commitId, long budget) {
 		LinkRenderer renderer = new LinkRenderer() {
 
 			@Override
@@ -389,7 +501,12 @@ public class MarkupProcessor {
 			}
 		};
 
-		final String content = MarkdownUtils.transformMarkdown(doc.markup, renderer);
+		final String content = MarkdownUtils.transformMarkdown(doc.markup, renderer,
+				budget > 0 ? budget : PegDownProcessor.DEFAULT_MAX_PARSING_TIME);
+		if (content == null) {
+			// parsing exceeded the budget
+			return;
+		}
 		final String safeContent = xssFilter.relaxed(content);
 
 		doc.html = safeContent;
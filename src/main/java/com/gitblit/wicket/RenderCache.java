@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import com.gitblit.utils.MetricRegistry;
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Gauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * Bounded cache of rendered content, shared by all users.
+ *
+ * The cache is bounded by the approximate number of bytes held by its keys and
+ * values, and a cache of 0 bytes is disabled.  Its lookups and its size are
+ * exported with the metrics of the other caches, labeled with the name of the
+ * cache.
+ *
+ * @param <V> the type of the rendered content
+ */
+public abstract class RenderCache<V> {
+
+	private static final Family<Counter> REQUESTS = MetricRegistry.instance().counters(
+			"gitblit_cache_requests_total", "Cache lookups by cache and result", "cache", "result");
+
+	private static final Family<Gauge> SIZES = MetricRegistry.instance().gauges(
+			"gitblit_cache_size", "Entries held by a cache", "cache");
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private final long maximumBytes;
+
+	private final Cache<String, V> cache;
+
+	protected RenderCache(String name, long maximumBytes) {
+		this.hits = REQUESTS.labels(name, "hit");
+		this.misses = REQUESTS.labels(name, "miss");
+		this.maximumBytes = Math.max(0, maximumBytes);
+		this.cache = CacheBuilder.newBuilder()
+				.maximumWeight(this.maximumBytes)
+				.weigher(new Weigher<String, V>() {
+					@Override
+					public int weigh(String key, V value) {
+						return (int) Math.min(Integer.MAX_VALUE, RenderCache.this.weigh(key, value));
+					}
+				})
+				.recordStats()
+				.build();
+
+		SIZES.register(new Gauge() {
+			@Override
+			public double getValue() {
+				return cache.size();
+			}
+		}, name);
+	}
+
+	/**
+	 * Returns the approximate number of bytes held by an entry.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the size of the entry
+	 */
+	protected abstract long weigh(String key, V value);
+
+	public boolean isEnabled() {
+		return maximumBytes > 0;
+	}
+
+	/**
+	 * Returns the cached content for the key.
+	 *
+	 * @param key
+	 * @return the content or null if it is not cached
+	 */
+	public V get(String key) {
+		if (!isEnabled()) {
+			return null;
+		}
+		V value = cache.getIfPresent(key);
+		if (value == null) {
+			misses.inc();
+		} else {
+			hits.inc();
+		}
+		return value;
+	}
+
+	public void put(String key, V value) {
+		if (isEnabled()) {
+			cache.put(key, value);
+		}
+	}
+
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the percentage of lookups which found cached content.
+	 *
+	 * @return the hit rate, 0-100
+	 */
+	public int getHitRate() {
+		CacheStats stats = cache.stats();
+		if (stats.requestCount() == 0) {
+			return 0;
+		}
+		return (int) Math.round(100 * stats.hitRate());
+	}
+}
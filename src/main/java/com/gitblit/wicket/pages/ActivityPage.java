@@ -17,6 +17,7 @@ package com.gitblit.wicket.pages;
 
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,6 +29,8 @@ import org.apache.wicket.PageParameters;
 import org.apache.wicket.behavior.HeaderContributor;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.panel.Fragment;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 
 import com.gitblit.Keys;
 import com.gitblit.models.Activity;
@@ -66,17 +69,30 @@ public class ActivityPage extends RootPage {
 		if (daysBack < 1) {
 			daysBack = app().settings().getInteger(Keys.web.activityDuration, 7);
 		}
-		String objectId = WicketUtils.getObject(params);
-
-		// determine repositories to view and retrieve the activity
-		List<RepositoryModel> models = getRepositories(params);
-		List<Activity> recentActivity = ActivityUtils.getRecentActivity(
-				app().settings(),
-				app().repositories(),
-				models,
-				daysBack,
-				objectId,
-				getTimeZone());
+		final int activityDays = daysBack;
+		final String objectId = WicketUtils.getObject(params);
+
+		// determine repositories to view and retrieve the activity, the
+		// activity is reloaded instead of being kept in the page store
+		IModel<List<Activity>> activityModel = new LoadableDetachableModel<List<Activity>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<Activity> load() {
+				List<RepositoryModel> models = getRepositories(getPageParameters());
+				List<Activity> activity = ActivityUtils.getRecentActivity(
+						app().settings(),
+						app().repositories(),
+						models,
+						activityDays,
+						objectId,
+						getTimeZone());
+				Collections.sort(activity);
+				return activity;
+			}
+		};
+		List<Activity> recentActivity = activityModel.getObject();
 
 		String headerPattern;
 		if (daysBack == 1) {
@@ -117,7 +133,8 @@ public class ActivityPage extends RootPage {
 
 			// create the activity charts
 			if (app().settings().getBoolean(Keys.web.generateActivityGraph, true)) {
-				Charts charts = createCharts(recentActivity);
+				// the charts reorder the activity, the panel shows the loaded order
+				Charts charts = createCharts(new ArrayList<Activity>(recentActivity));
 				add(new HeaderContributor(charts));
 				add(new Fragment("chartsPanel", "chartsFragment", this));
 			} else {
@@ -125,7 +142,7 @@ public class ActivityPage extends RootPage {
 			}
 
 			// add activity panel
-			add(new ActivityPanel("activityPanel", recentActivity));
+			add(new ActivityPanel("activityPanel", activityModel));
 		}
 	}
 
@@ -28,6 +28,7 @@ import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.data.DataView;
 import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.request.target.resource.ResourceStreamRequestTarget;
 import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
 import org.apache.wicket.util.resource.IResourceStream;
@@ -42,10 +43,8 @@ import com.gitblit.models.PathModel.PathChangeModel;
 import com.gitblit.models.SubmoduleModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.servlet.RawServlet;
-import com.gitblit.utils.DiffUtils;
 import com.gitblit.utils.DiffUtils.DiffComparator;
 import com.gitblit.utils.DiffUtils.DiffOutput;
-import com.gitblit.utils.DiffUtils.DiffOutputType;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.wicket.CacheControl;
 import com.gitblit.wicket.GitBlitWebSession;
@@ -92,11 +91,11 @@ public class CommitDiffPage extends RepositoryPage {
 		add(new CommitHeaderPanel("commitHeader", repositoryName, commit));
 
 		final List<String> imageExtensions = app().settings().getStrings(Keys.web.imageExtensions);
-		final ImageDiffHandler handler = new ImageDiffHandler(this, repositoryName,
-				parents.isEmpty() ? null : parents.get(0), commit.getName(), imageExtensions);
 		final int tabLength = app().settings().getInteger(Keys.web.tabLength, 4);
-		final DiffOutput diff = DiffUtils.getCommitDiff(r, commit, diffComparator, DiffOutputType.HTML, handler, tabLength);
-		if (handler.getImgDiffCount() > 0) {
+		final DiffModel diffModel = new DiffModel(this, repositoryName, null, commit.getName(), diffComparator,
+				tabLength, imageExtensions);
+		final DiffOutput diff = diffModel.getObject();
+		if (diffModel.hasImageDiffs()) {
 			addBottomScript("scripts/imgdiff.js"); // Tiny support script for image diffs
 		}
 
@@ -289,7 +288,7 @@ public class CommitDiffPage extends RepositoryPage {
 			}
 		};
 		add(pathsView);
-		add(new Label("diffText", diff.content).setEscapeModelStrings(false));
+		add(new Label("diffText", new PropertyModel<String>(diffModel, "content")).setEscapeModelStrings(false));
 	}
 
 	@Override
@@ -32,6 +32,7 @@ import org.apache.wicket.markup.repeater.data.DataView;
 import org.apache.wicket.markup.repeater.data.ListDataProvider;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
+import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.protocol.http.RequestUtils;
 import org.apache.wicket.request.target.basic.RedirectRequestTarget;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
@@ -44,10 +45,8 @@ import com.gitblit.models.RefModel;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.SubmoduleModel;
 import com.gitblit.servlet.RawServlet;
-import com.gitblit.utils.DiffUtils;
 import com.gitblit.utils.DiffUtils.DiffComparator;
 import com.gitblit.utils.DiffUtils.DiffOutput;
-import com.gitblit.utils.DiffUtils.DiffOutputType;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.wicket.SessionlessForm;
@@ -117,12 +116,12 @@ public class ComparePage extends RepositoryPage {
 			toCommitId.setObject(endId);
 
 			final List<String> imageExtensions = app().settings().getStrings(Keys.web.imageExtensions);
-			final ImageDiffHandler handler = new ImageDiffHandler(this, repositoryName,
-					fromCommit.getName(), toCommit.getName(), imageExtensions);
 			final DiffComparator diffComparator = WicketUtils.getDiffComparator(params);
 			final int tabLength = app().settings().getInteger(Keys.web.tabLength, 4);
-			final DiffOutput diff = DiffUtils.getDiff(r, fromCommit, toCommit, diffComparator, DiffOutputType.HTML, handler, tabLength);
-			if (handler.getImgDiffCount() > 0) {
+			final DiffModel diffModel = new DiffModel(this, repositoryName, startId, endId, diffComparator,
+					tabLength, imageExtensions);
+			final DiffOutput diff = diffModel.getObject();
+			if (diffModel.hasImageDiffs()) {
 				addBottomScript("scripts/imgdiff.js"); // Tiny support script for image diffs
 			}
 
@@ -214,7 +213,7 @@ public class ComparePage extends RepositoryPage {
 				}
 			};
 			comparison.add(pathsView);
-			comparison.add(new Label("diffText", diff.content).setEscapeModelStrings(false));
+			comparison.add(new Label("diffText", new PropertyModel<String>(diffModel, "content")).setEscapeModelStrings(false));
 		}
 
 		// set the default DiffComparator
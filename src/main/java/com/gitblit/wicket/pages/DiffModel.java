@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket.pages;
+
+import java.util.List;
+
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import com.gitblit.utils.DiffUtils;
+import com.gitblit.utils.DiffUtils.DiffComparator;
+import com.gitblit.utils.DiffUtils.DiffLinkHandler;
+import com.gitblit.utils.DiffUtils.DiffOutput;
+import com.gitblit.utils.DiffUtils.DiffOutputType;
+import com.gitblit.utils.JGitUtils;
+import com.gitblit.wicket.DiffCache;
+import com.gitblit.wicket.GitBlitWebApp;
+import com.gitblit.wicket.WicketUtils;
+
+/**
+ * Model of the html diff between two commits.
+ *
+ * The model only keeps the commit ids and the options of the diff in the page
+ * store.  The diff is rendered once and shared through the {@link DiffCache};
+ * it is rendered again if it has been evicted when the model is attached again.
+ * The files whose diff is too large for a commitdiff link to their own
+ * {@link BlobDiffPage}.
+ */
+public class DiffModel extends LoadableDetachableModel<DiffOutput> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final BasePage page;
+
+	private final String repositoryName;
+
+	private final String baseCommitId;
+
+	private final String commitId;
+
+	private final DiffComparator comparator;
+
+	private final int tabLength;
+
+	private final List<String> imageExtensions;
+
+	private transient boolean imageDiffs;
+
+	/**
+	 * @param page
+	 *            the page which shows the diff
+	 * @param repositoryName
+	 * @param baseCommitId
+	 *            the base commit, or null for the diff to the primary parent of the commit
+	 * @param commitId
+	 * @param comparator
+	 * @param tabLength
+	 * @param imageExtensions
+	 *            the extensions of the images which are rendered as image diffs
+	 */
+	public DiffModel(BasePage page, String repositoryName, String baseCommitId, String commitId,
+			DiffComparator comparator, int tabLength, List<String> imageExtensions) {
+		this.page = page;
+		this.repositoryName = repositoryName;
+		this.baseCommitId = baseCommitId;
+		this.commitId = commitId;
+		this.comparator = comparator;
+		this.tabLength = tabLength;
+		this.imageExtensions = imageExtensions;
+	}
+
+	/**
+	 * Returns true if the loaded diff contains image diffs, which require the
+	 * image diff script.
+	 */
+	public boolean hasImageDiffs() {
+		return imageDiffs;
+	}
+
+	/**
+	 * The diff contains relative links and localized messages, so the key
+	 * includes the path of the request and the locale.
+	 */
+	private String getCacheKey() {
+		return repositoryName + ':' + baseCommitId + ':' + commitId + ':' + comparator + ':' + tabLength
+				+ ':' + page.getLocale() + ':' + page.getContextUrl();
+	}
+
+	@Override
+	protected DiffOutput load() {
+		GitBlitWebApp app = GitBlitWebApp.get();
+		String key = getCacheKey();
+		DiffOutput diff = app.diffCache().get(key);
+		if (diff != null) {
+			// the image diffs of a cached diff are recognized by their container
+			imageDiffs = diff.content.contains("imgdiff-container");
+			return diff;
+		}
+
+		Repository r = app.repositories().getRepository(repositoryName);
+		if (r == null) {
+			return null;
+		}
+		try {
+			RevCommit commit = JGitUtils.getCommit(r, commitId);
+			RevCommit baseCommit = baseCommitId == null ? null : JGitUtils.getCommit(r, baseCommitId);
+			String oldCommitId = baseCommitId;
+			if (oldCommitId == null && commit.getParentCount() > 0) {
+				oldCommitId = commit.getParent(0).getName();
+			}
+			ImageDiffHandler handler = new ImageDiffHandler(page, repositoryName, oldCommitId, commitId,
+					imageExtensions);
+			DiffLinkHandler linkHandler = new DiffLinkHandler() {
+				@Override
+				public String getDiffUrl(DiffEntry diffEntry) {
+					String path = diffEntry.getNewPath();
+					if (baseCommitId == null) {
+						return page.urlFor(BlobDiffPage.class,
+								WicketUtils.newPathParameter(repositoryName, commitId, path)).toString();
+					}
+					return page.urlFor(BlobDiffPage.class,
+							WicketUtils.newBlobDiffParameter(repositoryName, baseCommitId, commitId, path)).toString();
+				}
+			};
+			diff = DiffUtils.getDiff(r, baseCommit, commit, null, comparator, DiffOutputType.HTML, handler,
+					linkHandler, tabLength);
+			imageDiffs = handler.getImgDiffCount() > 0;
+			app.diffCache().put(key, diff);
+			return diff;
+		} finally {
+			r.close();
+		}
+	}
+}
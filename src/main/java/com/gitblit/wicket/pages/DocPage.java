@@ -45,7 +45,7 @@ public class DocPage extends RepositoryPage {
 		super(params);
 
 		final String path = WicketUtils.getPath(params).replace("%2f", "/").replace("%2F", "/");
-		MarkupProcessor processor = new MarkupProcessor(app().settings(), app().xssFilter());
+		MarkupProcessor processor = new MarkupProcessor(app().settings(), app().xssFilter(), app().markupCache());
 		UserModel currentUser = (GitBlitWebSession.get().getUser() != null) ? GitBlitWebSession.get().getUser() : UserModel.ANONYMOUS;
 		final boolean userCanEdit = currentUser.canEdit(getRepositoryModel());
 		
@@ -55,7 +55,7 @@ public class DocsPage extends RepositoryPage {
 
 		String objectId = WicketUtils.getObject(params);
 
-		MarkupProcessor processor = new MarkupProcessor(app().settings(), app().xssFilter());
+		MarkupProcessor processor = new MarkupProcessor(app().settings(), app().xssFilter(), app().markupCache());
 
 		Repository r = getRepository();
 		UserModel currentUser = (GitBlitWebSession.get().getUser() != null) ? GitBlitWebSession.get().getUser() : UserModel.ANONYMOUS;
@@ -70,6 +70,7 @@ public class LuceneSearchPage extends RootPage {
 		ArrayList<String> repositories = new ArrayList<String>();
 		String query = "";
 		boolean allRepos = false;
+		boolean code = false;
 
 		int page = 1;
 		int pageSize = app().settings().getInteger(Keys.web.itemsPerPage, 50);
@@ -98,6 +99,7 @@ public class LuceneSearchPage extends RootPage {
 			}
 
 			allRepos = params.getAsBoolean("allrepos", false);
+			code = params.getAsBoolean("code", false);
 			if (allRepos) {
 				repositories.addAll(availableRepositories);
 			}
@@ -140,6 +142,7 @@ public class LuceneSearchPage extends RootPage {
 		final Model<String> queryModel = new Model<String>(query);
 		final Model<ArrayList<String>> repositoriesModel = new Model<ArrayList<String>>(searchRepositories);
 		final Model<Boolean> allreposModel = new Model<Boolean>(allRepos);
+		final Model<Boolean> codeModel = new Model<Boolean>(code);
 		SessionlessForm<Void> form = new SessionlessForm<Void>("searchForm", getClass()) {
 
 			private static final long serialVersionUID = 1L;
@@ -159,6 +162,7 @@ public class LuceneSearchPage extends RootPage {
 				params.put("repositories", StringUtils.flattenStrings(repositoriesModel.getObject()));
 				params.put("query", queryModel.getObject());
 				params.put("allrepos", allreposModel.getObject());
+				params.put("code", codeModel.getObject());
 				LuceneSearchPage page = new LuceneSearchPage(params);
 				setResponsePage(page);
 			}
@@ -170,13 +174,33 @@ public class LuceneSearchPage extends RootPage {
 		form.add(selections.setEnabled(luceneEnabled));
 		form.add(new TextField<String>("query", queryModel).setEnabled(luceneEnabled));
 		form.add(new CheckBox("allrepos", allreposModel));
+		form.add(new CheckBox("code", codeModel));
 		form.add(new ExternalLink("querySyntax", LUCENE_QUERY_SYNTAX_LINK));
 		add(form.setEnabled(luceneEnabled));
 
 		// execute search
 		final List<SearchResult> results = new ArrayList<SearchResult>();
 		if (!ArrayUtils.isEmpty(searchRepositories) && !StringUtils.isEmpty(query)) {
-			results.addAll(app().repositories().search(query, page, pageSize, searchRepositories));
+			List<SearchResult> hits;
+			if (code) {
+				// a text enclosed in slashes is a regular expression
+				boolean regex = query.length() > 2 && query.startsWith("/") && query.endsWith("/");
+				String text = regex ? query.substring(1, query.length() - 1) : query;
+				try {
+					hits = app().repositories().searchCode(text, regex, page, pageSize, searchRepositories);
+				} catch (IllegalArgumentException e) {
+					error(e.getMessage());
+					hits = null;
+				}
+				if (hits != null && !hits.isEmpty() && hits.get(0).truncated) {
+					warn(getString("gb.codeSearchTruncated"));
+				}
+			} else {
+				hits = app().repositories().search(query, page, pageSize, searchRepositories);
+			}
+			if (hits != null) {
+				results.addAll(hits);
+			}
 		}
 
 		// results header
@@ -255,6 +279,7 @@ public class LuceneSearchPage extends RootPage {
 		PageParameters pagerParams = new PageParameters();
 		pagerParams.put("repositories", StringUtils.flattenStrings(repositoriesModel.getObject()));
 		pagerParams.put("query", queryModel.getObject());
+		pagerParams.put("code", codeModel.getObject());
 
 		boolean showPager = false;
 		int totalPages = 0;
@@ -35,13 +35,13 @@ import com.gitblit.models.ProjectModel;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.servlet.SyndicationServlet;
-import com.gitblit.utils.MarkdownUtils;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.wicket.CacheControl;
 import com.gitblit.wicket.CacheControl.LastModified;
 import com.gitblit.wicket.GitBlitWebApp;
 import com.gitblit.wicket.GitBlitWebSession;
 import com.gitblit.wicket.GitblitRedirectException;
+import com.gitblit.wicket.MarkupProcessor;
 import com.gitblit.wicket.WicketUtils;
 import com.gitblit.wicket.panels.FilterableRepositoryList;
 
@@ -246,7 +246,8 @@ public class ProjectPage extends DashboardPage {
 		if (!StringUtils.isEmpty(markdown)) {
 			// Read user-supplied message
 			try {
-				message = MarkdownUtils.transformMarkdown(markdown);
+				MarkupProcessor processor = new MarkupProcessor(app().settings(), app().xssFilter(), app().markupCache());
+				message = processor.transformMarkdown(markdown);
 			} catch (Throwable t) {
 				message = getString("gb.failedToRead") + " " + markdown;
 				warn(message, t);
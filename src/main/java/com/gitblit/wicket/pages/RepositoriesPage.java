@@ -21,7 +21,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.wicket.Component;
@@ -33,7 +32,7 @@ import com.gitblit.Keys;
 import com.gitblit.models.Menu.ParameterMenuItem;
 import com.gitblit.models.NavLink;
 import com.gitblit.models.NavLink.DropDownPageMenuNavLink;
-import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.utils.MarkdownUtils;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.wicket.CacheControl;
@@ -81,19 +80,11 @@ public class RepositoriesPage extends RootPage {
 		add(repositoriesMessage);
 
 		// conditionally include personal repositories in this page
-		List<RepositoryModel> repositories = getRepositories(params);
-		if (!app().settings().getBoolean(Keys.web.includePersonalRepositories, true)) {
-			Iterator<RepositoryModel> itr = repositories.iterator();
-			while (itr.hasNext()) {
-				RepositoryModel rm = itr.next();
-				if (rm.isPersonalRepository()) {
-					itr.remove();
-				}
-			}
-		}
+		RepositoryQuery query = getRepositoryQuery(params);
+		query.includePersonal = app().settings().getBoolean(Keys.web.includePersonalRepositories, true);
 
 		RepositoriesPanel repositoriesPanel = new RepositoriesPanel("repositoriesPanel", showAdmin,
-				true, repositories, true, getAccessRestrictions());
+				true, query, true, getAccessRestrictions());
 		// push the panel down if we are hiding the admin controls and the
 		// welcome message
 		if (!showAdmin && !repositoriesMessage.isVisible()) {
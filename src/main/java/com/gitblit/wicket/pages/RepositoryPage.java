@@ -66,6 +66,7 @@ import com.gitblit.utils.ModelUtils;
 import com.gitblit.utils.RefLogUtils;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.wicket.CacheControl;
+import com.gitblit.wicket.DetachableRepositoryModel;
 import com.gitblit.wicket.GitBlitWebSession;
 import com.gitblit.wicket.SessionlessForm;
 import com.gitblit.wicket.WicketUtils;
@@ -84,7 +85,7 @@ public abstract class RepositoryPage extends RootPage {
 
 	private transient Repository r;
 
-	private RepositoryModel m;
+	private DetachableRepositoryModel m;
 
 	private Map<String, SubmoduleModel> submodules;
 
@@ -456,9 +457,18 @@ public abstract class RepositoryPage extends RootPage {
 				}
 				return null;
 			}
-			m = model;
+			m = new DetachableRepositoryModel(model);
 		}
-		return m;
+		return m.getObject();
+	}
+
+	@Override
+	protected void onDetach() {
+		// the repository model is reloaded by name for the next request
+		if (m != null) {
+			m.detach();
+		}
+		super.onDetach();
 	}
 
 	protected String getRepositoryName() {
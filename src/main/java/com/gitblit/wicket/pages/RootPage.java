@@ -66,6 +66,7 @@ import com.gitblit.models.Menu.ToggleMenuItem;
 import com.gitblit.models.NavLink;
 import com.gitblit.models.NavLink.PageNavLink;
 import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.models.TeamModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.utils.ModelUtils;
@@ -313,6 +314,14 @@ public abstract class RootPage extends BasePage {
 		return repositoryModels;
 	}
 
+	@Override
+	protected void onDetach() {
+		super.onDetach();
+		// the repository models are reloaded for the next request, replace
+		// the list because the panels of the page may reference it
+		repositoryModels = new ArrayList<RepositoryModel>();
+	}
+
 	protected void addDropDownMenus(List<NavLink> navLinks) {
 
 	}
@@ -550,6 +559,65 @@ public abstract class RootPage extends BasePage {
 		return list;
 	}
 
+	/**
+	 * Returns the repository query for the repository filter parameters.  The
+	 * query selects the same repositories as {@link #getRepositories(PageParameters)}
+	 * but it is answered by the repository index.
+	 *
+	 * @param params
+	 * @return a repository query
+	 */
+	protected RepositoryQuery getRepositoryQuery(PageParameters params) {
+		RepositoryQuery query = new RepositoryQuery();
+		if (params == null) {
+			return query;
+		}
+
+		String projectName = WicketUtils.getProjectName(params);
+		String userName = WicketUtils.getUsername(params);
+		if (StringUtils.isEmpty(projectName)) {
+			if (!StringUtils.isEmpty(userName)) {
+				projectName = ModelUtils.getPersonalPath(userName);
+			}
+		}
+		if (!StringUtils.isEmpty(projectName)) {
+			query.project = projectName;
+		}
+		String repositoryName = WicketUtils.getRepositoryName(params);
+		if (!StringUtils.isEmpty(repositoryName)) {
+			query.repository = repositoryName;
+		}
+		String regex = WicketUtils.getRegEx(params);
+		if (!StringUtils.isEmpty(regex)) {
+			query.regex = regex;
+		}
+		String set = WicketUtils.getSet(params);
+		if (!StringUtils.isEmpty(set)) {
+			query.sets.addAll(StringUtils.getStringsFromValue(set, ","));
+		}
+		String team = WicketUtils.getTeam(params);
+		if (!StringUtils.isEmpty(team)) {
+			query.teams.addAll(StringUtils.getStringsFromValue(team, ","));
+		}
+
+		// time-filter the list
+		int daysBack = params.getInt("db", 0);
+		int maxDaysBack = app().settings().getInteger(Keys.web.activityDurationMaximum, 30);
+		if (daysBack > 0) {
+			if (maxDaysBack > 0 && daysBack > maxDaysBack) {
+				daysBack = maxDaysBack;
+			}
+			Calendar cal = Calendar.getInstance();
+			cal.set(Calendar.HOUR_OF_DAY, 0);
+			cal.set(Calendar.MINUTE, 0);
+			cal.set(Calendar.SECOND, 0);
+			cal.set(Calendar.MILLISECOND, 0);
+			cal.add(Calendar.DATE, -1 * daysBack);
+			query.since = cal.getTime();
+		}
+		return query;
+	}
+
 	/**
 	 * Inline login form.
 	 */
@@ -49,6 +49,8 @@ import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.data.DataView;
 import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.protocol.http.RequestUtils;
 import org.apache.wicket.protocol.http.WebRequest;
@@ -92,6 +94,8 @@ import com.gitblit.utils.MarkdownUtils;
 import com.gitblit.utils.RefLogUtils;
 import com.gitblit.utils.StringUtils;
 import com.gitblit.utils.TimeUtils;
+import com.gitblit.wicket.DetachableListDataProvider;
+import com.gitblit.wicket.DetachableTicketModel;
 import com.gitblit.wicket.GitBlitWebSession;
 import com.gitblit.wicket.TicketsUI;
 import com.gitblit.wicket.WicketUtils;
@@ -118,7 +122,7 @@ public class TicketPage extends RepositoryPage {
 
 	final int avatarWidth = 40;
 
-	final TicketModel ticket;
+	private final IModel<TicketModel> ticketModel;
 
 	public TicketPage(PageParameters params) {
 		super(params);
@@ -127,21 +131,18 @@ public class TicketPage extends RepositoryPage {
 		final RepositoryModel repository = getRepositoryModel();
 		final String id = WicketUtils.getObject(params);
 		long ticketId = Long.parseLong(id);
-		ticket = app().tickets().getTicket(repository, ticketId);
+		final TicketModel ticket = app().tickets().getTicket(repository, ticketId);
 
 		if (ticket == null) {
 			// ticket not found
 			throw new RestartResponseException(TicketsPage.class, WicketUtils.newRepositoryParameter(repositoryName));
 		}
+		ticketModel = new DetachableTicketModel(repository.name, ticket);
 
 		final List<Change> revisions = new ArrayList<Change>();
 		List<Change> comments = new ArrayList<Change>();
 		List<Change> statusChanges = new ArrayList<Change>();
-		List<Change> discussion = new ArrayList<Change>();
 		for (Change change : ticket.changes) {
-			if (change.hasComment() || (change.isStatusChange() && (change.getStatus() != Status.New))) {
-				discussion.add(change);
-			}
 			if (change.hasComment()) {
 				comments.add(change);
 			}
@@ -308,7 +309,15 @@ public class TicketPage extends RepositoryPage {
 			List<String> participants = ticket.getParticipants();
 			add(new Label("participantsLabel", MessageFormat.format(getString(participants.size() > 1 ? "gb.nParticipants" : "gb.oneParticipant"),
 					"<b>" + participants.size() + "</b>")).setEscapeModelStrings(false));
-			ListDataProvider<String> participantsDp = new ListDataProvider<String>(participants);
+			IModel<List<String>> participantsModel = new TicketListModel<String>(participants) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected List<String> load(TicketModel ticket) {
+					return ticket.getParticipants();
+				}
+			};
+			DetachableListDataProvider<String> participantsDp = new DetachableListDataProvider<String>(participantsModel);
 			DataView<String> participantsView = new DataView<String>("participants", participantsDp) {
 				private static final long serialVersionUID = 1L;
 
@@ -380,10 +389,10 @@ public class TicketPage extends RepositoryPage {
 								Status status = getModel().getObject();
 								Change change = new Change(user.username);
 								change.setField(Field.status, status);
-								if (!ticket.isWatching(user.username)) {
+								if (!getTicket().isWatching(user.username)) {
 									change.watch(user.username);
 								}
-								TicketModel update = app().tickets().updateTicket(repository, ticket.number, change);
+								TicketModel update = app().tickets().updateTicket(getRepositoryModel(), getTicket().number, change);
 								app().tickets().createNotifier().sendMailing(update);
 								redirectTo(TicketsPage.class, getPageParameters());
 							}
@@ -440,14 +449,14 @@ public class TicketPage extends RepositoryPage {
 								Change change = new Change(user.username);
 								change.setField(Field.responsible, responsible.username);
 								if (!StringUtils.isEmpty(responsible.username)) {
-									if (!ticket.isWatching(responsible.username)) {
+									if (!getTicket().isWatching(responsible.username)) {
 										change.watch(responsible.username);
 									}
 								}
-								if (!ticket.isWatching(user.username)) {
+								if (!getTicket().isWatching(user.username)) {
 									change.watch(user.username);
 								}
-								TicketModel update = app().tickets().updateTicket(repository, ticket.number, change);
+								TicketModel update = app().tickets().updateTicket(getRepositoryModel(), getTicket().number, change);
 								app().tickets().createNotifier().sendMailing(update);
 								redirectTo(TicketsPage.class, getPageParameters());
 							}
@@ -489,10 +498,10 @@ public class TicketPage extends RepositoryPage {
 								} else {
 									change.setField(Field.milestone, milestone.name);
 								}
-								if (!ticket.isWatching(user.username)) {
+								if (!getTicket().isWatching(user.username)) {
 									change.watch(user.username);
 								}
-								TicketModel update = app().tickets().updateTicket(repository, ticket.number, change);
+								TicketModel update = app().tickets().updateTicket(getRepositoryModel(), getTicket().number, change);
 								app().tickets().createNotifier().sendMailing(update);
 								redirectTo(TicketsPage.class, getPageParameters());
 							}
@@ -567,12 +576,12 @@ public class TicketPage extends RepositoryPage {
 				@Override
 				public void onClick(AjaxRequestTarget target) {
 					Change change = new Change(user.username);
-					if (ticket.isVoter(user.username)) {
+					if (getTicket().isVoter(user.username)) {
 						change.unvote(user.username);
 					} else {
 						change.vote(user.username);
 					}
-					app().tickets().updateTicket(repository, ticket.number, change);
+					app().tickets().updateTicket(getRepositoryModel(), getTicket().number, change);
 					redirectTo(TicketsPage.class, getPageParameters());
 				}
 			};
@@ -607,12 +616,12 @@ public class TicketPage extends RepositoryPage {
 				@Override
 				public void onClick(AjaxRequestTarget target) {
 					Change change = new Change(user.username);
-					if (ticket.isWatching(user.username)) {
+					if (getTicket().isWatching(user.username)) {
 						change.unwatch(user.username);
 					} else {
 						change.watch(user.username);
 					}
-					app().tickets().updateTicket(repository, ticket.number, change);
+					app().tickets().updateTicket(getRepositoryModel(), getTicket().number, change);
 					redirectTo(TicketsPage.class, getPageParameters());
 				}
 			};
@@ -633,7 +642,7 @@ public class TicketPage extends RepositoryPage {
 			public void populateItem(final Item<String> item) {
 				final String value = item.getModelObject();
 				Label label = new Label("label", value);
-				TicketLabel tLabel = app().tickets().getLabel(repository, value);
+				TicketLabel tLabel = app().tickets().getLabel(getRepositoryModel(), value);
 				String background = MessageFormat.format("background-color:{0};", tLabel.color);
 				label.add(new SimpleAttributeModifier("style", background));
 				item.add(label);
@@ -650,7 +659,15 @@ public class TicketPage extends RepositoryPage {
 			add(new Label("discussion").setVisible(false));
 		} else {
 			Fragment discussionFragment = new Fragment("discussion", "discussionFragment", this);
-			ListDataProvider<Change> discussionDp = new ListDataProvider<Change>(discussion);
+			IModel<List<Change>> discussionModel = new TicketListModel<Change>(getDiscussion(ticket)) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected List<Change> load(TicketModel ticket) {
+					return getDiscussion(ticket);
+				}
+			};
+			DetachableListDataProvider<Change> discussionDp = new DetachableListDataProvider<Change>(discussionModel);
 			DataView<Change> discussionView = new DataView<Change>("discussion", discussionDp) {
 				private static final long serialVersionUID = 1L;
 
@@ -665,8 +682,8 @@ public class TicketPage extends RepositoryPage {
 
 						// identify the merged patch, it is likely the last
 						Patchset mergedPatch = null;
-						for (Change c : revisions) {
-							if (c.patchset.tip.equals(resolvedBy)) {
+						for (Change c : getTicket().changes) {
+							if (c.hasPatchset() && c.patchset.tip.equals(resolvedBy)) {
 								mergedPatch = c.patchset;
 								break;
 							}
@@ -686,7 +703,7 @@ public class TicketPage extends RepositoryPage {
 						mergeFragment.add(new LinkPanel("commitLink", null, commitLink,
 								CommitPage.class, WicketUtils.newObjectParameter(repositoryName, resolvedBy)));
 						mergeFragment.add(new Label("toBranch", MessageFormat.format(getString("gb.toBranch"),
-								"<b>" + ticket.mergeTo + "</b>")).setEscapeModelStrings(false));
+								"<b>" + getTicket().mergeTo + "</b>")).setEscapeModelStrings(false));
 						addUserAttributions(mergeFragment, entry, 0);
 						addDateAttributions(mergeFragment, entry);
 
@@ -746,7 +763,7 @@ public class TicketPage extends RepositoryPage {
 			AvatarImage img = new AvatarImage("newCommentAvatar", user.username, user.emailAddress,
 					"gravatar-round", avatarWidth, true);
 			newComment.add(img);
-			CommentPanel commentPanel = new CommentPanel("commentPanel", user, ticket, null, TicketsPage.class);
+			CommentPanel commentPanel = new CommentPanel("commentPanel", user, ticketModel, null, TicketsPage.class);
 			commentPanel.setRepository(repositoryName);
 			newComment.add(commentPanel);
 			add(newComment);
@@ -848,10 +865,15 @@ public class TicketPage extends RepositoryPage {
 		 * ACTIVITY TAB
 		 */
 		Fragment revisionHistory = new Fragment("activity", "activityFragment", this);
-		List<Change> events = new ArrayList<Change>(ticket.changes);
-		Collections.sort(events);
-		Collections.reverse(events);
-		ListDataProvider<Change> eventsDp = new ListDataProvider<Change>(events);
+		IModel<List<Change>> eventsModel = new TicketListModel<Change>(getEvents(ticket)) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<Change> load(TicketModel ticket) {
+				return getEvents(ticket);
+			}
+		};
+		DetachableListDataProvider<Change> eventsDp = new DetachableListDataProvider<Change>(eventsModel);
 		DataView<Change> eventsView = new DataView<Change>("event", eventsDp) {
 			private static final long serialVersionUID = 1L;
 
@@ -892,9 +914,9 @@ public class TicketPage extends RepositoryPage {
 					}
 					item.add(typeLabel);
 
-					Link<Void> deleteLink = createDeletePatchsetLink(repository, patchset);
+					Link<Void> deleteLink = createDeletePatchsetLink(patchset);
 					
-					if (user.canDeleteRef(repository)) {
+					if (user.canDeleteRef(getRepositoryModel())) {
 						item.add(deleteLink.setVisible(patchset.canDelete));
 					} else {
 						item.add(deleteLink.setVisible(false));
@@ -976,7 +998,7 @@ public class TicketPage extends RepositoryPage {
 					if (event.isStatusChange()) {
 					switch (event.getStatus()) {
 					case New:
-						if (ticket.isProposal()) {
+						if (getTicket().isProposal()) {
 							what = getString("gb.proposedThisChange");
 						} else {
 							what = getString("gb.createdThisTicket");
@@ -1075,6 +1097,7 @@ public class TicketPage extends RepositoryPage {
 	}
 
 	protected String getProposeWorkflow(String resource, String url, long ticketId) {
+		TicketModel ticket = getTicket();
 		String md = readResource(resource);
 		md = md.replace("${url}", url);
 		md = md.replace("${repo}", StringUtils.getLastPathElement(StringUtils.stripDotGit(repositoryName)));
@@ -1090,6 +1113,7 @@ public class TicketPage extends RepositoryPage {
 	}
 
 	protected Fragment createPatchsetPanel(String wicketId, RepositoryModel repository, UserModel user) {
+		TicketModel ticket = getTicket();
 		final Patchset currentPatchset = ticket.getCurrentPatchset();
 		List<Patchset> patchsets = new ArrayList<Patchset>(ticket.getPatchsetRevisions(currentPatchset.number));
 		patchsets.remove(currentPatchset);
@@ -1130,8 +1154,17 @@ public class TicketPage extends RepositoryPage {
 
 
 		// reviews
-		List<Change> reviews = ticket.getReviews(currentPatchset);
-		ListDataProvider<Change> reviewsDp = new ListDataProvider<Change>(reviews);
+		final int patchsetNumber = currentPatchset.number;
+		final int patchsetRev = currentPatchset.rev;
+		IModel<List<Change>> reviewsModel = new TicketListModel<Change>(ticket.getReviews(currentPatchset)) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<Change> load(TicketModel ticket) {
+				return ticket.getReviews(ticket.getPatchset(patchsetNumber, patchsetRev));
+			}
+		};
+		DetachableListDataProvider<Change> reviewsDp = new DetachableListDataProvider<Change>(reviewsModel);
 		DataView<Change> reviewsView = new DataView<Change>("reviews", reviewsDp) {
 			private static final long serialVersionUID = 1L;
 
@@ -1251,7 +1284,7 @@ public class TicketPage extends RepositoryPage {
 					String displayPath = entry.path;
 					String path = entry.path;
 					if (entry.isSymlink()) {
-						RevCommit commit = JGitUtils.getCommit(getRepository(), PatchsetCommand.getTicketBranch(ticket.number));
+						RevCommit commit = JGitUtils.getCommit(getRepository(), PatchsetCommand.getTicketBranch(getTicket().number));
 						path = JGitUtils.getStringContent(getRepository(), commit.getTree(), path);
 						displayPath = entry.path + " -> " + path;
 					}
@@ -1353,6 +1386,7 @@ public class TicketPage extends RepositoryPage {
 	}
 
 	protected void review(Score score) {
+		TicketModel ticket = getTicket();
 		UserModel user = GitBlitWebSession.get().getUser();
 		Patchset ps = ticket.getCurrentPatchset();
 		Change change = new Change(user.username);
@@ -1371,6 +1405,7 @@ public class TicketPage extends RepositoryPage {
 	}
 
 	protected void addGitCheckoutInstructions(UserModel user, RepositoryModel repository, MarkupContainer panel) {
+		TicketModel ticket = getTicket();
 		panel.add(new Label("gitStep1", MessageFormat.format(getString("gb.stepN"), 1)));
 		panel.add(new Label("gitStep2", MessageFormat.format(getString("gb.stepN"), 2)));
 
@@ -1387,6 +1422,7 @@ public class TicketPage extends RepositoryPage {
 	}
 
 	protected void addPtCheckoutInstructions(UserModel user, RepositoryModel repository, MarkupContainer panel) {
+		TicketModel ticket = getTicket();
 		String step1 = MessageFormat.format("pt checkout {0,number,0}", ticket.number);
 		panel.add(new Label("ptPreStep", step1));
 		panel.add(createCopyFragment("ptCopyStep", step1));
@@ -1401,6 +1437,7 @@ public class TicketPage extends RepositoryPage {
 	 * @param repository
 	 */
 	protected Component createMergePanel(UserModel user, RepositoryModel repository) {
+		TicketModel ticket = getTicket();
 		Patchset patchset = ticket.getCurrentPatchset();
 		if (patchset == null) {
 			// no patchset to merge
@@ -1432,8 +1469,8 @@ public class TicketPage extends RepositoryPage {
 						public void onClick(AjaxRequestTarget target) {
 
 							// ensure the patchset is still current AND not vetoed
-							Patchset patchset = ticket.getCurrentPatchset();
-							final TicketModel refreshedTicket = app().tickets().getTicket(getRepositoryModel(), ticket.number);
+							Patchset patchset = getTicket().getCurrentPatchset();
+							final TicketModel refreshedTicket = app().tickets().getTicket(getRepositoryModel(), getTicket().number);
 							if (patchset.equals(refreshedTicket.getCurrentPatchset())) {
 								// patchset is current, check for recent veto
 								if (!refreshedTicket.isVetoed(patchset)) {
@@ -1454,7 +1491,7 @@ public class TicketPage extends RepositoryPage {
 												rp.sendAll();
 											} else {
 												// merge failure
-												String msg = MessageFormat.format("Failed to merge ticket {0,number,0}: {1}", ticket.number, result.name());
+												String msg = MessageFormat.format("Failed to merge ticket {0,number,0}: {1}", getTicket().number, result.name());
 												logger().error(msg);
 												GitBlitWebSession.get().cacheErrorMessage(msg);
 											}
@@ -1463,13 +1500,13 @@ public class TicketPage extends RepositoryPage {
 								} else {
 									// vetoed patchset
 									String msg = MessageFormat.format("Can not merge ticket {0,number,0}, patchset {1,number,0} has been vetoed!",
-											ticket.number, patchset.number);
+											getTicket().number, patchset.number);
 									GitBlitWebSession.get().cacheErrorMessage(msg);
 									logger().error(msg);
 								}
 							} else {
 								// not current patchset
-								String msg = MessageFormat.format("Can not merge ticket {0,number,0}, the patchset has been updated!", ticket.number);
+								String msg = MessageFormat.format("Can not merge ticket {0,number,0}, the patchset has been updated!", getTicket().number);
 								GitBlitWebSession.get().cacheErrorMessage(msg);
 								logger().error(msg);
 							}
@@ -1535,6 +1572,7 @@ public class TicketPage extends RepositoryPage {
 	}
 
 	protected Component getMergeInstructions(UserModel user, RepositoryModel repository, String markupId, String infoKey) {
+		TicketModel ticket = getTicket();
 		Fragment cmd = new Fragment(markupId, "commandlineMergeFragment", this);
 		cmd.add(new Label("instructions", MessageFormat.format(getString(infoKey), ticket.mergeTo)));
 
@@ -1638,9 +1676,86 @@ public class TicketPage extends RepositoryPage {
 
 	@Override
 	protected String getPageTitle(String repositoryName) {
+		TicketModel ticket = getTicket();
 		return "#" + ticket.number + " - " + ticket.title;
 	}
 
+	/**
+	 * Returns the ticket of this page.  The ticket is not stored with the
+	 * page, it is reloaded from the ticket service after the page is detached.
+	 *
+	 * @return the ticket
+	 */
+	protected TicketModel getTicket() {
+		return ticketModel.getObject();
+	}
+
+	@Override
+	protected void onDetach() {
+		ticketModel.detach();
+		super.onDetach();
+	}
+
+	/**
+	 * Model of a list which is derived from the ticket of this page, the list
+	 * is derived again from the reloaded ticket after the page is detached.
+	 *
+	 * @param <T>
+	 */
+	private abstract class TicketListModel<T> extends LoadableDetachableModel<List<T>> {
+
+		private static final long serialVersionUID = 1L;
+
+		TicketListModel(List<T> list) {
+			super(list);
+		}
+
+		@Override
+		protected List<T> load() {
+			TicketModel ticket = getTicket();
+			if (ticket == null) {
+				return new ArrayList<T>();
+			}
+			return load(ticket);
+		}
+
+		protected abstract List<T> load(TicketModel ticket);
+
+		@Override
+		protected void onDetach() {
+			ticketModel.detach();
+		}
+	}
+
+	/**
+	 * Returns the comments and the status changes of the discussion.
+	 *
+	 * @param ticket
+	 * @return the changes of the discussion
+	 */
+	private static List<Change> getDiscussion(TicketModel ticket) {
+		List<Change> discussion = new ArrayList<Change>();
+		for (Change change : ticket.changes) {
+			if (change.hasComment() || (change.isStatusChange() && (change.getStatus() != Status.New))) {
+				discussion.add(change);
+			}
+		}
+		return discussion;
+	}
+
+	/**
+	 * Returns the changes of the ticket, the latest first.
+	 *
+	 * @param ticket
+	 * @return the events of the activity tab
+	 */
+	private static List<Change> getEvents(TicketModel ticket) {
+		List<Change> events = new ArrayList<Change>(ticket.changes);
+		Collections.sort(events);
+		Collections.reverse(events);
+		return events;
+	}
+
 	protected Fragment createCopyFragment(String wicketId, String text) {
 		if (app().settings().getBoolean(Keys.web.allowFlashCopyToClipboard, true)) {
 			// javascript: browser JS API based copy to clipboard
@@ -1660,13 +1775,14 @@ public class TicketPage extends RepositoryPage {
 		}
 	}
 	
-	private Link<Void> createDeletePatchsetLink(final RepositoryModel repositoryModel, final Patchset patchset)
+	private Link<Void> createDeletePatchsetLink(final Patchset patchset)
 	{
 		Link<Void> deleteLink = new Link<Void>("deleteRevision") {
 			private static final long serialVersionUID = 1L;
 
 			@Override
 			public void onClick() {
+				RepositoryModel repositoryModel = getRepositoryModel();
 				Repository r = app().repositories().getRepository(repositoryModel.name);
 				UserModel user = GitBlitWebSession.get().getUser();
 				
@@ -1680,9 +1796,9 @@ public class TicketPage extends RepositoryPage {
 				}
 				
 				//Construct the ref name based on the patchset
-				String ticketShard = String.format("%02d", ticket.number);
+				String ticketShard = String.format("%02d", getTicket().number);
 				ticketShard = ticketShard.substring(ticketShard.length() - 2);
-				final String refName = String.format("%s%s/%d/%d", Constants.R_TICKETS_PATCHSETS, ticketShard, ticket.number, patchset.number);
+				final String refName = String.format("%s%s/%d/%d", Constants.R_TICKETS_PATCHSETS, ticketShard, getTicket().number, patchset.number);
 
 				Ref ref = null;
 				boolean success = true;
@@ -1705,7 +1821,7 @@ public class TicketPage extends RepositoryPage {
 							RefLogUtils.deleteRef(user, r, ref);
 						}
 
-						TicketModel updatedTicket = app().tickets().deletePatchset(ticket, patchset, user.username);
+						TicketModel updatedTicket = app().tickets().deletePatchset(getTicket(), patchset, user.username);
 												
 						if (updatedTicket == null) {
 							success = false;
@@ -1721,7 +1837,7 @@ public class TicketPage extends RepositoryPage {
 				if (success) {
 					getSession().info(MessageFormat.format(getString("gb.deletePatchsetSuccess"), patchset.number));
 					logger().info(MessageFormat.format("{0} deleted patchset {1} from ticket {2}", 
-							user.username, patchset.number, ticket.number));
+							user.username, patchset.number, getTicket().number));
 				} else {
 					getSession().error(MessageFormat.format(getString("gb.deletePatchsetFailure"),patchset.number));
 				}
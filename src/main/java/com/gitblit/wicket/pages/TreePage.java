@@ -34,12 +34,14 @@ import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 
+import com.gitblit.Constants;
 import com.gitblit.models.PathModel;
 import com.gitblit.models.SubmoduleModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.servlet.RawServlet;
 import com.gitblit.utils.ByteFormat;
 import com.gitblit.utils.JGitUtils;
+import com.gitblit.utils.StringUtils;
 import com.gitblit.wicket.CacheControl;
 import com.gitblit.wicket.GitBlitWebSession;
 import com.gitblit.wicket.CacheControl.LastModified;
@@ -60,6 +62,7 @@ public class TreePage extends RepositoryPage {
 		Repository r = getRepository();
 		RevCommit commit = getCommit();
 		List<PathModel> paths = JGitUtils.getFilesInPath2(r, path, commit);
+		app().repositories().setLastCommits(repositoryName, r, commit, path, paths);
 
 		// tree page links
 		add(new BookmarkablePageLink<Void>("historyLink", HistoryPage.class,
@@ -101,6 +104,22 @@ public class TreePage extends RepositoryPage {
 				item.add(WicketUtils.setHtmlTooltip(new Label("filestore", ""), getString("gb.filestore"))
 									.setVisible(entry.isFilestoreItem()));
 
+				// last commit which changed the entry
+				if (entry.lastCommitId == null) {
+					item.add(new Label("lastCommit", ""));
+					item.add(new Label("lastCommitDate", ""));
+				} else {
+					String trimmedMessage = StringUtils.trimString(entry.lastCommitMessage, Constants.LEN_SHORTLOG_REFS);
+					LinkPanel lastCommit = new LinkPanel("lastCommit", "list", trimmedMessage, CommitPage.class,
+							WicketUtils.newObjectParameter(repositoryName, entry.lastCommitId));
+					if (!entry.lastCommitMessage.equals(trimmedMessage)) {
+						WicketUtils.setHtmlTooltip(lastCommit, entry.lastCommitMessage);
+					}
+					item.add(lastCommit);
+					item.add(WicketUtils.createDateLabel("lastCommitDate", entry.lastCommitDate, getTimeZone(),
+							getTimeUtils()));
+				}
+
 				if (entry.isParentPath) {
 					// parent .. path
 					item.add(WicketUtils.newBlankImage("pathIcon"));
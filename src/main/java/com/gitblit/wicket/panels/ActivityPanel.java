@@ -21,7 +21,9 @@ import java.util.List;
 import org.apache.wicket.markup.html.link.BookmarkablePageLink;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.data.DataView;
-import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.util.ListModel;
 import org.eclipse.jgit.lib.Repository;
 
 import com.gitblit.Constants;
@@ -29,6 +31,7 @@ import com.gitblit.Keys;
 import com.gitblit.models.Activity;
 import com.gitblit.models.RepositoryCommit;
 import com.gitblit.utils.StringUtils;
+import com.gitblit.wicket.DetachableListDataProvider;
 import com.gitblit.wicket.WicketUtils;
 import com.gitblit.wicket.pages.CommitDiffPage;
 import com.gitblit.wicket.pages.CommitPage;
@@ -48,13 +51,23 @@ public class ActivityPanel extends BasePanel {
 	private static final long serialVersionUID = 1L;
 
 	public ActivityPanel(String wicketId, List<Activity> recentActivity) {
-		super(wicketId);
+		this(wicketId, new ListModel<Activity>(sort(recentActivity)));
+	}
 
-		Collections.sort(recentActivity);
+	/**
+	 * Creates an activity panel for the sorted activity of the model.  The
+	 * panel does not keep the activity in the page store if the model is a
+	 * detachable model.
+	 *
+	 * @param wicketId
+	 * @param recentActivity
+	 */
+	public ActivityPanel(String wicketId, IModel<List<Activity>> recentActivity) {
+		super(wicketId);
 
 		final int shortHashLen = app().settings().getInteger(Keys.web.shortCommitIdLength, 6);
 		DataView<Activity> activityView = new DataView<Activity>("activity",
-				new ListDataProvider<Activity>(recentActivity)) {
+				new DetachableListDataProvider<Activity>(recentActivity)) {
 			private static final long serialVersionUID = 1L;
 
 			@Override
@@ -63,8 +76,17 @@ public class ActivityPanel extends BasePanel {
 				activityItem.add(WicketUtils.createDatestampLabel("title", entry.startDate, getTimeZone(), getTimeUtils()));
 
 				// display the commits in chronological order
+				IModel<List<RepositoryCommit>> commitsModel = new LoadableDetachableModel<List<RepositoryCommit>>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected List<RepositoryCommit> load() {
+						return activityItem.getModelObject().getCommits();
+					}
+				};
 				DataView<RepositoryCommit> commits = new DataView<RepositoryCommit>("commit",
-						new ListDataProvider<RepositoryCommit>(entry.getCommits())) {
+						new DetachableListDataProvider<RepositoryCommit>(commitsModel)) {
 					private static final long serialVersionUID = 1L;
 
 					@Override
@@ -147,4 +169,9 @@ public class ActivityPanel extends BasePanel {
 		};
 		add(activityView);
 	}
+
+	private static List<Activity> sort(List<Activity> recentActivity) {
+		Collections.sort(recentActivity);
+		return recentActivity;
+	}
 }
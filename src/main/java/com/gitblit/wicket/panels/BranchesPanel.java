@@ -29,7 +29,8 @@ import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.data.DataView;
-import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.StringResourceModel;
 import org.apache.wicket.protocol.http.RequestUtils;
 import org.apache.wicket.request.target.basic.RedirectRequestTarget;
@@ -46,6 +47,7 @@ import com.gitblit.utils.CommitCache;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.RefLogUtils;
 import com.gitblit.utils.StringUtils;
+import com.gitblit.wicket.DetachableListDataProvider;
 import com.gitblit.wicket.GitBlitWebSession;
 import com.gitblit.wicket.WicketUtils;
 import com.gitblit.wicket.pages.BranchesPage;
@@ -66,31 +68,8 @@ public class BranchesPanel extends BasePanel {
 		super(wicketId);
 
 		// branches
-		List<RefModel> branches = new ArrayList<RefModel>();
-		UserModel user = GitBlitWebSession.get().getUser();
-		if (user == null) {
-			user = UserModel.ANONYMOUS;
-		}
-
-		List<RefModel> localBranches = JGitUtils.getLocalBranches(r, false, -1);
-		for (RefModel refModel : localBranches) {
-			if (user.canView(model, refModel.reference.getName())) {
-				branches.add(refModel);
-			}
-		}
-		if (model.showRemoteBranches) {
-			List<RefModel> remoteBranches = JGitUtils.getRemoteBranches(r, false, -1);
-			for (RefModel refModel : remoteBranches) {
-				if (user.canView(model, refModel.reference.getName())) {
-					branches.add(refModel);
-				}
-			}
-		}
-		Collections.sort(branches);
-		Collections.reverse(branches);
-		if (maxCount > 0 && branches.size() > maxCount) {
-			branches = new ArrayList<RefModel>(branches.subList(0, maxCount));
-		}
+		final String repositoryName = model.name;
+		List<RefModel> branches = getBranches(model, r, maxCount);
 
 		if (maxCount > 0) {
 			// summary page
@@ -105,7 +84,26 @@ public class BranchesPanel extends BasePanel {
 		// only allow delete if we have multiple branches
 		final boolean showDelete = showAdmin && branches.size() > 1;
 
-		ListDataProvider<RefModel> branchesDp = new ListDataProvider<RefModel>(branches);
+		// the branches are reloaded for the next request instead of being
+		// kept in the page store
+		IModel<List<RefModel>> branchesModel = new LoadableDetachableModel<List<RefModel>>(branches) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<RefModel> load() {
+				RepositoryModel repositoryModel = app().repositories().getRepositoryModel(repositoryName);
+				Repository repository = app().repositories().getRepository(repositoryName);
+				if (repositoryModel == null || repository == null) {
+					return new ArrayList<RefModel>();
+				}
+				try {
+					return getBranches(repositoryModel, repository, maxCount);
+				} finally {
+					repository.close();
+				}
+			}
+		};
+		DetachableListDataProvider<RefModel> branchesDp = new DetachableListDataProvider<RefModel>(branchesModel);
 		DataView<RefModel> branchesView = new DataView<RefModel>("branch", branchesDp) {
 			private static final long serialVersionUID = 1L;
 			int counter;
@@ -114,7 +112,7 @@ public class BranchesPanel extends BasePanel {
 			public void populateItem(final Item<RefModel> item) {
 				final RefModel entry = item.getModelObject();
 
-				PageParameters shortUniqRef = WicketUtils.newObjectParameter(model.name,
+				PageParameters shortUniqRef = WicketUtils.newObjectParameter(repositoryName,
 						Repository.shortenRefName(entry.getName()));
 
 				item.add(WicketUtils.createDateLabel("branchDate", entry.getDate(), getTimeZone(), getTimeUtils()));
@@ -124,7 +122,7 @@ public class BranchesPanel extends BasePanel {
 
 				String author = entry.getAuthorIdent().getName();
 				LinkPanel authorLink = new LinkPanel("branchAuthor", "list", author,
-						GitSearchPage.class, WicketUtils.newSearchParameter(model.name,
+						GitSearchPage.class, WicketUtils.newSearchParameter(repositoryName,
 								entry.getName(), author, Constants.SearchType.AUTHOR));
 				setPersonSearchTooltip(authorLink, author, Constants.SearchType.AUTHOR);
 				item.add(authorLink);
@@ -143,21 +141,21 @@ public class BranchesPanel extends BasePanel {
 					Fragment fragment = new Fragment("branchLinks", showDelete? "branchPageAdminLinks" : "branchPageLinks", this);
 					fragment.add(new BookmarkablePageLink<Void>("log", LogPage.class, shortUniqRef));
 					fragment.add(new BookmarkablePageLink<Void>("tree", TreePage.class, shortUniqRef));
-					String rawUrl = RawServlet.asLink(getContextUrl(), model.name, Repository.shortenRefName(entry.getName()), null);
+					String rawUrl = RawServlet.asLink(getContextUrl(), repositoryName, Repository.shortenRefName(entry.getName()), null);
 					fragment.add(new ExternalLink("raw", rawUrl));
 					fragment.add(new BookmarkablePageLink<Void>("metrics", MetricsPage.class, shortUniqRef));
 					fragment.add(new ExternalLink("syndication", SyndicationServlet.asLink(
-							getRequest().getRelativePathPrefixToContextRoot(), model.name,
+							getRequest().getRelativePathPrefixToContextRoot(), repositoryName,
 							Repository.shortenRefName(entry.getName()), 0)));
 					if (showDelete) {
-						fragment.add(createDeleteBranchLink(model, entry));
+						fragment.add(createDeleteBranchLink(repositoryName, entry));
 					}
 					item.add(fragment);
 				} else {
 					Fragment fragment = new Fragment("branchLinks", "branchPanelLinks", this);
 					fragment.add(new BookmarkablePageLink<Void>("log", LogPage.class, shortUniqRef));
 					fragment.add(new BookmarkablePageLink<Void>("tree", TreePage.class, shortUniqRef));
-					String rawUrl = RawServlet.asLink(getContextUrl(), model.name, Repository.shortenRefName(entry.getName()), null);
+					String rawUrl = RawServlet.asLink(getContextUrl(), repositoryName, Repository.shortenRefName(entry.getName()), null);
 					fragment.add(new ExternalLink("raw",  rawUrl));
 					item.add(fragment);
 				}
@@ -178,28 +176,61 @@ public class BranchesPanel extends BasePanel {
 						.equalsIgnoreCase("master"));
 	}
 
+	/**
+	 * Returns the branches of the repository which the current user may view,
+	 * most recently changed first.
+	 */
+	private static List<RefModel> getBranches(RepositoryModel model, Repository r, int maxCount) {
+		List<RefModel> branches = new ArrayList<RefModel>();
+		UserModel user = GitBlitWebSession.get().getUser();
+		if (user == null) {
+			user = UserModel.ANONYMOUS;
+		}
+
+		List<RefModel> localBranches = JGitUtils.getLocalBranches(r, false, -1);
+		for (RefModel refModel : localBranches) {
+			if (user.canView(model, refModel.reference.getName())) {
+				branches.add(refModel);
+			}
+		}
+		if (model.showRemoteBranches) {
+			List<RefModel> remoteBranches = JGitUtils.getRemoteBranches(r, false, -1);
+			for (RefModel refModel : remoteBranches) {
+				if (user.canView(model, refModel.reference.getName())) {
+					branches.add(refModel);
+				}
+			}
+		}
+		Collections.sort(branches);
+		Collections.reverse(branches);
+		if (maxCount > 0 && branches.size() > maxCount) {
+			branches = new ArrayList<RefModel>(branches.subList(0, maxCount));
+		}
+		return branches;
+	}
+
 	public BranchesPanel hideIfEmpty() {
 		setVisible(hasBranches);
 		return this;
 	}
 
-	private Link<Void> createDeleteBranchLink(final RepositoryModel repositoryModel, final RefModel entry)
+	private Link<Void> createDeleteBranchLink(final String repositoryName, RefModel entry)
 	{
+		final String branch = entry.getName();
 		Link<Void> deleteLink = new Link<Void>("deleteBranch") {
 			private static final long serialVersionUID = 1L;
 
 			@Override
 			public void onClick() {
-				Repository r = app().repositories().getRepository(repositoryModel.name);
+				Repository r = app().repositories().getRepository(repositoryName);
 				if (r == null) {
-					if (app().repositories().isCollectingGarbage(repositoryModel.name)) {
-						error(MessageFormat.format(getString("gb.busyCollectingGarbage"), repositoryModel.name));
+					if (app().repositories().isCollectingGarbage(repositoryName)) {
+						error(MessageFormat.format(getString("gb.busyCollectingGarbage"), repositoryName));
 					} else {
-						error(MessageFormat.format("Failed to find repository {0}", repositoryModel.name));
+						error(MessageFormat.format("Failed to find repository {0}", repositoryName));
 					}
 					return;
 				}
-				final String branch = entry.getName();
 				Ref ref = null;
 				try {
 					ref = r.getRef(branch);
@@ -212,7 +243,7 @@ public class BranchesPanel extends BasePanel {
 					boolean success = JGitUtils.deleteBranchRef(r, ref.getName());
 					if (success) {
 						// clear commit cache
-						CommitCache.instance().clear(repositoryModel.name, branch);
+						CommitCache.instance().clear(repositoryName, branch);
 
 						// optionally update reflog
 						if (RefLogUtils.hasRefLogBranch(r)) {
@@ -230,7 +261,7 @@ public class BranchesPanel extends BasePanel {
 				r.close();
 
 				// redirect to the owning page
-				PageParameters params = WicketUtils.newRepositoryParameter(repositoryModel.name);
+				PageParameters params = WicketUtils.newRepositoryParameter(repositoryName);
 				String relativeUrl = urlFor(getPage().getClass(), params).toString();
 				String absoluteUrl = RequestUtils.toAbsolutePath(relativeUrl);
 				getRequestCycle().setRequestTarget(new RedirectRequestTarget(absoluteUrl));
@@ -37,7 +37,7 @@ public class CommentPanel extends BasePanel {
 
 	final UserModel user;
 
-	final TicketModel ticket;
+	final IModel<TicketModel> ticketModel;
 
 	final Change change;
 
@@ -49,11 +49,11 @@ public class CommentPanel extends BasePanel {
 
 	private String repositoryName;
 
-	public CommentPanel(String id, final UserModel user, final TicketModel ticket,
+	public CommentPanel(String id, final UserModel user, final IModel<TicketModel> ticketModel,
 			final Change change, final Class<? extends BasePage> pageClass) {
 		super(id);
 		this.user = user;
-		this.ticket = ticket;
+		this.ticketModel = ticketModel;
 		this.change = change;
 		this.pageClass = pageClass;
 	}
@@ -71,7 +71,10 @@ public class CommentPanel extends BasePanel {
 			@Override
 			public void onSubmit(AjaxRequestTarget target, Form<?> form) {
 				String txt = markdownEditor.getText();
-				if (change == null) {
+				TicketModel ticket = ticketModel.getObject();
+				if (ticket == null) {
+					error("Failed to add comment!");
+				} else if (change == null) {
 					// new comment
 					Change newComment = new Change(user.username);
 					newComment.comment(txt);
@@ -108,7 +111,7 @@ public class CommentPanel extends BasePanel {
                 getRequestCycle().setRequestTarget(new RedirectRequestTarget(canonicalUrl));
             }
 			
-		}.setVisible(ticket != null && ticket.number > 0));
+		}.setVisible(ticketModel.getObject() != null && ticketModel.getObject().number > 0));
 
 		final IModel<String> markdownPreviewModel = Model.of();
 		markdownPreview = new Label("markdownPreview", markdownPreviewModel);
@@ -122,6 +125,12 @@ public class CommentPanel extends BasePanel {
 		add(markdownEditor);
 	}
 
+	@Override
+	protected void onDetach() {
+		super.onDetach();
+		ticketModel.detach();
+	}
+
 	public void setRepository(String repositoryName) {
 		this.repositoryName = repositoryName;
 		if (markdownEditor != null) {
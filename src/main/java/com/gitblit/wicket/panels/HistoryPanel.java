@@ -139,11 +139,11 @@ public class HistoryPanel extends BasePanel {
 		List<RevCommit> commits;
 		if (pageResults) {
 			// Paging result set
-			commits = JGitUtils.getRevLog(r, objectId, path, pageOffset * itemsPerPage,
-					itemsPerPage);
+			commits = app().repositories().getPathHistory(repositoryName, r, objectId, path,
+					pageOffset * itemsPerPage, itemsPerPage);
 		} else {
 			// Fixed size result set
-			commits = JGitUtils.getRevLog(r, objectId, path, 0, limit);
+			commits = app().repositories().getPathHistory(repositoryName, r, objectId, path, 0, limit);
 		}
 
 		// inaccurate way to determine if there are more commits.
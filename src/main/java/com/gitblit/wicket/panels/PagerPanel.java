@@ -17,13 +17,19 @@ package com.gitblit.wicket.panels;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.wicket.PageParameters;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.navigation.paging.IPageable;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.data.DataView;
+import org.apache.wicket.markup.repeater.data.IDataProvider;
 import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
 
 import com.gitblit.wicket.WicketUtils;
 import com.gitblit.wicket.pages.BasePage;
@@ -32,9 +38,110 @@ public class PagerPanel extends Panel {
 
 	private static final long serialVersionUID = 1L;
 
+	private final IPageable pageable;
+
 	public PagerPanel(String wicketId, final int currentPage, final int totalPages,
 			final Class<? extends BasePage> pageClass, final PageParameters baseParams) {
 		super(wicketId);
+		this.pageable = null;
+		List<PageObject> pages = getPages(currentPage, totalPages);
+
+		ListDataProvider<PageObject> pagesProvider = new ListDataProvider<PageObject>(pages);
+		final DataView<PageObject> pagesView = new DataView<PageObject>("page", pagesProvider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void populateItem(final Item<PageObject> item) {
+				PageObject pageItem = item.getModelObject();
+				PageParameters pageParams = new PageParameters(baseParams);
+				pageParams.put("pg", pageItem.page);
+				LinkPanel link = new LinkPanel("pageLink", null, pageItem.text, pageClass, pageParams);
+				link.setRenderBodyOnly(true);
+				item.add(link);
+				if (pageItem.page == currentPage || pageItem.page < 1 || pageItem.page > totalPages) {
+					WicketUtils.setCssClass(item, "disabled");
+					link.setEnabled(false);
+				}
+			}
+		};
+		add(pagesView);
+	}
+
+	/**
+	 * Creates a pager for a pageable component of this page, like a DataView.
+	 * The pager is hidden if the component has less than two pages.
+	 *
+	 * @param wicketId
+	 * @param pageable
+	 */
+	public PagerPanel(String wicketId, final IPageable pageable) {
+		super(wicketId);
+		this.pageable = pageable;
+
+		IDataProvider<PageObject> pagesProvider = new IDataProvider<PageObject>() {
+
+			private static final long serialVersionUID = 1L;
+
+			private List<PageObject> getPages() {
+				return PagerPanel.getPages(pageable.getCurrentPage() + 1, pageable.getPageCount());
+			}
+
+			@Override
+			public Iterator<PageObject> iterator(int first, int count) {
+				return getPages().subList(first, first + count).iterator();
+			}
+
+			@Override
+			public int size() {
+				return getPages().size();
+			}
+
+			@Override
+			public IModel<PageObject> model(PageObject object) {
+				return new Model<PageObject>(object);
+			}
+
+			@Override
+			public void detach() {
+			}
+		};
+
+		final DataView<PageObject> pagesView = new DataView<PageObject>("page", pagesProvider) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void populateItem(final Item<PageObject> item) {
+				final PageObject pageItem = item.getModelObject();
+				Link<Void> pageLink = new Link<Void>("link") {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public void onClick() {
+						pageable.setCurrentPage(pageItem.page - 1);
+					}
+				};
+				LinkPanel link = new LinkPanel("pageLink", null, pageItem.text, pageLink);
+				link.setRenderBodyOnly(true);
+				item.add(link);
+				if (pageItem.page == pageable.getCurrentPage() + 1) {
+					WicketUtils.setCssClass(item, "disabled");
+					pageLink.setEnabled(false);
+				}
+			}
+		};
+		add(pagesView);
+	}
+
+	@Override
+	public boolean isVisible() {
+		if (pageable == null) {
+			return super.isVisible();
+		}
+		return super.isVisible() && pageable.getPageCount() > 1;
+	}
+
+	private static List<PageObject> getPages(int currentPage, int totalPages) {
 		List<PageObject> pages = new ArrayList<PageObject>();
 		int[] deltas;
 		if (currentPage == 1) {
@@ -60,29 +167,10 @@ public class PagerPanel extends Panel {
 		if (totalPages > 0 && currentPage < totalPages) {
 			pages.add(new PageObject("\u2192", currentPage + 1));
 		}
-
-		ListDataProvider<PageObject> pagesProvider = new ListDataProvider<PageObject>(pages);
-		final DataView<PageObject> pagesView = new DataView<PageObject>("page", pagesProvider) {
-			private static final long serialVersionUID = 1L;
-
-			@Override
-			public void populateItem(final Item<PageObject> item) {
-				PageObject pageItem = item.getModelObject();
-				PageParameters pageParams = new PageParameters(baseParams);
-				pageParams.put("pg", pageItem.page);
-				LinkPanel link = new LinkPanel("pageLink", null, pageItem.text, pageClass, pageParams);
-				link.setRenderBodyOnly(true);
-				item.add(link);
-				if (pageItem.page == currentPage || pageItem.page < 1 || pageItem.page > totalPages) {
-					WicketUtils.setCssClass(item, "disabled");
-					link.setEnabled(false);
-				}
-			}
-		};
-		add(pagesView);
+		return pages;
 	}
 
-	private class PageObject implements Serializable {
+	private static class PageObject implements Serializable {
 
 		private static final long serialVersionUID = 1L;
 
@@ -44,11 +44,14 @@ import com.gitblit.Constants.AccessRestrictionType;
 import com.gitblit.Keys;
 import com.gitblit.models.ProjectModel;
 import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
 import com.gitblit.models.TreeNodeModel;
 import com.gitblit.models.UserModel;
 import com.gitblit.utils.ArrayUtils;
 import com.gitblit.utils.ModelUtils;
 import com.gitblit.utils.StringUtils;
+import com.gitblit.wicket.DetachableRepositoryModel;
+import com.gitblit.wicket.GitBlitWebApp;
 import com.gitblit.wicket.GitBlitWebSession;
 import com.gitblit.wicket.WicketUtils;
 import com.gitblit.wicket.pages.BasePage;
@@ -84,6 +87,23 @@ public class RepositoriesPanel extends BasePanel {
 	public RepositoriesPanel(String wicketId, final boolean showAdmin, final boolean showManagement,
 			List<RepositoryModel> models, boolean enableLinks,
 			final Map<AccessRestrictionType, String> accessRestrictionTranslations) {
+		this(wicketId, showAdmin, showManagement, models, null, enableLinks, accessRestrictionTranslations);
+	}
+
+	/**
+	 * Creates a panel which lists the repositories of the query.  The flat and
+	 * the grouped lists are paged and only the repositories of the displayed
+	 * page are loaded.
+	 */
+	public RepositoriesPanel(String wicketId, final boolean showAdmin, final boolean showManagement,
+			RepositoryQuery query, boolean enableLinks,
+			final Map<AccessRestrictionType, String> accessRestrictionTranslations) {
+		this(wicketId, showAdmin, showManagement, null, query, enableLinks, accessRestrictionTranslations);
+	}
+
+	private RepositoriesPanel(String wicketId, final boolean showAdmin, final boolean showManagement,
+			List<RepositoryModel> models, RepositoryQuery query, boolean enableLinks,
+			final Map<AccessRestrictionType, String> accessRestrictionTranslations) {
 		super(wicketId);
 
 		final boolean linksActive = enableLinks;
@@ -121,7 +141,18 @@ public class RepositoriesPanel extends BasePanel {
 			add (new Label("managementPanel").setVisible(false));
 		}
 
-		if (app().settings().getString(Keys.web.repositoryListType, "flat").equalsIgnoreCase("tree")) {
+		final String listType = app().settings().getString(Keys.web.repositoryListType, "flat");
+		if (listType.equalsIgnoreCase("tree")) {
+			if (models == null) {
+				// the tree is not paged, load all repositories of the query
+				models = new ArrayList<RepositoryModel>();
+				for (String name : app().repositories().queryRepositories(user, query)) {
+					RepositoryModel model = app().repositories().getRepositoryModel(user, name);
+					if (model != null) {
+						models.add(model);
+					}
+				}
+			}
 			TreeNodeModel tree = new TreeNodeModel();
 			for (RepositoryModel model : models) {
 				String rootPath = StringUtils.getRootPath(model.name);
@@ -142,7 +173,9 @@ public class RepositoriesPanel extends BasePanel {
 			fragment.add(allCollapsible);
 			add(fragment);
 
-		} else if (app().settings().getString(Keys.web.repositoryListType, "flat").equalsIgnoreCase("grouped")) {
+		} else if (listType.equalsIgnoreCase("grouped") && query != null) {
+			dp = new RepositoryQueryProvider(query, true);
+		} else if (listType.equalsIgnoreCase("grouped")) {
 			List<RepositoryModel> rootRepositories = new ArrayList<RepositoryModel>();
 			Map<String, List<RepositoryModel>> groups = new HashMap<String, List<RepositoryModel>>();
 			for (RepositoryModel model : models) {
@@ -181,6 +214,8 @@ public class RepositoriesPanel extends BasePanel {
 				groupedModels.addAll(subModels);
 			}
 			dp = new ListDataProvider<RepositoryModel>(groupedModels);
+		} else if (query != null) {
+			dp = new RepositoryQueryProvider(query, false);
 		} else {
 			dp = new SortableRepositoriesProvider(models);
 		}
@@ -197,6 +232,7 @@ public class RepositoriesPanel extends BasePanel {
 			protected void onBeforeRender() {
 				super.onBeforeRender();
 				counter = 0;
+				currGroupName = null;
 			}
 
 			@Override
@@ -256,7 +292,7 @@ public class RepositoriesPanel extends BasePanel {
 
 				// try to strip group name for less cluttered list
 				String repoName = entry.toString();
-				if (!StringUtils.isEmpty(currGroupName) && (repoName.indexOf('/') > -1)) {
+				if (!StringUtils.isEmpty(currGroupName) && repoName.startsWith(currGroupName + "/")) {
 					repoName = repoName.substring(currGroupName.length() + 1);
 				}
 
@@ -363,7 +399,13 @@ public class RepositoriesPanel extends BasePanel {
 		};
 		add(dataView);
 
-		if (dp instanceof SortableDataProvider<?>) {
+		int pageSize = app().settings().getInteger(Keys.web.repositoryListPageSize, 100);
+		if (query != null && pageSize > 0) {
+			dataView.setItemsPerPage(pageSize);
+		}
+		add(new PagerPanel("pager", dataView));
+
+		if (dp instanceof SortableDataProvider<?> && !listType.equalsIgnoreCase("grouped")) {
 			// add sortable header
 			SortableDataProvider<?> sdp = (SortableDataProvider<?>) dp;
 			Fragment fragment = new Fragment("headerContent", "flatRepositoryHeader", this);
@@ -385,6 +427,8 @@ public class RepositoriesPanel extends BasePanel {
 			}
 			add(fragment);
 		}
+		} else {
+			add(new Label("pager").setVisible(false));
 		}
 	}
 
@@ -422,6 +466,130 @@ public class RepositoriesPanel extends BasePanel {
 		};
 	}
 
+	/**
+	 * Data provider which pages the repositories of a repository query.  The
+	 * provider only keeps the names of the matching repositories for the
+	 * current request and it loads the repositories of the requested page.
+	 */
+	private static class RepositoryQueryProvider extends SortableDataProvider<RepositoryModel> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RepositoryQuery query;
+
+		private final boolean grouped;
+
+		private transient List<Object> rows;
+
+		RepositoryQueryProvider(RepositoryQuery query, boolean grouped) {
+			this.query = query;
+			this.grouped = grouped;
+			setSort(SortBy.date.name(), false);
+		}
+
+		private List<Object> getRows() {
+			if (rows == null) {
+				if (grouped) {
+					query.sort = RepositoryQuery.Sort.name;
+					query.ascending = true;
+				} else {
+					SortParam sp = getSort();
+					String prop = sp.getProperty();
+					if (prop == null || prop.equals(SortBy.date.name())) {
+						query.sort = RepositoryQuery.Sort.lastChange;
+					} else if (prop.equals(SortBy.repository.name())) {
+						query.sort = RepositoryQuery.Sort.name;
+					} else if (prop.equals(SortBy.owner.name())) {
+						query.sort = RepositoryQuery.Sort.owner;
+					} else if (prop.equals(SortBy.description.name())) {
+						query.sort = RepositoryQuery.Sort.description;
+					}
+					query.ascending = sp.isAscending();
+				}
+				UserModel user = GitBlitWebSession.get().getUser();
+				List<String> names = GitBlitWebApp.get().repositories().queryRepositories(user, query);
+				rows = grouped ? group(names) : new ArrayList<Object>(names);
+			}
+			return rows;
+		}
+
+		/**
+		 * Groups the repository names by their folder, the root repositories
+		 * first, and inserts a group row before each group.
+		 */
+		private List<Object> group(List<String> names) {
+			List<String> rootRepositories = new ArrayList<String>();
+			Map<String, List<String>> groups = new HashMap<String, List<String>>();
+			for (String name : names) {
+				String rootPath = StringUtils.getRootPath(name);
+				if (StringUtils.isEmpty(rootPath)) {
+					rootRepositories.add(name);
+				} else {
+					if (!groups.containsKey(rootPath)) {
+						groups.put(rootPath, new ArrayList<String>());
+					}
+					groups.get(rootPath).add(name);
+				}
+			}
+			List<String> roots = new ArrayList<String>(groups.keySet());
+			Collections.sort(roots);
+
+			if (rootRepositories.size() > 0) {
+				roots.add(0, "");
+				groups.put("", rootRepositories);
+			}
+
+			List<Object> list = new ArrayList<Object>();
+			for (String root : roots) {
+				List<String> subNames = groups.get(root);
+				ProjectModel project = GitBlitWebApp.get().projects().getProjectModel(root);
+				GroupRepositoryModel group = new GroupRepositoryModel(project == null ? root : project.name, subNames.size());
+				if (project != null) {
+					group.title = project.title;
+					group.description = project.description;
+				}
+				list.add(group);
+				list.addAll(subNames);
+			}
+			return list;
+		}
+
+		@Override
+		public int size() {
+			return getRows().size();
+		}
+
+		@Override
+		public IModel<RepositoryModel> model(RepositoryModel model) {
+			if (model instanceof GroupRepositoryModel) {
+				return new Model<RepositoryModel>(model);
+			}
+			return new DetachableRepositoryModel(model);
+		}
+
+		@Override
+		public Iterator<RepositoryModel> iterator(int first, int count) {
+			UserModel user = GitBlitWebSession.get().getUser();
+			List<RepositoryModel> list = new ArrayList<RepositoryModel>();
+			for (Object row : getRows().subList(first, first + count)) {
+				if (row instanceof GroupRepositoryModel) {
+					list.add((GroupRepositoryModel) row);
+				} else {
+					RepositoryModel model = GitBlitWebApp.get().repositories().getRepositoryModel(user, (String) row);
+					if (model != null) {
+						list.add(model);
+					}
+				}
+			}
+			return list.iterator();
+		}
+
+		@Override
+		public void detach() {
+			rows = null;
+		}
+	}
+
 	private static class SortableRepositoriesProvider extends SortableDataProvider<RepositoryModel> {
 
 		private static final long serialVersionUID = 1L;
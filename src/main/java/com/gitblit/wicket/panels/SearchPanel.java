@@ -64,11 +64,12 @@ public class SearchPanel extends BasePanel {
 		List<RevCommit> commits;
 		if (pageResults) {
 			// Paging result set
-			commits = JGitUtils.searchRevlogs(r, objectId, value, searchType, pageOffset
-					* itemsPerPage, itemsPerPage);
+			commits = app().repositories().searchRevlogs(repositoryName, r, objectId, value, searchType,
+					pageOffset * itemsPerPage, itemsPerPage);
 		} else {
 			// Fixed size result set
-			commits = JGitUtils.searchRevlogs(r, objectId, value, searchType, 0, limit);
+			commits = app().repositories().searchRevlogs(repositoryName, r, objectId, value, searchType, 0,
+					limit);
 		}
 
 		// inaccurate way to determine if there are more commits.
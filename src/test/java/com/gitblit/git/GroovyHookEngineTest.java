@@ -0,0 +1,138 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.git;
+
+import static org.junit.Assert.*;
+import groovy.lang.Binding;
+
+import java.io.File;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gitblit.models.HookScriptMetrics;
+import com.gitblit.utils.FileUtils;
+
+/**
+ * Tests compilation caching, metrics and timeouts of Groovy hook scripts.
+ */
+public class GroovyHookEngineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GroovyHookEngine engine;
+
+	@After
+	public void tearDown() {
+		if (engine != null) {
+			engine.close();
+		}
+	}
+
+	private GroovyHookEngine newEngine(long timeout) throws Exception {
+		engine = new GroovyHookEngine(folder.getRoot(), new File(folder.getRoot(), "grape"), timeout);
+		return engine;
+	}
+
+	private File script(String name, String content) {
+		File file = new File(folder.getRoot(), name);
+		FileUtils.writeContent(file, content);
+		return file;
+	}
+
+	private HookScriptMetrics metrics(String script) {
+		for (HookScriptMetrics m : engine.getMetrics()) {
+			if (m.script.equals(script)) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testResolveWithoutExtension() throws Exception {
+		script("hook.groovy", "return true");
+		newEngine(0);
+		assertEquals("hook.groovy", engine.resolve("hook"));
+		assertEquals("hook.groovy", engine.resolve("hook.groovy"));
+		assertEquals("missing", engine.resolve("missing"));
+	}
+
+	@Test
+	public void testCompileOnce() throws Exception {
+		script("hook.groovy", "binding.setVariable('result', value * 2); return true");
+		newEngine(0);
+		for (int i = 1; i <= 3; i++) {
+			Binding binding = new Binding();
+			binding.setVariable("value", i);
+			assertTrue(engine.run("hook.groovy", binding));
+			assertEquals(i * 2, binding.getVariable("result"));
+		}
+		HookScriptMetrics m = metrics("hook.groovy");
+		assertEquals(3, m.count);
+		assertEquals(1, m.compilations);
+		assertEquals(0, m.failures);
+	}
+
+	@Test
+	public void testRecompileModifiedScript() throws Exception {
+		File file = script("hook.groovy", "return 'a'");
+		newEngine(0);
+		Binding binding = new Binding();
+		engine.run("hook.groovy", binding);
+
+		FileUtils.writeContent(file, "return false");
+		file.setLastModified(file.lastModified() + 10000);
+		assertFalse(engine.run("hook.groovy", binding));
+
+		HookScriptMetrics m = metrics("hook.groovy");
+		assertEquals(2, m.compilations);
+		assertEquals(1, m.failures);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		script("slow.groovy", "Thread.sleep(60000); return true");
+		newEngine(200);
+		long start = System.currentTimeMillis();
+		try {
+			engine.run("slow.groovy", new Binding());
+			fail("script did not time out");
+		} catch (TimeoutException e) {
+			assertTrue(System.currentTimeMillis() - start < 30000);
+		}
+		HookScriptMetrics m = metrics("slow.groovy");
+		assertEquals(1, m.timeouts);
+		assertEquals(1, m.failures);
+	}
+
+	@Test
+	public void testScriptException() throws Exception {
+		script("broken.groovy", "throw new IllegalStateException('broken')");
+		newEngine(200);
+		try {
+			engine.run("broken.groovy", new Binding());
+			fail("exception expected");
+		} catch (IllegalStateException e) {
+			assertEquals("broken", e.getMessage());
+		}
+		assertEquals(1, metrics("broken.groovy").failures);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.git;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gitblit.Keys;
+import com.gitblit.git.PostReceiveQueue.PostReceiveCommand;
+import com.gitblit.git.PostReceiveQueue.PostReceiveJob;
+import com.gitblit.git.PostReceiveQueue.Step;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.PostReceiveStatus;
+import com.gitblit.tests.mock.MemorySettings;
+
+/**
+ * Tests ordering, retries and recovery of the post-receive queue.
+ */
+public class PostReceiveQueueTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private IGitblit gitblit;
+
+	private RecordingQueue queue;
+
+	@Before
+	public void setUp() {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.asyncPostReceive, "true");
+		settings.put(Keys.git.asyncPostReceiveHooks, "false");
+		settings.put(Keys.git.postReceiveWorkers, "4");
+		settings.put(Keys.git.postReceiveRetries, "2");
+		gitblit = mock(IGitblit.class);
+		when(gitblit.getSettings()).thenReturn(settings);
+	}
+
+	@After
+	public void tearDown() {
+		if (queue != null) {
+			queue.stop();
+		}
+	}
+
+	private RecordingQueue newQueue(int expected) {
+		RecordingQueue q = new RecordingQueue(gitblit, folder.getRoot(), expected);
+		q.retryDelay = 1;
+		return q;
+	}
+
+	private static PostReceiveJob job(String repository, String ref) {
+		ReceiveCommand cmd = new ReceiveCommand(ObjectId.zeroId(),
+				ObjectId.fromString("0123456789012345678901234567890123456789"), ref);
+		PostReceiveJob job = new PostReceiveJob();
+		job.repository = repository;
+		job.username = "admin";
+		job.queued = new Date();
+		job.steps = new ArrayList<Step>(Step.values().length);
+		Collections.addAll(job.steps, Step.TAGS, Step.REFLOG, Step.TICKETS);
+		job.commands = new ArrayList<PostReceiveCommand>();
+		job.commands.add(new PostReceiveCommand(cmd));
+		return job;
+	}
+
+	private static File [] jobFiles(File dir) {
+		File [] files = dir.listFiles();
+		List<File> list = new ArrayList<File>();
+		for (File file : files) {
+			if (file.isFile()) {
+				list.add(file);
+			}
+		}
+		return list.toArray(new File[list.size()]);
+	}
+
+	@Test
+	public void testDeferredSteps() {
+		queue = newQueue(0);
+		assertEquals(3, queue.getDeferredSteps().size());
+		assertFalse(queue.getDeferredSteps().contains(Step.HOOKS));
+	}
+
+	@Test
+	public void testPushOrderPerRepository() throws Exception {
+		queue = newQueue(9);
+		queue.start();
+		assertTrue(queue.submit(job("a.git", "refs/heads/one")));
+		assertTrue(queue.submit(job("a.git", "refs/heads/two")));
+		assertTrue(queue.submit(job("a.git", "refs/heads/three")));
+		assertTrue(queue.latch.await(10, TimeUnit.SECONDS));
+
+		List<String> expected = new ArrayList<String>();
+		for (String ref : new String [] { "one", "two", "three" }) {
+			for (Step step : new Step [] { Step.TAGS, Step.REFLOG, Step.TICKETS }) {
+				expected.add("a.git refs/heads/" + ref + " " + step);
+			}
+		}
+		assertEquals(expected, queue.executed);
+
+		queue.stop();
+		PostReceiveStatus status = queue.getStatus().get(0);
+		assertEquals(3, status.completed);
+		assertEquals(0, status.pending);
+		assertEquals(3, status.steps.get(Step.REFLOG.name()).count);
+		assertEquals(0, jobFiles(folder.getRoot()).length);
+	}
+
+	@Test
+	public void testRetryFailedStep() throws Exception {
+		queue = newQueue(3);
+		queue.failures = 2;
+		queue.start();
+		assertTrue(queue.submit(job("a.git", "refs/heads/master")));
+		assertTrue(queue.latch.await(10, TimeUnit.SECONDS));
+		queue.stop();
+
+		// the failing step is retried, completed steps are not repeated
+		assertEquals(5, queue.attempts);
+		PostReceiveStatus status = queue.getStatus().get(0);
+		assertEquals(1, status.completed);
+		assertEquals(2, status.retries);
+		assertEquals(0, status.failed);
+		assertEquals(2, status.steps.get(Step.REFLOG.name()).failures);
+		assertEquals(0, jobFiles(folder.getRoot()).length);
+	}
+
+	@Test
+	public void testAbandonAfterRetries() throws Exception {
+		queue = newQueue(0);
+		queue.failures = Integer.MAX_VALUE;
+		queue.start();
+		assertTrue(queue.submit(job("a.git", "refs/heads/master")));
+		long deadline = System.currentTimeMillis() + 10000;
+		while (queue.getStatus().get(0).failed == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		queue.stop();
+
+		PostReceiveStatus status = queue.getStatus().get(0);
+		assertEquals(1, status.failed);
+		assertEquals(0, status.pending);
+		assertNotNull(status.lastError);
+		assertEquals(0, jobFiles(folder.getRoot()).length);
+		assertEquals(1, jobFiles(new File(folder.getRoot(), "failed")).length);
+	}
+
+	@Test
+	public void testResumeAfterRestart() throws Exception {
+		// journal jobs which wait for a retry when the server stops
+		queue = newQueue(0);
+		queue.failures = Integer.MAX_VALUE;
+		queue.retryDelay = TimeUnit.MINUTES.toMillis(1);
+		queue.start();
+		assertTrue(queue.submit(job("a.git", "refs/heads/one")));
+		assertTrue(queue.submit(job("b.git", "refs/heads/two")));
+		long deadline = System.currentTimeMillis() + 10000;
+		while (queue.getStatus().size() < 2 || queue.getStatus().get(1).retries == 0
+				|| queue.getStatus().get(0).retries == 0) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+		queue.stop();
+		assertEquals(2, jobFiles(folder.getRoot()).length);
+
+		// the completed TAGS step is not repeated
+		queue = newQueue(4);
+		queue.start();
+		assertTrue(queue.latch.await(10, TimeUnit.SECONDS));
+		queue.stop();
+		assertEquals(4, queue.executed.size());
+		assertFalse(queue.executed.contains("a.git refs/heads/one TAGS"));
+		assertTrue(queue.executed.contains("b.git refs/heads/two TICKETS"));
+		assertEquals(0, queue.getStatus().get(0).retries);
+		assertEquals(0, jobFiles(folder.getRoot()).length);
+	}
+
+	/**
+	 * Records step executions instead of executing them.
+	 */
+	private static class RecordingQueue extends PostReceiveQueue {
+
+		final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+		final CountDownLatch latch;
+
+		volatile int failures;
+
+		volatile int attempts;
+
+		RecordingQueue(IGitblit gitblit, File folder, int expected) {
+			super(gitblit, folder);
+			this.latch = new CountDownLatch(expected);
+		}
+
+		@Override
+		protected void execute(PostReceiveJob job, Step step) throws Exception {
+			attempts++;
+			if (Step.REFLOG == step && failures > 0) {
+				failures--;
+				throw new Exception("lock failure");
+			}
+			executed.add(job.repository + " " + job.commands.get(0).ref + " " + step);
+			latch.countDown();
+		}
+	}
+}
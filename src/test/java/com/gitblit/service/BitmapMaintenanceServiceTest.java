@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.pack.PackStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.BitmapStatus;
+import com.gitblit.tests.mock.MemorySettings;
+import com.gitblit.utils.TimeUtils;
+
+/**
+ * Tests the clone traffic tracking and the bitmap maintenance.
+ */
+public class BitmapMaintenanceServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Map<String, File> dirs = new HashMap<String, File>();
+
+	private BitmapMaintenanceService service;
+
+	@Before
+	public void setUp() throws Exception {
+		createRepository("hot.git");
+		createRepository("cold.git");
+
+		IRepositoryManager repositoryManager = mock(IRepositoryManager.class);
+		for (final Map.Entry<String, File> entry : dirs.entrySet()) {
+			when(repositoryManager.getRepository(entry.getKey())).thenAnswer(new Answer<Repository>() {
+				@Override
+				public Repository answer(InvocationOnMock invocation) throws Throwable {
+					return new FileRepositoryBuilder().setGitDir(entry.getValue()).build();
+				}
+			});
+		}
+
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.enableBitmapMaintenance, "true");
+		settings.put(Keys.git.bitmapMaintenanceRepositories, "5");
+		settings.put(Keys.git.bitmapMinimumCoverage, "90");
+		service = new BitmapMaintenanceService(settings, repositoryManager,
+				new GarbageCollectorService(settings, repositoryManager));
+	}
+
+	@After
+	public void tearDown() {
+		service.close();
+	}
+
+	private void createRepository(String name) throws Exception {
+		File dir = folder.newFolder(name);
+		Git git = Git.init().setDirectory(dir).call();
+		for (int i = 0; i < 3; i++) {
+			git.commit().setMessage("commit " + i).setAllowEmpty(true).call();
+		}
+		git.close();
+		dirs.put(name, new File(dir, ".git"));
+	}
+
+	private PackStatistics stats(long haves, long objects, long countingTime) {
+		PackStatistics.Accumulator accumulator = new PackStatistics.Accumulator();
+		accumulator.haves = haves;
+		accumulator.totalObjects = objects;
+		accumulator.timeCounting = countingTime;
+		return new PackStatistics(accumulator);
+	}
+
+	private void upload(String name, PackStatistics stats) throws Exception {
+		Repository repository = new FileRepositoryBuilder().setGitDir(dirs.get(name)).build();
+		try {
+			service.recordUpload(name, repository, stats);
+		} finally {
+			repository.close();
+		}
+	}
+
+	private BitmapStatus status(String name) {
+		for (BitmapStatus status : service.getStatus()) {
+			if (status.repository.equals(name)) {
+				return status;
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testRecordUploads() throws Exception {
+		upload("hot.git", stats(0, 1000, 500));
+		upload("hot.git", stats(0, 1000, 500));
+		upload("hot.git", stats(5, 10, 10));
+		upload("cold.git", stats(5, 10, 10));
+
+		List<BitmapStatus> list = service.getStatus();
+		assertEquals("hot.git", list.get(0).repository);
+		assertEquals("cold.git", list.get(1).repository);
+
+		BitmapStatus hot = list.get(0);
+		assertEquals(2, hot.clones);
+		assertEquals(1, hot.fetches);
+		assertEquals(2.1d, hot.heat, 0.001d);
+		assertEquals(3, hot.walkUploads);
+		assertEquals(0, hot.bitmapUploads);
+		assertEquals(0, hot.getCountingTimeSaved());
+
+		service.decay(System.currentTimeMillis() + TimeUtils.ONEDAY);
+		assertEquals(1.05d, status("hot.git").heat, 0.001d);
+	}
+
+	@Test
+	public void testMaintainHotRepositories() throws Exception {
+		upload("hot.git", stats(0, 1000, 500));
+		upload("cold.git", stats(5, 10, 10));
+
+		service.maintain();
+
+		BitmapStatus hot = status("hot.git");
+		assertTrue(hot.hasBitmap());
+		assertEquals(100, hot.getCoverage());
+		assertEquals(1, hot.repacks);
+		assertNotNull(hot.lastRepack);
+
+		BitmapStatus cold = status("cold.git");
+		assertFalse(cold.hasBitmap());
+		assertNull(cold.lastScan);
+
+		// a covered repository is not repacked again
+		service.maintain();
+		assertEquals(1, status("hot.git").repacks);
+
+		// clones counted with bitmaps report the time saved
+		upload("hot.git", stats(0, 1000, 50));
+		hot = status("hot.git");
+		assertEquals(1, hot.bitmapUploads);
+		assertEquals(450, hot.getCountingTimeSaved());
+	}
+}
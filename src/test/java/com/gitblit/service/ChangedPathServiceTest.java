@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.tests.mock.MemorySettings;
+import com.gitblit.utils.ChangedPathIndex;
+import com.gitblit.utils.FileUtils;
+
+/**
+ * Tests the paging of path histories.
+ */
+public class ChangedPathServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private final List<RevCommit> commits = new ArrayList<RevCommit>();
+
+	private ChangedPathService service;
+
+	@Before
+	public void setUp() throws Exception {
+		File dir = folder.newFolder("test.git");
+		git = Git.init().setDirectory(dir).call();
+		for (int i = 0; i < 8; i++) {
+			FileUtils.writeContent(new File(dir, "file.txt"), "version " + i);
+			git.add().addFilepattern("file.txt").call();
+			commits.add(git.commit().setMessage("file " + i).call());
+			FileUtils.writeContent(new File(dir, "other.txt"), "version " + i);
+			git.add().addFilepattern("other.txt").call();
+			commits.add(git.commit().setMessage("other " + i).call());
+		}
+		// the index is not built, the history is walked by diffing trees
+		service = new ChangedPathService(new MemorySettings(), mock(IRepositoryManager.class));
+	}
+
+	@After
+	public void tearDown() {
+		service.close();
+		git.close();
+	}
+
+	private List<String> getRevLog(ChangedPathService service, int offset, int maxCount) {
+		List<String> messages = new ArrayList<String>();
+		Repository repository = git.getRepository();
+		for (RevCommit commit : service.getRevLog("test.git", repository, null, "file.txt", offset, maxCount)) {
+			messages.add(commit.getShortMessage());
+		}
+		return messages;
+	}
+
+	@Test
+	public void testPaging() throws Exception {
+		assertEquals("[file 7, file 6]", getRevLog(service, 0, 2).toString());
+		assertEquals("[file 5, file 4]", getRevLog(service, 2, 2).toString());
+		assertEquals("[file 3, file 2]", getRevLog(service, 4, 2).toString());
+		assertEquals("[file 1, file 0]", getRevLog(service, 6, 10).toString());
+		assertEquals("[]", getRevLog(service, 8, 2).toString());
+	}
+
+	@Test
+	public void testLaterPageDoesNotWalkAgain() throws Exception {
+		// the first page walks the history up to file 4
+		assertEquals("[file 7, file 6]", getRevLog(service, 0, 2).toString());
+
+		// remove the commits which have been walked
+		for (RevCommit commit : commits.subList(commits.indexOf(findCommit("file 4")), commits.size())) {
+			String name = commit.name();
+			File file = new File(git.getRepository().getDirectory(),
+					"objects/" + name.substring(0, 2) + "/" + name.substring(2));
+			assertTrue(file.delete());
+		}
+
+		// the walk continues from the parent of file 4
+		assertEquals("[file 3, file 2]", getRevLog(service, 4, 2).toString());
+		assertEquals("[file 1, file 0]", getRevLog(service, 6, 2).toString());
+
+		// walking again from the tip fails
+		ChangedPathService other = new ChangedPathService(new MemorySettings(), mock(IRepositoryManager.class));
+		try {
+			assertEquals("[]", getRevLog(other, 4, 2).toString());
+		} finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void testIndexLargerThanCacheIsNotUsed() throws Exception {
+		for (int i = 0; i < 40; i++) {
+			git.commit().setMessage("empty " + i).setAllowEmpty(true).call();
+		}
+		final File gitDir = git.getRepository().getDirectory();
+		IRepositoryManager repositoryManager = mock(IRepositoryManager.class);
+		when(repositoryManager.getRepository("test.git")).thenAnswer(new Answer<Repository>() {
+			@Override
+			public Repository answer(InvocationOnMock invocation) throws Throwable {
+				return new FileRepositoryBuilder().setGitDir(gitDir).build();
+			}
+		});
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.changedPathIndexCacheSize, "1k");
+		ChangedPathService small = new ChangedPathService(settings, repositoryManager);
+		try {
+			ChangedPathIndex index = small.update("test.git");
+			assertNotNull(index);
+			assertTrue(index.getMemoryUsage() > 1024);
+			assertNull(small.getIndex("test.git", git.getRepository()));
+			assertEquals("[file 7, file 6]", getRevLog(small, 0, 2).toString());
+		} finally {
+			small.close();
+		}
+	}
+
+	private RevCommit findCommit(String message) {
+		for (RevCommit commit : commits) {
+			if (commit.getShortMessage().equals(message)) {
+				return commit;
+			}
+		}
+		return null;
+	}
+}
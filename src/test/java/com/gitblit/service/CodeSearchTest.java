@@ -0,0 +1,96 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the literals which select the candidates of a code search and the
+ * fragments of the matching lines.
+ */
+public class CodeSearchTest {
+
+	@Test
+	public void testLiterals() {
+		assertEquals(Arrays.asList("foo_bar("), CodeSearch.getLiterals("foo_bar\\("));
+		assertEquals(Arrays.asList("int ", " = 0;"), CodeSearch.getLiterals("int \\w+ = 0;"));
+		assertEquals(Arrays.asList("colo", "r"), CodeSearch.getLiterals("colou?r"));
+		assertEquals(Arrays.asList("ab", "cd"), CodeSearch.getLiterals("abx*?cd"));
+		assertEquals(Arrays.asList("get", "Name"), CodeSearch.getLiterals("get(First|Last)Name"));
+		assertEquals(Arrays.asList("a.b", "c"), CodeSearch.getLiterals("\\Qa.b\\E[xy]c"));
+		assertEquals(Arrays.asList("x", "y"), CodeSearch.getLiterals("^x[^]a]y$"));
+		assertEquals(Collections.emptyList(), CodeSearch.getLiterals("foo|bar"));
+		assertEquals(Collections.emptyList(), CodeSearch.getLiterals(".*"));
+		// escaped character codes end a literal
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("a\\x41b"));
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("a\\x{41}b"));
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("a\\0101b"));
+		assertEquals(Arrays.asList("a", "8"), CodeSearch.getLiterals("a\\0478"));
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("a\\u0041b"));
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("a\\cAb"));
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("a\\p{Lu}b"));
+		assertEquals(Arrays.asList("a", "b"), CodeSearch.getLiterals("(x)a\\1b"));
+	}
+
+	@Test
+	public void testFragment() {
+		CodeSearch search = new CodeSearch("bar", false);
+		String content = "foo\nBar bar\r\nbaz\nfoobar\n";
+		assertEquals("<pre class=\"prettyprint linenums:2 lang-c\"><span class=\"highlight\">Bar</span> "
+				+ "<span class=\"highlight\">bar</span></pre>"
+				+ "<span class=\"ellipses\">...</span><br/>"
+				+ "<pre class=\"prettyprint linenums:4 lang-c\">foo<span class=\"highlight\">bar</span></pre>",
+				search.getFragment(content, "a.c", 5, 0));
+		assertEquals("<pre class=\"prettyprint linenums:2\"><span class=\"highlight\">Bar</span> "
+				+ "<span class=\"highlight\">bar</span></pre>",
+				search.getFragment(content, "Makefile", 1, 0));
+
+		assertNull(new CodeSearch("Bar bar baz", false).getFragment(content, "a.c", 5, 0));
+		assertNotNull(new CodeSearch("^baz$", true).getFragment(content, "a.c", 5, 0));
+	}
+
+	@Test
+	public void testRegexWithoutTrigramIsRejected() {
+		for (String regex : Arrays.asList("x*", "(a+)+$", "foo|bar", "ab.cd")) {
+			try {
+				new CodeSearch(regex, true);
+				fail(regex);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		// a short text is verified on all blobs
+		assertNotNull(new CodeSearch("ab", false));
+	}
+
+	@Test(expected = CodeSearch.DeadlineExceededException.class)
+	public void testDeadline() {
+		StringBuilder content = new StringBuilder("xyz");
+		for (int i = 0; i < 64; i++) {
+			content.append('a');
+		}
+		content.append('!');
+		// the backtracking of the nested quantifiers is stopped
+		new CodeSearch("xyz(.*a){10}b", true).getFragment(content.toString(), "a.c", 5,
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100));
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gitblit.Constants.SearchType;
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.tests.mock.MemorySettings;
+import com.gitblit.utils.CommitMetadataIndex;
+
+/**
+ * Tests the caching of the commit metadata indexes.
+ */
+public class CommitMetadataServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private IRepositoryManager repositoryManager;
+
+	private CommitMetadataService service;
+
+	@Before
+	public void setUp() throws Exception {
+		File dir = folder.newFolder("test.git");
+		git = Git.init().setDirectory(dir).call();
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			body.append("a long description of the change ");
+		}
+		for (int i = 0; i < 100; i++) {
+			git.commit().setMessage("commit " + i + "\n\n" + body).setAllowEmpty(true).call();
+		}
+		final File gitDir = git.getRepository().getDirectory();
+
+		repositoryManager = mock(IRepositoryManager.class);
+		when(repositoryManager.getRepository("test.git")).thenAnswer(new Answer<Repository>() {
+			@Override
+			public Repository answer(InvocationOnMock invocation) throws Throwable {
+				return new FileRepositoryBuilder().setGitDir(gitDir).build();
+			}
+		});
+		service = new CommitMetadataService(new MemorySettings(), repositoryManager);
+	}
+
+	@After
+	public void tearDown() {
+		service.close();
+		git.close();
+	}
+
+	@Test
+	public void testIndexLargerThanCacheIsNotCached() throws Exception {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.commitMetadataIndexCacheSize, "16k");
+		CommitMetadataService small = new CommitMetadataService(settings, repositoryManager);
+		try {
+			CommitMetadataIndex index = small.update("test.git");
+			assertNotNull(index);
+			assertTrue(index.getMemoryUsage() > 16 * 1024);
+			assertNull(small.getCachedIndex("test.git"));
+
+			// the history is walked
+			List<RevCommit> commits = small.searchRevlogs("test.git", git.getRepository(), null, "commit 4",
+					SearchType.COMMIT, 0, 10);
+			assertEquals(10, commits.size());
+			assertEquals("commit 49", commits.get(0).getShortMessage());
+
+			// the index file is not read again
+			assertNull(small.update("test.git"));
+			assertNull(small.getCachedIndex("test.git"));
+		} finally {
+			small.close();
+		}
+	}
+
+	@Test
+	public void testSearchDoesNotReadIndex() throws Exception {
+		service.update("test.git");
+		service.close("test.git");
+		File file = CommitMetadataIndex.getFile(git.getRepository());
+		long length = file.length();
+
+		// the history is walked while the index is read on the update thread
+		List<RevCommit> commits = service.searchRevlogs("test.git", git.getRepository(), null, "commit 4",
+				SearchType.COMMIT, 0, 10);
+		assertEquals(10, commits.size());
+		assertEquals("commit 49", commits.get(0).getShortMessage());
+		for (int i = 0; i < 100 && service.getCachedIndex("test.git") == null; i++) {
+			Thread.sleep(50);
+		}
+		assertNotNull(service.getCachedIndex("test.git"));
+		assertEquals(length, file.length());
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FederationCheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Ref ref(String name, String id) {
+		return new ObjectIdRef.PeeledNonTag(Ref.Storage.NETWORK, name, ObjectId.fromString(id));
+	}
+
+	@Test
+	public void testDigestIsOrderIndependent() {
+		List<Ref> refs = new ArrayList<Ref>(Arrays.asList(
+				ref("refs/heads/master", "0123456789012345678901234567890123456789"),
+				ref("refs/heads/develop", "9876543210987654321098765432109876543210")));
+		String digest = FederationCheckpoint.digest(refs);
+		Collections.reverse(refs);
+		assertEquals(digest, FederationCheckpoint.digest(refs));
+
+		refs.set(0, ref("refs/heads/develop", "1111111111111111111111111111111111111111"));
+		assertFalse(digest.equals(FederationCheckpoint.digest(refs)));
+	}
+
+	@Test
+	public void testResumeInterruptedPull() throws Exception {
+		File file = new File(folder.getRoot(), "origin_federation.log");
+		FederationCheckpoint checkpoint = FederationCheckpoint.read(file);
+		assertFalse(checkpoint.isInterrupted());
+		checkpoint.start();
+		checkpoint.update("a.git", "aaaa");
+		checkpoint.update("b.git", "bbbb");
+		checkpoint.update("a.git", "cccc");
+
+		// simulate a crash before the pull completed
+		checkpoint = FederationCheckpoint.read(file);
+		assertTrue(checkpoint.isInterrupted());
+		assertEquals(2, checkpoint.size());
+		assertTrue(checkpoint.isUnchanged("a.git", "cccc"));
+		assertTrue(checkpoint.isUnchanged("b.git", "bbbb"));
+		assertFalse(checkpoint.isUnchanged("a.git", "aaaa"));
+
+		checkpoint.start();
+		checkpoint.reset("b.git");
+		checkpoint.complete();
+
+		checkpoint = FederationCheckpoint.read(file);
+		assertFalse(checkpoint.isInterrupted());
+		assertEquals(1, checkpoint.size());
+		assertFalse(checkpoint.isUnchanged("b.git", "bbbb"));
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.FederationModel;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.service.FederationPullService.PullOutcome;
+
+/**
+ * Tests the outcomes of pulling a federated repository from a file:// origin.
+ */
+public class FederationPullServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git upstream;
+
+	private File repositoriesFolder;
+
+	private FederationModel registration;
+
+	private FederationPullService service;
+
+	@Before
+	public void setUp() throws Exception {
+		upstream = Git.init().setDirectory(folder.newFolder("upstream")).call();
+		upstream.commit().setMessage("first").setAllowEmpty(true).call();
+		repositoriesFolder = folder.newFolder("git");
+
+		registration = new FederationModel("origin");
+		registration.url = "file://" + folder.getRoot().getAbsolutePath();
+		registration.token = "token";
+		registration.bare = true;
+
+		IGitblit gitblit = mock(IGitblit.class);
+		when(gitblit.getRepository(anyString())).thenAnswer(new Answer<Repository>() {
+			@Override
+			public Repository answer(InvocationOnMock invocation) throws Throwable {
+				File dir = FileKey.resolve(new File(repositoriesFolder, (String) invocation.getArguments()[0]),
+						FS.DETECTED);
+				return dir == null ? null : new FileRepositoryBuilder().setGitDir(dir).build();
+			}
+		});
+		when(gitblit.getRepositoryModel(anyString())).thenAnswer(new Answer<RepositoryModel>() {
+			@Override
+			public RepositoryModel answer(InvocationOnMock invocation) throws Throwable {
+				return new RepositoryModel((String) invocation.getArguments()[0], "", "", null);
+			}
+		});
+		service = new FederationPullService(gitblit, registration) {
+			@Override
+			public void reschedule(FederationModel registration) {
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		upstream.close();
+	}
+
+	private PullOutcome pull() throws Exception {
+		RepositoryModel repository = new RepositoryModel("upstream.git", "", "", null);
+		repository.hasCommits = true;
+		// a new checkpoint does not know the tips, so the origin is fetched
+		FederationCheckpoint checkpoint = FederationCheckpoint.read(folder.newFile());
+		return service.pullRepository(registration, "", repositoriesFolder, registration.url + "/upstream",
+				repository, checkpoint);
+	}
+
+	@Test
+	public void testOutcomes() throws Exception {
+		assertEquals(PullOutcome.FETCHED, pull());
+
+		// a fetch which pulls nothing is unchanged
+		assertEquals(PullOutcome.UNCHANGED, pull());
+
+		upstream.commit().setMessage("second").setAllowEmpty(true).call();
+		assertEquals(PullOutcome.FETCHED, pull());
+		assertEquals(PullOutcome.UNCHANGED, pull());
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.tests.mock.MemorySettings;
+
+/**
+ * Tests the refresh of the cached pack which is streamed to cloning clients.
+ */
+public class GarbageCollectorServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File bareDir;
+
+	private Git work;
+
+	private RepositoryModel model;
+
+	private IRepositoryManager repositoryManager;
+
+	private GarbageCollectorService service;
+
+	@Before
+	public void setUp() throws Exception {
+		work = Git.init().setDirectory(folder.newFolder("work")).call();
+		bareDir = folder.newFolder("test.git");
+		Git.init().setBare(true).setDirectory(bareDir).call().close();
+
+		model = new RepositoryModel("test.git", "", "", null);
+		model.lastGC = new Date();
+		model.gcPeriod = 7;
+		model.gcThreshold = "500k";
+
+		repositoryManager = mock(IRepositoryManager.class);
+		when(repositoryManager.getRepositoryList()).thenReturn(Arrays.asList("test.git"));
+		when(repositoryManager.getRepositoryModel("test.git")).thenReturn(model);
+		when(repositoryManager.isIdle(any(Repository.class))).thenReturn(true);
+		when(repositoryManager.getRepository("test.git")).thenAnswer(new Answer<Repository>() {
+			@Override
+			public Repository answer(InvocationOnMock invocation) throws Throwable {
+				return open();
+			}
+		});
+
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.enableGarbageCollection, "true");
+		settings.put(Keys.git.cachedPackRefreshThreshold, "10");
+		service = new GarbageCollectorService(settings, repositoryManager);
+	}
+
+	@After
+	public void tearDown() {
+		work.close();
+	}
+
+	private Repository open() throws Exception {
+		return new FileRepositoryBuilder().setGitDir(bareDir).build();
+	}
+
+	/**
+	 * Commits and pushes files.  Pushed objects are kept as a pack.
+	 */
+	private void push(int files) throws Exception {
+		for (int i = 0; i < files; i++) {
+			File file = new File(work.getRepository().getWorkTree(), "file-" + System.nanoTime() + ".txt");
+			Files.write(file.toPath(), ("content " + file.getName()).getBytes("UTF-8"));
+			work.add().addFilepattern(file.getName()).call();
+			work.commit().setMessage(file.getName()).call();
+		}
+		work.push().setRemote(bareDir.toURI().toString()).setRefSpecs(new RefSpec("refs/heads/master")).call();
+	}
+
+	private long uncachedObjects() throws Exception {
+		Repository repository = open();
+		try {
+			long loose = (Long) new Git(repository).gc().getStatistics().get("numberOfLooseObjects");
+			return GarbageCollectorService.getUncachedObjectCount(repository, loose);
+		} finally {
+			repository.close();
+		}
+	}
+
+	private boolean hasBitmap() {
+		File[] bitmaps = new File(bareDir, "objects/pack").listFiles();
+		for (File file : bitmaps) {
+			if (file.getName().endsWith(".bitmap")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testUncachedObjectCount() throws Exception {
+		assertEquals(0, uncachedObjects());
+		push(2);
+		// two commits, two trees and two blobs
+		assertEquals(6, uncachedObjects());
+		assertFalse(hasBitmap());
+
+		Repository repository = open();
+		new Git(repository).gc().call();
+		repository.close();
+		assertTrue(hasBitmap());
+		assertEquals(0, uncachedObjects());
+
+		// packs pushed after the GC are not cached
+		Thread.sleep(1000);
+		push(1);
+		assertEquals(3, uncachedObjects());
+	}
+
+	@Test
+	public void testRefreshCachedPack() throws Exception {
+		push(2);
+		service.refreshCachedPack("test.git");
+		// below the threshold
+		assertFalse(hasBitmap());
+
+		push(2);
+		assertTrue(service.requestCachedPackRefresh("test.git"));
+		assertFalse(service.requestCachedPackRefresh("test.git"));
+		service.refreshCachedPack("test.git");
+		assertTrue(hasBitmap());
+		assertEquals(0, uncachedObjects());
+		assertFalse(service.isCollectingGarbage("test.git"));
+
+		// the scheduled refresh has been consumed
+		assertTrue(service.requestCachedPackRefresh("test.git"));
+	}
+
+	@Test
+	public void testRefreshIsNotGarbageCollection() throws Exception {
+		Date lastGC = model.lastGC;
+		push(4);
+		service.refreshCachedPack("test.git");
+		assertTrue(hasBitmap());
+		// the next scheduled GC is not postponed
+		assertSame(lastGC, model.lastGC);
+		verify(repositoryManager, never()).updateConfiguration(any(Repository.class), any(RepositoryModel.class));
+	}
+
+	@Test
+	public void testDailyScanRefreshesCachedPack() throws Exception {
+		push(4);
+		service.run();
+		assertTrue(hasBitmap());
+		assertEquals(0, uncachedObjects());
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.junit.Test;
+
+import com.gitblit.Keys;
+import com.gitblit.models.JGitCacheStatus;
+import com.gitblit.tests.mock.MemorySettings;
+
+/**
+ * Tests the sampling and the adaptive sizing of the JGit window cache.
+ */
+public class JGitCacheServiceTest {
+
+	private static final int MB = 1024 * 1024;
+
+	private final List<WindowCacheConfig> installed = new ArrayList<WindowCacheConfig>();
+
+	private JGitCacheService newService(boolean adaptive) {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.adaptiveCacheSizing, String.valueOf(adaptive));
+		settings.put(Keys.git.adaptiveCacheHeapPercent, "25");
+
+		WindowCacheConfig cfg = new WindowCacheConfig();
+		cfg.setPackedGitLimit(10 * MB);
+		cfg.setPackedGitOpenFiles(100);
+		cfg.setDeltaBaseCacheLimit(10 * MB);
+		return new JGitCacheService(settings, cfg) {
+			@Override
+			protected void install(WindowCacheConfig cfg) {
+				installed.add(cfg);
+			}
+		};
+	}
+
+	private static void sample(JGitCacheService service, int count, int openFiles, long openBytes) {
+		for (int i = 0; i < count; i++) {
+			service.sample(openFiles, openBytes);
+		}
+	}
+
+	@Test
+	public void testSampling() {
+		JGitCacheService service = newService(false);
+		sample(service, 5, 10, 10 * MB);
+		sample(service, 15, 95, MB);
+
+		JGitCacheStatus status = service.getStatus();
+		assertEquals(20, status.samples);
+		assertEquals(5, status.bytesSaturatedSamples);
+		assertEquals(15, status.filesSaturatedSamples);
+		assertEquals(75, status.getSaturation());
+		assertEquals(10 * MB, status.peakOpenBytes);
+		assertEquals(95, status.peakOpenFiles);
+		assertFalse(status.adaptive);
+
+		// saturation does not resize unless adaptive
+		assertTrue(installed.isEmpty());
+		assertEquals(0, status.resizes);
+	}
+
+	@Test
+	public void testGrowAndShrink() {
+		JGitCacheService service = newService(true);
+		assumeTrue(service.getHeapBudget() >= 40L * MB);
+
+		// saturated bytes for a full period doubles the limit
+		sample(service, JGitCacheService.EVALUATION_SAMPLES, 50, 10 * MB);
+		assertEquals(1, installed.size());
+		assertEquals(20 * MB, installed.get(0).getPackedGitLimit());
+		assertEquals(100, installed.get(0).getPackedGitOpenFiles());
+		assertEquals(10 * MB, installed.get(0).getDeltaBaseCacheLimit());
+
+		// saturated open files double the open files limit
+		sample(service, JGitCacheService.EVALUATION_SAMPLES, 100, 8 * MB);
+		assertEquals(2, installed.size());
+		assertEquals(20 * MB, installed.get(1).getPackedGitLimit());
+		assertEquals(200, installed.get(1).getPackedGitOpenFiles());
+
+		// an idle cache shrinks, but not below the configured limits
+		sample(service, JGitCacheService.EVALUATION_SAMPLES, 1, MB);
+		sample(service, JGitCacheService.EVALUATION_SAMPLES, 1, MB);
+		WindowCacheConfig last = installed.get(installed.size() - 1);
+		assertEquals(10 * MB, last.getPackedGitLimit());
+		assertEquals(100, last.getPackedGitOpenFiles());
+
+		int resizes = installed.size();
+		sample(service, JGitCacheService.EVALUATION_SAMPLES, 1, MB);
+		assertEquals(resizes, installed.size());
+
+		JGitCacheStatus status = service.getStatus();
+		assertEquals(resizes, status.resizes);
+		assertEquals(10 * MB, status.packedGitLimit);
+		assertNotNull(status.lastResize);
+	}
+
+	@Test
+	public void testMixedPeriodDoesNotResize() {
+		JGitCacheService service = newService(true);
+		int half = JGitCacheService.EVALUATION_SAMPLES / 2;
+		sample(service, half - 1, 10, 10 * MB);
+		sample(service, half + 1, 10, 5 * MB);
+		assertTrue(installed.isEmpty());
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gitblit.Constants.SearchObjectType;
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.ForkModel;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.SearchResult;
+import com.gitblit.tests.mock.MemorySettings;
+
+/**
+ * Tests the unified index of all repositories, which is split into shards.
+ */
+public class LuceneServiceTest {
+
+	private static final List<String> REPOSITORIES = Arrays.asList("alpha.git", "beta.git", "gamma.git");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LuceneService lucene;
+
+	private IRepositoryManager repositoryManager;
+
+	@Before
+	public void setUp() throws Exception {
+		File repositoriesFolder = folder.newFolder("git");
+		repositoryManager = newRepositoryManager();
+
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.web.luceneIndexShards, "2");
+		lucene = new LuceneService(settings, repositoryManager, folder.newFolder("lucene"));
+		assertTrue(lucene.isUnifiedIndex());
+
+		for (String name : REPOSITORIES) {
+			File dir = new File(repositoriesFolder, name);
+			Git git = Git.init().setDirectory(dir).call();
+			Files.write(new File(dir, "README.md").toPath(),
+					("the shared readme of " + name).getBytes(StandardCharsets.UTF_8));
+			Files.write(new File(dir, "Main.java").toPath(),
+					("class Main {\n\tvoid run() {\n\t\tfoo_bar(1);\n\t}\n\n\tint foo_bar(int " + name.charAt(0)
+							+ ") {\n\t\treturn 0;\n\t}\n}\n").getBytes(StandardCharsets.UTF_8));
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("shared commit of " + name).call();
+			lucene.reindex(newRepositoryModel(name), git.getRepository());
+			git.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		lucene.close();
+	}
+
+	private IRepositoryManager newRepositoryManager() {
+		IRepositoryManager repositoryManager = mock(IRepositoryManager.class);
+		when(repositoryManager.getRepositoriesFolder()).thenReturn(new File(folder.getRoot(), "git"));
+		return repositoryManager;
+	}
+
+	private RepositoryModel newRepositoryModel(String name) {
+		RepositoryModel model = new RepositoryModel();
+		model.name = name;
+		model.hasCommits = true;
+		model.indexedBranches = Arrays.asList("refs/heads/master");
+		return model;
+	}
+
+	private Set<String> getRepositories(List<SearchResult> results) {
+		Set<String> repositories = new TreeSet<String>();
+		for (SearchResult result : results) {
+			repositories.add(result.repository);
+		}
+		return repositories;
+	}
+
+	@Test
+	public void testSearchIsFilteredByRepositories() {
+		List<SearchResult> results = lucene.search("shared", 1, 10, "alpha.git", "beta.git");
+		assertEquals(4, results.size());
+		assertEquals(4, results.get(0).totalHits);
+		assertEquals(new TreeSet<String>(Arrays.asList("alpha.git", "beta.git")), getRepositories(results));
+
+		results = lucene.search("shared", 1, 10, "gamma.git");
+		assertEquals(2, results.size());
+		assertEquals(new TreeSet<String>(Arrays.asList("gamma.git")), getRepositories(results));
+
+		results = lucene.search("type:blob AND path:README.md", 1, 10, REPOSITORIES);
+		assertEquals(3, results.size());
+		for (SearchResult result : results) {
+			assertEquals(SearchObjectType.blob, result.type);
+			assertEquals("refs/heads/master", result.branch);
+		}
+
+		// the same filter is used again for the same repositories
+		results = lucene.search("shared", 1, 10, "beta.git", "alpha.git");
+		assertEquals(new TreeSet<String>(Arrays.asList("alpha.git", "beta.git")), getRepositories(results));
+	}
+
+	@Test
+	public void testPaging() {
+		List<SearchResult> results = lucene.search("shared", 2, 4, REPOSITORIES);
+		assertEquals(2, results.size());
+		assertEquals(5, results.get(0).hitId);
+		assertEquals(6, results.get(0).totalHits);
+	}
+
+	@Test
+	public void testSearchCode() {
+		// a literal in lower case matches regardless of the case
+		List<SearchResult> results = lucene.searchCode("foo_bar(", false, 1, 10, "alpha.git", "beta.git");
+		assertEquals(2, results.size());
+		assertEquals(2, results.get(0).totalHits);
+		assertEquals("Main.java", results.get(0).path);
+		String fragment = results.get(0).fragment;
+		assertTrue(fragment, fragment.startsWith("<pre class=\"prettyprint linenums:3 lang-java\">"));
+		assertTrue(fragment, fragment.contains("<span class=\"highlight\">foo_bar(</span>1);</pre>"));
+		assertTrue(fragment, fragment.contains("<pre class=\"prettyprint linenums:6 lang-java\">"));
+		assertEquals(3, lucene.searchCode("main {", false, 1, 10, REPOSITORIES).size());
+		assertTrue(lucene.searchCode("MAIN {", false, 1, 10, REPOSITORIES).isEmpty());
+
+		// the regex is verified on the candidates of its literal
+		results = lucene.searchCode("int foo_bar\\(int [ag]\\)", true, 1, 10, REPOSITORIES);
+		assertEquals(new TreeSet<String>(Arrays.asList("alpha.git", "gamma.git")), getRepositories(results));
+		assertTrue(lucene.searchCode("foo_bar\\(2\\)", true, 1, 10, REPOSITORIES).isEmpty());
+
+		// paging counts the verified matches
+		results = lucene.searchCode("return 0;", false, 2, 2, REPOSITORIES);
+		assertEquals(1, results.size());
+		assertEquals(3, results.get(0).hitId);
+		assertEquals(3, results.get(0).totalHits);
+		assertFalse(results.get(0).truncated);
+
+		// a regex without a literal of three characters would verify all blobs
+		try {
+			lucene.searchCode("fo.ba.r", true, 1, 10, REPOSITORIES);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSearchCodeInRepositoryIndexes() throws Exception {
+		LuceneService service = new LuceneService(new MemorySettings(), newRepositoryManager());
+		assertFalse(service.isUnifiedIndex());
+		try {
+			for (String name : REPOSITORIES) {
+				Git git = Git.open(new File(folder.getRoot(), "git/" + name));
+				service.reindex(newRepositoryModel(name), git.getRepository());
+				git.close();
+			}
+			List<SearchResult> results = service.searchCode("int foo_bar(int b)", false, 1, 10, REPOSITORIES);
+			assertEquals(1, results.size());
+			assertEquals("beta.git", results.get(0).repository);
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testJoinIsNotLimitedToTopContents() throws Exception {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.web.luceneIndexShards, "1");
+		LuceneService service = new LuceneService(settings, newRepositoryManager(), folder.newFolder("single"));
+		try {
+			// the long readme of alpha.git scores lower than every content of crowd.git
+			File dir = new File(folder.getRoot(), "git/alpha.git");
+			Git git = Git.open(dir);
+			Files.write(new File(dir, "NEEDLE.md").toPath(),
+					"a needle in the long readme of the haystack of alpha".getBytes(StandardCharsets.UTF_8));
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("add the needle").call();
+			service.reindex(newRepositoryModel("alpha.git"), git.getRepository());
+			git.close();
+
+			dir = new File(folder.getRoot(), "git/crowd.git");
+			git = Git.init().setDirectory(dir).call();
+			for (int i = 0; i <= 5000; i++) {
+				Files.write(new File(dir, "needle" + i + ".txt").toPath(),
+						("needle " + i).getBytes(StandardCharsets.UTF_8));
+			}
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("the crowd").call();
+			service.reindex(newRepositoryModel("crowd.git"), git.getRepository());
+			git.close();
+
+			List<SearchResult> results = service.search("type:blob AND needle", 1, 10, "alpha.git");
+			assertEquals(1, results.size());
+			assertEquals("NEEDLE.md", results.get(0).path);
+			assertEquals(10, service.search("type:blob AND needle", 1, 10, "crowd.git").size());
+
+			// the code search does not verify all candidates
+			results = service.searchCode("needle", false, 1, 10, "crowd.git");
+			assertEquals(10, results.size());
+			assertTrue(results.get(0).truncated);
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testDeleteIndex() {
+		assertTrue(lucene.deleteIndex("alpha.git"));
+		assertTrue(lucene.search("shared", 1, 10, "alpha.git").isEmpty());
+		assertEquals(4, lucene.search("shared", 1, 10, REPOSITORIES).size());
+	}
+
+	@Test
+	public void testQueriesOnContentAndBlobFields() {
+		// the content of a blob and the fields of its documents are combined
+		List<SearchResult> results = lucene.search("type:blob AND readme AND path:README.md", 1, 10, REPOSITORIES);
+		assertEquals(3, results.size());
+		assertTrue(results.get(0).fragment, results.get(0).fragment.contains("<span class=\"highlight\">readme</span>"));
+		assertTrue(lucene.search("type:blob AND readme AND path:Main.java", 1, 10, REPOSITORIES).isEmpty());
+
+		results = lucene.search("type:blob AND NOT content:readme", 1, 10, REPOSITORIES);
+		assertEquals(3, results.size());
+		for (SearchResult result : results) {
+			assertEquals("Main.java", result.path);
+		}
+
+		// the more relevant content ranks first
+		results = lucene.search("type:blob AND (\"readme of beta.git\" OR foo_bar)", 1, 10, REPOSITORIES);
+		assertEquals(4, results.size());
+		assertEquals("beta.git", results.get(0).repository);
+		assertEquals("README.md", results.get(0).path);
+	}
+
+	@Test
+	public void testForksShareContent() throws Exception {
+		// the fork has the blobs of alpha.git and a blob of its own
+		File dir = new File(folder.getRoot(), "git/alpha-fork.git");
+		Git git = Git.cloneRepository().setURI(new File(folder.getRoot(), "git/alpha.git").toURI().toString())
+				.setDirectory(dir).call();
+		Files.write(new File(dir, "FORK.md").toPath(), "the readme of the fork".getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("forked").call();
+
+		RepositoryModel alpha = newRepositoryModel("alpha.git");
+		RepositoryModel fork = newRepositoryModel("alpha-fork.git");
+		fork.originRepository = alpha.name;
+		when(repositoryManager.hasRepository(fork.name)).thenReturn(true);
+		when(repositoryManager.getForkNetwork(fork.name)).thenReturn(new ForkModel(alpha));
+		lucene.reindex(fork, git.getRepository());
+		git.close();
+
+		List<SearchResult> results = lucene.searchCode("foo_bar(int a)", false, 1, 10, "alpha.git", fork.name);
+		assertEquals(new TreeSet<String>(Arrays.asList("alpha.git", fork.name)), getRepositories(results));
+		assertEquals(1, lucene.search("type:blob AND fork", 1, 10, fork.name).size());
+
+		// the shared content outlives the origin
+		assertTrue(lucene.deleteIndex("alpha.git"));
+		results = lucene.search("type:blob AND \"shared readme\"", 1, 10, "alpha.git", fork.name);
+		assertEquals(1, results.size());
+		assertEquals(fork.name, results.get(0).repository);
+		assertTrue(results.get(0).fragment.contains("highlight"));
+		assertEquals(1, lucene.searchCode("foo_bar(int a)", false, 1, 10, fork.name).size());
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		File dir = new File(folder.getRoot(), "git/beta.git");
+		RepositoryModel model = newRepositoryModel("beta.git");
+		when(repositoryManager.getRepositoryModel(model.name)).thenReturn(model);
+
+		// a change of a blob replaces its document and its content
+		Git git = Git.open(dir);
+		Files.write(new File(dir, "README.md").toPath(), "the changed readme".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(dir, "COPY.md").toPath(), "the changed readme".getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("change the readme").call();
+		when(repositoryManager.getRepository(model.name)).thenReturn(git.getRepository());
+		lucene.update(model.name);
+
+		List<SearchResult> results = lucene.search("type:blob AND changed", 1, 10, model.name);
+		assertEquals(2, results.size());
+		assertTrue(lucene.search("type:blob AND \"shared readme\"", 1, 10, model.name).isEmpty());
+		assertEquals(2, lucene.search("type:blob AND \"shared readme\"", 1, 10, REPOSITORIES).size());
+
+		// the blob of a path is deleted, the copy keeps the shared content
+		assertTrue(lucene.deleteBlob(model.name, "refs/heads/master", "README.md"));
+		assertFalse(lucene.deleteBlob(model.name, "refs/heads/master", "README.md"));
+		results = lucene.search("type:blob AND changed", 1, 10, model.name);
+		assertEquals(1, results.size());
+		assertEquals("COPY.md", results.get(0).path);
+		assertEquals(1, lucene.searchCode("changed readme", false, 1, 10, model.name).size());
+		git.close();
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gitblit.Keys;
+import com.gitblit.manager.IRepositoryManager;
+import com.gitblit.models.MirrorStatus;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.tests.mock.MemorySettings;
+import com.gitblit.utils.TimeUtils;
+
+/**
+ * Tests the mirror service against local file:// upstreams.
+ */
+public class MirrorServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File upstreamDir;
+
+	private Git upstream;
+
+	private IRepositoryManager repositoryManager;
+
+	private MirrorService service;
+
+	@Before
+	public void setUp() throws Exception {
+		upstreamDir = folder.newFolder("upstream");
+		upstream = Git.init().setDirectory(upstreamDir).call();
+		commit("first");
+
+		File mirrorDir = folder.newFolder("mirror.git");
+		createMirror(mirrorDir, upstreamDir);
+		File bareDir = folder.newFolder("bare.git");
+		Git.init().setBare(true).setDirectory(bareDir).call().close();
+
+		Map<String, File> dirs = new HashMap<String, File>();
+		dirs.put("mirror.git", mirrorDir);
+		dirs.put("bare.git", bareDir);
+
+		repositoryManager = mock(IRepositoryManager.class);
+		when(repositoryManager.getRepositoriesFolder()).thenReturn(folder.getRoot());
+		when(repositoryManager.getRepositoryList()).thenReturn(Arrays.asList("bare.git", "mirror.git"));
+		for (final Map.Entry<String, File> entry : dirs.entrySet()) {
+			RepositoryModel model = new RepositoryModel(entry.getKey(), "", "", null);
+			model.isBare = true;
+			model.isMirror = "mirror.git".equals(entry.getKey());
+			when(repositoryManager.getRepositoryModel(entry.getKey())).thenReturn(model);
+			when(repositoryManager.getRepository(entry.getKey())).thenAnswer(new Answer<Repository>() {
+				@Override
+				public Repository answer(InvocationOnMock invocation) throws Throwable {
+					return new FileRepositoryBuilder().setGitDir(entry.getValue()).build();
+				}
+			});
+		}
+
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.enableMirroring, "true");
+		settings.put(Keys.git.mirrorPeriod, "30 mins");
+		settings.put(Keys.git.mirrorMinPeriod, "5 mins");
+		settings.put(Keys.git.mirrorMaxPeriod, "2 hours");
+		service = new MirrorService(settings, repositoryManager);
+	}
+
+	@After
+	public void tearDown() {
+		service.close();
+		upstream.close();
+	}
+
+	private static void createMirror(File mirrorDir, File upstreamDir) throws Exception {
+		Git git = Git.init().setBare(true).setDirectory(mirrorDir).call();
+		StoredConfig config = git.getRepository().getConfig();
+		config.setString("remote", "origin", "url", upstreamDir.toURI().toString());
+		config.setString("remote", "origin", "fetch", "+refs/*:refs/*");
+		config.setBoolean("remote", "origin", "mirror", true);
+		config.save();
+		git.close();
+	}
+
+	private ObjectId commit(String message) throws Exception {
+		return upstream.commit().setMessage(message).setAllowEmpty(true).call().getId();
+	}
+
+	private ObjectId getMirrorMaster() throws Exception {
+		Repository repository = repositoryManager.getRepository("mirror.git");
+		try {
+			return repository.resolve("refs/heads/master");
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	public void testIdentifyMirrors() throws Exception {
+		service.identifyMirrors();
+		List<MirrorStatus> list = service.getStatus();
+		assertEquals(1, list.size());
+		assertEquals("mirror.git", list.get(0).repository);
+		assertNull(list.get(0).lastCheck);
+	}
+
+	@Test
+	public void testIdentifyReconfiguredMirrors() throws Exception {
+		service.identifyMirrors();
+		assertEquals(1, service.getStatus().size());
+
+		// the bare repository is configured as a mirror later
+		File bareDir = new File(folder.getRoot(), "bare.git");
+		createMirror(bareDir, upstreamDir);
+		File config = new File(bareDir, "config");
+		config.setLastModified(config.lastModified() + 2000);
+		service.identifyMirrors();
+		assertEquals(2, service.getStatus().size());
+
+		// a mirror which has lost its remote is inspected again
+		Repository repository = repositoryManager.getRepository("bare.git");
+		repository.getConfig().unsetSection("remote", "origin");
+		repository.getConfig().save();
+		repository.close();
+		service.check("bare.git");
+		assertEquals(1, service.getStatus().size());
+		createMirror(bareDir, upstreamDir);
+		service.identifyMirrors();
+		assertEquals(2, service.getStatus().size());
+	}
+
+	@Test
+	public void testFetchNewRefs() throws Exception {
+		MirrorStatus status = service.check("mirror.git");
+		assertEquals(1, status.checks);
+		assertEquals(1, status.fetches);
+		assertEquals(0, status.failures);
+		assertNotNull(status.lastChange);
+		assertNotNull(status.lastSync);
+		assertEquals(upstream.getRepository().resolve("refs/heads/master"), getMirrorMaster());
+	}
+
+	@Test
+	public void testSkipUnchangedUpstream() throws Exception {
+		service.check("mirror.git");
+		MirrorStatus status = service.check("mirror.git");
+		assertEquals(2, status.checks);
+		assertEquals(1, status.fetches);
+		assertEquals(1, status.skipped);
+
+		ObjectId second = commit("second");
+		status = service.check("mirror.git");
+		assertEquals(3, status.checks);
+		assertEquals(2, status.fetches);
+		assertEquals(second, getMirrorMaster());
+	}
+
+	@Test
+	public void testUnreachableUpstream() throws Exception {
+		service.check("mirror.git");
+		upstream.close();
+		FileUtils.delete(upstreamDir, FileUtils.RECURSIVE);
+
+		MirrorStatus status = service.check("mirror.git");
+		assertEquals(1, status.failures);
+		assertNotNull(status.lastError);
+		// halved by the first fetch, doubled by the failure
+		assertEquals(30 * TimeUtils.MIN, status.interval);
+	}
+
+	@Test
+	public void testAdaptiveInterval() {
+		long period = 30 * TimeUtils.MIN;
+		assertEquals(15 * TimeUtils.MIN, service.nextInterval(period, true, false));
+		assertEquals(45 * TimeUtils.MIN, service.nextInterval(period, false, false));
+		assertEquals(60 * TimeUtils.MIN, service.nextInterval(period, false, true));
+		assertEquals(5 * TimeUtils.MIN, service.nextInterval(6 * TimeUtils.MIN, true, false));
+		assertEquals(120 * TimeUtils.MIN, service.nextInterval(100 * TimeUtils.MIN, false, false));
+	}
+}
@@ -18,42 +18,8 @@ package com.gitblit.tests;
 import com.gitblit.utils.PathUtils;
 import org.junit.Test;
 
-import java.util.Arrays;
-
 public class PathUtilsTest extends GitblitUnitTest {
 
-	private static final String[][][] testData = {
-
-			{
-					// Folder contents
-					{".gitignore","src/main/java/a.java", "src/main/java/b.java", "docs/c.md"},
-					// Expected after compressing
-					{".gitignore", "src/main/java/", "docs/"}
-			},
-
-			{
-					{".gitignore","src/main/java/a.java", "src/main/b.java", "docs/c.md"},
-					{".gitignore", "src/main/", "docs/"}
-			},
-
-			{
-					{".gitignore","src/x.java","src/main/java/a.java", "src/main/java/b.java", "docs/c.md"},
-					{".gitignore", "src/", "docs/"}
-			},
-	};
-
-
-
-
-	@Test
-	public void testCompressPaths() throws Exception {
-
-		for (String[][] test : testData ) {
-			assertArrayEquals(test[1], PathUtils.compressPaths(Arrays.asList(test[0])).toArray(new String[]{}));
-		}
-
-	}
-
 	@Test
 	public void testGetLastPathComponent() {
 		assertEquals(PathUtils.getLastPathComponent("/a/b/c/d/e.out"), "e.out");
@@ -16,6 +16,7 @@
 package com.gitblit.tests;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -248,6 +249,38 @@ public abstract class TicketServiceTest extends GitblitUnitTest {
 		assertTrue(service.deleteTicket(getRepository(), ticket.number, "D"));
 	}
 
+	@Test
+	public void testBatchUpdate() throws Exception {
+		// C1: create the ticket
+		Change c1 = newChange("testBatchUpdate() " + Long.toHexString(System.currentTimeMillis()));
+		TicketModel ticket = service.createTicket(getRepository(), c1);
+		assertTrue(ticket.number > 0);
+
+		// reference two commits and close the ticket in one update
+		List<Change> changes = new ArrayList<Change>();
+		Change c2 = new Change("B1");
+		c2.referenceCommit("1111111111111111111111111111111111111111");
+		changes.add(c2);
+		Change c3 = new Change("B1");
+		c3.referenceCommit("2222222222222222222222222222222222222222");
+		changes.add(c3);
+		Change c4 = new Change("B1");
+		c4.setField(Field.status, Status.Fixed);
+		changes.add(c4);
+
+		ticket = service.updateTicket(getRepository(), ticket.number, changes);
+		assertNotNull(ticket);
+		assertEquals(4, ticket.changes.size());
+		assertEquals(2, ticket.getReferences().size());
+		assertTrue(ticket.isClosed());
+
+		TicketModel constructed = service.getTicket(getRepository(), ticket.number);
+		compare(ticket, constructed);
+		assertEquals(4, constructed.changes.size());
+
+		assertTrue(service.deleteTicket(getRepository(), ticket.number, "D"));
+	}
+
 	@Test
 	public void testMilestones() throws Exception {
 		service.createMilestone(getRepository(), "M1", "james");
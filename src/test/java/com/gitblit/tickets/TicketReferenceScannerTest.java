@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.tickets;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gitblit.Keys;
+import com.gitblit.models.TicketModel.TicketAction;
+import com.gitblit.models.TicketModel.TicketLink;
+import com.gitblit.tests.mock.MemorySettings;
+
+/**
+ * Tests the identification of ticket references in commit messages.
+ */
+public class TicketReferenceScannerTest {
+
+	private static final String SHA = "0123456789012345678901234567890123456789";
+
+	@Test
+	public void testNoReferences() {
+		TicketReferenceScanner scanner = new TicketReferenceScanner(new MemorySettings());
+		assertTrue(scanner.scan(SHA, "Refactor the ticket service").isEmpty());
+		assertTrue(scanner.scan(SHA, "Bump version to 1.10").isEmpty());
+		assertTrue(scanner.scan(SHA, null).isEmpty());
+	}
+
+	@Test
+	public void testCloseAndReference() {
+		TicketReferenceScanner scanner = new TicketReferenceScanner(new MemorySettings());
+		List<TicketLink> links = scanner.scan(SHA, "Fixes #12, see #7 and #12 and bug #7");
+		assertEquals(2, links.size());
+
+		assertEquals(12, links.get(0).targetTicketId);
+		assertEquals(TicketAction.Close, links.get(0).action);
+		assertEquals(SHA, links.get(0).hash);
+
+		assertEquals(7, links.get(1).targetTicketId);
+		assertEquals(TicketAction.Commit, links.get(1).action);
+		assertEquals(SHA, links.get(1).hash);
+	}
+
+	@Test
+	public void testReuse() {
+		TicketReferenceScanner scanner = new TicketReferenceScanner(new MemorySettings());
+		assertEquals(1, scanner.scan(SHA, "closes #1").size());
+		assertEquals(2, scanner.scan(SHA, "ref #2, ref #3").size());
+		assertEquals(3, scanner.scan(SHA, "ref #3").get(0).targetTicketId);
+	}
+
+	@Test
+	public void testCustomPatterns() {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.tickets.closeOnPushCommitMessageRegex, "resolves\\s+T(\\d+)");
+		settings.put(Keys.tickets.linkOnPushCommitMessageRegex, "\\bT(\\d+)");
+		TicketReferenceScanner scanner = new TicketReferenceScanner(settings);
+		List<TicketLink> links = scanner.scan(SHA, "Resolves T4, touches T5 and #6");
+		assertEquals(2, links.size());
+		assertEquals(4, links.get(0).targetTicketId);
+		assertEquals(TicketAction.Close, links.get(0).action);
+		assertEquals(5, links.get(1).targetTicketId);
+		assertEquals(TicketAction.Commit, links.get(1).action);
+	}
+
+	@Test
+	public void testInvalidPatternFallsBack() {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.tickets.linkOnPushCommitMessageRegex, "ref #(\\d+");
+		TicketReferenceScanner scanner = new TicketReferenceScanner(settings);
+		List<TicketLink> links = scanner.scan(SHA, "ref #8");
+		assertEquals(1, links.size());
+		assertEquals(8, links.get(0).targetTicketId);
+	}
+}
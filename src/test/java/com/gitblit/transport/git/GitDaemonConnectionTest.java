@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.transport.git;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.Socket;
+
+import org.eclipse.jgit.transport.PacketLineIn;
+import org.junit.After;
+import org.junit.Test;
+
+import com.gitblit.Keys;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.tests.mock.MemorySettings;
+
+/**
+ * Tests the connection limits of the Git Daemon.
+ */
+public class GitDaemonConnectionTest {
+
+	private GitDaemon daemon;
+
+	@After
+	public void tearDown() {
+		if (daemon != null) {
+			daemon.stop();
+		}
+	}
+
+	private GitDaemon start(int threads, int backlog, int perIp) throws Exception {
+		MemorySettings settings = new MemorySettings();
+		settings.put(Keys.git.daemonPort, "0");
+		settings.put(Keys.git.daemonBindInterface, "localhost");
+		settings.put(Keys.git.daemonThreads, String.valueOf(threads));
+		settings.put(Keys.git.daemonBacklog, String.valueOf(backlog));
+		settings.put(Keys.git.daemonMaxConnectionsPerIp, String.valueOf(perIp));
+		IGitblit gitblit = mock(IGitblit.class);
+		when(gitblit.getSettings()).thenReturn(settings);
+		daemon = new GitDaemon(gitblit);
+		daemon.start();
+		return daemon;
+	}
+
+	private Socket connect() throws Exception {
+		Socket s = new Socket("localhost", daemon.getPort());
+		s.setSoTimeout(10000);
+		return s;
+	}
+
+	private static String readError(Socket s) throws Exception {
+		return new PacketLineIn(s.getInputStream()).readString();
+	}
+
+	private void awaitActive(int count) throws Exception {
+		for (int i = 0; i < 100 && daemon.getActiveCount() < count; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(count, daemon.getActiveCount());
+	}
+
+	@Test
+	public void testPoolSaturated() throws Exception {
+		start(1, 0, 0);
+		Socket first = connect();
+		try {
+			awaitActive(1);
+			Socket second = connect();
+			try {
+				assertEquals("ERR server is busy, please try again later", readError(second));
+			} finally {
+				second.close();
+			}
+			assertEquals(1, daemon.getRejectedCount());
+		} finally {
+			first.close();
+		}
+	}
+
+	@Test
+	public void testBacklog() throws Exception {
+		start(1, 1, 0);
+		Socket first = connect();
+		Socket second = null;
+		try {
+			awaitActive(1);
+			second = connect();
+			for (int i = 0; i < 100 && daemon.getQueuedCount() < 1; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, daemon.getQueuedCount());
+			assertEquals(0, daemon.getRejectedCount());
+		} finally {
+			first.close();
+			if (second != null) {
+				second.close();
+			}
+		}
+	}
+
+	@Test
+	public void testConnectionsPerIp() throws Exception {
+		start(4, 4, 1);
+		Socket first = connect();
+		try {
+			awaitActive(1);
+			Socket second = connect();
+			try {
+				String error = readError(second);
+				assertTrue(error, error.startsWith("ERR too many connections from "));
+			} finally {
+				second.close();
+			}
+		} finally {
+			first.close();
+		}
+
+		// the slot is released when the first client disconnects
+		for (int i = 0; i < 100 && daemon.getActiveCount() > 0; i++) {
+			Thread.sleep(50);
+		}
+		Socket third = connect();
+		try {
+			awaitActive(1);
+			assertEquals(1, daemon.getRejectedCount());
+		} finally {
+			third.close();
+		}
+	}
+}
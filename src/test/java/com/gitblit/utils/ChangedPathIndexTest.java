@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand.FastForwardMode;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the changed path filters of the commits and the path histories which
+ * skip commits using these filters.
+ */
+public class ChangedPathIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File dir;
+
+	private Git git;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = folder.newFolder("paths.git");
+		git = Git.init().setDirectory(dir).call();
+		commit("README.md", "readme", "add readme");
+		for (int i = 0; i < 20; i++) {
+			commit("src/main/Busy.java", "class Busy { int i = " + i + "; }", "busy " + i);
+			if (i % 5 == 0) {
+				commit("src/test/Rare.java", "class Rare { int i = " + i + "; }", "rare " + i);
+			}
+		}
+		// a merge of a topic branch which changed the rare file
+		git.checkout().setCreateBranch(true).setName("topic").setStartPoint("HEAD~3").call();
+		commit("src/test/Rare.java", "class Rare { }", "rare on topic");
+		git.checkout().setName("master").call();
+		git.merge().include(git.getRepository().resolve("topic")).setFastForward(FastForwardMode.NO_FF)
+				.setMessage("merge topic").call();
+	}
+
+	@After
+	public void tearDown() {
+		git.close();
+	}
+
+	private RevCommit commit(String path, String content, String message) throws Exception {
+		File file = new File(dir, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(path).call();
+		return git.commit().setMessage(message).call();
+	}
+
+	@Test
+	public void testFilters() throws Exception {
+		Repository repository = git.getRepository();
+		ChangedPathIndex index = ChangedPathIndex.empty().update(repository);
+		assertEquals(JGitUtils.getRevLog(repository, "refs/heads/master", 0, -1).size(), index.size());
+
+		ChangedPathIndex.Key rare = new ChangedPathIndex.Key("src/test/Rare.java");
+		ChangedPathIndex.Key test = new ChangedPathIndex.Key("src/test");
+		ChangedPathIndex.Key folder = new ChangedPathIndex.Key("src/test/");
+		int skipped = 0;
+		for (RevCommit commit : JGitUtils.getRevLog(repository, "refs/heads/master", 0, -1)) {
+			if (commit.getParentCount() != 1) {
+				continue;
+			}
+			if (commit.getFullMessage().startsWith("rare")) {
+				// a changed path and its folders are always contained
+				assertTrue(index.mightHaveChanged(commit, rare));
+				assertTrue(index.mightHaveChanged(commit, test));
+				assertTrue(index.mightHaveChanged(commit, folder));
+			} else if (!index.mightHaveChanged(commit, rare)) {
+				skipped++;
+			}
+		}
+		// false positives are rare with 10 bits per path
+		assertTrue("skipped " + skipped, skipped >= 18);
+	}
+
+	@Test
+	public void testHistory() throws Exception {
+		Repository repository = git.getRepository();
+		ChangedPathIndex index = ChangedPathIndex.empty().update(repository);
+		for (String path : new String[] { "src/test/Rare.java", "src/test", "src/main/Busy.java", "README.md" }) {
+			List<RevCommit> expected = JGitUtils.getRevLog(repository, "master", path, 0, -1);
+			List<RevCommit> actual = JGitUtils.getRevLog(repository, "master", path, 0, -1, index);
+			assertFalse(expected.isEmpty());
+			assertEquals(path, expected, actual);
+			assertEquals(path, JGitUtils.getRevLog(repository, "master", path, 2, 3),
+					JGitUtils.getRevLog(repository, "master", path, 2, 3, index));
+		}
+		// the merge took the rare file of the topic branch
+		assertEquals(5, JGitUtils.getRevLog(repository, "master", "src/test/Rare.java", 0, -1, index).size());
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		Repository repository = git.getRepository();
+		ChangedPathIndex index = ChangedPathIndex.empty().update(repository);
+		assertSame(index, index.update(repository));
+
+		RevCommit added = commit("src/test/Rare.java", "class Rare { int j; }", "rare again");
+		assertFalse(index.contains(added));
+		// a commit which is not indexed yet may have changed any path
+		assertTrue(index.mightHaveChanged(added, new ChangedPathIndex.Key("none")));
+
+		ChangedPathIndex updated = index.update(repository);
+		assertEquals(index.size() + 1, updated.size());
+		assertTrue(updated.contains(added));
+		assertFalse(updated.mightHaveChanged(added, new ChangedPathIndex.Key("src/main")));
+		assertEquals(6, JGitUtils.getRevLog(repository, "master", "src/test/Rare.java", 0, -1, updated).size());
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		Repository repository = git.getRepository();
+		ChangedPathIndex index = ChangedPathIndex.empty().update(repository);
+		File file = ChangedPathIndex.getFile(repository);
+		index.write(file);
+
+		ChangedPathIndex read = ChangedPathIndex.read(file);
+		assertNotNull(read);
+		assertEquals(index.size(), read.size());
+		assertEquals(index.getTips(), read.getTips());
+		assertSame(read, read.update(repository));
+		assertEquals(JGitUtils.getRevLog(repository, "master", "src/test", 0, -1),
+				JGitUtils.getRevLog(repository, "master", "src/test", 0, -1, read));
+	}
+}
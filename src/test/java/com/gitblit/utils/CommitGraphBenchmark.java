@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Compares the reachability queries of {@link JGitUtils} with and without the
+ * commit graph on a generated history.
+ *
+ * Usage: CommitGraphBenchmark [commits] [queries]
+ */
+public class CommitGraphBenchmark {
+
+	private interface Query {
+		void run(Repository repository, ObjectId a, ObjectId b);
+	}
+
+	public static void main(String... args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		File dir = Files.createTempDirectory("commitgraph").toFile();
+		Repository repository = CommitGraphTest.createRepository(new File(dir, "benchmark.git"));
+		try {
+			long start = System.nanoTime();
+			List<ObjectId> commits = CommitGraphTest.createHistory(repository, count, 8, new Random(1));
+			System.out.println(String.format("created %d commits in %d ms", commits.size(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+			start = System.nanoTime();
+			CommitGraph graph = CommitGraph.empty().update(repository);
+			graph.write(CommitGraph.getFile(repository));
+			System.out.println(String.format("built the commit graph of %d commits (%d bytes) in %d ms",
+					graph.size(), graph.getByteSize(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+			run("isMergedInto", repository, commits, queries, new Query() {
+				@Override
+				public void run(Repository repository, ObjectId a, ObjectId b) {
+					JGitUtils.isMergedInto(repository, a, b);
+				}
+			});
+			run("getMergeBase", repository, commits, queries, new Query() {
+				@Override
+				public void run(Repository repository, ObjectId a, ObjectId b) {
+					JGitUtils.getMergeBase(repository, a, b);
+				}
+			});
+			run("countCommits", repository, commits, queries, new Query() {
+				@Override
+				public void run(Repository repository, ObjectId a, ObjectId b) {
+					JGitUtils.countCommits(repository, new RevWalk(repository), a, b);
+				}
+			});
+		} finally {
+			repository.close();
+			FileUtils.delete(dir);
+		}
+	}
+
+	private static void run(String name, Repository repository, List<ObjectId> commits, int queries,
+			Query query) {
+		CommitGraphCache cache = CommitGraphCache.instance();
+		cache.close();
+		long walk = time(repository, commits, queries, query);
+
+		cache.configure(Long.MAX_VALUE);
+		// read the graph before timing
+		cache.get(repository);
+		long graph = time(repository, commits, queries, query);
+		cache.close();
+
+		System.out.println(String.format("%-14s %6d queries  walk %8.2f ms/query  graph %8.3f ms/query  %6.1fx",
+				name, queries, walk / 1e6 / queries, graph / 1e6 / queries, (double) walk / Math.max(1, graph)));
+	}
+
+	private static long time(Repository repository, List<ObjectId> commits, int queries, Query query) {
+		// queries between recent commits and older commits, like a ticket
+		// branch and its integration branch
+		Random random = new Random(2);
+		long start = System.nanoTime();
+		for (int i = 0; i < queries; i++) {
+			ObjectId a = commits.get(commits.size() / 2 + random.nextInt(commits.size() / 2));
+			ObjectId b = commits.get(commits.size() - 1 - random.nextInt(Math.max(1, commits.size() / 100)));
+			query.run(repository, a, b);
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the reachability queries of the commit graph against the walks of
+ * JGit on a random history with merges.
+ */
+public class CommitGraphTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private List<ObjectId> commits;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = createRepository(folder.newFolder("graph.git"));
+		commits = createHistory(repository, 300, 5, new Random(42));
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	static Repository createRepository(File dir) throws IOException {
+		Repository repository = new FileRepositoryBuilder().setGitDir(dir).setBare().build();
+		repository.create(true);
+		return repository;
+	}
+
+	/**
+	 * Creates a history of commits on a number of branches, which merge each
+	 * other at random.  Some merges are octopus merges.
+	 *
+	 * @return the commits in the order of their creation
+	 */
+	static List<ObjectId> createHistory(Repository repository, int count, int branches, Random random)
+			throws IOException {
+		List<ObjectId> commits = new ArrayList<ObjectId>();
+		ObjectId[] heads = new ObjectId[branches];
+		try (ObjectInserter inserter = repository.newObjectInserter()) {
+			ObjectId tree = inserter.insert(Constants.OBJ_TREE, new byte[0]);
+			for (int i = 0; i < count; i++) {
+				int branch = random.nextInt(branches);
+				List<ObjectId> parents = new ArrayList<ObjectId>();
+				if (heads[branch] != null) {
+					parents.add(heads[branch]);
+				}
+				if (random.nextInt(8) == 0) {
+					// merge other branches
+					int merges = random.nextInt(10) == 0 ? 2 : 1;
+					for (int j = 0; j < merges; j++) {
+						ObjectId other = heads[random.nextInt(branches)];
+						if (other != null && !parents.contains(other)) {
+							parents.add(other);
+						}
+					}
+				}
+				CommitBuilder commit = new CommitBuilder();
+				commit.setTreeId(tree);
+				commit.setParentIds(parents);
+				PersonIdent ident = new PersonIdent("test", "test@gitblit.com", 1500000000000L + i * 60000L, 0);
+				commit.setAuthor(ident);
+				commit.setCommitter(ident);
+				commit.setMessage("commit " + i + " of " + Long.toHexString(random.nextLong()));
+				heads[branch] = inserter.insert(commit);
+				commits.add(heads[branch]);
+			}
+			inserter.flush();
+		}
+		for (int i = 0; i < branches; i++) {
+			if (heads[i] != null) {
+				RefUpdate update = repository.updateRef(Constants.R_HEADS + "b" + i);
+				update.setNewObjectId(heads[i]);
+				update.forceUpdate();
+			}
+		}
+		return commits;
+	}
+
+	private int walkCount(ObjectId base, ObjectId tip) throws IOException {
+		try (RevWalk rw = new RevWalk(repository)) {
+			rw.markStart(rw.parseCommit(tip));
+			rw.markUninteresting(rw.parseCommit(base));
+			int count = 0;
+			while (rw.next() != null) {
+				count++;
+			}
+			return count;
+		}
+	}
+
+	private Set<ObjectId> walkMergeBases(ObjectId a, ObjectId b) throws IOException {
+		Set<ObjectId> bases = new HashSet<ObjectId>();
+		try (RevWalk rw = new RevWalk(repository)) {
+			rw.setRevFilter(RevFilter.MERGE_BASE);
+			rw.markStart(rw.parseCommit(a));
+			rw.markStart(rw.parseCommit(b));
+			RevCommit base;
+			while ((base = rw.next()) != null) {
+				bases.add(base.copy());
+			}
+		}
+		return bases;
+	}
+
+	private void assertQueries(CommitGraph graph, Random random) throws IOException {
+		for (int i = 0; i < 200; i++) {
+			ObjectId a = commits.get(random.nextInt(commits.size()));
+			ObjectId b = commits.get(random.nextInt(commits.size()));
+			try (RevWalk rw = new RevWalk(repository)) {
+				assertEquals(rw.isMergedInto(rw.parseCommit(a), rw.parseCommit(b)), graph.isMergedInto(a, b));
+			}
+			assertEquals(walkCount(a, b), graph.countCommits(a, b));
+			Set<ObjectId> bases = walkMergeBases(a, b);
+			ObjectId base = graph.getMergeBase(a, b);
+			if (bases.isEmpty()) {
+				assertEquals(ObjectId.zeroId(), base);
+			} else {
+				assertTrue(bases.contains(base));
+			}
+		}
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		CommitGraph graph = CommitGraph.empty().update(repository);
+		assertEquals(commits.size(), graph.size());
+		assertQueries(graph, new Random(7));
+
+		// a commit which is not in the graph can not be answered
+		ObjectId unknown = ObjectId.fromString("0123456789012345678901234567890123456789");
+		assertNull(graph.isMergedInto(unknown, commits.get(0)));
+		assertNull(graph.getMergeBase(commits.get(0), unknown));
+		assertEquals(-1, graph.countCommits(unknown, commits.get(0)));
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		CommitGraph graph = CommitGraph.empty().update(repository);
+		assertSame(graph, graph.update(repository));
+
+		commits.addAll(createHistory(repository, 100, 3, new Random(43)));
+		CommitGraph updated = graph.update(repository);
+		assertEquals(commits.size(), updated.size());
+		assertQueries(updated, new Random(8));
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		CommitGraph graph = CommitGraph.empty().update(repository);
+		File file = CommitGraph.getFile(repository);
+		graph.write(file);
+
+		CommitGraph read = CommitGraph.read(file);
+		assertNotNull(read);
+		assertEquals(graph.size(), read.size());
+		assertEquals(graph.getTips(), read.getTips());
+		assertSame(read, read.update(repository));
+		assertQueries(read, new Random(9));
+	}
+
+	@Test
+	public void testJGitUtils() throws Exception {
+		CommitGraphCache cache = CommitGraphCache.instance();
+		cache.configure(1024 * 1024);
+		try {
+			assertNotNull(cache.update(repository));
+			assertNotNull(cache.get(repository));
+			ObjectId a = commits.get(100);
+			ObjectId b = commits.get(commits.size() - 1);
+			try (RevWalk rw = new RevWalk(repository)) {
+				assertEquals(rw.isMergedInto(rw.parseCommit(a), rw.parseCommit(b)),
+						JGitUtils.isMergedInto(repository, a, b));
+			}
+			assertEquals(walkCount(a, b), JGitUtils.countCommits(repository, new RevWalk(repository), a, b));
+			String base = JGitUtils.getMergeBase(repository, a, b);
+			assertTrue(walkMergeBases(a, b).contains(ObjectId.fromString(base)));
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testLargeGraphStaysCached() throws Exception {
+		int size = CommitGraph.empty().update(repository).getByteSize();
+		CommitGraphCache cache = CommitGraphCache.instance();
+		// the graph is larger than a quarter of the cache
+		cache.configure(size + size / 2);
+		try {
+			CommitGraph graph = cache.update(repository);
+			assertNotNull(graph);
+			assertSame(graph, cache.get(repository));
+		} finally {
+			cache.close();
+		}
+
+		// a graph larger than the cache is not read
+		cache.configure(size / 2);
+		try {
+			assertTrue(CommitGraph.getFile(repository).exists());
+			assertNull(cache.get(repository));
+		} finally {
+			cache.close();
+		}
+	}
+}
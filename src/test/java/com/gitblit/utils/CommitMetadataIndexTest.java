@@ -0,0 +1,227 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand.FastForwardMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gitblit.Constants.SearchType;
+
+/**
+ * Tests the searches of the commit metadata index against the searches of
+ * the history of the branches.
+ */
+public class CommitMetadataIndexTest {
+
+	private static final String[] NAMES = { "Alice Example", "Bob Sample", "Carol Test" };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File dir;
+
+	private Git git;
+
+	private Random random = new Random(42);
+
+	private long time = 1500000000000L;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = folder.newFolder("metadata.git");
+		git = Git.init().setDirectory(dir).call();
+		for (int i = 0; i < 30; i++) {
+			commit("master " + i);
+		}
+		git.checkout().setCreateBranch(true).setName("topic").setStartPoint("HEAD~10").call();
+		for (int i = 0; i < 15; i++) {
+			commit("topic " + i);
+		}
+		git.checkout().setName("master").call();
+		for (int i = 0; i < 5; i++) {
+			commit("master again " + i);
+		}
+		git.merge().include(git.getRepository().resolve("topic")).setFastForward(FastForwardMode.NO_FF)
+				.setMessage("Merge topic into master").call();
+		commit("after merge");
+	}
+
+	@After
+	public void tearDown() {
+		git.close();
+	}
+
+	private RevCommit commit(String message) throws Exception {
+		File file = new File(dir, "file.txt");
+		Files.write(file.toPath(), (message + random.nextLong()).getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern("file.txt").call();
+		// commit times with ties and with clock skew
+		int step = random.nextInt(4);
+		time += step == 0 ? 0 : step == 1 ? -60000 : 60000;
+		String author = NAMES[random.nextInt(NAMES.length)];
+		String committer = NAMES[random.nextInt(NAMES.length)];
+		PersonIdent authorIdent = new PersonIdent(author, author.split(" ")[0].toLowerCase() + "@example.com",
+				new Date(time), java.util.TimeZone.getTimeZone("UTC"));
+		PersonIdent committerIdent = new PersonIdent(committer, committer.split(" ")[0].toLowerCase()
+				+ "@example.com", new Date(time), java.util.TimeZone.getTimeZone("UTC"));
+		String body = random.nextBoolean() ? "\n\nFixes a Bug in the parser" : "";
+		return git.commit().setMessage(message + body).setAuthor(authorIdent).setCommitter(committerIdent).call();
+	}
+
+	private List<ObjectId> search(String branch, String value, SearchType type, int offset, int maxCount) {
+		List<ObjectId> ids = new ArrayList<ObjectId>();
+		for (RevCommit commit : JGitUtils.searchRevlogs(git.getRepository(), branch, value, type, offset, maxCount)) {
+			ids.add(commit.copy());
+		}
+		return ids;
+	}
+
+	private void assertSearches(CommitMetadataIndex index) throws Exception {
+		Repository repository = git.getRepository();
+		String[][] searches = {
+				{ "AUTHOR", "alice" },
+				{ "AUTHOR", "EXAMPLE.COM" },
+				{ "AUTHOR", "nobody" },
+				{ "COMMITTER", "bob s" },
+				{ "COMMITTER", "carol@" },
+				{ "COMMIT", "master" },
+				{ "COMMIT", "bug in" },
+				{ "COMMIT", "topic 1" },
+				{ "COMMIT", "merge" },
+				{ "COMMIT", "missing" } };
+		for (String branch : new String[] { "master", "topic", "HEAD~3" }) {
+			ObjectId tip = repository.resolve(branch);
+			for (String[] search : searches) {
+				SearchType type = SearchType.forName(search[0]);
+				String message = branch + " " + type + " " + search[1];
+				assertEquals(message, search(branch, search[1], type, 0, -1),
+						index.search(tip, search[1], type, 0, -1));
+				for (int offset = 0; offset < 20; offset += 7) {
+					assertEquals(message + " " + offset, search(branch, search[1], type, offset, 7),
+							index.search(tip, search[1], type, offset, 7));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		CommitMetadataIndex index = CommitMetadataIndex.empty();
+		assertTrue(index.update(git.getRepository()) > 0);
+		assertSearches(index);
+		assertTrue(index.search(ObjectId.zeroId(), "alice", SearchType.AUTHOR, 0, 10) == null);
+		assertTrue(index.search(git.getRepository().resolve("master"), "", SearchType.AUTHOR, 0, 10).isEmpty());
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		Repository repository = git.getRepository();
+		CommitMetadataIndex index = CommitMetadataIndex.empty();
+		index.update(repository);
+		int size = index.size();
+		assertEquals(0, index.update(repository));
+
+		RevCommit pushed = commit("pushed later");
+		assertNull(index.search(pushed, "pushed", SearchType.COMMIT, 0, 10));
+		assertEquals(1, index.update(repository));
+		assertEquals(size + 1, index.size());
+		assertSearches(index);
+	}
+
+	@Test
+	public void testReplaceOtherVersion() throws Exception {
+		Repository repository = git.getRepository();
+		File file = CommitMetadataIndex.getFile(repository);
+		file.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		}
+		assertNull(CommitMetadataIndex.read(file));
+		assertEquals(9, file.length());
+
+		CommitMetadataIndex index = CommitMetadataIndex.empty();
+		index.update(repository);
+		index.write(file);
+		CommitMetadataIndex read = CommitMetadataIndex.read(file);
+		assertNotNull(read);
+		assertEquals(index.size(), read.size());
+		assertSearches(read);
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		Repository repository = git.getRepository();
+		CommitMetadataIndex index = CommitMetadataIndex.empty();
+		index.update(repository);
+		File file = CommitMetadataIndex.getFile(repository);
+		index.write(file);
+		long length = file.length();
+
+		// appends the new commits
+		commit("pushed later");
+		index.update(repository);
+		index.write(file);
+		assertTrue(file.length() > length);
+
+		// an interrupted append is ignored by a read and truncated by a write
+		length = file.length();
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(new byte[] { 2, 3, 4, 5 });
+		}
+		CommitMetadataIndex read = CommitMetadataIndex.read(file);
+		assertNotNull(read);
+		assertEquals(length + 4, file.length());
+		assertEquals(index.size(), read.size());
+		assertEquals(0, read.update(repository));
+		assertSearches(read);
+		commit("pushed after the read");
+		assertEquals(1, read.update(repository));
+		read.write(file);
+		CommitMetadataIndex again = CommitMetadataIndex.read(file);
+		assertEquals(read.size(), again.size());
+		assertEquals(0, again.update(repository));
+		assertSearches(again);
+
+		try (RevWalk rw = new RevWalk(repository)) {
+			RevCommit head = rw.parseCommit(repository.resolve("master"));
+			assertTrue(read.contains(head));
+		}
+	}
+}
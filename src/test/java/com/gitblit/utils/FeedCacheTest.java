@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.gitblit.utils.FeedCache.Feed;
+
+/**
+ * Tests the cache of generated feeds.
+ */
+public class FeedCacheTest {
+
+	@Test
+	public void testETag() {
+		String etag = FeedCache.getETag("repo.git\nrefs/heads/master\n25");
+		assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+		assertEquals(etag, FeedCache.getETag("repo.git\nrefs/heads/master\n25"));
+		assertFalse(etag.equals(FeedCache.getETag("repo.git\nrefs/heads/master\n50")));
+	}
+
+	@Test
+	public void testCache() {
+		FeedCache cache = new FeedCache("test", 1024 * 1024);
+		assertTrue(cache.isEnabled());
+		assertNull(cache.get("a"));
+		Feed feed = cache.put("a", new byte[100], 1000);
+		assertSame(feed, cache.get("a"));
+
+		// the least recently used feeds are evicted
+		for (int i = 0; i < 100; i++) {
+			cache.put("b" + i, new byte[100 * 1024], 1000);
+		}
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b99"));
+
+		cache.clear();
+		assertNull(cache.get("b99"));
+	}
+
+	@Test
+	public void testDisabled() {
+		FeedCache cache = new FeedCache("test", 0);
+		assertFalse(cache.isEnabled());
+		Feed feed = cache.put("a", new byte[10], 1000);
+		assertEquals(10, feed.content.length);
+		assertNull(cache.get("a"));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gitblit.utils.DiffUtils.DiffComparator;
+import com.gitblit.utils.DiffUtils.DiffLinkHandler;
+import com.gitblit.utils.DiffUtils.DiffOutput;
+import com.gitblit.utils.DiffUtils.DiffOutputType;
+import com.gitblit.utils.DiffUtils.DiffStat;
+
+/**
+ * Tests the html diffs which are written file by file and the links of the
+ * files whose diff is too large.
+ */
+public class GitBlitDiffFormatterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private RevCommit base;
+
+	private RevCommit tip;
+
+	@Before
+	public void setUp() throws Exception {
+		File dir = folder.newFolder("diff.git");
+		git = Git.init().setDirectory(dir).call();
+		write(dir, "small.txt", "hello\n");
+		write(dir, "large.txt", "");
+		git.add().addFilepattern(".").call();
+		base = git.commit().setMessage("base").call();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			sb.append("line ").append(i).append('\n');
+		}
+		write(dir, "small.txt", "hello world\n");
+		write(dir, "large.txt", sb.toString());
+		git.add().addFilepattern(".").call();
+		tip = git.commit().setMessage("tip").call();
+	}
+
+	@After
+	public void tearDown() {
+		git.close();
+	}
+
+	private void write(File dir, String name, String content) throws Exception {
+		java.nio.file.Files.write(new File(dir, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testLargeFileIsLinked() throws Exception {
+		Repository repository = git.getRepository();
+		final List<String> linked = new ArrayList<String>();
+		DiffLinkHandler linkHandler = new DiffLinkHandler() {
+			@Override
+			public String getDiffUrl(DiffEntry diffEntry) {
+				linked.add(diffEntry.getNewPath());
+				return "blobdiff?f=" + diffEntry.getNewPath() + "&h=tip";
+			}
+		};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DiffStat stat = DiffUtils.writeDiff(repository, base, tip, null, DiffComparator.SHOW_WHITESPACE, null,
+				linkHandler, 4, out);
+		String html = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+		assertEquals(2, stat.paths.size());
+		assertEquals(5000, stat.getPath("large.txt").insertions);
+		assertEquals("[large.txt]", linked.toString());
+		assertTrue(html.contains("hello&nbsp;world"));
+		assertTrue(html.contains("<a href=\"blobdiff?f=large.txt&amp;h=tip\">show diff</a>"));
+		assertFalse(html.contains("line&nbsp;4999"));
+		assertFalse(html.contains("diff --git"));
+
+		// the diffstat of a written diff can be cached and serialized
+		new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(stat);
+
+		DiffOutput diff = DiffUtils.getDiff(repository, base, tip, null, DiffComparator.SHOW_WHITESPACE,
+				DiffOutputType.HTML, null, linkHandler, 4);
+		assertEquals(html, diff.content);
+	}
+
+	@Test
+	public void testSingleFileDiff() throws Exception {
+		DiffOutput diff = DiffUtils.getDiff(git.getRepository(), base, tip, "large.txt",
+				DiffComparator.SHOW_WHITESPACE, DiffOutputType.HTML, null, 4);
+		assertEquals(1, diff.stat.paths.size());
+		assertTrue(diff.content.contains("line&nbsp;4999"));
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand.FastForwardMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the last commits of the entries of folders against the histories of
+ * the entries.
+ */
+public class LastCommitIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File dir;
+
+	private Git git;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = folder.newFolder("lastcommits.git");
+		git = Git.init().setDirectory(dir).call();
+		commit("README.md", "readme", "add readme");
+		commit("LICENSE", "license", "add license");
+		for (int i = 0; i < 10; i++) {
+			commit("src/main/Busy.java", "class Busy { int i = " + i + "; }", "busy " + i);
+			if (i % 3 == 0) {
+				commit("src/test/Rare.java", "class Rare { int i = " + i + "; }", "rare " + i);
+			}
+		}
+		// a merge of a topic branch which changed the readme and a new folder
+		git.checkout().setCreateBranch(true).setName("topic").setStartPoint("HEAD~4").call();
+		commit("README.md", "readme of topic", "readme on topic");
+		commit("docs/guide.md", "guide", "add guide");
+		git.checkout().setName("master").call();
+		commit("src/main/Busy.java", "class Busy { }", "busy on master");
+		git.merge().include(git.getRepository().resolve("topic")).setFastForward(FastForwardMode.NO_FF)
+				.setMessage("merge topic").call();
+	}
+
+	@After
+	public void tearDown() {
+		git.close();
+	}
+
+	private RevCommit commit(String path, String content, String message) throws Exception {
+		File file = new File(dir, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(path).call();
+		return git.commit().setMessage(message).call();
+	}
+
+	private Map<String, ObjectId> getLastCommits(LastCommitIndex index, String path) throws Exception {
+		Repository repository = git.getRepository();
+		try (ObjectReader reader = repository.newObjectReader(); RevWalk rw = new RevWalk(reader)) {
+			return index.getLastCommits(reader, rw.parseCommit(repository.resolve("master")), path);
+		}
+	}
+
+	private void assertLastCommits(LastCommitIndex index, String path) throws Exception {
+		Map<String, ObjectId> lastCommits = getLastCommits(index, path);
+		assertNotNull(path, lastCommits);
+		List<com.gitblit.models.PathModel> entries = JGitUtils.getFilesInPath(git.getRepository(), path,
+				JGitUtils.getCommit(git.getRepository(), "master"));
+		assertEquals(entries.size(), lastCommits.size());
+		for (com.gitblit.models.PathModel entry : entries) {
+			List<RevCommit> history = JGitUtils.getRevLog(git.getRepository(), "master", entry.path, 0, 1);
+			assertEquals(entry.path, history.get(0), lastCommits.get(entry.name));
+		}
+	}
+
+	@Test
+	public void testAnnotate() throws Exception {
+		Repository repository = git.getRepository();
+		LastCommitIndex index = LastCommitIndex.empty();
+		assertNull(getLastCommits(index, ""));
+		for (String path : new String[] { "", "src", "src/main", "src/test", "docs" }) {
+			assertTrue(index.annotate(repository, repository.resolve("master"), path));
+			assertLastCommits(index, path);
+		}
+		assertTrue(getLastCommits(index, "README.md").isEmpty());
+		RevCommit readme = JGitUtils.getRevLog(repository, "master", "README.md", 0, 1).get(0);
+		assertEquals("readme on topic", readme.getShortMessage());
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		Repository repository = git.getRepository();
+		LastCommitIndex index = LastCommitIndex.empty();
+		index.annotate(repository, repository.resolve("master"), "src/test");
+		assertTrue(index.update(repository) > 0);
+		assertLastCommits(index, "");
+		assertLastCommits(index, "src/test");
+
+		commit("src/test/Rare.java", "class Rare { int j; }", "rare again");
+		commit("LICENSE", "license 2", "update license");
+		assertNull(getLastCommits(index, ""));
+		int count = index.size();
+		index.update(repository);
+		// the root folders of both commits and the browsed src/test
+		assertEquals(count + 3, index.size());
+		assertLastCommits(index, "");
+		assertLastCommits(index, "src/test");
+		// src/main has never been browsed
+		assertNull(getLastCommits(index, "src/main"));
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		Repository repository = git.getRepository();
+		LastCommitIndex index = LastCommitIndex.empty();
+		index.update(repository);
+		File file = LastCommitIndex.getFile(repository);
+		index.write(file);
+		long length = file.length();
+
+		// appends the new annotations
+		index.annotate(repository, repository.resolve("master"), "src/main");
+		index.write(file);
+		assertTrue(file.length() > length);
+
+		// an interrupted append is ignored by a read and truncated by a write
+		length = file.length();
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(new byte[] { 1, 2, 3 });
+		}
+		LastCommitIndex read = LastCommitIndex.read(file);
+		assertNotNull(read);
+		assertEquals(length + 3, file.length());
+		assertEquals(index.size(), read.size());
+		assertLastCommits(read, "");
+		assertLastCommits(read, "src/main");
+		read.write(file);
+		assertEquals(length, file.length());
+		assertEquals(index.size(), LastCommitIndex.read(file).size());
+	}
+
+	@Test
+	public void testReplaceOtherVersion() throws Exception {
+		Repository repository = git.getRepository();
+		File file = LastCommitIndex.getFile(repository);
+		file.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+		}
+		assertNull(LastCommitIndex.read(file));
+		assertEquals(9, file.length());
+
+		LastCommitIndex index = LastCommitIndex.empty();
+		index.update(repository);
+		index.write(file);
+		LastCommitIndex read = LastCommitIndex.read(file);
+		assertNotNull(read);
+		assertEquals(index.size(), read.size());
+		assertLastCommits(read, "");
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.gitblit.utils.MetricRegistry.Counter;
+import com.gitblit.utils.MetricRegistry.Family;
+import com.gitblit.utils.MetricRegistry.Gauge;
+import com.gitblit.utils.MetricRegistry.Histogram;
+
+/**
+ * Tests the metric registry and its Prometheus text output.
+ */
+public class MetricRegistryTest {
+
+	private static String write(MetricRegistry registry) throws Exception {
+		StringWriter writer = new StringWriter();
+		registry.write(writer);
+		return writer.toString();
+	}
+
+	@Test
+	public void testCounters() throws Exception {
+		MetricRegistry registry = new MetricRegistry();
+		Family<Counter> uploads = registry.counters("test_uploads_total", "Uploads", "transport");
+		uploads.labels("http").inc();
+		uploads.labels("http").add(2);
+		uploads.labels("ssh").inc();
+
+		// the same family is returned for the same name
+		assertSame(uploads.labels("http"), registry.counters("test_uploads_total", "Uploads", "transport").labels("http"));
+		assertEquals(3, uploads.labels("http").get());
+
+		String text = write(registry);
+		assertTrue(text.contains("# HELP test_uploads_total Uploads\n"));
+		assertTrue(text.contains("# TYPE test_uploads_total counter\n"));
+		assertTrue(text.contains("test_uploads_total{transport=\"http\"} 3\n"));
+		assertTrue(text.contains("test_uploads_total{transport=\"ssh\"} 1\n"));
+	}
+
+	@Test
+	public void testGauges() throws Exception {
+		MetricRegistry registry = new MetricRegistry();
+		registry.gauge("test_queue_size", "Queue", new Gauge() {
+			@Override
+			public double getValue() {
+				return 7;
+			}
+		});
+		registry.gauges("test_ratio", "Ratio", "cache").register(new Gauge() {
+			@Override
+			public double getValue() {
+				return 0.25d;
+			}
+		}, "a\"b");
+
+		String text = write(registry);
+		assertTrue(text.contains("# TYPE test_queue_size gauge\ntest_queue_size 7\n"));
+		assertTrue(text.contains("test_ratio{cache=\"a\\\"b\"} 0.25\n"));
+	}
+
+	@Test
+	public void testHistogram() throws Exception {
+		MetricRegistry registry = new MetricRegistry();
+		Histogram histogram = registry.histogram("test_seconds", "Latency");
+		histogram.observe(TimeUnit.MILLISECONDS.toNanos(3));
+		histogram.observe(TimeUnit.MILLISECONDS.toNanos(5));
+		histogram.observeMillis(200);
+		histogram.observeMillis(TimeUnit.HOURS.toMillis(1));
+		assertEquals(4, histogram.getCount());
+
+		String text = write(registry);
+		assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"0.005\"} 2\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"0.1\"} 2\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"0.25\"} 3\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"300\"} 3\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 4\n"));
+		assertTrue(text.contains("test_seconds_sum 3600.208\n"));
+		assertTrue(text.contains("test_seconds_count 4\n"));
+	}
+
+	@Test
+	public void testConflictingRegistration() {
+		MetricRegistry registry = new MetricRegistry();
+		registry.counter("test_total", "Test");
+		try {
+			registry.histogram("test_total", "Test");
+			fail("a metric name may only be registered with one type");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			registry.counters("test_total", "Test").labels("unexpected");
+			fail("the label values must match the label names");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
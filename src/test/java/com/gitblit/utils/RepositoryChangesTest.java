@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the versions from which a delta of the changed repositories may be
+ * served.
+ */
+public class RepositoryChangesTest {
+
+	@Test
+	public void testChanges() {
+		RepositoryChanges changes = new RepositoryChanges();
+		long start = changes.getVersion();
+		assertTrue(changes.isDeltaSince(start));
+		assertFalse(changes.isChangedSince("a.git", start));
+
+		long a = changes.changed("a.git");
+		assertTrue(a > start);
+		assertEquals(a, changes.getVersion());
+		assertEquals(a, changes.getVersion("A.git"));
+		assertTrue(changes.isChangedSince("a.git", start));
+		assertFalse(changes.isChangedSince("a.git", a));
+		assertFalse(changes.isChangedSince("b.git", start));
+
+		// a version which has not been handed out yet
+		assertFalse(changes.isDeltaSince(a + 1));
+		// a version of an earlier run of the server
+		assertFalse(changes.isDeltaSince(start - 1));
+	}
+
+	@Test
+	public void testRemovals() {
+		RepositoryChanges changes = new RepositoryChanges();
+		long a = changes.changed("a.git");
+		long b = changes.changed("b.git");
+		assertTrue(changes.isDeltaSince(a));
+
+		long removed = changes.removed("a.git");
+		assertFalse(changes.isDeltaSince(a));
+		assertFalse(changes.isDeltaSince(b));
+		assertTrue(changes.isDeltaSince(removed));
+		assertFalse(changes.isChangedSince("a.git", removed));
+
+		long reset = changes.reset();
+		assertFalse(changes.isDeltaSince(removed));
+		assertTrue(changes.isDeltaSince(reset));
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gitblit.Constants.AccessRestrictionType;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.RepositoryQuery;
+import com.gitblit.models.RepositoryQuery.Sort;
+import com.gitblit.models.TeamModel;
+import com.gitblit.models.UserModel;
+
+/**
+ * Tests the filtering, sorting and access checks of the repository index.
+ */
+public class RepositoryIndexTest {
+
+	private RepositoryIndex index;
+
+	private static RepositoryModel repository(String name, String description, long lastChange) {
+		RepositoryModel model = new RepositoryModel(name, description, null, new Date(lastChange));
+		model.hasCommits = true;
+		return model;
+	}
+
+	@Before
+	public void setup() {
+		List<RepositoryModel> models = new ArrayList<RepositoryModel>();
+		models.add(repository("helloworld.git", "hello", 3000));
+		models.add(repository("ticgit.git", "tickets", 1000));
+		models.add(repository("group/alpha.git", "alpha", 2000));
+		models.add(repository("group/beta.git", "beta", 5000));
+
+		RepositoryModel personal = repository("~alice/fork.git", "fork", 4000);
+		personal.projectPath = "~alice";
+		models.add(personal);
+
+		RepositoryModel secret = repository("group/secret.git", "secret", 6000);
+		secret.accessRestriction = AccessRestrictionType.VIEW;
+		models.add(secret);
+
+		RepositoryModel empty = repository("empty.git", "empty", 0);
+		empty.hasCommits = false;
+		empty.accessRestriction = AccessRestrictionType.PUSH;
+		models.add(empty);
+
+		Collections.shuffle(models);
+		index = new RepositoryIndex(models);
+	}
+
+	private List<String> query(RepositoryQuery query) {
+		return index.query(query, null, "main", null);
+	}
+
+	@Test
+	public void testSorting() {
+		RepositoryQuery query = new RepositoryQuery();
+		assertEquals(Arrays.asList("helloworld.git", "ticgit.git", "group/alpha.git", "group/beta.git",
+				"~alice/fork.git"), query(query));
+
+		query.sort = Sort.lastChange;
+		query.ascending = false;
+		assertEquals(Arrays.asList("group/beta.git", "~alice/fork.git", "helloworld.git", "group/alpha.git",
+				"ticgit.git"), query(query));
+
+		query.sort = Sort.description;
+		query.ascending = true;
+		assertEquals(Arrays.asList("group/alpha.git", "group/beta.git", "~alice/fork.git", "helloworld.git",
+				"ticgit.git"), query(query));
+	}
+
+	@Test
+	public void testCriteria() {
+		RepositoryQuery query = new RepositoryQuery();
+		query.project = "group";
+		query.repository = "TICGIT.git";
+		assertEquals(Arrays.asList("ticgit.git", "group/alpha.git", "group/beta.git"), query(query));
+
+		query = new RepositoryQuery();
+		query.project = "main";
+		assertEquals(Arrays.asList("helloworld.git", "ticgit.git"), query(query));
+
+		query = new RepositoryQuery();
+		query.regex = "^group/.*a";
+		query.since = new Date(4000);
+		assertEquals(Arrays.asList("group/beta.git"), query(query));
+
+		query = new RepositoryQuery();
+		query.includePersonal = false;
+		assertEquals(4, query(query).size());
+	}
+
+	@Test
+	public void testTeamsAndSets() {
+		RepositoryModel a = repository("a.git", "", 0);
+		a.federationSets.add("public");
+		index = new RepositoryIndex(Arrays.asList(a, repository("b.git", "", 0)));
+
+		RepositoryQuery query = new RepositoryQuery();
+		query.sets.add("public");
+		assertEquals(Arrays.asList("a.git"), query(query));
+
+		TeamModel team = new TeamModel("team");
+		team.addRepositoryPermission("b.git");
+		query = new RepositoryQuery();
+		query.teams.add("team");
+		assertEquals(Arrays.asList("b.git"), index.query(query, null, "main", Arrays.asList(team)));
+	}
+
+	@Test
+	public void testAccess() {
+		UserModel admin = new UserModel("admin");
+		admin.canAdmin = true;
+		List<String> names = index.query(new RepositoryQuery(), admin, "main", null);
+		assertEquals(7, names.size());
+		assertEquals("empty.git", names.get(0));
+		assertEquals(5, index.query(new RepositoryQuery(), UserModel.ANONYMOUS, "main", null).size());
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.gitblit.models.PathModel;
+
+/**
+ * Tests the single level tree listings, which collapse chains of folders.
+ */
+public class TreeListingCacheTest {
+
+	private static final String[] FILES = {
+		"README.md",
+		"a/b/c/single.txt",
+		"d/e/x.txt",
+		"d/e/f/y.txt",
+		"g/h.txt",
+		"i/j/k.txt",
+		"i/l.txt",
+		"m/n/o/p/q.txt",
+		"m/n/o/p/r.txt" };
+
+	/** The folders and their listings with collapsed chains of folders. */
+	private static final String[][] LISTINGS = {
+		{ null, "[README.md, a/b/c, d/e, g, i, m/n/o/p]" },
+		{ "a", "[b/c]" },
+		{ "a/b", "[c]" },
+		{ "d", "[e]" },
+		{ "d/e", "[f, x.txt]" },
+		{ "i", "[j, l.txt]" },
+		{ "m/n", "[o/p]" } };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private RevCommit commit;
+
+	@Before
+	public void setUp() throws Exception {
+		File dir = folder.newFolder("tree.git");
+		git = Git.init().setDirectory(dir).call();
+		for (String path : FILES) {
+			File file = new File(dir, path);
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), path.getBytes(StandardCharsets.UTF_8));
+			git.add().addFilepattern(path).call();
+		}
+		commit = git.commit().setMessage("files").call();
+	}
+
+	@After
+	public void tearDown() {
+		TreeListingCache.instance().close();
+		git.close();
+	}
+
+	private List<String> names(List<PathModel> paths) {
+		List<String> names = new ArrayList<String>();
+		for (PathModel path : paths) {
+			names.add(path.name);
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private void assertListings() throws Exception {
+		for (String[] listing : LISTINGS) {
+			String path = listing[0];
+			List<PathModel> compressed = JGitUtils.getFilesInPath2(git.getRepository(), path, commit);
+			assertEquals(String.valueOf(path), listing[1], names(compressed).toString());
+			for (PathModel model : compressed) {
+				String expected = StringUtils.isEmpty(path) ? model.name : path + "/" + model.name;
+				assertEquals(expected, model.path);
+			}
+		}
+		assertEquals("[README.md, a, d, g, i, m]", names(JGitUtils.getFilesInPath(git.getRepository(), null, commit)).toString());
+		assertEquals("[f, x.txt]", names(JGitUtils.getFilesInPath(git.getRepository(), "d/e", commit)).toString());
+		assertEquals("[f, x.txt]", names(JGitUtils.getFilesInPath(git.getRepository(), "d/e/", commit)).toString());
+
+		List<PathModel> files = JGitUtils.getFilesInPath(git.getRepository(), "g", commit);
+		assertEquals(1, files.size());
+		assertEquals("g/h.txt", files.get(0).path);
+		assertEquals("g/h.txt".length(), files.get(0).size);
+		assertTrue(FileMode.REGULAR_FILE.equals(files.get(0).mode));
+		assertEquals(commit.getName(), files.get(0).commitId);
+
+		// a file or a missing path is not a folder
+		assertTrue(JGitUtils.getFilesInPath(git.getRepository(), "g/h.txt", commit).isEmpty());
+		assertTrue(JGitUtils.getFilesInPath2(git.getRepository(), "none", commit).isEmpty());
+	}
+
+	@Test
+	public void testListings() throws Exception {
+		assertListings();
+	}
+
+	@Test
+	public void testCachedListings() throws Exception {
+		TreeListingCache cache = TreeListingCache.instance();
+		cache.configure(1024 * 1024);
+		assertListings();
+		// a second pass is served by the cache
+		assertListings();
+		try (ObjectReader reader = git.getRepository().newObjectReader()) {
+			assertSame(cache.getEntries(reader, commit.getTree()), cache.getEntries(reader, commit.getTree()));
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gitblit.utils.WorkQueue.Executor;
+import com.gitblit.utils.WorkQueue.OwnedRunnable;
+import com.gitblit.utils.WorkQueue.Task;
+
+/**
+ * Tests fair-share scheduling and admission control of the work queues.
+ */
+public class WorkQueueTest {
+
+	private WorkQueue workQueue;
+
+	private Executor executor;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final CountDownLatch blocked = new CountDownLatch(1);
+
+	private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void setUp() {
+		workQueue = new WorkQueue(new IdGenerator(), 1);
+		executor = workQueue.createQueue(1, "Test");
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		workQueue.stop();
+	}
+
+	private OwnedRunnable task(final String owner, final String name) {
+		return new OwnedRunnable() {
+			@Override
+			public void run() {
+				executed.add(name);
+			}
+
+			@Override
+			public String getOwner() {
+				return owner;
+			}
+
+			@Override
+			public String toString() {
+				return name;
+			}
+		};
+	}
+
+	private void block() throws Exception {
+		executor.submit(new OwnedRunnable() {
+			@Override
+			public void run() {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+
+			@Override
+			public String getOwner() {
+				return "blocker";
+			}
+		});
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testFairShare() throws Exception {
+		executor.setFairShare(true);
+		block();
+		executor.submit(task("ci", "a1"));
+		executor.submit(task("ci", "a2"));
+		// a3 runs last, after the tasks of dev
+		Future<?> last = executor.submit(task("ci", "a3"));
+		executor.submit(task("dev", "b1"));
+		executor.submit(task("dev", "b2"));
+
+		release.countDown();
+		last.get(10, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3"), executed);
+	}
+
+	@Test
+	public void testSubmissionOrder() throws Exception {
+		block();
+		executor.submit(task("ci", "a1"));
+		executor.submit(task("ci", "a2"));
+		Future<?> last = executor.submit(task("dev", "b1"));
+
+		release.countDown();
+		last.get(10, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList("a1", "a2", "b1"), executed);
+	}
+
+	@Test
+	public void testAdmissionLimits() throws Exception {
+		executor.setFairShare(true);
+		executor.setAdmissionLimits(3, 2);
+		block();
+		executor.submit(task("ci", "a1"));
+		executor.submit(task("ci", "a2"));
+		try {
+			executor.submit(task("ci", "a3"));
+			fail("per owner limit exceeded");
+		} catch (RejectedExecutionException e) {
+		}
+		executor.submit(task("dev", "b1"));
+		try {
+			executor.submit(task("admin", "c1"));
+			fail("queue limit exceeded");
+		} catch (RejectedExecutionException e) {
+		}
+		assertEquals(3, executor.getQueuedCount());
+		assertEquals(2, executor.getRejectedCount());
+
+		release.countDown();
+		for (int i = 0; i < 50 && executed.size() < 3; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(3, executed.size());
+		assertEquals(0, executor.getQueuedCount());
+
+		// the owner may queue again
+		Future<?> last = executor.submit(task("ci", "a4"));
+		last.get(10, TimeUnit.SECONDS);
+		assertEquals(5, executor.getStartedCount());
+	}
+
+	@Test
+	public void testTaskInfos() throws Exception {
+		executor.setFairShare(true);
+		block();
+		Future<?> waiting = executor.submit(task("ci", "a1"));
+		Thread.sleep(50);
+
+		List<String> infos = workQueue.getTaskInfos(new TaskInfoFactory<String>() {
+			@Override
+			public String getTaskInfo(Task<?> task) {
+				return task.getQueueName() + " " + task.getState() + " " + task.getOwner() + " " + task;
+			}
+		});
+		assertTrue(infos.contains("Test READY ci a1"));
+		assertEquals(1, executor.getQueuedCount());
+
+		waiting.cancel(false);
+		assertEquals(0, executor.getQueuedCount());
+
+		release.countDown();
+		assertTrue(executor.getMaxWaitTime() >= 0);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 gitblit.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gitblit.wicket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.util.lang.Objects;
+import org.junit.Test;
+
+/**
+ * Tests that the item models of the detachable list data provider reload their
+ * elements by index and do not serialize them.
+ */
+public class DetachableListDataProviderTest {
+
+	private static class CountingModel extends LoadableDetachableModel<List<String>> {
+
+		private static final long serialVersionUID = 1L;
+
+		int loads;
+
+		@Override
+		protected List<String> load() {
+			loads++;
+			List<String> list = new ArrayList<String>();
+			for (int i = 0; i < 100; i++) {
+				list.add("element " + i + " of a list which should not end up in the page store");
+			}
+			return list;
+		}
+	}
+
+	@Test
+	public void testItemModels() {
+		CountingModel listModel = new CountingModel();
+		DetachableListDataProvider<String> provider = new DetachableListDataProvider<String>(listModel);
+		assertEquals(100, provider.size());
+
+		List<IModel<String>> models = new ArrayList<IModel<String>>();
+		Iterator<String> iterator = provider.iterator(10, 3);
+		while (iterator.hasNext()) {
+			models.add(provider.model(iterator.next()));
+		}
+		assertEquals(1, listModel.loads);
+		assertTrue(models.get(1).getObject().startsWith("element 11 "));
+
+		// detached models reload their element from the list model
+		provider.detach();
+		for (IModel<String> model : models) {
+			model.detach();
+		}
+		assertTrue(Objects.sizeof(provider) < 1000);
+		assertTrue(Objects.sizeof(models.get(0)) < 1000);
+		assertEquals(Arrays.asList("element 10", "element 11", "element 12"),
+				Arrays.asList(models.get(0).getObject().substring(0, 10), models.get(1).getObject().substring(0, 10),
+						models.get(2).getObject().substring(0, 10)));
+		assertEquals(2, listModel.loads);
+	}
+}
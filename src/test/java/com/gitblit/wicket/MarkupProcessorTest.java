@@ -573,6 +573,65 @@ public class MarkupProcessorTest
 
 
 
+	@Test
+	public void testRenderedDocumentIsCached()
+	{
+		MarkupCache cache = new MarkupCache(1024 * 1024);
+		MarkupProcessor mp = new MarkupProcessor(getSettings(), new JSoupXssFilter(), cache);
+
+		String markup = "# Title\n\nlink: [a page](file.md)";
+		MarkupDocument first = mp.parse("testrepo", "12345abcde", "main.md", markup);
+		MarkupDocument second = mp.parse("testrepo", "12345abcde", "main.md", markup);
+		assertEquals(first.html, second.html);
+		assertEquals(1, cache.size());
+		assertEquals(50, cache.getHitRate());
+
+		// links are rewritten per commit, so a different commit is rendered again
+		MarkupDocument other = mp.parse("testrepo", "67890fghij", "main.md", markup);
+		assertEquals(2, cache.size());
+		Document doc = Jsoup.parseBodyFragment(other.html);
+		assertEquals("doc/testrepo/67890fghij/file.md", doc.getElementsByAttribute("href").attr("href"));
+
+		// changed content is a different blob
+		mp.parse("testrepo", "12345abcde", "main.md", markup + "\n\nmore");
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testRenderBudgetFallsBackToPlainText()
+	{
+		MemorySettings settings = getSettings();
+		settings.put(Keys.web.markupRenderBudget, "1");
+		MarkupProcessor mp = new MarkupProcessor(settings, new JSoupXssFilter());
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("*a _b [c](d) <i>e</i> `f`* ");
+		}
+		MarkupDocument mdoc = mp.parse("testrepo", "12345abcde", "main.md", sb.toString());
+		assertTrue(mdoc.html.startsWith("<pre>"));
+		assertTrue(mdoc.html.contains("&lt;i&gt;e&lt;/i&gt;"));
+		assertFalse(mdoc.html.contains("<em>"));
+	}
+
+	@Test
+	public void testPlainTextFallbackIsNotCached()
+	{
+		MemorySettings settings = getSettings();
+		settings.put(Keys.web.markupRenderBudget, "1");
+		MarkupCache cache = new MarkupCache(64 * 1024 * 1024);
+		MarkupProcessor mp = new MarkupProcessor(settings, new JSoupXssFilter(), cache);
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("*a _b [c](d) <i>e</i> `f`* ");
+		}
+		MarkupDocument mdoc = mp.parse("testrepo", "12345abcde", "main.md", sb.toString());
+		assertTrue(mdoc.html.startsWith("<pre>"));
+		assertEquals(0, cache.size());
+	}
+
+
 	private MemorySettings getSettings()
 	{
 		Map<String, Object> backingMap = new HashMap<String, Object>();